@@ -41,6 +41,7 @@ public class ParecoClient {
 		try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(ParecoClient.class)
 			.logStartupInfo(false)
 			.bannerMode(Mode.OFF)
+			.properties("digest.read.mode=" + options.getDigestReadMode().name())
 			.run(args)
 		) {
 			ctx.getBean(TransferService.class).execTransfer(
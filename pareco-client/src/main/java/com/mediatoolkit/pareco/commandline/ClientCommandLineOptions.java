@@ -3,12 +3,18 @@ package com.mediatoolkit.pareco.commandline;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.components.DigestReadMode;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.progress.TransferLoggingLevel;
+import com.mediatoolkit.pareco.restclient.HttpTransport;
 import com.mediatoolkit.pareco.transfer.model.ServerInfo;
 import com.mediatoolkit.pareco.transfer.model.TransferJob;
 import com.mediatoolkit.pareco.transfer.model.TransferMode;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions;
+import com.mediatoolkit.pareco.transfer.model.TransferOptions.ChunkMatchingMode;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions.FileIntegrityOptions;
 import com.mediatoolkit.pareco.transfer.model.TransferTask;
 import com.mediatoolkit.pareco.util.commandline.CommandLineOptions;
@@ -92,7 +98,154 @@ public class ClientCommandLineOptions implements CommandLineOptions {
 	)
 	private boolean skipDigestCheck = false;
 
-	@Parameter(names = "--hash", description = "Which hash function to use for file digest checksum")
+	@Parameter(
+		names = "--chunkMatching",
+		description = "How chunks of source are matched against destination, ROLLING finds unchanged blocks even when data is shifted by inserts or deletes"
+	)
+	private ChunkMatchingMode chunkMatchingMode = ChunkMatchingMode.FIXED_OFFSET;
+
+	@Parameter(
+		names = "--digestTreeFanOut",
+		description = "When greater than 1, remote digests are compared top-down as Merkle tree with given fan-out instead of fetching all chunk digests (only with FIXED_OFFSET chunk matching)"
+	)
+	private int digestTreeFanOut = 0;
+
+	@Parameter(
+		names = "--digestCache",
+		description = "Directory where to persist digests of local files so unchanged files are not re-read on each transfer"
+	)
+	private String digestCacheDirectory;
+
+	@Parameter(
+		names = "--digestParallelism",
+		description = "Max number of threads hashing chunks of single local file concurrently"
+	)
+	private int digestParallelism = 1;
+
+	@Parameter(
+		names = "--digestReadMode",
+		description = "How local file chunks are read for digest calculation"
+	)
+	private DigestReadMode digestReadMode = DigestReadMode.STREAM;
+
+	@Parameter(
+		names = "--streamDigests",
+		description = "If set, chunk digests are compared as they are calculated and differing chunks are transferred without waiting for whole file digests (only with FIXED_OFFSET chunk matching)"
+	)
+	private boolean streamingDigests = false;
+
+	@Parameter(
+		names = "--digestPrefixBytes",
+		description = "If positive, remote chunk digests are fetched truncated to this many bytes (at least 8) to reduce digest exchange, 0 means full digests"
+	)
+	private int digestPrefixBytes = 0;
+
+	@Parameter(
+		names = "--verifyChunks",
+		description = "If set, digests of chunk bytes are calculated while transferring on both sides and compared on file commit"
+	)
+	private boolean verifyChunks = false;
+
+	@Parameter(
+		names = "--reuseDestinationChunks",
+		description = "If set, chunks already present in other destination files (i.e. renamed or copied files) " +
+			"are copied on destination instead of being transferred. Unexpected files are deleted after transfer " +
+			"so that they can be used as source of chunks"
+	)
+	private boolean reuseDestinationChunks = false;
+
+	@Parameter(
+		names = "--reuseMaxUnexpectedFiles",
+		description = "Max number of local destination files not present in source which are digested to offer " +
+			"their chunks for --reuseDestinationChunks on download (server has its own limit for upload)"
+	)
+	private int reuseMaxUnexpectedFiles = DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_FILES;
+
+	@Parameter(
+		names = "--reuseMaxUnexpectedBytes",
+		description = "Max total size of local destination files not present in source which are digested to offer " +
+			"their chunks for --reuseDestinationChunks on download, examples: 64M, 1G",
+		converter = ChunkSizeConverter.class
+	)
+	private long reuseMaxUnexpectedBytes = DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_BYTES;
+
+	@Parameter(
+		names = "--detectMoves",
+		description = "If set, files which are renamed or moved on source are moved on destination instead " +
+			"of being transferred again. Moved file is copied instead if unexpected files are not deleted"
+	)
+	private boolean detectMoves = false;
+
+	@Parameter(
+		names = "--lookAhead",
+		description = "Max number of big files analyzed (hashed on both sides) concurrently with transfer of " +
+			"current file, 0 disables pipelining of analysis and transfer"
+	)
+	private int lookAhead = 1;
+
+	@Parameter(
+		names = "--subChunk",
+		description = "If positive, chunks with differing digests are compared again in blocks of this size " +
+			"and only differing blocks are transferred, examples: 4K, 64K (only with FIXED_OFFSET chunk matching, " +
+			"without --verifyChunks)",
+		converter = ChunkSizeConverter.class
+	)
+	private long subChunkBytes = 0;
+
+	@Parameter(
+		names = "--detectAppends",
+		description = "If set, file which is shorter on destination is checked whether it's unchanged prefix of " +
+			"source (i.e. growing log files) by comparing single prefix digest, if so only appended tail is transferred"
+	)
+	private boolean detectAppends = false;
+
+	@Parameter(
+		names = "--transport",
+		description = "HTTP protocol used for requests, HTTP_1_1_POOLED streams chunks over pool of persistent " +
+			"connections sized by number of connections, HTTP_2 multiplexes all concurrent chunk transfers over " +
+			"single connection and needs server started with --h2c (for http)"
+	)
+	private HttpTransport httpTransport = HttpTransport.HTTP_1_1;
+
+	@Parameter(
+		names = "--framedChunks",
+		description = "If set, chunks of file are sent in few long streamed requests (one per connection) " +
+			"instead of request per chunk (only with HTTP_1_1_POOLED or HTTP_2 transport)"
+	)
+	private boolean framedChunks = false;
+
+	@Parameter(
+		names = "--bundleSmallFiles",
+		description = "If set, small files are sent whole in bundles of many files per request, " +
+			"instead of initialization, chunks and commit request per file"
+	)
+	private boolean bundleSmallFiles = false;
+
+	@Parameter(
+		names = "--maxBundleFiles",
+		description = "Max number of files in one bundle of small files, bundle is sent when it reaches " +
+			"either this number of files or chunk size times number of connections bytes"
+	)
+	private int maxBundleFiles = TransferOptions.DEFAULT_MAX_BUNDLE_FILES;
+
+	@Parameter(
+		names = "--compression",
+		description = "Compression of chunks on wire, SNAPPY is cheap on CPU for fast links, ZSTD compresses better " +
+			"for slow links, chunks which turn out incompressible by sampling are sent raw"
+	)
+	private CompressionType compression = CompressionType.NONE;
+
+	@Parameter(
+		names = "--compressionLevel",
+		description = "Level of ZSTD compression, from 1 (fastest) to 22 (smallest)"
+	)
+	private int compressionLevel = CompressionType.DEFAULT_LEVEL;
+
+	@Parameter(
+		names = "--hash",
+		description = "Which hash function to use for file digest checksum, AUTO picks fastest of 64+ bit hashes by short benchmark",
+		converter = DigestTypeConverter.class
+	)
 	private DigestType digestType = DigestType.CRC_32;
 
 	@Parameter(names = {"-log", "--logLevel"}, description = "Choose which logging level to use")
@@ -128,9 +281,42 @@ public class ClientCommandLineOptions implements CommandLineOptions {
 		if (connectTimeout < 0) {
 			throw new ParameterException("Connect timeout must not be negative, got: " + timeout);
 		}
+		if (digestParallelism < 1) {
+			throw new ParameterException("Digest parallelism must be positive, got: " + digestParallelism);
+		}
 		if (timeout < 0) {
 			throw new ParameterException("Timeout must not be negative, got: " + timeout);
 		}
+		if (digestPrefixBytes != 0 && digestPrefixBytes < 8) {
+			throw new ParameterException("Digest prefix must be 0 or at least 8 bytes, got: " + digestPrefixBytes);
+		}
+		if (reuseMaxUnexpectedFiles < 0 || reuseMaxUnexpectedBytes < 0) {
+			throw new ParameterException("Limits of unexpected files for chunk reuse must not be negative");
+		}
+		if (lookAhead < 0) {
+			throw new ParameterException("Look ahead must not be negative, got: " + lookAhead);
+		}
+		if (subChunkBytes < 0 || subChunkBytes >= chunkSizeBytes) {
+			throw new ParameterException("Sub-chunk size must be 0 or smaller than chunk size, got: " + subChunkBytes);
+		}
+		if (subChunkBytes > 0 && verifyChunks) {
+			throw new ParameterException("Sub-chunk comparison can't be combined with chunk verification");
+		}
+		if (framedChunks && httpTransport == HttpTransport.HTTP_1_1) {
+			throw new ParameterException("Framed chunks need streaming HTTP_1_1_POOLED or HTTP_2 transport, got: " + httpTransport);
+		}
+		if (maxBundleFiles < 1) {
+			throw new ParameterException("Max bundle files must be positive, got: " + maxBundleFiles);
+		}
+		if (bundleSmallFiles && verifyChunks) {
+			throw new ParameterException("Bundled small files can't be combined with chunk verification");
+		}
+		if (compression != CompressionType.NONE && framedChunks) {
+			throw new ParameterException("Compression can't be combined with framed chunks");
+		}
+		if (compressionLevel < 1 || compressionLevel > 22) {
+			throw new ParameterException("Compression level must be between 1 and 22, got: " + compressionLevel);
+		}
 	}
 
 	public TransferTask toTransferTask() {
@@ -151,6 +337,25 @@ public class ClientCommandLineOptions implements CommandLineOptions {
 				.timeout(timeout)
 				.connectTimeout(connectTimeout)
 				.fileIntegrityOptions(fileIntegrityOptions)
+				.chunkMatchingMode(chunkMatchingMode)
+				.digestTreeFanOut(digestTreeFanOut)
+				.digestCacheDirectory(digestCacheDirectory)
+				.digestParallelism(digestParallelism)
+				.streamingDigests(streamingDigests)
+				.digestPrefixBytes(digestPrefixBytes)
+				.verifyChunks(verifyChunks)
+				.reuseDestinationChunks(reuseDestinationChunks)
+				.unexpectedFilesLimits(UnexpectedFilesLimits.of(reuseMaxUnexpectedFiles, reuseMaxUnexpectedBytes))
+				.detectMoves(detectMoves)
+				.lookAhead(lookAhead)
+				.subChunkBytes(subChunkBytes)
+				.detectAppends(detectAppends)
+				.httpTransport(httpTransport)
+				.framedChunks(framedChunks)
+				.bundleSmallFiles(bundleSmallFiles)
+				.maxBundleFiles(maxBundleFiles)
+				.compression(compression)
+				.compressionLevel(compressionLevel)
 				.build()
 			)
 			.build();
@@ -0,0 +1,38 @@
+package com.mediatoolkit.pareco.commandline;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.converters.BaseConverter;
+import com.mediatoolkit.pareco.components.DigestTypeBenchmark;
+import com.mediatoolkit.pareco.model.DigestType;
+import java.util.Arrays;
+
+/**
+ * Accepts name of {@link DigestType} or {@link #AUTO} which picks fastest of
+ * {@link DigestTypeBenchmark#ACCEPTABLE_DIGEST_TYPES} by short benchmark
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+public class DigestTypeConverter extends BaseConverter<DigestType> implements IStringConverter<DigestType> {
+
+	public static final String AUTO = "AUTO";
+
+	public DigestTypeConverter(String optionName) {
+		super(optionName);
+	}
+
+	@Override
+	public DigestType convert(String value) {
+		if (AUTO.equalsIgnoreCase(value)) {
+			return DigestTypeBenchmark.fastestAcceptable();
+		}
+		try {
+			return DigestType.valueOf(value.toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			throw new ParameterException(getErrorString(
+				value, "digest type, one of " + AUTO + ", " + Arrays.toString(DigestType.values())
+			));
+		}
+	}
+}
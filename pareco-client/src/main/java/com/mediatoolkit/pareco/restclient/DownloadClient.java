@@ -1,19 +1,50 @@
 package com.mediatoolkit.pareco.restclient;
 
+import com.google.common.hash.HashingInputStream;
+import com.mediatoolkit.pareco.components.ChunkDigestListener;
+import com.mediatoolkit.pareco.components.ChunkDigestStream;
+import com.mediatoolkit.pareco.components.ChunkFrameListener;
+import com.mediatoolkit.pareco.components.ChunkFrameStream;
+import com.mediatoolkit.pareco.components.FileBundleListener;
+import com.mediatoolkit.pareco.components.FileBundleStream;
+import com.mediatoolkit.pareco.components.FileDigestBatchListener;
+import com.mediatoolkit.pareco.components.FileDigestBatchStream;
+import com.mediatoolkit.pareco.components.FileDigestHttpMessageConverter;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
+import com.mediatoolkit.pareco.components.ZeroChunks;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.ErrorBody;
+import com.mediatoolkit.pareco.model.ErrorBody.Type;
+import com.mediatoolkit.pareco.model.FileDelta;
 import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
+import com.mediatoolkit.pareco.restclient.TransferClientException.ServerSideTransferClientException.FileDeletedOnServerSideException;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.LongConsumer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
+import org.apache.commons.io.input.CountingInputStream;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -22,14 +53,17 @@ import org.springframework.web.util.UriComponentsBuilder;
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
  * @since 25/10/2018
  */
-public class DownloadClient {
+public class DownloadClient implements Closeable {
 
+	private final ClientHttpRequestFactory requestFactory;
 	private final RestTemplate restTemplate;
 	private final String httpScheme;
 	private final String host;
 	private final int port;
 	private final String authToken;
 	private final TransferNamesEncoding encoding;
+	private final CompressionType compression;
+	private final int compressionLevel;
 
 	@Builder
 	public DownloadClient(
@@ -39,20 +73,36 @@ public class DownloadClient {
 		@NonNull Integer connectTimeout,
 		@NonNull Integer readTimeout,
 		String authToken,
-		@NonNull TransferNamesEncoding encoding
+		@NonNull TransferNamesEncoding encoding,
+		HttpTransport transport,
+		@NonNull Integer maxConnections,
+		CompressionType compression,
+		Integer compressionLevel
 	) {
 		this.httpScheme = httpScheme;
 		this.host = host;
 		this.port = port;
 		this.authToken = authToken;
+		this.compression = compression != null ? compression : CompressionType.NONE;
+		this.compressionLevel = compressionLevel != null ? compressionLevel : CompressionType.DEFAULT_LEVEL;
+		requestFactory = (transport != null ? transport : HttpTransport.HTTP_1_1)
+			.createRequestFactory(connectTimeout, readTimeout, maxConnections);
 		restTemplate = new RestTemplateBuilder()
 			.errorHandler(new TransferRestErrorHandler())
-			.setConnectTimeout(connectTimeout)
-			.setReadTimeout(readTimeout)
+			.requestFactory(() -> requestFactory)
 			.build();
+		//binary digest is preferred, server which doesn't support it responds with json
+		restTemplate.getMessageConverters().add(0, new FileDigestHttpMessageConverter());
 		this.encoding = encoding;
 	}
 
+	@Override
+	public void close() throws IOException {
+		if (requestFactory instanceof Closeable) {
+			((Closeable) requestFactory).close();
+		}
+	}
+
 	private String encode(String val) {
 		return encoding.encode(val);
 	}
@@ -93,7 +143,13 @@ public class DownloadClient {
 			return restTemplate.getForObject(uri, DirectoryStructure.class);
 		}
 
-		public FileDigest getFileDigest(FilePath filePath, DigestType digestType) {
+		/**
+		 * @param digestPrefixBytes if positive, chunk digests are truncated to this many bytes,
+		 * see {@link com.mediatoolkit.pareco.components.DigestPrefixes}
+		 */
+		public FileDigest getFileDigest(
+			FilePath filePath, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes
+		) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/download/file/digest")
@@ -101,10 +157,170 @@ public class DownloadClient {
 				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
 				.queryParam("fileName", encode(filePath.getFileName()))
 				.queryParam("digestType", digestType)
+				.queryParam("chunkingType", chunkingType)
+				.queryParam("digestPrefixBytes", digestPrefixBytes)
 				.build().toUri();
 			return restTemplate.getForObject(uri, FileDigest.class);
 		}
 
+		/**
+		 * Requests digests of many files at once, server calculates them concurrently and {@code listener}
+		 * is invoked for each file as soon as its digest is received, in order of completion
+		 */
+		public void streamFileDigests(
+			List<FilePath> filePaths, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes,
+			FileDigestBatchListener listener
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digests")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("digestType", digestType)
+				.queryParam("chunkingType", chunkingType)
+				.queryParam("digestPrefixBytes", digestPrefixBytes)
+				.build().toUri();
+			RequestCallback requestCallback = request -> {
+				request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.getHeaders().setAccept(Collections.singletonList(MediaType.valueOf(FileDigestBatchStream.MEDIA_TYPE)));
+				FileDigestBatchStream.writeFilePaths(filePaths, request.getBody());
+			};
+			ResponseExtractor<Void> responseExtractor = response -> {
+				FileDigestBatchStream.readFrom(response.getBody(), listener);
+				return null;
+			};
+			restTemplate.execute(uri, HttpMethod.POST, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * Downloads whole files with their metadata as {@link FileBundleStream} of single response,
+		 * each file is passed to {@code listener} as it arrives
+		 */
+		public void downloadBundle(List<FilePath> filePaths, FileBundleListener listener) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/bundle")
+				.queryParam("downloadSession", downloadSession)
+				.build().toUri();
+			RequestCallback requestCallback = request -> {
+				request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.getHeaders().setAccept(Collections.singletonList(MediaType.valueOf(FileBundleStream.MEDIA_TYPE)));
+				FileBundleStream.writeFilePaths(filePaths, request.getBody());
+			};
+			ResponseExtractor<Void> responseExtractor = response -> {
+				FileBundleStream.readFrom(response.getBody(), listener);
+				return null;
+			};
+			restTemplate.execute(uri, HttpMethod.POST, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * Reads chunk digests as server calculates them, {@code listener} is invoked for each one
+		 * before the rest of the response is received
+		 */
+		public void streamFileDigest(FilePath filePath, DigestType digestType, ChunkDigestListener listener) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digest/stream")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.build().toUri();
+			RequestCallback requestCallback = request -> request.getHeaders().setAccept(
+				Collections.singletonList(MediaType.valueOf(ChunkDigestStream.MEDIA_TYPE))
+			);
+			ResponseExtractor<Void> responseExtractor = response -> {
+				ChunkDigestStream.readFrom(response.getBody(), listener);
+				return null;
+			};
+			restTemplate.execute(uri, HttpMethod.GET, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * @return digest of first {@code prefixSizeBytes} bytes of file, {@code null} if file is shorter
+		 */
+		public byte[] getFilePrefixDigest(FilePath filePath, DigestType digestType, long prefixSizeBytes) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digest/prefix")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("prefixSizeBytes", prefixSizeBytes)
+				.build().toUri();
+			return restTemplate.getForObject(uri, byte[].class);
+		}
+
+		/**
+		 * @param ranges ranges of file (i.e. chunks with differing digests) to be split into blocks
+		 * @return digests of blocks of at most {@code blockSizeBytes} within {@code ranges}
+		 */
+		public FileDigest getFileBlockDigests(
+			FilePath filePath, DigestType digestType, long blockSizeBytes, List<ChunkInfo> ranges
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digest/blocks")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("blockSizeBytes", blockSizeBytes)
+				.build().toUri();
+			return restTemplate.postForObject(uri, ranges, FileDigest.class);
+		}
+
+		public MerkleTreeSummary getFileDigestTreeSummary(FilePath filePath, DigestType digestType, int fanOut) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digest/tree")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("fanOut", fanOut)
+				.build().toUri();
+			return restTemplate.getForObject(uri, MerkleTreeSummary.class);
+		}
+
+		public byte[][] getFileDigestTreeNodes(
+			FilePath filePath, DigestType digestType, int fanOut, int level, List<Integer> indices
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/digest/tree/nodes")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("fanOut", fanOut)
+				.queryParam("level", level)
+				.build().toUri();
+			return restTemplate.postForObject(uri, indices, byte[][].class);
+		}
+
+		public byte[][] getFileFingerprints(List<FilePath> filePaths, DigestType digestType) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/fingerprints")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("digestType", digestType)
+				.build().toUri();
+			return restTemplate.postForObject(uri, filePaths, byte[][].class);
+		}
+
+		public FileDelta getFileDelta(FilePath filePath, FileSignature localFileSignature) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/delta")
+				.queryParam("downloadSession", downloadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.build().toUri();
+			return restTemplate.postForObject(uri, localFileSignature, FileDelta.class);
+		}
+
 		public void skipFileDownload(FilePath filePath) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
@@ -117,15 +333,25 @@ public class DownloadClient {
 		}
 
 		public FileDownloadSessionClient initializeFileDownload(FilePath filePath) {
-			URI uri = UriComponentsBuilder.newInstance()
+			return initializeFileDownload(filePath, null);
+		}
+
+		/**
+		 * @param inlineChunkDigests if not {@code null}, digests of downloaded chunks are recorded into it
+		 * and server is asked to record digests of sent chunks for verification on commit
+		 */
+		public FileDownloadSessionClient initializeFileDownload(FilePath filePath, InlineChunkDigests inlineChunkDigests) {
+			UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/download/file/init")
 				.queryParam("downloadSession", downloadSession)
 				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
-				.queryParam("fileName", encode(filePath.getFileName()))
-				.build().toUri();
-			String fileDownloadSession = restTemplate.postForObject(uri, null, String.class);
-			return new FileDownloadSessionClient(fileDownloadSession);
+				.queryParam("fileName", encode(filePath.getFileName()));
+			if (inlineChunkDigests != null) {
+				builder.queryParam("verifyDigestType", inlineChunkDigests.getDigestType());
+			}
+			String fileDownloadSession = restTemplate.postForObject(builder.build().toUri(), null, String.class);
+			return new FileDownloadSessionClient(fileDownloadSession, inlineChunkDigests);
 		}
 
 		public void commitDownload() {
@@ -152,29 +378,142 @@ public class DownloadClient {
 	public class FileDownloadSessionClient {
 
 		private final String fileDownloadSession;
+		private final InlineChunkDigests inlineChunkDigests;
 
-		public void downloadChunk(ChunkInfo chunkInfo, InputStreamHandler inputStreamHandler) {
-			URI uri = UriComponentsBuilder.newInstance()
+		/**
+		 * @param inputStreamHandler handler of chunk content, not invoked for zero chunk
+		 * @return {@code false} if server reported chunk as zero chunk without sending its content,
+		 * see {@link ZeroChunks}
+		 */
+		public boolean downloadChunk(ChunkInfo chunkInfo, InputStreamHandler inputStreamHandler) {
+			return downloadChunk(chunkInfo, inputStreamHandler, wireBytes -> {
+			});
+		}
+
+		/**
+		 * Downloads chunk, server compresses it if compression is enabled and chunk's content turns out
+		 * compressible, {@code inputStreamHandler} always gets decompressed content
+		 *
+		 * @param wireBytesConsumer receives number of bytes chunk's content took on wire, invoked
+		 *                          only if content is received
+		 * @return false if chunk is zero chunk and its content is not received
+		 */
+		public boolean downloadChunk(
+			ChunkInfo chunkInfo, InputStreamHandler inputStreamHandler, LongConsumer wireBytesConsumer
+		) {
+			UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/download/file/chunk")
 				.queryParam("fileDownloadSession", fileDownloadSession)
 				.queryParam("offsetBytes", chunkInfo.getOffsetBytes())
 				.queryParam("sizeBytes", chunkInfo.getSizeBytes())
+				.queryParam("zeroChunks", true);
+			if (compression != CompressionType.NONE) {
+				builder.queryParam("compressionLevel", compressionLevel);
+			}
+			URI uri = builder.build().toUri();
+			RequestCallback requestCallback = request -> {
+				if (compression != CompressionType.NONE) {
+					request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, compression.getContentEncoding());
+				}
+			};
+			ResponseExtractor<Boolean> responseExtractor = response -> {
+				if (response.getHeaders().containsKey(ZeroChunks.ZERO_CHUNK_HEADER)) {
+					if (inlineChunkDigests != null) {
+						inlineChunkDigests.recordZeroChunk(chunkInfo);
+					}
+					return false;
+				}
+				CompressionType compressionType = CompressionType.ofContentEncoding(
+					response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)
+				);
+				CountingInputStream wireInputStream = new CountingInputStream(response.getBody());
+				try (InputStream inputStream = compressionType.decompressing(wireInputStream)) {
+					if (inlineChunkDigests == null) {
+						inputStreamHandler.handleInputStream(inputStream);
+					} else {
+						HashingInputStream hashingInputStream = inlineChunkDigests.hashing(inputStream);
+						inputStreamHandler.handleInputStream(hashingInputStream);
+						inlineChunkDigests.record(chunkInfo, hashingInputStream);
+					}
+				}
+				wireBytesConsumer.accept(wireInputStream.getByteCount());
+				return true;
+			};
+			return restTemplate.execute(uri, HttpMethod.GET, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * Downloads chunks as {@link ChunkFrameStream} frames of single response, each chunk is passed
+		 * to {@code listener} as it arrives, with {@code null} content for zero chunk
+		 *
+		 * @throws FileDeletedOnServerSideException if server found file deleted or truncated while sending frames
+		 */
+		public void downloadChunks(List<ChunkInfo> chunkInfos, ChunkFrameListener listener) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/download/file/chunks")
+				.queryParam("fileDownloadSession", fileDownloadSession)
+				.queryParam("zeroChunks", true)
 				.build().toUri();
+			RequestCallback requestCallback = request -> {
+				request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.getHeaders().setAccept(Collections.singletonList(
+					MediaType.parseMediaType(ChunkFrameStream.MEDIA_TYPE)
+				));
+				ChunkFrameStream.writeChunkInfos(chunkInfos, request.getBody());
+			};
 			ResponseExtractor<Void> responseExtractor = response -> {
-				inputStreamHandler.handleInputStream(response.getBody());
+				ChunkFrameStream.readFrom(response.getBody(), new ChunkFrameListener() {
+
+					@Override
+					public void chunkReceived(String fileSession, ChunkInfo chunkInfo, InputStream content) throws IOException {
+						if (content == null) {
+							if (inlineChunkDigests != null) {
+								inlineChunkDigests.recordZeroChunk(chunkInfo);
+							}
+							listener.chunkReceived(fileSession, chunkInfo, null);
+						} else if (inlineChunkDigests == null) {
+							listener.chunkReceived(fileSession, chunkInfo, content);
+						} else {
+							HashingInputStream hashingInputStream = inlineChunkDigests.hashing(content);
+							listener.chunkReceived(fileSession, chunkInfo, hashingInputStream);
+							inlineChunkDigests.record(chunkInfo, hashingInputStream);
+						}
+					}
+
+					@Override
+					public void fileDeleted(String fileSession, ChunkInfo chunkInfo) {
+						throw new FileDeletedOnServerSideException(ErrorBody.builder()
+							.timestamp(new Date())
+							.status(HttpStatus.OK.value())
+							.error(HttpStatus.OK.getReasonPhrase())
+							.message("File got deleted or truncated before sending chunk " + chunkInfo)
+							.path(uri.getPath())
+							.type(Type.FILE_DELETED)
+							.build()
+						);
+					}
+				});
 				return null;
 			};
-			restTemplate.execute(uri, HttpMethod.GET, null, responseExtractor);
+			restTemplate.execute(uri, HttpMethod.POST, requestCallback, responseExtractor);
 		}
 
 		public void commitFileDownload() {
+			commitFileDownload(null);
+		}
+
+		/**
+		 * @param transferredFileDigest digests of downloaded chunks which server verifies against sent chunks
+		 */
+		public void commitFileDownload(FileDigest transferredFileDigest) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/download/file/commit")
 				.queryParam("fileDownloadSession", fileDownloadSession)
 				.build().toUri();
-			restTemplate.put(uri, null);
+			restTemplate.put(uri, transferredFileDigest);
 		}
 
 	}
@@ -0,0 +1,257 @@
+package com.mediatoolkit.pareco.restclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.http.nio.support.classic.ClassicToAsyncRequestProducer;
+import org.apache.hc.core5.http.nio.support.classic.ClassicToAsyncResponseConsumer;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Request factory which sends all requests as streams multiplexed over HTTP/2 connection
+ * (h2c with prior knowledge for {@code http} scheme), so that concurrent chunk transfers
+ * share one TCP connection per server with HTTP/2 flow control.
+ * Requests are {@link StreamingHttpOutputMessage}s, body given by
+ * {@link StreamingHttpOutputMessage#setBody(StreamingHttpOutputMessage.Body)} is written by calling thread
+ * into bounded buffer which async client drains into the stream, and response body is read from
+ * bounded buffer as its frames arrive, so neither is held in memory as whole.
+ * Body written into {@link ClientHttpRequest#getBody()} is buffered.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class Http2ClientHttpRequestFactory implements ClientHttpRequestFactory, Closeable {
+
+	/**
+	 * Flow control window of stream, default of 64K would limit each chunk download to
+	 * one window per round trip
+	 */
+	static final int INITIAL_WINDOW_SIZE = 16 << 20;
+	/**
+	 * Size of buffer between calling thread and async client, per direction of each in-flight request
+	 */
+	static final int STREAM_BUFFER_SIZE = 256 << 10;
+
+	private final CloseableHttpAsyncClient httpClient;
+	private final Timeout readTimeout;
+
+	public Http2ClientHttpRequestFactory(int connectTimeout, int readTimeout) {
+		httpClient = H2AsyncClientBuilder.create()
+			.setH2Config(H2Config.custom()
+				.setPushEnabled(false)
+				.setInitialWindowSize(INITIAL_WINDOW_SIZE)
+				.build()
+			)
+			.setDefaultConnectionConfig(ConnectionConfig.custom()
+				.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+				.build()
+			)
+			.setDefaultRequestConfig(RequestConfig.custom()
+				.setResponseTimeout(readTimeout, TimeUnit.MILLISECONDS)
+				.build()
+			)
+			.setThreadFactory(new CustomizableThreadFactory("http2-"))
+			.disableAutomaticRetries()
+			.build();
+		httpClient.start();
+		//null makes buffers wait without limit
+		this.readTimeout = readTimeout > 0 ? Timeout.ofMilliseconds(readTimeout) : null;
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+		return new Http2ClientHttpRequest(uri, httpMethod);
+	}
+
+	@Override
+	public void close() {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private class Http2ClientHttpRequest extends AbstractClientHttpRequest implements StreamingHttpOutputMessage {
+
+		private final URI uri;
+		private final HttpMethod method;
+		private ByteArrayOutputStream bufferedBody;
+		private Body streamingBody;
+
+		Http2ClientHttpRequest(URI uri, HttpMethod method) {
+			this.uri = uri;
+			this.method = method;
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return method.name();
+		}
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		@Override
+		public void setBody(Body body) {
+			streamingBody = body;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(HttpHeaders headers) {
+			if (bufferedBody == null) {
+				bufferedBody = new ByteArrayOutputStream(1024);
+			}
+			return bufferedBody;
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+			BasicClassicHttpRequest request = new BasicClassicHttpRequest(method.name(), uri);
+			headers.forEach((name, values) -> {
+				//entity headers are derived from entity by http client
+				if (!isEntityHeader(name)) {
+					values.forEach(value -> request.addHeader(name, value));
+				}
+			});
+			ContentType contentType = headers.getContentType() == null
+				? ContentType.APPLICATION_OCTET_STREAM
+				: ContentType.parse(headers.getContentType().toString());
+			if (streamingBody != null) {
+				request.setEntity(new StreamingBodyEntity(streamingBody, contentType));
+			} else if (bufferedBody != null && bufferedBody.size() > 0) {
+				request.setEntity(new ByteArrayEntity(bufferedBody.toByteArray(), contentType));
+			}
+			ClassicToAsyncRequestProducer requestProducer = new ClassicToAsyncRequestProducer(
+				request, STREAM_BUFFER_SIZE, readTimeout
+			);
+			ClassicToAsyncResponseConsumer responseConsumer = new ClassicToAsyncResponseConsumer(
+				STREAM_BUFFER_SIZE, readTimeout
+			);
+			Future<Void> exchange = httpClient.execute(requestProducer, responseConsumer, new FutureCallback<Void>() {
+
+				@Override
+				public void completed(Void result) {
+				}
+
+				//exchange can fail before producer and consumer take part in it (i.e. on closed client),
+				//they need to be told so that calling thread doesn't wait on them forever
+				@Override
+				public void failed(Exception ex) {
+					requestProducer.failed(ex);
+					responseConsumer.failed(ex);
+				}
+
+				@Override
+				public void cancelled() {
+					failed(new InterruptedIOException("Request " + method + " " + uri + " cancelled"));
+				}
+			});
+			try {
+				//body is written in this thread while async client sends what is already buffered
+				requestProducer.blockWaiting().execute();
+				return new Http2ClientHttpResponse(responseConsumer.blockWaiting(), exchange);
+			} catch (InterruptedException ex) {
+				exchange.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for response of " + uri);
+			} catch (IOException | RuntimeException ex) {
+				exchange.cancel(true);
+				throw ex;
+			}
+		}
+
+		private boolean isEntityHeader(String name) {
+			return HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+				|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+				|| HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name);
+		}
+	}
+
+	private static class Http2ClientHttpResponse extends AbstractClientHttpResponse {
+
+		private final ClassicHttpResponse response;
+		private final Future<Void> exchange;
+		private HttpHeaders headers;
+
+		Http2ClientHttpResponse(ClassicHttpResponse response, Future<Void> exchange) {
+			this.response = response;
+			this.exchange = exchange;
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return response.getCode();
+		}
+
+		@Override
+		public String getStatusText() {
+			if (response.getReasonPhrase() != null) {
+				return response.getReasonPhrase();
+			}
+			HttpStatus status = HttpStatus.resolve(response.getCode());
+			return status != null ? status.getReasonPhrase() : "";
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				headers = new HttpHeaders();
+				for (Header header : response.getHeaders()) {
+					headers.add(header.getName(), header.getValue());
+				}
+			}
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			HttpEntity entity = response.getEntity();
+			return entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public void close() {
+			try {
+				response.close();
+			} catch (IOException ignore) {
+			} finally {
+				//resets stream whose body wasn't read till the end, no-op once exchange completed
+				exchange.cancel(true);
+			}
+		}
+	}
+}
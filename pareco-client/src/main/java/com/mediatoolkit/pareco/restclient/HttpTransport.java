@@ -0,0 +1,56 @@
+package com.mediatoolkit.pareco.restclient;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+/**
+ * HTTP protocol client uses to send requests to server
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public enum HttpTransport {
+
+	/**
+	 * HTTP/1.1 over JDK's {@code HttpURLConnection}, each in-flight request occupies its own connection
+	 * and request body is buffered in memory before it's sent
+	 */
+	HTTP_1_1 {
+		@Override
+		public ClientHttpRequestFactory createRequestFactory(int connectTimeout, int readTimeout, int maxConnections) {
+			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+			requestFactory.setConnectTimeout(connectTimeout);
+			requestFactory.setReadTimeout(readTimeout);
+			return requestFactory;
+		}
+	},
+
+	/**
+	 * HTTP/1.1 over pool of at most {@code maxConnections} persistent connections, chunk bodies are
+	 * streamed to connection with chunked transfer encoding without being buffered in memory
+	 */
+	HTTP_1_1_POOLED {
+		@Override
+		public ClientHttpRequestFactory createRequestFactory(int connectTimeout, int readTimeout, int maxConnections) {
+			return new PooledClientHttpRequestFactory(connectTimeout, readTimeout, maxConnections);
+		}
+	},
+
+	/**
+	 * HTTP/2 where all concurrent requests are multiplexed as streams over single connection,
+	 * server needs to accept HTTP/2 (h2c with prior knowledge for {@code http} scheme),
+	 * chunk bodies are streamed through bounded buffers without being held in memory as whole
+	 */
+	HTTP_2 {
+		@Override
+		public ClientHttpRequestFactory createRequestFactory(int connectTimeout, int readTimeout, int maxConnections) {
+			return new Http2ClientHttpRequestFactory(connectTimeout, readTimeout);
+		}
+	};
+
+	/**
+	 * @param maxConnections max number of requests sent concurrently, used only by transports which pool connections
+	 * @return new request factory, if it's {@link java.io.Closeable} it needs to be closed after use
+	 */
+	public abstract ClientHttpRequestFactory createRequestFactory(int connectTimeout, int readTimeout, int maxConnections);
+}
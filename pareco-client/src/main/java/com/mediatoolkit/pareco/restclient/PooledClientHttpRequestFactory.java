@@ -0,0 +1,192 @@
+package com.mediatoolkit.pareco.restclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.CloseMode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Request factory which keeps pool of persistent HTTP/1.1 connections of bounded size.
+ * Requests are {@link StreamingHttpOutputMessage}s, body given by
+ * {@link StreamingHttpOutputMessage#setBody(StreamingHttpOutputMessage.Body)} is written
+ * directly to connection with chunked transfer encoding instead of being copied into memory first,
+ * while body written into {@link ClientHttpRequest#getBody()} is buffered.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class PooledClientHttpRequestFactory implements ClientHttpRequestFactory, Closeable {
+
+	private final CloseableHttpClient httpClient;
+
+	public PooledClientHttpRequestFactory(int connectTimeout, int readTimeout, int maxConnections) {
+		httpClient = HttpClients.custom()
+			.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(maxConnections)
+				.setMaxConnPerRoute(maxConnections)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+					.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+					.setSocketTimeout(readTimeout, TimeUnit.MILLISECONDS)
+					.build()
+				)
+				.build()
+			)
+			.disableAutomaticRetries()
+			.disableContentCompression()
+			.disableCookieManagement()
+			.disableRedirectHandling()
+			.build();
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+		return new PooledClientHttpRequest(uri, httpMethod);
+	}
+
+	@Override
+	public void close() {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private class PooledClientHttpRequest extends AbstractClientHttpRequest implements StreamingHttpOutputMessage {
+
+		private final URI uri;
+		private final HttpMethod method;
+		private ByteArrayOutputStream bufferedBody;
+		private Body streamingBody;
+
+		PooledClientHttpRequest(URI uri, HttpMethod method) {
+			this.uri = uri;
+			this.method = method;
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return method;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return method.name();
+		}
+
+		@Override
+		public URI getURI() {
+			return uri;
+		}
+
+		@Override
+		public void setBody(Body body) {
+			streamingBody = body;
+		}
+
+		@Override
+		protected OutputStream getBodyInternal(HttpHeaders headers) {
+			if (bufferedBody == null) {
+				bufferedBody = new ByteArrayOutputStream(1024);
+			}
+			return bufferedBody;
+		}
+
+		@Override
+		protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+			HttpUriRequestBase request = new HttpUriRequestBase(method.name(), uri);
+			headers.forEach((name, values) -> {
+				//framing headers are derived from entity by http client
+				if (!isFramingHeader(name)) {
+					values.forEach(value -> request.addHeader(name, value));
+				}
+			});
+			if (streamingBody != null) {
+				request.setEntity(new StreamingBodyEntity(streamingBody, null));
+			} else if (bufferedBody != null && bufferedBody.size() > 0) {
+				request.setEntity(new ByteArrayEntity(bufferedBody.toByteArray(), null));
+			}
+			return new PooledClientHttpResponse(httpClient.executeOpen(null, request, null));
+		}
+
+		private boolean isFramingHeader(String name) {
+			return HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+				|| HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name);
+		}
+	}
+
+	private static class PooledClientHttpResponse extends AbstractClientHttpResponse {
+
+		private final ClassicHttpResponse response;
+		private HttpHeaders headers;
+
+		PooledClientHttpResponse(ClassicHttpResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return response.getCode();
+		}
+
+		@Override
+		public String getStatusText() {
+			if (response.getReasonPhrase() != null) {
+				return response.getReasonPhrase();
+			}
+			HttpStatus status = HttpStatus.resolve(response.getCode());
+			return status != null ? status.getReasonPhrase() : "";
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				headers = new HttpHeaders();
+				for (Header header : response.getHeaders()) {
+					headers.add(header.getName(), header.getValue());
+				}
+			}
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			HttpEntity entity = response.getEntity();
+			return entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public void close() {
+			//consuming rest of the body keeps connection reusable, closing response would discard it
+			try {
+				EntityUtils.consume(response.getEntity());
+			} catch (IOException ignore) {
+			} finally {
+				try {
+					response.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.mediatoolkit.pareco.restclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+
+/**
+ * Request entity of unknown length which writes {@link StreamingHttpOutputMessage.Body} directly
+ * to connection once http client is ready to send it
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+class StreamingBodyEntity extends AbstractHttpEntity {
+
+	private final StreamingHttpOutputMessage.Body body;
+
+	StreamingBodyEntity(StreamingHttpOutputMessage.Body body, ContentType contentType) {
+		super(contentType, null, true);
+		this.body = body;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() {
+		throw new IllegalStateException("Streaming body can only be written to output stream");
+	}
+
+	@Override
+	public void writeTo(OutputStream outputStream) throws IOException {
+		body.writeTo(outputStream);
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -1,26 +1,55 @@
 package com.mediatoolkit.pareco.restclient;
 
+import com.google.common.hash.HashingInputStream;
+import com.mediatoolkit.pareco.components.ChunkCompressor;
+import com.mediatoolkit.pareco.components.ChunkDigestListener;
+import com.mediatoolkit.pareco.components.ChunkDigestStream;
+import com.mediatoolkit.pareco.components.ChunkFrameStream;
+import com.mediatoolkit.pareco.components.FileBundleStream;
+import com.mediatoolkit.pareco.components.FileDigestBatchListener;
+import com.mediatoolkit.pareco.components.FileDigestBatchStream;
+import com.mediatoolkit.pareco.components.FileDigestHttpMessageConverter;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
+import com.mediatoolkit.pareco.components.ZeroChunks;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
 import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.DataOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.SneakyThrows;
-import org.apache.commons.io.IOUtils;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -28,14 +57,17 @@ import org.springframework.web.util.UriComponentsBuilder;
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
  * @since 25/10/2018
  */
-public class UploadClient {
+public class UploadClient implements Closeable {
 
+	private final ClientHttpRequestFactory requestFactory;
 	private final RestTemplate restTemplate;
 	private final TransferNamesEncoding encoding;
 	private final String httpScheme;
 	private final String host;
 	private final int port;
 	private final String authToken;
+	private final CompressionType compression;
+	private final int compressionLevel;
 
 	@Builder
 	public UploadClient(
@@ -45,20 +77,36 @@ public class UploadClient {
 		@NonNull Integer connectTimeout,
 		@NonNull Integer readTimeout,
 		String authToken,
-		@NonNull TransferNamesEncoding encoding
+		@NonNull TransferNamesEncoding encoding,
+		HttpTransport transport,
+		@NonNull Integer maxConnections,
+		CompressionType compression,
+		Integer compressionLevel
 	) {
 		this.httpScheme = httpScheme;
 		this.host = host;
 		this.port = port;
 		this.authToken = authToken;
+		this.compression = compression != null ? compression : CompressionType.NONE;
+		this.compressionLevel = compressionLevel != null ? compressionLevel : CompressionType.DEFAULT_LEVEL;
+		requestFactory = (transport != null ? transport : HttpTransport.HTTP_1_1)
+			.createRequestFactory(connectTimeout, readTimeout, maxConnections);
 		restTemplate = new RestTemplateBuilder()
 			.errorHandler(new TransferRestErrorHandler())
-			.setConnectTimeout(connectTimeout)
-			.setReadTimeout(readTimeout)
+			.requestFactory(() -> requestFactory)
 			.build();
+		//binary digest is preferred, server which doesn't support it responds with json
+		restTemplate.getMessageConverters().add(0, new FileDigestHttpMessageConverter());
 		this.encoding = encoding;
 	}
 
+	@Override
+	public void close() throws IOException {
+		if (requestFactory instanceof Closeable) {
+			((Closeable) requestFactory).close();
+		}
+	}
+
 	private String encode(String val) {
 		return encoding.encode(val);
 	}
@@ -117,7 +165,76 @@ public class UploadClient {
 			restTemplate.postForObject(uri, filePaths, Void.class);
 		}
 
-		public FileDigest getFileDigest(FilePath filePath, DigestType digestType) {
+		/**
+		 * Uploads whole files with their metadata as {@link FileBundleStream} of single request,
+		 * content of each file is opened just before it's written
+		 */
+		public void uploadBundle(List<FileMetadata> filesMetadata, FileContentSource contentSource) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/bundle")
+				.queryParam("uploadSession", uploadSession)
+				.build().toUri();
+			RequestCallback requestCallback = request -> {
+				request.getHeaders().setContentType(MediaType.parseMediaType(FileBundleStream.MEDIA_TYPE));
+				if (request instanceof StreamingHttpOutputMessage) {
+					((StreamingHttpOutputMessage) request).setBody(
+						outputStream -> writeBundle(filesMetadata, contentSource, outputStream)
+					);
+				} else {
+					writeBundle(filesMetadata, contentSource, request.getBody());
+				}
+			};
+			restTemplate.execute(uri, HttpMethod.PUT, requestCallback, null);
+		}
+
+		private void writeBundle(
+			List<FileMetadata> filesMetadata, FileContentSource contentSource, OutputStream outputStream
+		) throws IOException {
+			DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+			for (FileMetadata fileMetadata : filesMetadata) {
+				byte[] content = readContent(fileMetadata, contentSource);
+				if (content == null) {
+					FileBundleStream.writeDeletedFile(dataOutputStream, fileMetadata.getFilePath());
+					continue;
+				}
+				FileBundleStream.writeFile(dataOutputStream, fileMetadata, new ByteArrayInputStream(content));
+			}
+			dataOutputStream.flush();
+		}
+
+		/**
+		 * @return content of file, {@code null} if it got deleted or shrunk so it's sent as deleted
+		 */
+		private byte[] readContent(FileMetadata fileMetadata, FileContentSource contentSource) throws IOException {
+			InputStream content = contentSource.openFile(fileMetadata);
+			if (content == null) {
+				return null;
+			}
+			try (InputStream fileContent = content) {
+				return FileBundleStream.readContent(fileMetadata, fileContent);
+			}
+		}
+
+		/**
+		 * @return moves which server performed, others were rejected because content didn't match
+		 */
+		public List<FileMove> moveFiles(List<FileMove> fileMoves) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/move")
+				.queryParam("uploadSession", uploadSession)
+				.build().toUri();
+			return Arrays.asList(restTemplate.postForObject(uri, fileMoves, FileMove[].class));
+		}
+
+		/**
+		 * @param digestPrefixBytes if positive, chunk digests are truncated to this many bytes,
+		 * see {@link com.mediatoolkit.pareco.components.DigestPrefixes}
+		 */
+		public FileDigest getFileDigest(
+			FilePath filePath, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes
+		) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/upload/file/digest")
@@ -125,10 +242,139 @@ public class UploadClient {
 				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
 				.queryParam("fileName", encode(filePath.getFileName()))
 				.queryParam("digestType", digestType)
+				.queryParam("chunkingType", chunkingType)
+				.queryParam("digestPrefixBytes", digestPrefixBytes)
 				.build().toUri();
 			return restTemplate.getForObject(uri, FileDigest.class);
 		}
 
+		/**
+		 * Requests digests of many files at once, server calculates them concurrently and {@code listener}
+		 * is invoked for each file as soon as its digest is received, in order of completion
+		 */
+		public void streamFileDigests(
+			List<FilePath> filePaths, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes,
+			FileDigestBatchListener listener
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digests")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("digestType", digestType)
+				.queryParam("chunkingType", chunkingType)
+				.queryParam("digestPrefixBytes", digestPrefixBytes)
+				.build().toUri();
+			RequestCallback requestCallback = request -> {
+				request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.getHeaders().setAccept(Collections.singletonList(MediaType.valueOf(FileDigestBatchStream.MEDIA_TYPE)));
+				FileDigestBatchStream.writeFilePaths(filePaths, request.getBody());
+			};
+			ResponseExtractor<Void> responseExtractor = response -> {
+				FileDigestBatchStream.readFrom(response.getBody(), listener);
+				return null;
+			};
+			restTemplate.execute(uri, HttpMethod.POST, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * Reads chunk digests as server calculates them, {@code listener} is invoked for each one
+		 * before the rest of the response is received
+		 */
+		public void streamFileDigest(FilePath filePath, DigestType digestType, ChunkDigestListener listener) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digest/stream")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.build().toUri();
+			RequestCallback requestCallback = request -> request.getHeaders().setAccept(
+				Collections.singletonList(MediaType.valueOf(ChunkDigestStream.MEDIA_TYPE))
+			);
+			ResponseExtractor<Void> responseExtractor = response -> {
+				ChunkDigestStream.readFrom(response.getBody(), listener);
+				return null;
+			};
+			restTemplate.execute(uri, HttpMethod.GET, requestCallback, responseExtractor);
+		}
+
+		/**
+		 * @return digest of first {@code prefixSizeBytes} bytes of file, {@code null} if file is shorter
+		 */
+		public byte[] getFilePrefixDigest(FilePath filePath, DigestType digestType, long prefixSizeBytes) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digest/prefix")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("prefixSizeBytes", prefixSizeBytes)
+				.build().toUri();
+			return restTemplate.getForObject(uri, byte[].class);
+		}
+
+		/**
+		 * @param ranges ranges of file (i.e. chunks with differing digests) to be split into blocks
+		 * @return digests of blocks of at most {@code blockSizeBytes} within {@code ranges}
+		 */
+		public FileDigest getFileBlockDigests(
+			FilePath filePath, DigestType digestType, long blockSizeBytes, List<ChunkInfo> ranges
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digest/blocks")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("blockSizeBytes", blockSizeBytes)
+				.build().toUri();
+			return restTemplate.postForObject(uri, ranges, FileDigest.class);
+		}
+
+		public MerkleTreeSummary getFileDigestTreeSummary(FilePath filePath, DigestType digestType, int fanOut) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digest/tree")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("fanOut", fanOut)
+				.build().toUri();
+			return restTemplate.getForObject(uri, MerkleTreeSummary.class);
+		}
+
+		public byte[][] getFileDigestTreeNodes(
+			FilePath filePath, DigestType digestType, int fanOut, int level, List<Integer> indices
+		) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/digest/tree/nodes")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.queryParam("fanOut", fanOut)
+				.queryParam("level", level)
+				.build().toUri();
+			return restTemplate.postForObject(uri, indices, byte[][].class);
+		}
+
+		public FileSignature getFileSignature(FilePath filePath, DigestType digestType) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/signature")
+				.queryParam("uploadSession", uploadSession)
+				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
+				.queryParam("fileName", encode(filePath.getFileName()))
+				.queryParam("digestType", digestType)
+				.build().toUri();
+			return restTemplate.getForObject(uri, FileSignature.class);
+		}
+
 		public void skipFileUpload(FilePath filePath) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
@@ -141,15 +387,40 @@ public class UploadClient {
 		}
 
 		public FileUploadSessionClient initializeFileUpload(FilePath filePath) {
-			URI uri = UriComponentsBuilder.newInstance()
+			return initializeFileUpload(filePath, false, null);
+		}
+
+		/**
+		 * @param inlineChunkDigests if not {@code null}, digests of uploaded chunks are recorded into it
+		 * and server is asked to record digests of received chunks for verification on commit
+		 */
+		public FileUploadSessionClient initializeFileUpload(FilePath filePath, InlineChunkDigests inlineChunkDigests) {
+			return initializeFileUpload(filePath, false, inlineChunkDigests);
+		}
+
+		/**
+		 * Initialize file upload which will reconstruct file on server from blocks of existing file
+		 * and uploaded literal chunks
+		 */
+		public FileUploadSessionClient initializeFileDeltaUpload(FilePath filePath, InlineChunkDigests inlineChunkDigests) {
+			return initializeFileUpload(filePath, true, inlineChunkDigests);
+		}
+
+		private FileUploadSessionClient initializeFileUpload(
+			FilePath filePath, boolean delta, InlineChunkDigests inlineChunkDigests
+		) {
+			UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/upload/file/init")
 				.queryParam("uploadSession", uploadSession)
 				.queryParam("relativeDirectory", encode(filePath.getRelativeDirectory()))
 				.queryParam("fileName", encode(filePath.getFileName()))
-				.build().toUri();
-			String fileUploadSession = restTemplate.postForObject(uri, null, String.class);
-			return new FileUploadSessionClient(fileUploadSession);
+				.queryParam("delta", delta);
+			if (inlineChunkDigests != null) {
+				builder.queryParam("verifyDigestType", inlineChunkDigests.getDigestType());
+			}
+			String fileUploadSession = restTemplate.postForObject(builder.build().toUri(), null, String.class);
+			return new FileUploadSessionClient(fileUploadSession, inlineChunkDigests);
 		}
 
 		public void commitUpload() {
@@ -176,8 +447,24 @@ public class UploadClient {
 	public class FileUploadSessionClient {
 
 		private final String fileUploadSession;
+		private final InlineChunkDigests inlineChunkDigests;
 
-		public void uploadChunk(ChunkInfo chunkInfo, InputStream inputStream) {
+		/**
+		 * Uploads chunk, compressed if compression is enabled and chunk's content turns out compressible
+		 *
+		 * @return number of bytes chunk's content took on wire
+		 */
+		public long uploadChunk(ChunkInfo chunkInfo, InputStream inputStream) {
+			if (inlineChunkDigests == null) {
+				return doUploadChunk(chunkInfo, inputStream);
+			}
+			HashingInputStream hashingInputStream = inlineChunkDigests.hashing(inputStream);
+			long wireBytes = doUploadChunk(chunkInfo, hashingInputStream);
+			inlineChunkDigests.record(chunkInfo, hashingInputStream);
+			return wireBytes;
+		}
+
+		private long doUploadChunk(ChunkInfo chunkInfo, InputStream inputStream) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/upload/file/chunk")
@@ -185,20 +472,126 @@ public class UploadClient {
 				.queryParam("offsetBytes", chunkInfo.getOffsetBytes())
 				.queryParam("sizeBytes", chunkInfo.getSizeBytes())
 				.build().toUri();
+			AtomicLong wireBytes = new AtomicLong();
+			RequestCallback requestCallback = request -> {
+				ChunkCompressor chunkCompressor = ChunkCompressor.sample(inputStream, compression, compressionLevel);
+				CompressionType compressionType = chunkCompressor.getCompressionType();
+				if (compressionType != CompressionType.NONE) {
+					request.getHeaders().set(HttpHeaders.CONTENT_ENCODING, compressionType.getContentEncoding());
+				}
+				if (request instanceof StreamingHttpOutputMessage) {
+					//chunk is written directly to connection instead of being buffered first
+					((StreamingHttpOutputMessage) request).setBody(
+						outputStream -> wireBytes.set(chunkCompressor.writeTo(outputStream))
+					);
+				} else {
+					wireBytes.set(chunkCompressor.writeTo(request.getBody()));
+				}
+			};
+			restTemplate.execute(uri, HttpMethod.PUT, requestCallback, null);
+			return wireBytes.get();
+		}
+
+		/**
+		 * Uploads chunks as {@link ChunkFrameStream} frames of single request, content of each chunk
+		 * is opened just before it's written
+		 */
+		public void uploadChunks(List<ChunkInfo> chunkInfos, ChunkContentSource contentSource) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/chunks")
+				.build().toUri();
 			RequestCallback requestCallback = request -> {
-				OutputStream outputStream = request.getBody();
-				IOUtils.copy(inputStream, outputStream);
+				request.getHeaders().setContentType(MediaType.parseMediaType(ChunkFrameStream.MEDIA_TYPE));
+				if (request instanceof StreamingHttpOutputMessage) {
+					((StreamingHttpOutputMessage) request).setBody(
+						outputStream -> writeChunkFrames(chunkInfos, contentSource, outputStream)
+					);
+				} else {
+					writeChunkFrames(chunkInfos, contentSource, request.getBody());
+				}
 			};
 			restTemplate.execute(uri, HttpMethod.PUT, requestCallback, null);
 		}
 
+		private void writeChunkFrames(
+			List<ChunkInfo> chunkInfos, ChunkContentSource contentSource, OutputStream outputStream
+		) throws IOException {
+			DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+			for (ChunkInfo chunkInfo : chunkInfos) {
+				InputStream content = contentSource.openChunk(chunkInfo);
+				if (content == null) {
+					ChunkFrameStream.writeZeroChunk(dataOutputStream, fileUploadSession, chunkInfo);
+					if (inlineChunkDigests != null) {
+						inlineChunkDigests.recordZeroChunk(chunkInfo);
+					}
+				} else if (inlineChunkDigests == null) {
+					ChunkFrameStream.writeChunk(dataOutputStream, fileUploadSession, chunkInfo, content);
+				} else {
+					HashingInputStream hashingInputStream = inlineChunkDigests.hashing(content);
+					ChunkFrameStream.writeChunk(dataOutputStream, fileUploadSession, chunkInfo, hashingInputStream);
+					inlineChunkDigests.record(chunkInfo, hashingInputStream);
+				}
+			}
+		}
+
+		/**
+		 * Tells server to make chunk contain only zero bytes instead of uploading its content,
+		 * see {@link ZeroChunks}
+		 */
+		@SneakyThrows
+		public void uploadZeroChunk(ChunkInfo chunkInfo) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/chunk/zero")
+				.queryParam("fileUploadSession", fileUploadSession)
+				.queryParam("offsetBytes", chunkInfo.getOffsetBytes())
+				.queryParam("sizeBytes", chunkInfo.getSizeBytes())
+				.build().toUri();
+			restTemplate.put(uri, null);
+			if (inlineChunkDigests != null) {
+				inlineChunkDigests.recordZeroChunk(chunkInfo);
+			}
+		}
+
+		public void copyBlocks(List<DeltaInstruction> copyInstructions) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/copy")
+				.queryParam("fileUploadSession", fileUploadSession)
+				.build().toUri();
+			restTemplate.put(uri, copyInstructions);
+		}
+
+		/**
+		 * Asks server to copy chunks which it already has in some other file
+		 *
+		 * @return chunks which server copied, they don't need to be uploaded
+		 */
+		public List<ChunkInfo> reuseChunks(FileDigest chunks) {
+			URI uri = UriComponentsBuilder.newInstance()
+				.scheme(httpScheme).host(host).port(port)
+				.path("/upload/file/reuse")
+				.queryParam("fileUploadSession", fileUploadSession)
+				.build().toUri();
+			return Arrays.asList(restTemplate.postForObject(uri, chunks, ChunkInfo[].class));
+		}
+
 		public void commitFileUpload() {
+			commitFileUpload(null);
+		}
+
+		/**
+		 * @param transferredFileDigest digests of uploaded chunks (and possibly of other chunks of file)
+		 * against which server verifies received chunks, server caches it if it covers whole file
+		 */
+		public void commitFileUpload(FileDigest transferredFileDigest) {
 			URI uri = UriComponentsBuilder.newInstance()
 				.scheme(httpScheme).host(host).port(port)
 				.path("/upload/file/commit")
 				.queryParam("fileUploadSession", fileUploadSession)
 				.build().toUri();
-			restTemplate.put(uri, null);
+			restTemplate.put(uri, transferredFileDigest);
 		}
 
 		public void deleteFile() {
@@ -212,4 +605,22 @@ public class UploadClient {
 
 	}
 
+	@FunctionalInterface
+	public interface FileContentSource {
+
+		/**
+		 * @return content of whole file or {@code null} if file doesn't exist anymore
+		 */
+		InputStream openFile(FileMetadata fileMetadata) throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface ChunkContentSource {
+
+		/**
+		 * @return content of chunk or {@code null} if chunk consists only of zero bytes, see {@link ZeroChunks}
+		 */
+		InputStream openChunk(ChunkInfo chunkInfo) throws IOException;
+	}
+
 }
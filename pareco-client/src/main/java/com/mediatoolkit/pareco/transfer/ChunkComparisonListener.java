@@ -0,0 +1,17 @@
+package com.mediatoolkit.pareco.transfer;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+
+/**
+ * Receives outcome of comparison of source chunk with destination chunk at same offset,
+ * invoked while rest of file digests are still being calculated
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 10/11/2018
+ */
+public interface ChunkComparisonListener {
+
+	void chunkEqual(ChunkInfo chunkInfo);
+
+	void chunkDiffers(ChunkInfo chunkInfo);
+}
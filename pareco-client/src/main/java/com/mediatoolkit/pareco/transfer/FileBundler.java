@@ -0,0 +1,73 @@
+package com.mediatoolkit.pareco.transfer;
+
+import com.mediatoolkit.pareco.model.FileMetadata;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import lombok.Synchronized;
+
+/**
+ * Collects files which need transfer into bundles. Once total size of collected files reaches
+ * {@code maxBundleSizeBytes} or number of them reaches {@code maxBundleFiles} they are handed over to {@code bundleTransfer} on {@code transferService},
+ * so that bundles are transferred while the rest of files are still being analyzed.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class FileBundler {
+
+	private final long maxBundleSizeBytes;
+	private final int maxBundleFiles;
+	private final ExecutorService transferService;
+	private final Consumer<List<FileMetadata>> bundleTransfer;
+	private final List<CompletableFuture<Void>> bundleFutures = new ArrayList<>();
+	private List<FileMetadata> bundleFiles = new ArrayList<>();
+	private long bundleSizeBytes = 0;
+
+	public FileBundler(
+		long maxBundleSizeBytes,
+		int maxBundleFiles,
+		ExecutorService transferService,
+		Consumer<List<FileMetadata>> bundleTransfer
+	) {
+		this.maxBundleSizeBytes = maxBundleSizeBytes;
+		this.maxBundleFiles = maxBundleFiles;
+		this.transferService = transferService;
+		this.bundleTransfer = bundleTransfer;
+	}
+
+	@Synchronized
+	public void add(FileMetadata fileMetadata) {
+		bundleFiles.add(fileMetadata);
+		bundleSizeBytes += fileMetadata.getFileSizeBytes();
+		if (bundleSizeBytes >= maxBundleSizeBytes || bundleFiles.size() >= maxBundleFiles) {
+			flush();
+		}
+	}
+
+	@Synchronized
+	private void flush() {
+		if (bundleFiles.isEmpty()) {
+			return;
+		}
+		List<FileMetadata> files = bundleFiles;
+		bundleFiles = new ArrayList<>();
+		bundleSizeBytes = 0;
+		bundleFutures.add(CompletableFuture.runAsync(() -> bundleTransfer.accept(files), transferService));
+	}
+
+	/**
+	 * Sends remaining collected files and waits for all bundles to be transferred
+	 */
+	public void awaitBundles() {
+		flushRemaining().forEach(CompletableFuture::join);
+	}
+
+	@Synchronized
+	private List<CompletableFuture<Void>> flushRemaining() {
+		flush();
+		return new ArrayList<>(bundleFutures);
+	}
+}
@@ -0,0 +1,81 @@
+package com.mediatoolkit.pareco.transfer;
+
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds source files which are missing on destination and could be created out of unexpected
+ * destination files, i.e. when files are renamed or moved on source side. Candidates are
+ * paired only by file size, content is matched by fingerprint on destination side.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 14/11/2018
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class FileMoveDetector {
+
+	/**
+	 * Limits number of fingerprints destination calculates for single missing file
+	 */
+	private static final int MAX_CANDIDATES_PER_FILE = 4;
+
+	private final UnexpectedFilesResolver unexpectedFilesResolver;
+
+	/**
+	 * @return missing non-empty source files mapped to unexpected destination files of same size
+	 */
+	public Map<FilePath, List<FilePath>> resolveMoveCandidates(
+		DirectoryStructure sourceDirectoryStructure,
+		DirectoryStructure destinationDirectoryStructure
+	) {
+		Map<FilePath, FileMetadata> destinationFiles = destinationDirectoryStructure.filesMetadataAsMap();
+		Map<Long, List<FilePath>> unexpectedFilesBySize = StreamEx.of(
+			unexpectedFilesResolver.resolveUnexpectedFiles(
+				sourceDirectoryStructure, destinationDirectoryStructure
+			).getFiles())
+			.groupingBy(filePath -> destinationFiles.get(filePath).getFileSizeBytes());
+		return StreamEx.of(sourceDirectoryStructure.getFiles())
+			.remove(fileMetadata -> destinationFiles.containsKey(fileMetadata.getFilePath()))
+			.filter(fileMetadata -> fileMetadata.getFileSizeBytes() > 0)
+			.mapToEntry(FileMetadata::getFilePath, fileMetadata -> unexpectedFilesBySize.get(fileMetadata.getFileSizeBytes()))
+			.nonNullValues()
+			.mapValues(candidates -> StreamEx.of(candidates).limit(MAX_CANDIDATES_PER_FILE).toList())
+			.toMap();
+	}
+
+	/**
+	 * @param moveCandidates as resolved by {@link #resolveMoveCandidates}
+	 * @param fingerprints fingerprints of missing source files
+	 * @param copy true if unexpected files should be kept
+	 */
+	public List<FileMove> toFileMoves(
+		Map<FilePath, List<FilePath>> moveCandidates,
+		Map<FilePath, byte[]> fingerprints,
+		boolean copy,
+		DigestType digestType
+	) {
+		return EntryStream.of(moveCandidates)
+			.flatMapValues(List::stream)
+			.mapKeyValue((toFilePath, fromFilePath) -> FileMove.builder()
+				.fromFilePath(fromFilePath)
+				.toFilePath(toFilePath)
+				.copy(copy)
+				.digestType(digestType)
+				.fingerprint(fingerprints.get(toFilePath))
+				.build()
+			)
+			.toList();
+	}
+
+}
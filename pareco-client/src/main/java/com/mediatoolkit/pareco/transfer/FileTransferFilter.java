@@ -1,31 +1,66 @@
 package com.mediatoolkit.pareco.transfer;
 
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
+import com.mediatoolkit.pareco.components.ChunkDigestListener;
+import com.mediatoolkit.pareco.components.DigestParallelism;
+import com.mediatoolkit.pareco.components.DigestPrefixes;
+import com.mediatoolkit.pareco.components.FileDeltaCalculator;
+import com.mediatoolkit.pareco.components.FileDigestBatchListener;
+import com.mediatoolkit.pareco.components.FileDigestCache;
+import com.mediatoolkit.pareco.components.FileDigestCacheKey;
 import com.mediatoolkit.pareco.components.FileDigestCalculator;
+import com.mediatoolkit.pareco.components.FileMover;
+import com.mediatoolkit.pareco.components.FileSignatureCalculator;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
+import com.mediatoolkit.pareco.components.MerkleTreeComparator;
+import com.mediatoolkit.pareco.components.MerkleTreeComparator.RemoteMerkleTree;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
 import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDelta;
 import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import com.mediatoolkit.pareco.model.FileStatus;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
 import com.mediatoolkit.pareco.progress.TransferProgressListener;
 import com.mediatoolkit.pareco.restclient.DownloadClient.DownloadSessionClient;
 import com.mediatoolkit.pareco.restclient.UploadClient.UploadSessionClient;
 import com.mediatoolkit.pareco.transfer.model.FileFilterResult;
 import com.mediatoolkit.pareco.transfer.model.FileFilterResult.CheckResultType;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions;
+import com.mediatoolkit.pareco.transfer.model.TransferOptions.ChunkMatchingMode;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions.FileIntegrityOptions;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions.IntegrityCheckType;
+import static com.mediatoolkit.pareco.util.Util.uncheckedRunnableSneaky;
 import static com.mediatoolkit.pareco.util.Util.uncheckedSupplierSneaky;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
 import java.util.function.Supplier;
 import lombok.NonNull;
 import lombok.Value;
+import one.util.streamex.StreamEx;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
@@ -36,29 +71,111 @@ import org.springframework.stereotype.Component;
 @Component
 public class FileTransferFilter implements AutoCloseable {
 
+	private static final int MAX_DIGEST_BATCH_FILES = 1000;
+
 	private final FileDigestCalculator fileDigestCalculator;
+	private final FileSignatureCalculator fileSignatureCalculator;
+	private final FileDeltaCalculator fileDeltaCalculator;
+	private final MerkleTreeComparator merkleTreeComparator;
+	private final FileMover fileMover;
 	private final ExecutorService digestCalcService;
+	/**
+	 * Fixed pools of chunk digest threads, one per digest parallelism used by transfers
+	 */
+	private final Map<Integer, ExecutorService> chunkDigestServices;
 
-	public FileTransferFilter(FileDigestCalculator fileDigestCalculator) {
+	public FileTransferFilter(
+		FileDigestCalculator fileDigestCalculator,
+		FileSignatureCalculator fileSignatureCalculator,
+		FileDeltaCalculator fileDeltaCalculator,
+		MerkleTreeComparator merkleTreeComparator,
+		FileMover fileMover
+	) {
 		this.fileDigestCalculator = fileDigestCalculator;
+		this.fileSignatureCalculator = fileSignatureCalculator;
+		this.fileDeltaCalculator = fileDeltaCalculator;
+		this.merkleTreeComparator = merkleTreeComparator;
+		this.fileMover = fileMover;
 		this.digestCalcService = Executors.newCachedThreadPool(
 			new CustomizableThreadFactory("digestCalculator")
 		);
+		this.chunkDigestServices = new ConcurrentHashMap<>();
 	}
 
 	public FileFilterResult checkIsDownloadTransferNeeded(
 		String localRootDirectory, FileStatus localFileStatus, FileMetadata remoteFileMetadata,
 		DownloadSessionClient downloadSessionClient, TransferOptions options
+	) {
+		return checkIsDownloadTransferNeeded(
+			localRootDirectory, localFileStatus, remoteFileMetadata, downloadSessionClient, options, null
+		);
+	}
+
+	/**
+	 * @param prefetchedRemoteFileDigest digest of remote file already fetched in batch
+	 *                                   by {@link #streamDownloadSourceDigests}, or {@code null}
+	 */
+	public FileFilterResult checkIsDownloadTransferNeeded(
+		String localRootDirectory, FileStatus localFileStatus, FileMetadata remoteFileMetadata,
+		DownloadSessionClient downloadSessionClient, TransferOptions options, FileDigest prefetchedRemoteFileDigest
 	) {
 		FilePath filePath = remoteFileMetadata.getFilePath();
 		DigestType digestType = options.getFileIntegrityOptions().getDigestType();
+		ChunkingType chunkingType = chunkingTypeOf(options);
+		LongPredicate prefixMatches = prefixMatcher(
+			localRootDirectory, filePath, digestType,
+			prefixSizeBytes -> downloadSessionClient.getFilePrefixDigest(filePath, digestType, prefixSizeBytes)
+		);
+		if (isDigestTreeUsed(options)) {
+			int fanOut = options.getDigestTreeFanOut();
+			RemoteMerkleTree remoteTree = new RemoteMerkleTree() {
+				@Override
+				public MerkleTreeSummary summary() {
+					return downloadSessionClient.getFileDigestTreeSummary(filePath, digestType, fanOut);
+				}
+
+				@Override
+				public byte[][] nodes(int level, List<Integer> indices) {
+					return downloadSessionClient.getFileDigestTreeNodes(filePath, digestType, fanOut, level, indices);
+				}
+			};
+			Supplier<MerkleTree> localTreeSupplier = localMerkleTreeSupplier(localRootDirectory, filePath, options);
+			return checkIsTransferNeeded(
+				options,
+				prefixMatches,
+				remoteFileMetadata,
+				localFileStatus,
+				() -> merkleTreeComparator.resolveRemoteFileDigest(
+					localTreeSupplier.get(), options.getChunkSizeBytes(), remoteTree
+				),
+				() -> localTreeSupplier.get().getFileDigest(),
+				() -> {
+					throw new IllegalStateException("Delta is not used with digest tree");
+				}
+			);
+		}
+		Supplier<FileDigest> localFileDigestSupplier = localFileDigestSupplier(
+			localRootDirectory, filePath, options, chunkingType
+		);
 		return checkIsTransferNeeded(
 			options,
+			prefixMatches,
 			remoteFileMetadata,
 			localFileStatus,
-			() -> downloadSessionClient.getFileDigest(filePath, digestType),
-			uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateFileDigest(
-				localRootDirectory, filePath, options.getChunkSizeBytes(), digestType
+			remoteFileDigestSupplier(
+				prefetchedOrFetched(
+					prefetchedRemoteFileDigest,
+					prefixBytes -> downloadSessionClient.getFileDigest(filePath, digestType, chunkingType, prefixBytes),
+					options
+				),
+				localFileDigestSupplier, options
+			),
+			localFileDigestSupplier,
+			uncheckedSupplierSneaky(() -> downloadSessionClient.getFileDelta(
+				filePath,
+				fileSignatureCalculator.calculateFileSignature(
+					localRootDirectory, filePath, options.getChunkSizeBytes(), digestType
+				)
 			))
 		);
 	}
@@ -66,20 +183,450 @@ public class FileTransferFilter implements AutoCloseable {
 	public FileFilterResult checkIsUploadTransferNeeded(
 		String localRootDirectory, FileMetadata localFileMetadata, FileStatus remoteFileStatus,
 		UploadSessionClient uploadSessionClient, TransferOptions options
+	) {
+		return checkIsUploadTransferNeeded(
+			localRootDirectory, localFileMetadata, remoteFileStatus, uploadSessionClient, options, null
+		);
+	}
+
+	/**
+	 * @param prefetchedRemoteFileDigest digest of remote file already fetched in batch
+	 *                                   by {@link #streamUploadDestinationDigests}, or {@code null}
+	 */
+	public FileFilterResult checkIsUploadTransferNeeded(
+		String localRootDirectory, FileMetadata localFileMetadata, FileStatus remoteFileStatus,
+		UploadSessionClient uploadSessionClient, TransferOptions options, FileDigest prefetchedRemoteFileDigest
 	) {
 		FilePath filePath = localFileMetadata.getFilePath();
 		DigestType digestType = options.getFileIntegrityOptions().getDigestType();
+		ChunkingType chunkingType = chunkingTypeOf(options);
+		LongPredicate prefixMatches = prefixMatcher(
+			localRootDirectory, filePath, digestType,
+			prefixSizeBytes -> uploadSessionClient.getFilePrefixDigest(filePath, digestType, prefixSizeBytes)
+		);
+		if (isDigestTreeUsed(options)) {
+			int fanOut = options.getDigestTreeFanOut();
+			RemoteMerkleTree remoteTree = new RemoteMerkleTree() {
+				@Override
+				public MerkleTreeSummary summary() {
+					return uploadSessionClient.getFileDigestTreeSummary(filePath, digestType, fanOut);
+				}
+
+				@Override
+				public byte[][] nodes(int level, List<Integer> indices) {
+					return uploadSessionClient.getFileDigestTreeNodes(filePath, digestType, fanOut, level, indices);
+				}
+			};
+			Supplier<MerkleTree> localTreeSupplier = localMerkleTreeSupplier(localRootDirectory, filePath, options);
+			return checkIsTransferNeeded(
+				options,
+				prefixMatches,
+				localFileMetadata,
+				remoteFileStatus,
+				() -> localTreeSupplier.get().getFileDigest(),
+				() -> merkleTreeComparator.resolveRemoteFileDigest(
+					localTreeSupplier.get(), options.getChunkSizeBytes(), remoteTree
+				),
+				() -> {
+					throw new IllegalStateException("Delta is not used with digest tree");
+				}
+			);
+		}
+		Supplier<FileDigest> localFileDigestSupplier = localFileDigestSupplier(
+			localRootDirectory, filePath, options, chunkingType
+		);
 		return checkIsTransferNeeded(
 			options,
+			prefixMatches,
 			localFileMetadata,
 			remoteFileStatus,
-			uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateFileDigest(
-				localRootDirectory, filePath, options.getChunkSizeBytes(), digestType
-			)),
-			() -> uploadSessionClient.getFileDigest(filePath, digestType)
+			localFileDigestSupplier,
+			remoteFileDigestSupplier(
+				prefetchedOrFetched(
+					prefetchedRemoteFileDigest,
+					prefixBytes -> uploadSessionClient.getFileDigest(filePath, digestType, chunkingType, prefixBytes),
+					options
+				),
+				localFileDigestSupplier, options
+			),
+			uncheckedSupplierSneaky(() -> fileDeltaCalculator.calculateFileDelta(
+				localRootDirectory, filePath, uploadSessionClient.getFileSignature(filePath, digestType)
+			))
+		);
+	}
+
+	private Supplier<FileDigest> localFileDigestSupplier(
+		String localRootDirectory, FilePath filePath, TransferOptions options, ChunkingType chunkingType
+	) {
+		//memoized since local digest is also used for expanding remote digest prefixes
+		return Suppliers.memoize(uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateFileDigest(
+			localRootDirectory, filePath, options.getChunkSizeBytes(),
+			options.getFileIntegrityOptions().getDigestType(), chunkingType,
+			digestCacheOf(options), digestParallelismOf(options)
+		))::get);
+	}
+
+	/**
+	 * When digest prefixes are used, remote digest is fetched truncated and expanded with local full digests,
+	 * on detected prefix collision it's fetched again with full chunk digests
+	 */
+	private Supplier<FileDigest> remoteFileDigestSupplier(
+		IntFunction<FileDigest> remoteFileDigestFetcher,
+		Supplier<FileDigest> localFileDigestSupplier,
+		TransferOptions options
+	) {
+		int digestPrefixBytes = remoteDigestPrefixBytesOf(options);
+		if (digestPrefixBytes <= 0) {
+			return () -> remoteFileDigestFetcher.apply(0);
+		}
+		return () -> {
+			FileDigest remoteFileDigest = remoteFileDigestFetcher.apply(digestPrefixBytes);
+			return DigestPrefixes.expand(remoteFileDigest, localFileDigestSupplier.get())
+				.orElseGet(() -> remoteFileDigestFetcher.apply(0));
+		};
+	}
+
+	private int remoteDigestPrefixBytesOf(TransferOptions options) {
+		if (options.getChunkMatchingMode() != ChunkMatchingMode.FIXED_OFFSET) {
+			return 0;
+		}
+		return Math.max(0, options.getDigestPrefixBytes());
+	}
+
+	/**
+	 * Prefetched digest is fetched with same prefix length which is requested first by
+	 * {@link #remoteFileDigestSupplier}, full digest re-fetch after prefix collision goes to server
+	 */
+	private IntFunction<FileDigest> prefetchedOrFetched(
+		FileDigest prefetchedRemoteFileDigest, IntFunction<FileDigest> remoteFileDigestFetcher, TransferOptions options
+	) {
+		if (prefetchedRemoteFileDigest == null) {
+			return remoteFileDigestFetcher;
+		}
+		int prefetchedPrefixBytes = remoteDigestPrefixBytesOf(options);
+		return prefixBytes -> prefixBytes == prefetchedPrefixBytes
+			? prefetchedRemoteFileDigest
+			: remoteFileDigestFetcher.apply(prefixBytes);
+	}
+
+	/**
+	 * @return true if comparison of file needs remote file digest (without digest tree or streaming),
+	 * so it can be fetched in batch together with digests of other files
+	 */
+	public boolean isRemoteDigestBatchable(
+		TransferOptions options, FileMetadata sourceFileMetadata, FileStatus destinationFileStatus
+	) {
+		if (!destinationFileStatus.isExist() || isStreamingComparisonUsed(options, sourceFileMetadata, destinationFileStatus)) {
+			return false;
+		}
+		if (options.getChunkMatchingMode() == ChunkMatchingMode.ROLLING || isDigestTreeUsed(options)) {
+			return false;
+		}
+		IntegrityCheckType integrityCheckType = options.getFileIntegrityOptions().getIntegrityCheckType();
+		return integrityCheckType != IntegrityCheckType.ONLY_FILE_METADATA
+			|| !isFileMetadataOk(sourceFileMetadata, destinationFileStatus.getFileMetadata());
+	}
+
+	/**
+	 * Fetches digests of remote (destination) files in batches, see {@link #isRemoteDigestBatchable}
+	 */
+	public void streamUploadDestinationDigests(
+		List<FilePath> filePaths, UploadSessionClient uploadSessionClient,
+		TransferOptions options, FileDigestBatchListener listener
+	) {
+		for (List<FilePath> batch : Lists.partition(filePaths, MAX_DIGEST_BATCH_FILES)) {
+			uploadSessionClient.streamFileDigests(
+				batch, options.getFileIntegrityOptions().getDigestType(), chunkingTypeOf(options),
+				remoteDigestPrefixBytesOf(options), listener
+			);
+		}
+	}
+
+	/**
+	 * Fetches digests of remote (source) files in batches, see {@link #isRemoteDigestBatchable}
+	 */
+	public void streamDownloadSourceDigests(
+		List<FilePath> filePaths, DownloadSessionClient downloadSessionClient,
+		TransferOptions options, FileDigestBatchListener listener
+	) {
+		for (List<FilePath> batch : Lists.partition(filePaths, MAX_DIGEST_BATCH_FILES)) {
+			downloadSessionClient.streamFileDigests(
+				batch, options.getFileIntegrityOptions().getDigestType(), chunkingTypeOf(options),
+				remoteDigestPrefixBytesOf(options), listener
+			);
+		}
+	}
+
+	private FileDigestCache digestCacheOf(TransferOptions options) {
+		return FileDigestCache.inDirectory(options.getDigestCacheDirectory());
+	}
+
+	private DigestParallelism digestParallelismOf(TransferOptions options) {
+		if (options.getDigestParallelism() <= 1) {
+			return DigestParallelism.SEQUENTIAL;
+		}
+		ExecutorService chunkDigestService = chunkDigestServices.computeIfAbsent(
+			options.getDigestParallelism(),
+			numThreads -> Executors.newFixedThreadPool(numThreads, new CustomizableThreadFactory("chunkDigest"))
+		);
+		return DigestParallelism.of(options.getDigestParallelism(), chunkDigestService);
+	}
+
+	/**
+	 * Stores digest of downloaded local file which is now known without reading it. Only digest verified
+	 * while transferring is trusted, i.e. digests of received chunks merged with digests of skipped chunks,
+	 * and only if it covers whole file, since source digest fetched during analysis doesn't necessarily
+	 * describe bytes which were received if source changed in the meantime.
+	 */
+	public void refreshDigestCache(
+		String localRootDirectory, FileMetadata fileMetadata,
+		InlineChunkDigests inlineChunkDigests, FileDigest sourceFileDigest, TransferOptions options
+	) throws IOException {
+		FileDigestCache fileDigestCache = digestCacheOf(options);
+		if (fileDigestCache == FileDigestCache.NO_CACHE || chunkingTypeOf(options) != ChunkingType.FIXED) {
+			return;
+		}
+		FileDigest fileDigest = transferredFileDigestOf(inlineChunkDigests, sourceFileDigest, options);
+		if (fileDigest == null || DigestPrefixes.isTruncated(fileDigest)) {
+			return;
+		}
+		if (!InlineChunkDigests.coversWholeFile(fileDigest, fileMetadata.getFileSizeBytes(), options.getChunkSizeBytes())) {
+			return;
+		}
+		File file = new File(fileMetadata.getFilePath().toAbsolutePath(localRootDirectory));
+		FileDigestCacheKey key = FileDigestCacheKey.of(
+			file, options.getChunkSizeBytes(), fileDigest.getDigestType(), ChunkingType.FIXED
+		);
+		fileDigestCache.put(key, fileDigest);
+	}
+
+	/**
+	 * @return new recorder of digests of transferred chunks, {@code null} if chunks are not verified
+	 */
+	public InlineChunkDigests inlineChunkDigestsOf(TransferOptions options) {
+		if (!options.isVerifyChunks()) {
+			return null;
+		}
+		return new InlineChunkDigests(options.getFileIntegrityOptions().getDigestType());
+	}
+
+	/**
+	 * @return digest of file as it was transferred: digests of {@code sourceFileDigest} chunks
+	 * overridden with digests of actually transferred chunks, {@code null} if chunks are not verified
+	 */
+	public FileDigest transferredFileDigestOf(
+		InlineChunkDigests inlineChunkDigests, FileDigest sourceFileDigest, TransferOptions options
+	) {
+		if (inlineChunkDigests == null) {
+			return null;
+		}
+		if (options.getChunkMatchingMode() != ChunkMatchingMode.FIXED_OFFSET) {
+			//source digest chunks are not aligned with transferred chunks
+			return inlineChunkDigests.toFileDigest();
+		}
+		return inlineChunkDigests.mergedInto(sourceFileDigest);
+	}
+
+	/**
+	 * @return digest of local file with fixed size chunks, used for lookup of chunks in {@link com.mediatoolkit.pareco.components.DestinationChunkIndex}
+	 */
+	public FileDigest localFileDigest(String localRootDirectory, FilePath filePath, TransferOptions options) {
+		return uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateFileDigest(
+			localRootDirectory, filePath, options.getChunkSizeBytes(),
+			options.getFileIntegrityOptions().getDigestType(), ChunkingType.FIXED,
+			digestCacheOf(options), digestParallelismOf(options)
+		)).get();
+	}
+
+	public byte[] localFileFingerprint(String localRootDirectory, FilePath filePath, TransferOptions options) {
+		return uncheckedSupplierSneaky(() -> fileMover.fingerprintOf(
+			localRootDirectory, filePath, options.getChunkSizeBytes(),
+			options.getFileIntegrityOptions().getDigestType(),
+			digestCacheOf(options), digestParallelismOf(options)
+		)).get();
+	}
+
+	/**
+	 * Performs moves of local files when local directory is destination of transfer
+	 *
+	 * @return performed moves
+	 */
+	public List<FileMove> moveLocalFiles(String localRootDirectory, List<FileMove> fileMoves, TransferOptions options) {
+		return fileMover.moveFiles(
+			localRootDirectory, fileMoves, options.getChunkSizeBytes(),
+			digestCacheOf(options), digestParallelismOf(options)
+		);
+	}
+
+	/**
+	 * Offers {@code chunkInfos} to be copied from other destination files by {@code chunkReuser},
+	 * reused chunks are reported as skipped.
+	 *
+	 * @param sourceFileDigest digest of source file containing digests of {@code chunkInfos}
+	 * @return chunks which still need to be transferred
+	 */
+	public List<ChunkInfo> reuseDestinationChunks(
+		FileDigest sourceFileDigest,
+		List<ChunkInfo> chunkInfos,
+		Function<FileDigest, List<ChunkInfo>> chunkReuser,
+		FilePath filePath,
+		TransferProgressListener progressListener
+	) {
+		Map<ChunkInfo, byte[]> sourceChunkDigests = sourceFileDigest.toChunkInfoMap();
+		List<ChunkDigest> wantedChunks = StreamEx.of(chunkInfos)
+			.mapToEntry(sourceChunkDigests::get)
+			.nonNullValues()
+			.mapKeyValue((chunkInfo, digest) -> ChunkDigest.of(digest, chunkInfo))
+			.toList();
+		if (wantedChunks.isEmpty()) {
+			return chunkInfos;
+		}
+		Set<ChunkInfo> reusedChunks = new HashSet<>(chunkReuser.apply(FileDigest.builder()
+			.digestType(sourceFileDigest.getDigestType())
+			.chunkDigests(wantedChunks)
+			.build()
+		));
+		reusedChunks.forEach(chunkInfo -> progressListener.fileChunkSkipped(filePath, chunkInfo));
+		return StreamEx.of(chunkInfos)
+			.remove(reusedChunks::contains)
+			.toList();
+	}
+
+	private Supplier<MerkleTree> localMerkleTreeSupplier(
+		String localRootDirectory, FilePath filePath, TransferOptions options
+	) {
+		//memoized since local tree is used both as local digest and for resolving remote digest
+		return Suppliers.memoize(uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateMerkleTree(
+			localRootDirectory, filePath, options.getChunkSizeBytes(),
+			options.getFileIntegrityOptions().getDigestType(), options.getDigestTreeFanOut(),
+			digestCacheOf(options), digestParallelismOf(options)
+		))::get);
+	}
+
+	private boolean isDigestTreeUsed(TransferOptions options) {
+		return options.getDigestTreeFanOut() > 1 && options.getChunkMatchingMode() == ChunkMatchingMode.FIXED_OFFSET;
+	}
+
+	private ChunkingType chunkingTypeOf(TransferOptions options) {
+		if (options.getChunkMatchingMode() == ChunkMatchingMode.CONTENT_DEFINED) {
+			return ChunkingType.CONTENT_DEFINED;
+		} else {
+			return ChunkingType.FIXED;
+		}
+	}
+
+	/**
+	 * @return true if content of file should be compared by streaming chunk digests
+	 * using {@link #compareUploadDigestsStreaming} / {@link #compareDownloadDigestsStreaming}
+	 */
+	public boolean isStreamingComparisonUsed(
+		TransferOptions options, FileMetadata sourceFileMetadata, FileStatus destinationFileStatus
+	) {
+		if (!options.isStreamingDigests() || !destinationFileStatus.isExist()) {
+			return false;
+		}
+		if (options.getChunkMatchingMode() != ChunkMatchingMode.FIXED_OFFSET || isDigestTreeUsed(options)) {
+			return false;
+		}
+		IntegrityCheckType integrityCheckType = options.getFileIntegrityOptions().getIntegrityCheckType();
+		boolean onlyMetadataSufficient = integrityCheckType == IntegrityCheckType.ONLY_FILE_METADATA
+			&& isFileMetadataOk(sourceFileMetadata, destinationFileStatus.getFileMetadata());
+		return !onlyMetadataSufficient;
+	}
+
+	/**
+	 * Compares digests of local (source) and remote (destination) file while both are being calculated,
+	 * {@code listener} is notified about each chunk as soon as it's compared.
+	 *
+	 * @return {@link CheckResultType#TRANSFER_PARTIALLY} if file needs to be transferred, in which case differing
+	 * chunks were already reported to {@code listener}
+	 */
+	public FileFilterResult compareUploadDigestsStreaming(
+		String localRootDirectory, FileMetadata localFileMetadata, FileStatus remoteFileStatus,
+		UploadSessionClient uploadSessionClient, TransferOptions options, ChunkComparisonListener listener
+	) {
+		FilePath filePath = localFileMetadata.getFilePath();
+		DigestType digestType = options.getFileIntegrityOptions().getDigestType();
+		return compareDigestsStreaming(
+			localFileMetadata,
+			remoteFileStatus.getFileMetadata(),
+			digestType,
+			chunkDigestListener -> fileDigestCalculator.streamFileDigest(
+				localRootDirectory, filePath, options.getChunkSizeBytes(), digestType,
+				digestCacheOf(options), chunkDigestListener
+			),
+			chunkDigestListener -> uploadSessionClient.streamFileDigest(filePath, digestType, chunkDigestListener),
+			listener
 		);
 	}
 
+	/**
+	 * Same as {@link #compareUploadDigestsStreaming} with remote file as source
+	 */
+	public FileFilterResult compareDownloadDigestsStreaming(
+		String localRootDirectory, FileStatus localFileStatus, FileMetadata remoteFileMetadata,
+		DownloadSessionClient downloadSessionClient, TransferOptions options, ChunkComparisonListener listener
+	) {
+		FilePath filePath = remoteFileMetadata.getFilePath();
+		DigestType digestType = options.getFileIntegrityOptions().getDigestType();
+		return compareDigestsStreaming(
+			remoteFileMetadata,
+			localFileStatus.getFileMetadata(),
+			digestType,
+			chunkDigestListener -> downloadSessionClient.streamFileDigest(filePath, digestType, chunkDigestListener),
+			chunkDigestListener -> fileDigestCalculator.streamFileDigest(
+				localRootDirectory, filePath, options.getChunkSizeBytes(), digestType,
+				digestCacheOf(options), chunkDigestListener
+			),
+			listener
+		);
+	}
+
+	private interface ChunkDigestStreamer {
+
+		void stream(ChunkDigestListener listener) throws IOException;
+	}
+
+	private FileFilterResult compareDigestsStreaming(
+		FileMetadata sourceFileMetadata,
+		FileMetadata destinationFileMetadata,
+		DigestType digestType,
+		ChunkDigestStreamer sourceStreamer,
+		ChunkDigestStreamer destinationStreamer,
+		ChunkComparisonListener listener
+	) {
+		StreamingDigestComparison comparison = new StreamingDigestComparison(listener);
+		CompletableFuture<Void> sourceFuture = CompletableFuture.runAsync(uncheckedRunnableSneaky(() -> {
+			sourceStreamer.stream(comparison::sourceChunkDigested);
+			comparison.sourceCompleted();
+		}), digestCalcService);
+		CompletableFuture<Void> destinationFuture = CompletableFuture.runAsync(uncheckedRunnableSneaky(() -> {
+			destinationStreamer.stream(comparison::destinationChunkDigested);
+			comparison.destinationCompleted();
+		}), digestCalcService);
+		BiConsumer<Void, Throwable> abortOnFailure = (result, ex) -> {
+			if (ex != null) {
+				comparison.abort(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+				sourceFuture.cancel(false);
+				destinationFuture.cancel(false);
+			}
+		};
+		sourceFuture.whenComplete(abortOnFailure);
+		destinationFuture.whenComplete(abortOnFailure);
+		CompletableFuture.allOf(sourceFuture, destinationFuture).handle((result, ex) -> null).join();
+		if (comparison.failure() != null) {
+			throw new CompletionException(comparison.failure());
+		}
+		boolean fileMetadataOk = isFileMetadataOk(sourceFileMetadata, destinationFileMetadata);
+		if (fileMetadataOk && comparison.isAllSourceChunksEqual()) {
+			return resultThatFileIsOk(isNeededToSetPermissions(sourceFileMetadata, destinationFileMetadata));
+		}
+		return FileFilterResult.builder()
+			.checkResultType(CheckResultType.TRANSFER_PARTIALLY)
+			.sourceFileDigest(comparison.sourceFileDigest(digestType))
+			.build();
+	}
+
 	public boolean skipChunkIfNeeded(
 		Map<ChunkInfo, byte[]> localFileChunkDigests,
 		Map<ChunkInfo, byte[]> remoteFileChunkDigests,
@@ -97,12 +644,161 @@ public class FileTransferFilter implements AutoCloseable {
 		return false;
 	}
 
+	/**
+	 * Narrows down chunks whose digests are known on both sides (and differ) to blocks of
+	 * {@link TransferOptions#getSubChunkBytes()}, equal blocks are reported as skipped and adjacent
+	 * differing blocks of same chunk are coalesced into single range to be transferred.
+	 *
+	 * @param chunkInfos                 chunks which need to be transferred
+	 * @param remoteBlockDigestsSupplier calculates digests of blocks within given ranges of remote file
+	 * @return ranges of file which still need to be transferred
+	 */
+	public List<ChunkInfo> refineDifferingChunks(
+		String localRootDirectory,
+		FilePath filePath,
+		List<ChunkInfo> chunkInfos,
+		Map<ChunkInfo, byte[]> localFileChunkDigests,
+		Map<ChunkInfo, byte[]> remoteFileChunkDigests,
+		Function<List<ChunkInfo>, FileDigest> remoteBlockDigestsSupplier,
+		TransferOptions options,
+		TransferProgressListener progressListener
+	) {
+		if (!isSubChunkRefinementUsed(options)) {
+			return chunkInfos;
+		}
+		List<ChunkInfo> differingChunks = StreamEx.of(chunkInfos)
+			.filter(chunkInfo -> localFileChunkDigests.containsKey(chunkInfo) && remoteFileChunkDigests.containsKey(chunkInfo))
+			.toList();
+		if (differingChunks.isEmpty()) {
+			return chunkInfos;
+		}
+		long blockSizeBytes = options.getSubChunkBytes();
+		CompletableFuture<FileDigest> remoteBlockDigestsFuture = CompletableFuture.supplyAsync(
+			() -> remoteBlockDigestsSupplier.apply(differingChunks), digestCalcService
+		);
+		FileDigest localBlockDigests = uncheckedSupplierSneaky(() -> fileDigestCalculator.calculateBlockDigests(
+			localRootDirectory, filePath, differingChunks, blockSizeBytes,
+			options.getFileIntegrityOptions().getDigestType()
+		)).get();
+		Map<ChunkInfo, byte[]> localBlocks = localBlockDigests.toChunkInfoMap();
+		Map<ChunkInfo, byte[]> remoteBlocks = remoteBlockDigestsFuture.join().toChunkInfoMap();
+		Set<ChunkInfo> differingChunksSet = new HashSet<>(differingChunks);
+		List<ChunkInfo> refinedChunks = new ArrayList<>();
+		for (ChunkInfo chunkInfo : chunkInfos) {
+			if (!differingChunksSet.contains(chunkInfo)) {
+				refinedChunks.add(chunkInfo);
+				continue;
+			}
+			long rangeStart = -1;
+			long chunkEnd = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+			for (long blockOffset = chunkInfo.getOffsetBytes(); blockOffset < chunkEnd; blockOffset += blockSizeBytes) {
+				ChunkInfo blockInfo = ChunkInfo.of(blockOffset, Math.min(blockSizeBytes, chunkEnd - blockOffset));
+				byte[] localBlockDigest = localBlocks.get(blockInfo);
+				byte[] remoteBlockDigest = remoteBlocks.get(blockInfo);
+				boolean equal = localBlockDigest != null && remoteBlockDigest != null && Arrays.equals(localBlockDigest, remoteBlockDigest);
+				if (equal) {
+					progressListener.fileChunkSkipped(filePath, blockInfo);
+					if (rangeStart >= 0) {
+						refinedChunks.add(ChunkInfo.of(rangeStart, blockInfo.getOffsetBytes() - rangeStart));
+						rangeStart = -1;
+					}
+				} else if (rangeStart < 0) {
+					rangeStart = blockInfo.getOffsetBytes();
+				}
+			}
+			if (rangeStart >= 0) {
+				refinedChunks.add(ChunkInfo.of(rangeStart, chunkEnd - rangeStart));
+			}
+		}
+		return refinedChunks;
+	}
+
+	private boolean isSubChunkRefinementUsed(TransferOptions options) {
+		//verified transfer relies on transferred ranges being aligned with chunks
+		return options.getSubChunkBytes() > 0
+			&& options.getSubChunkBytes() < options.getChunkSizeBytes()
+			&& options.getChunkMatchingMode() == ChunkMatchingMode.FIXED_OFFSET
+			&& !options.isVerifyChunks();
+	}
+
+	/**
+	 * @return predicate whether prefix of given size is equal in local and remote file,
+	 * prefix digests of both sides are calculated concurrently
+	 */
+	private LongPredicate prefixMatcher(
+		String localRootDirectory, FilePath filePath, DigestType digestType, LongFunction<byte[]> remotePrefixDigest
+	) {
+		return prefixSizeBytes -> {
+			CompletableFuture<byte[]> remoteDigestFuture = CompletableFuture.supplyAsync(
+				() -> remotePrefixDigest.apply(prefixSizeBytes), digestCalcService
+			);
+			byte[] localDigest = uncheckedSupplierSneaky(() -> fileDigestCalculator.calculatePrefixDigest(
+				localRootDirectory, filePath, prefixSizeBytes, digestType
+			)).get();
+			byte[] remoteDigest = remoteDigestFuture.join();
+			return localDigest != null && remoteDigest != null && Arrays.equals(localDigest, remoteDigest);
+		};
+	}
+
+	private boolean isAppendCandidate(
+		TransferOptions options, FileMetadata sourceFileMetadata, FileMetadata destinationFileMetadata
+	) {
+		long destinationFileSize = destinationFileMetadata.getFileSizeBytes();
+		return options.isDetectAppends()
+			&& destinationFileSize > 0
+			&& destinationFileSize < sourceFileMetadata.getFileSizeBytes();
+	}
+
+	/**
+	 * Splits chunks into at most {@code numTransferConnections} groups of consecutive chunks of similar size,
+	 * each group is meant to be transferred as frames of single request
+	 *
+	 * @return groups of chunks, empty list if there are no chunks
+	 */
+	public List<List<ChunkInfo>> framedChunkGroups(List<ChunkInfo> chunkInfos, TransferOptions options) {
+		if (chunkInfos.isEmpty()) {
+			return new ArrayList<>();
+		}
+		int numGroups = Math.min(chunkInfos.size(), options.getNumTransferConnections());
+		int groupSize = (chunkInfos.size() + numGroups - 1) / numGroups;
+		return Lists.partition(chunkInfos, groupSize);
+	}
+
+	/**
+	 * Reports chunks within unchanged prefix of appended file as skipped, chunk which crosses
+	 * end of prefix is cut so that only its appended part is transferred
+	 *
+	 * @param appendOffsetBytes size of unchanged prefix
+	 * @return chunks or parts of chunks which need to be transferred
+	 */
+	public List<ChunkInfo> appendedChunks(
+		List<ChunkInfo> chunkInfos, long appendOffsetBytes, FilePath filePath, TransferProgressListener progressListener
+	) {
+		List<ChunkInfo> appendedChunks = new ArrayList<>();
+		for (ChunkInfo chunkInfo : chunkInfos) {
+			long chunkEnd = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+			if (chunkEnd <= appendOffsetBytes) {
+				progressListener.fileChunkSkipped(filePath, chunkInfo);
+			} else if (chunkInfo.getOffsetBytes() < appendOffsetBytes) {
+				progressListener.fileChunkSkipped(
+					filePath, ChunkInfo.of(chunkInfo.getOffsetBytes(), appendOffsetBytes - chunkInfo.getOffsetBytes())
+				);
+				appendedChunks.add(ChunkInfo.of(appendOffsetBytes, chunkEnd - appendOffsetBytes));
+			} else {
+				appendedChunks.add(chunkInfo);
+			}
+		}
+		return appendedChunks;
+	}
+
 	private FileFilterResult checkIsTransferNeeded(
 		TransferOptions options,
+		LongPredicate prefixMatches,
 		FileMetadata sourceFileMetadata,
 		FileStatus destinationFileStatus,
 		Supplier<FileDigest> sourceFileDigestSupplier,
-		Supplier<FileDigest> destinationFileDigestSupplier
+		Supplier<FileDigest> destinationFileDigestSupplier,
+		Supplier<FileDelta> sourceFileDeltaSupplier
 	) {
 		FileIntegrityOptions fileIntegrityOptions = options.getFileIntegrityOptions();
 		IntegrityCheckType integrityCheckType = fileIntegrityOptions.getIntegrityCheckType();
@@ -114,6 +810,13 @@ public class FileTransferFilter implements AutoCloseable {
 		FileMetadata destinationFileMetadata = destinationFileStatus.getFileMetadata();
 		boolean fileMetadataOk = isFileMetadataOk(sourceFileMetadata, destinationFileMetadata);
 		boolean neededToSetPermissions = isNeededToSetPermissions(sourceFileMetadata, destinationFileMetadata);
+		if (isAppendCandidate(options, sourceFileMetadata, destinationFileMetadata)
+			&& prefixMatches.test(destinationFileMetadata.getFileSizeBytes())) {
+			return FileFilterResult.builder()
+				.checkResultType(CheckResultType.TRANSFER_APPENDED)
+				.appendOffsetBytes(destinationFileMetadata.getFileSizeBytes())
+				.build();
+		}
 		switch (integrityCheckType) {
 			case ONLY_FILE_METADATA:
 				if (fileMetadataOk) {
@@ -121,9 +824,12 @@ public class FileTransferFilter implements AutoCloseable {
 				}
 				//intentional fallthrough
 			case FILE_METADATA_AND_DIGEST:
-				return checkMetadataAndDigests(
+				return checkContent(
+					options.getChunkMatchingMode(),
 					sourceFileDigestSupplier,
 					destinationFileDigestSupplier,
+					sourceFileDeltaSupplier,
+					destinationFileMetadata,
 					fileMetadataOk,
 					neededToSetPermissions
 				);
@@ -132,6 +838,48 @@ public class FileTransferFilter implements AutoCloseable {
 		}
 	}
 
+	private FileFilterResult checkContent(
+		ChunkMatchingMode chunkMatchingMode,
+		Supplier<FileDigest> sourceFileDigestSupplier,
+		Supplier<FileDigest> destinationFileDigestSupplier,
+		Supplier<FileDelta> sourceFileDeltaSupplier,
+		FileMetadata destinationFileMetadata,
+		boolean fileMetadataOk,
+		boolean neededToSetPermissions
+	) {
+		switch (chunkMatchingMode) {
+			case FIXED_OFFSET:
+				return checkMetadataAndDigests(
+					sourceFileDigestSupplier,
+					destinationFileDigestSupplier,
+					fileMetadataOk,
+					neededToSetPermissions
+				);
+			case ROLLING:
+				return checkMetadataAndDelta(
+					sourceFileDeltaSupplier,
+					destinationFileMetadata,
+					fileMetadataOk,
+					neededToSetPermissions
+				);
+			case CONTENT_DEFINED:
+				Supplier<FileDelta> contentDefinedDeltaSupplier = () -> {
+					SrcDstFileDigests fileDigests = calculateFileDigests(
+						sourceFileDigestSupplier, destinationFileDigestSupplier
+					);
+					return fileDeltaCalculator.calculateFileDelta(fileDigests.srcFileDigest, fileDigests.dstFileDigest);
+				};
+				return checkMetadataAndDelta(
+					contentDefinedDeltaSupplier,
+					destinationFileMetadata,
+					fileMetadataOk,
+					neededToSetPermissions
+				);
+			default:
+				throw new IllegalArgumentException("Unknown chunk matching mode: " + chunkMatchingMode);
+		}
+	}
+
 	private FileFilterResult checkMetadataAndDigests(Supplier<FileDigest> sourceFileDigestSupplier, Supplier<FileDigest> destinationFileDigestSupplier, boolean fileMetadataOk, boolean neededToSetPermissions) {
 		SrcDstFileDigests fileDigests = calculateFileDigests(
 			sourceFileDigestSupplier, destinationFileDigestSupplier
@@ -147,6 +895,29 @@ public class FileTransferFilter implements AutoCloseable {
 		}
 	}
 
+	private FileFilterResult checkMetadataAndDelta(
+		Supplier<FileDelta> sourceFileDeltaSupplier,
+		FileMetadata destinationFileMetadata,
+		boolean fileMetadataOk,
+		boolean neededToSetPermissions
+	) {
+		FileDelta fileDelta = sourceFileDeltaSupplier.get();
+		if (fileDelta.identityOf(destinationFileMetadata.getFileSizeBytes())) {
+			if (fileMetadataOk) {
+				return resultThatFileIsOk(neededToSetPermissions);
+			} else {
+				return FileFilterResult.builder()
+					.checkResultType(CheckResultType.ONLY_SET_METADATA)
+					.build();
+			}
+		} else {
+			return FileFilterResult.builder()
+				.checkResultType(CheckResultType.TRANSFER_DELTA)
+				.sourceFileDelta(fileDelta)
+				.build();
+		}
+	}
+
 	private SrcDstFileDigests calculateFileDigests(Supplier<FileDigest> sourceFileDigestSupplier, Supplier<FileDigest> destinationFileDigestSupplier) {
 		CompletableFuture<FileDigest> sourceFileDigestFuture = CompletableFuture.supplyAsync(
 			sourceFileDigestSupplier, digestCalcService
@@ -195,6 +966,7 @@ public class FileTransferFilter implements AutoCloseable {
 	@Override
 	public void close() {
 		digestCalcService.shutdown();
+		chunkDigestServices.values().forEach(ExecutorService::shutdown);
 	}
 
 	@Value(staticConstructor = "of")
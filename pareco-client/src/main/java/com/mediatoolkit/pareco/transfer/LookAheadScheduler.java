@@ -0,0 +1,76 @@
+package com.mediatoolkit.pareco.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import lombok.SneakyThrows;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pipelines processing of items which consists of analysis (i.e. hashing of both sides of file)
+ * and execution (i.e. transfer of file's chunks). Items are executed one by one in given order,
+ * while analysis of up to {@code lookAhead} following items runs concurrently so that disk
+ * hashing and network transfer are overlapped.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Component
+public class LookAheadScheduler {
+
+	/**
+	 * @param items           items to process in order
+	 * @param lookAhead       max number of items analyzed ahead of currently executing one,
+	 *                        values {@code <= 0} mean analysis is done in calling thread just before execution
+	 * @param analysisService executor running analyses, should have at least {@code lookAhead} threads
+	 * @param analysis        analysis of item, must be safe to run concurrently with execution of other items
+	 * @param execution       execution of item with result of its analysis
+	 */
+	public <T, R, E extends Throwable> void runPipelined(
+		List<T> items,
+		int lookAhead,
+		ExecutorService analysisService,
+		Function<T, R> analysis,
+		Execution<T, R, E> execution
+	) throws E {
+		if (lookAhead <= 0) {
+			for (T item : items) {
+				execution.execute(item, analysis.apply(item));
+			}
+			return;
+		}
+		List<CompletableFuture<R>> analyses = new ArrayList<>(items.size());
+		try {
+			for (int i = 0; i < items.size(); i++) {
+				while (analyses.size() < items.size() && analyses.size() <= i + lookAhead) {
+					T item = items.get(analyses.size());
+					analyses.add(CompletableFuture.supplyAsync(() -> analysis.apply(item), analysisService));
+				}
+				R result = join(analyses.get(i));
+				analyses.set(i, null);
+				execution.execute(items.get(i), result);
+			}
+		} finally {
+			analyses.stream()
+				.filter(future -> future != null && !future.isDone())
+				.forEach(future -> future.cancel(false));
+		}
+	}
+
+	@SneakyThrows
+	private static <R> R join(CompletableFuture<R> future) {
+		try {
+			return future.join();
+		} catch (CompletionException ex) {
+			throw ex.getCause() != null ? ex.getCause() : ex;
+		}
+	}
+
+	public interface Execution<T, R, E extends Throwable> {
+
+		void execute(T item, R analysisResult) throws E;
+	}
+}
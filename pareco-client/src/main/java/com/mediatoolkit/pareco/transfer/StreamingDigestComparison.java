@@ -0,0 +1,120 @@
+package com.mediatoolkit.pareco.transfer;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Matches chunk digests of source and destination arriving concurrently from two streams,
+ * each chunk of source is reported to {@link ChunkComparisonListener} as soon as its
+ * counterpart from destination arrives (or destination stream ends without it).
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 10/11/2018
+ */
+class StreamingDigestComparison {
+
+	private final ChunkComparisonListener listener;
+	private final Map<ChunkInfo, byte[]> unmatchedSourceDigests = new HashMap<>();
+	private final Map<ChunkInfo, byte[]> unmatchedDestinationDigests = new HashMap<>();
+	private final List<ChunkDigest> sourceChunkDigests = new ArrayList<>();
+	private boolean sourceCompleted = false;
+	private boolean destinationCompleted = false;
+	private boolean allSourceChunksEqual = true;
+	private Throwable failure = null;
+
+	StreamingDigestComparison(ChunkComparisonListener listener) {
+		this.listener = listener;
+	}
+
+	synchronized void sourceChunkDigested(ChunkDigest chunkDigest) {
+		checkNotAborted();
+		ChunkInfo chunkInfo = chunkDigest.getChunkInfo();
+		sourceChunkDigests.add(chunkDigest);
+		byte[] destinationDigest = unmatchedDestinationDigests.remove(chunkInfo);
+		if (destinationDigest != null) {
+			compare(chunkInfo, chunkDigest.getDigest(), destinationDigest);
+		} else if (destinationCompleted) {
+			chunkDiffers(chunkInfo);
+		} else {
+			unmatchedSourceDigests.put(chunkInfo, chunkDigest.getDigest());
+		}
+	}
+
+	synchronized void destinationChunkDigested(ChunkDigest chunkDigest) {
+		checkNotAborted();
+		ChunkInfo chunkInfo = chunkDigest.getChunkInfo();
+		byte[] sourceDigest = unmatchedSourceDigests.remove(chunkInfo);
+		if (sourceDigest != null) {
+			compare(chunkInfo, sourceDigest, chunkDigest.getDigest());
+		} else if (!sourceCompleted) {
+			unmatchedDestinationDigests.put(chunkInfo, chunkDigest.getDigest());
+		}
+	}
+
+	synchronized void sourceCompleted() {
+		sourceCompleted = true;
+		unmatchedDestinationDigests.clear();
+	}
+
+	synchronized void destinationCompleted() {
+		destinationCompleted = true;
+		unmatchedSourceDigests.keySet().forEach(this::chunkDiffers);
+		unmatchedSourceDigests.clear();
+	}
+
+	/**
+	 * Stops comparison because one of the streams failed, other stream is stopped by
+	 * exception on its next chunk digest so it doesn't keep hashing or reading for nothing
+	 */
+	synchronized void abort(Throwable cause) {
+		if (failure == null) {
+			failure = cause;
+		}
+	}
+
+	/**
+	 * @return cause of first failure which aborted comparison, {@code null} if it wasn't aborted
+	 */
+	synchronized Throwable failure() {
+		return failure;
+	}
+
+	private void checkNotAborted() {
+		if (failure != null) {
+			throw new CancellationException("Digest comparison aborted: " + failure);
+		}
+	}
+
+	synchronized boolean isAllSourceChunksEqual() {
+		return allSourceChunksEqual;
+	}
+
+	synchronized FileDigest sourceFileDigest(DigestType digestType) {
+		return FileDigest.builder()
+			.digestType(digestType)
+			.chunkDigests(sourceChunkDigests)
+			.build();
+	}
+
+	private void compare(ChunkInfo chunkInfo, byte[] sourceDigest, byte[] destinationDigest) {
+		if (Arrays.equals(sourceDigest, destinationDigest)) {
+			listener.chunkEqual(chunkInfo);
+		} else {
+			chunkDiffers(chunkInfo);
+		}
+	}
+
+	private void chunkDiffers(ChunkInfo chunkInfo) {
+		allSourceChunksEqual = false;
+		listener.chunkDiffers(chunkInfo);
+	}
+
+}
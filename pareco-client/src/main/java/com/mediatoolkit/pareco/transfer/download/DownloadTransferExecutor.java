@@ -1,10 +1,14 @@
 package com.mediatoolkit.pareco.transfer.download;
 
 import com.mediatoolkit.pareco.components.ChunkInfosGenerator;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex;
 import com.mediatoolkit.pareco.components.DirectoryStructureReader;
 import com.mediatoolkit.pareco.components.DirectoryWriter;
+import com.mediatoolkit.pareco.components.FileBundleListener;
 import com.mediatoolkit.pareco.components.FileChunkWriter;
 import com.mediatoolkit.pareco.components.FileDeleter;
+import com.mediatoolkit.pareco.components.FileDeltaApplier;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.MetadataWriter;
 import com.mediatoolkit.pareco.components.ProgressObservableInputStream;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool;
@@ -13,17 +17,29 @@ import com.mediatoolkit.pareco.components.RandomAccessFilePool.ReturnableRandomA
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
 import com.mediatoolkit.pareco.exceptions.UnknownTransferException;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.CompressionType;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
+import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import com.mediatoolkit.pareco.model.FileStatus;
 import com.mediatoolkit.pareco.progress.TransferProgressListener;
 import com.mediatoolkit.pareco.restclient.DownloadClient;
 import com.mediatoolkit.pareco.restclient.DownloadClient.DownloadSessionClient;
 import com.mediatoolkit.pareco.restclient.DownloadClient.FileDownloadSessionClient;
+import com.mediatoolkit.pareco.restclient.TransferClientException.ServerSideTransferClientException;
 import com.mediatoolkit.pareco.restclient.TransferClientException.ServerSideTransferClientException.FileDeletedOnServerSideException;
+import com.mediatoolkit.pareco.transfer.ChunkComparisonListener;
+import com.mediatoolkit.pareco.transfer.FileMoveDetector;
+import com.mediatoolkit.pareco.transfer.FileBundler;
 import com.mediatoolkit.pareco.transfer.FileSizeClassifier;
 import com.mediatoolkit.pareco.transfer.FileTransferFilter;
+import com.mediatoolkit.pareco.transfer.LookAheadScheduler;
 import com.mediatoolkit.pareco.transfer.UnexpectedFilesDeleter;
 import com.mediatoolkit.pareco.transfer.exit.TransferAbortTrigger;
 import com.mediatoolkit.pareco.transfer.model.FileFilterResult;
@@ -32,23 +48,31 @@ import com.mediatoolkit.pareco.transfer.model.SizeClassifiedFiles;
 import com.mediatoolkit.pareco.transfer.model.TransferOptions;
 import com.mediatoolkit.pareco.transfer.model.TransferTask;
 import static com.mediatoolkit.pareco.util.Util.runIgnoreException;
-import static com.mediatoolkit.pareco.util.Util.uncheckedConsumerSneaky;
 import static com.mediatoolkit.pareco.util.Util.uncheckedRunnableSneaky;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import static java.util.Collections.singletonList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import one.util.streamex.EntryStream;
 import one.util.streamex.StreamEx;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
@@ -59,18 +83,23 @@ import org.springframework.stereotype.Component;
  */
 @Component
 @AllArgsConstructor
+@Slf4j
 public class DownloadTransferExecutor {
 
 	private final ThreadFactory chunkThreadFactory = new CustomizableThreadFactory("ChunkDownload_");
 	private final ThreadFactory fileThreadFactory = new CustomizableThreadFactory("FileDownload_");
+	private final ThreadFactory analysisThreadFactory = new CustomizableThreadFactory("FileAnalysis_");
 
 	private final DirectoryStructureReader directoryStructureReader;
 	private final UnexpectedFilesDeleter unexpectedFilesDeleter;
+	private final FileMoveDetector fileMoveDetector;
 	private final FileSizeClassifier fileSizeClassifier;
+	private final LookAheadScheduler lookAheadScheduler;
 	private final FileDeleter fileDeleter;
 	private final FileTransferFilter fileTransferFilter;
 	private final DirectoryWriter directoryWriter;
 	private final FileChunkWriter fileChunkWriter;
+	private final FileDeltaApplier fileDeltaApplier;
 	private final ChunkInfosGenerator chunkInfosGenerator;
 	private final MetadataWriter metadataWriter;
 	private final TransferNamesEncoding encoding;
@@ -81,7 +110,7 @@ public class DownloadTransferExecutor {
 		TransferProgressListener progressListener
 	) throws IOException {
 		ServerInfo serverInfo = transferTask.getServerInfo();
-		DownloadClient downloadClient = DownloadClient.builder()
+		try (DownloadClient downloadClient = DownloadClient.builder()
 			.httpScheme(serverInfo.getHttpScheme())
 			.host(serverInfo.getHost())
 			.port(serverInfo.getPort())
@@ -89,7 +118,23 @@ public class DownloadTransferExecutor {
 			.readTimeout(transferTask.getOptions().getTimeout())
 			.authToken(transferTask.getAuthToken())
 			.encoding(encoding)
-			.build();
+			.transport(transferTask.getOptions().getHttpTransport())
+			.maxConnections(transferTask.getOptions().maxConcurrentRequests())
+			.compression(transferTask.getOptions().getCompression())
+			.compressionLevel(transferTask.getOptions().getCompressionLevel())
+			.build()
+		) {
+			executeDownload(transferTask, abortTrigger, progressListener, downloadClient);
+		}
+	}
+
+	private void executeDownload(
+		TransferTask transferTask,
+		TransferAbortTrigger abortTrigger,
+		TransferProgressListener progressListener,
+		DownloadClient downloadClient
+	) throws IOException {
+		ServerInfo serverInfo = transferTask.getServerInfo();
 		progressListener.initializing(
 			"download",
 			transferTask.getRemoteRootDirectory(), transferTask.getLocalRootDirectory(),
@@ -106,14 +151,23 @@ public class DownloadTransferExecutor {
 			DirectoryStructure localDirectoryStructure = directoryStructureReader.readDirectoryStructure(
 				transferTask.getLocalRootDirectory(), transferTask.getInclude(), transferTask.getExclude()
 			);
+			if (transferTask.getOptions().isDetectMoves()) {
+				localDirectoryStructure = moveRenamedFiles(
+					transferTask, remoteDirectoryStructure, localDirectoryStructure, downloadSessionClient, progressListener
+				);
+			}
 			Map<FilePath, FileMetadata> localFilesMetadata = localDirectoryStructure.filesMetadataAsMap();
 			int numTransferConnections = transferTask.getOptions().getNumTransferConnections();
 			ExecutorService fileDownloadService = Executors.newFixedThreadPool(numTransferConnections, fileThreadFactory);
 			ExecutorService chunkDownloadService = Executors.newFixedThreadPool(numTransferConnections, chunkThreadFactory);
+			ExecutorService fileAnalysisService = Executors.newFixedThreadPool(
+				Math.max(1, transferTask.getOptions().getLookAhead()), analysisThreadFactory
+			);
 			try (DownloadSessionExecutor downloadSessionExecutor = new DownloadSessionExecutor(
-				fileDownloadService, chunkDownloadService, transferTask,
+				fileDownloadService, chunkDownloadService, fileAnalysisService, transferTask,
 				remoteDirectoryStructure, localDirectoryStructure,
-				localFilesMetadata, downloadSessionClient, progressListener
+				localFilesMetadata, downloadSessionClient, progressListener,
+				new DestinationChunkIndex(transferTask.getLocalRootDirectory())
 			)) {
 				downloadSessionExecutor.doDownloadSession();
 			}
@@ -124,17 +178,54 @@ public class DownloadTransferExecutor {
 		}
 	}
 
+	/**
+	 * @return local directory structure after moves
+	 */
+	private DirectoryStructure moveRenamedFiles(
+		TransferTask transferTask,
+		DirectoryStructure remoteDirectoryStructure,
+		DirectoryStructure localDirectoryStructure,
+		DownloadSessionClient downloadSessionClient,
+		TransferProgressListener progressListener
+	) throws IOException {
+		TransferOptions options = transferTask.getOptions();
+		DigestType digestType = options.getFileIntegrityOptions().getDigestType();
+		Map<FilePath, List<FilePath>> moveCandidates = fileMoveDetector.resolveMoveCandidates(
+			remoteDirectoryStructure, localDirectoryStructure
+		);
+		if (moveCandidates.isEmpty()) {
+			return localDirectoryStructure;
+		}
+		List<FilePath> missingFiles = new ArrayList<>(moveCandidates.keySet());
+		byte[][] remoteFingerprints = downloadSessionClient.getFileFingerprints(missingFiles, digestType);
+		Map<FilePath, byte[]> fingerprints = EntryStream.zip(missingFiles, Arrays.asList(remoteFingerprints)).toMap();
+		List<FileMove> fileMoves = fileTransferFilter.moveLocalFiles(
+			transferTask.getLocalRootDirectory(),
+			fileMoveDetector.toFileMoves(moveCandidates, fingerprints, !options.isDeleteUnexpected(), digestType),
+			options
+		);
+		if (fileMoves.isEmpty()) {
+			return localDirectoryStructure;
+		}
+		progressListener.movedFiles(fileMoves);
+		return directoryStructureReader.readDirectoryStructure(
+			transferTask.getLocalRootDirectory(), transferTask.getInclude(), transferTask.getExclude()
+		);
+	}
+
 	@AllArgsConstructor
 	private class DownloadSessionExecutor implements AutoCloseable {
 
 		private final ExecutorService fileDownloadService;
 		private final ExecutorService chunkDownloadService;
+		private final ExecutorService fileAnalysisService;
 		private final TransferTask transferTask;
 		private final DirectoryStructure remoteDirectoryStructure;
 		private final DirectoryStructure localDirectoryStructure;
 		private final Map<FilePath, FileMetadata> localFilesMetadata;
 		private final DownloadSessionClient downloadSessionClient;
 		private final TransferProgressListener progressListener;
+		private final DestinationChunkIndex destinationChunkIndex;
 
 		private void doDownloadSession() throws IOException {
 			TransferOptions options = transferTask.getOptions();
@@ -142,39 +233,209 @@ public class DownloadTransferExecutor {
 			directoryWriter.createDirectories(
 				transferTask.getLocalRootDirectory(), remoteDirectoryStructure.getDirectories()
 			);
-			if (options.isDeleteUnexpected()) {
-				unexpectedFilesDeleter.deleteUnexpected(
-					progressListener,
-					remoteDirectoryStructure, localDirectoryStructure,
-					filePaths -> fileDeleter.delete(
-						transferTask.getLocalRootDirectory(), filePaths
-					)
-				);
+			if (options.isReuseDestinationChunks()) {
+				indexUnexpectedFiles();
+			} else if (options.isDeleteUnexpected()) {
+				deleteUnexpected();
 			}
 			SizeClassifiedFiles sizeClassifiedFiles = fileSizeClassifier.classifySmallAndBigFiles(
 				remoteDirectoryStructure.getFiles(), options.getChunkSizeBytes(), options.getNumTransferConnections()
 			);
-			List<CompletableFuture<Void>> smallFilesFutures = StreamEx.of(sizeClassifiedFiles.getSmallFiles())
-				.map(smallRemoteFileMetadata -> CompletableFuture.runAsync(
-					uncheckedRunnableSneaky(() -> syncFile(smallRemoteFileMetadata)), fileDownloadService
-				))
-				.toList();
+			FileBundler fileBundler = options.isBundleSmallFiles()
+				? new FileBundler(
+					options.maxBundleSizeBytes(), options.getMaxBundleFiles(), chunkDownloadService, this::downloadBundle
+				)
+				: null;
+			List<CompletableFuture<Void>> smallFilesFutures = syncSmallFiles(sizeClassifiedFiles.getSmallFiles(), fileBundler);
 			smallFilesFutures.forEach(CompletableFuture::join);
-			sizeClassifiedFiles.getBigFiles().forEach(uncheckedConsumerSneaky(this::syncFile));
+			if (fileBundler != null) {
+				fileBundler.awaitBundles();
+			}
+			lookAheadScheduler.runPipelined(
+				sizeClassifiedFiles.getBigFiles(), options.getLookAhead(), fileAnalysisService,
+				this::analyzeFile, this::syncAnalyzedFile
+			);
+			if (options.isDeleteUnexpected() && options.isReuseDestinationChunks()) {
+				deleteUnexpected();
+			}
 			downloadSessionClient.commitDownload();
 			progressListener.completed();
 		}
 
-		private void syncFile(FileMetadata remoteFileMetadata) throws IOException {
+		private void deleteUnexpected() throws IOException {
+			unexpectedFilesDeleter.deleteUnexpected(
+				progressListener,
+				remoteDirectoryStructure, localDirectoryStructure,
+				filePaths -> fileDeleter.delete(
+					transferTask.getLocalRootDirectory(), filePaths
+				)
+			);
+		}
+
+		/**
+		 * Local files which don't exist on remote (i.e. old names of renamed files) are
+		 * indexed as possible source of chunks, they are deleted only after transfer.
+		 * Only plausible ones are indexed, see {@link DestinationChunkIndex#selectUnexpectedFiles}
+		 */
+		private void indexUnexpectedFiles() {
+			Map<FilePath, FileMetadata> remoteFilesMetadata = remoteDirectoryStructure.filesMetadataAsMap();
+			List<FilePath> unexpectedFiles = DestinationChunkIndex.selectUnexpectedFiles(
+				StreamEx.of(localDirectoryStructure.getFiles())
+					.remove(fileMetadata -> remoteFilesMetadata.containsKey(fileMetadata.getFilePath()))
+					.toList(),
+				remoteFilesMetadata.values(),
+				transferTask.getOptions().getUnexpectedFilesLimits()
+			);
+			for (FilePath filePath : unexpectedFiles) {
+				destinationChunkIndex.index(filePath, fileTransferFilter.localFileDigest(
+					transferTask.getLocalRootDirectory(), filePath, transferTask.getOptions()
+				));
+			}
+		}
+
+		/**
+		 * Small files whose comparison needs remote digest are synced as their digests
+		 * arrive from batch request, others are synced right away
+		 *
+		 * @param fileBundler collects files which need transfer, {@code null} if each file is transferred on its own
+		 */
+		private List<CompletableFuture<Void>> syncSmallFiles(List<FileMetadata> smallFiles, FileBundler fileBundler) {
+			Map<FilePath, FileMetadata> batchedFiles = StreamEx.of(smallFiles)
+				.filter(remoteFileMetadata -> fileTransferFilter.isRemoteDigestBatchable(
+					transferTask.getOptions(), remoteFileMetadata, localFileStatusOf(remoteFileMetadata)
+				))
+				.mapToEntry(FileMetadata::getFilePath, Function.identity())
+				.toCustomMap(LinkedHashMap::new);
+			List<CompletableFuture<Void>> futures = StreamEx.of(smallFiles)
+				.remove(remoteFileMetadata -> batchedFiles.containsKey(remoteFileMetadata.getFilePath()))
+				.map(remoteFileMetadata -> CompletableFuture.runAsync(
+					uncheckedRunnableSneaky(() -> syncSmallFile(remoteFileMetadata, null, fileBundler)), fileDownloadService
+				))
+				.toCollection(ArrayList::new);
+			if (batchedFiles.isEmpty()) {
+				return futures;
+			}
+			fileTransferFilter.streamDownloadSourceDigests(
+				new ArrayList<>(batchedFiles.keySet()), downloadSessionClient, transferTask.getOptions(),
+				filePathDigest -> {
+					FileMetadata remoteFileMetadata = batchedFiles.remove(filePathDigest.getFilePath());
+					if (remoteFileMetadata != null) {
+						futures.add(CompletableFuture.runAsync(
+							uncheckedRunnableSneaky(() -> syncSmallFile(
+								remoteFileMetadata, filePathDigest.getFileDigest(), fileBundler
+							)),
+							fileDownloadService
+						));
+					}
+				}
+			);
+			batchedFiles.values().forEach(remoteFileMetadata -> futures.add(CompletableFuture.runAsync(
+				uncheckedRunnableSneaky(() -> syncSmallFile(remoteFileMetadata, null, fileBundler)), fileDownloadService
+			)));
+			return futures;
+		}
+
+		private void syncSmallFile(
+			FileMetadata remoteFileMetadata, FileDigest prefetchedRemoteFileDigest, FileBundler fileBundler
+		) throws IOException {
+			if (fileBundler == null) {
+				syncFile(remoteFileMetadata, prefetchedRemoteFileDigest);
+				return;
+			}
+			progressListener.fileAnalyze(remoteFileMetadata.getFilePath());
+			FileFilterResult fileFilterResult = fileTransferFilter.checkIsDownloadTransferNeeded(
+				transferTask.getLocalRootDirectory(), localFileStatusOf(remoteFileMetadata), remoteFileMetadata,
+				downloadSessionClient, transferTask.getOptions(), prefetchedRemoteFileDigest
+			);
+			switch (fileFilterResult.getCheckResultType()) {
+				case SKIP_TRANSFER:
+				case ONLY_SET_METADATA:
+					syncAnalyzedFile(remoteFileMetadata, fileFilterResult);
+					break;
+				default:
+					//whole file is received no matter which part of it differs
+					fileBundler.add(remoteFileMetadata);
+			}
+		}
+
+		/**
+		 * Downloads whole files through single response, each file is written
+		 * and gets its metadata applied as soon as it arrives
+		 */
+		private void downloadBundle(List<FileMetadata> filesMetadata) {
+			String localRootDirectory = transferTask.getLocalRootDirectory();
+			List<FilePath> filePaths = StreamEx.of(filesMetadata).map(FileMetadata::getFilePath).toList();
+			downloadSessionClient.downloadBundle(filePaths, new FileBundleListener() {
+
+				@Override
+				public void fileReceived(FileMetadata fileMetadata, InputStream content) throws IOException {
+					FilePath filePath = fileMetadata.getFilePath();
+					ChunkInfo chunkInfo = ChunkInfo.of(0, fileMetadata.getFileSizeBytes());
+					progressListener.fileStarted(filePath);
+					fileChunkWriter.writeFile(
+						new File(filePath.toAbsolutePath(localRootDirectory)),
+						fileMetadata.getFileSizeBytes(),
+						new ProgressObservableInputStream(
+							content,
+							numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
+						)
+					);
+					metadataWriter.writeFileMetadata(localRootDirectory, fileMetadata);
+					if (fileMetadata.getFileSizeBytes() > 0) {
+						progressListener.fileChunkTransferred(filePath, chunkInfo);
+					}
+					progressListener.fileCompleted(filePath);
+				}
+
+				@Override
+				public void fileDeleted(FilePath filePath) throws IOException {
+					progressListener.fileStarted(filePath);
+					fileDeleter.delete(localRootDirectory, singletonList(filePath));
+					progressListener.fileDeleted(filePath);
+					progressListener.fileCompleted(filePath);
+				}
+			});
+		}
+
+		private void syncFile(FileMetadata remoteFileMetadata, FileDigest prefetchedRemoteFileDigest) throws IOException {
+			syncAnalyzedFile(remoteFileMetadata, analyzeFile(remoteFileMetadata, prefetchedRemoteFileDigest));
+		}
+
+		private FileStatus localFileStatusOf(FileMetadata remoteFileMetadata) {
 			FileMetadata localFileMetadata = localFilesMetadata.get(remoteFileMetadata.getFilePath());
-			FileStatus localFileStatus = Optional.ofNullable(localFileMetadata)
+			return Optional.ofNullable(localFileMetadata)
 				.map(FileStatus::of)
 				.orElse(FileStatus.NOT_EXIST);
-			String localRootDirectory = transferTask.getLocalRootDirectory();
+		}
+
+		/**
+		 * @return result of comparison of local and remote file or {@code null} if streaming comparison
+		 * is used, in which case comparison is performed together with transfer
+		 */
+		private FileFilterResult analyzeFile(FileMetadata remoteFileMetadata) {
+			return analyzeFile(remoteFileMetadata, null);
+		}
+
+		private FileFilterResult analyzeFile(FileMetadata remoteFileMetadata, FileDigest prefetchedRemoteFileDigest) {
+			FileStatus localFileStatus = localFileStatusOf(remoteFileMetadata);
 			progressListener.fileAnalyze(remoteFileMetadata.getFilePath());
-			FileFilterResult fileFilterResult = fileTransferFilter.checkIsDownloadTransferNeeded(
-				localRootDirectory, localFileStatus, remoteFileMetadata, downloadSessionClient, transferTask.getOptions()
+			if (fileTransferFilter.isStreamingComparisonUsed(transferTask.getOptions(), remoteFileMetadata, localFileStatus)) {
+				return null;
+			}
+			return fileTransferFilter.checkIsDownloadTransferNeeded(
+				transferTask.getLocalRootDirectory(), localFileStatus, remoteFileMetadata,
+				downloadSessionClient, transferTask.getOptions(), prefetchedRemoteFileDigest
 			);
+		}
+
+		private void syncAnalyzedFile(
+			FileMetadata remoteFileMetadata, FileFilterResult fileFilterResult
+		) throws IOException {
+			if (fileFilterResult == null) {
+				syncFileStreaming(remoteFileMetadata, localFileStatusOf(remoteFileMetadata));
+				return;
+			}
+			String localRootDirectory = transferTask.getLocalRootDirectory();
 			FilePath filePath = remoteFileMetadata.getFilePath();
 			switch (fileFilterResult.getCheckResultType()) {
 				case SKIP_TRANSFER:
@@ -184,17 +445,33 @@ public class DownloadTransferExecutor {
 				case TRANSFER_FULLY:
 					doSyncFile(
 						remoteFileMetadata,
+						null,
+						Collections.emptyMap(),
 						Collections.emptyMap(),
-						Collections.emptyMap()
+						0
 					);
 					break;
 				case TRANSFER_PARTIALLY:
 					doSyncFile(
 						remoteFileMetadata,
+						fileFilterResult.getSourceFileDigest(),
 						fileFilterResult.sourceChunkDigestsOrEmptyMap(),
-						fileFilterResult.destinationChunkDigestsOrEmptyMap()
+						fileFilterResult.destinationChunkDigestsOrEmptyMap(),
+						0
 					);
 					break;
+				case TRANSFER_APPENDED:
+					doSyncFile(
+						remoteFileMetadata,
+						null,
+						Collections.emptyMap(),
+						Collections.emptyMap(),
+						fileFilterResult.getAppendOffsetBytes()
+					);
+					break;
+				case TRANSFER_DELTA:
+					doSyncFileDelta(remoteFileMetadata, fileFilterResult.getSourceFileDelta());
+					break;
 				case ONLY_SET_METADATA:
 					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
 					progressListener.fileSkipped(filePath);
@@ -204,13 +481,49 @@ public class DownloadTransferExecutor {
 			}
 		}
 
+		private void syncFileStreaming(FileMetadata remoteFileMetadata, FileStatus localFileStatus) throws IOException {
+			FilePath filePath = remoteFileMetadata.getFilePath();
+			String localRootDirectory = transferTask.getLocalRootDirectory();
+			StreamingFileDownload streamingFileDownload = new StreamingFileDownload(filePath);
+			FileFilterResult fileFilterResult;
+			try {
+				fileFilterResult = fileTransferFilter.compareDownloadDigestsStreaming(
+					localRootDirectory, localFileStatus, remoteFileMetadata,
+					downloadSessionClient, transferTask.getOptions(), streamingFileDownload
+				);
+			} catch (RuntimeException ex) {
+				streamingFileDownload.cancel();
+				throw ex;
+			}
+			switch (fileFilterResult.getCheckResultType()) {
+				case SKIP_TRANSFER:
+					downloadSessionClient.skipFileDownload(filePath);
+					progressListener.fileSkipped(filePath);
+					break;
+				case ONLY_SET_METADATA:
+					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
+					progressListener.fileSkipped(filePath);
+					break;
+				case TRANSFER_PARTIALLY:
+					streamingFileDownload.complete(remoteFileMetadata, fileFilterResult.getSourceFileDigest());
+					break;
+				default:
+					throw new IllegalArgumentException("Unexpected CheckResultType: " + fileFilterResult.getCheckResultType());
+			}
+		}
+
 		private void doSyncFile(
 			FileMetadata remoteFileMetadata,
+			FileDigest remoteFileDigest,
 			Map<ChunkInfo, byte[]> localFileChunkDigests,
-			Map<ChunkInfo, byte[]> remoteFileChunkDigests
+			Map<ChunkInfo, byte[]> remoteFileChunkDigests,
+			long appendOffsetBytes
 		) throws IOException {
 			FilePath filePath = remoteFileMetadata.getFilePath();
-			FileDownloadSessionClient fileDownloadSessionClient = downloadSessionClient.initializeFileDownload(filePath);
+			InlineChunkDigests inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(transferTask.getOptions());
+			FileDownloadSessionClient fileDownloadSessionClient = downloadSessionClient.initializeFileDownload(
+				filePath, inlineChunkDigests
+			);
 			progressListener.fileStarted(filePath);
 			String localRootDirectory = transferTask.getLocalRootDirectory();
 			File file = new File(filePath.toAbsolutePath(localRootDirectory));
@@ -221,36 +534,228 @@ public class DownloadTransferExecutor {
 				List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(
 					remoteFileMetadata.getFileSizeBytes(), transferTask.getOptions().getChunkSizeBytes()
 				);
-				List<CompletableFuture<Void>> chunkCompletables = new ArrayList<>();
-				for (ChunkInfo chunkInfo : chunkInfos) {
-					boolean skipChunk = fileTransferFilter.skipChunkIfNeeded(
+				List<ChunkInfo> chunksToDownload = StreamEx.of(fileTransferFilter.appendedChunks(
+						chunkInfos, appendOffsetBytes, filePath, progressListener
+					))
+					.remove(chunkInfo -> fileTransferFilter.skipChunkIfNeeded(
 						localFileChunkDigests, remoteFileChunkDigests, filePath, chunkInfo, progressListener
+					))
+					.toList();
+				if (transferTask.getOptions().isReuseDestinationChunks()
+					&& !chunksToDownload.isEmpty() && !destinationChunkIndex.isEmpty()) {
+					if (remoteFileDigest == null) {
+						remoteFileDigest = downloadSessionClient.getFileDigest(
+							filePath, transferTask.getOptions().getFileIntegrityOptions().getDigestType(),
+							ChunkingType.FIXED, 0
+						);
+					}
+					chunksToDownload = fileTransferFilter.reuseDestinationChunks(
+						remoteFileDigest, chunksToDownload,
+						chunks -> copyIndexedChunks(randomAccessFilePool, chunks),
+						filePath, progressListener
+					);
+				}
+				chunksToDownload = fileTransferFilter.refineDifferingChunks(
+					localRootDirectory, filePath, chunksToDownload, localFileChunkDigests, remoteFileChunkDigests,
+					ranges -> downloadSessionClient.getFileBlockDigests(
+						filePath, transferTask.getOptions().getFileIntegrityOptions().getDigestType(),
+						transferTask.getOptions().getSubChunkBytes(), ranges
+					),
+					transferTask.getOptions(), progressListener
+				);
+				boolean downloaded = downloadChunks(
+					filePath, fileDownloadSessionClient, randomAccessFilePool, chunksToDownload
+				);
+				if (downloaded) {
+					commitVerifiedFileDownload(file, fileDownloadSessionClient, inlineChunkDigests);
+					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
+					fileTransferFilter.refreshDigestCache(
+						localRootDirectory, remoteFileMetadata, inlineChunkDigests, remoteFileDigest, transferTask.getOptions()
 					);
-					if (skipChunk) {
-						continue;
+					if (transferTask.getOptions().isReuseDestinationChunks()) {
+						destinationChunkIndex.index(filePath, remoteFileDigest);
+					}
+				} else {
+					fileDeleter.delete(localRootDirectory, singletonList(filePath));
+					progressListener.fileDeleted(filePath);
+					fileDownloadSessionClient.commitFileDownload();
+				}
+			}
+			progressListener.fileCompleted(filePath);
+		}
+
+		private List<ChunkInfo> copyIndexedChunks(RandomAccessFilePool randomAccessFilePool, FileDigest chunks) {
+			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+				return destinationChunkIndex.copyChunks(chunks, randomAccessFile);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private void doSyncFileDelta(
+			FileMetadata remoteFileMetadata,
+			FileDelta fileDelta
+		) throws IOException {
+			FilePath filePath = remoteFileMetadata.getFilePath();
+			InlineChunkDigests inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(transferTask.getOptions());
+			FileDownloadSessionClient fileDownloadSessionClient = downloadSessionClient.initializeFileDownload(
+				filePath, inlineChunkDigests
+			);
+			progressListener.fileStarted(filePath);
+			String localRootDirectory = transferTask.getLocalRootDirectory();
+			File file = new File(filePath.toAbsolutePath(localRootDirectory));
+			File tempFile = fileDeltaApplier.deltaTempFileOf(file);
+			try {
+				boolean downloaded;
+				try (RandomAccessFilePool randomAccessFilePool = new RandomAccessFilePool(tempFile, Mode.READ_WRITE)) {
+					List<DeltaInstruction> copyInstructions = fileDelta.copyInstructions();
+					try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+						fileChunkWriter.allocateFileToSize(randomAccessFile, fileDelta.getFileSizeBytes());
+						fileDeltaApplier.copyBlocks(file, randomAccessFile, copyInstructions);
 					}
+					copyInstructions.forEach(copy -> progressListener.fileChunkSkipped(filePath, copy.getChunkInfo()));
+					List<ChunkInfo> literalChunks = fileDelta.literalChunks(transferTask.getOptions().getChunkSizeBytes());
+					downloaded = downloadChunks(
+						filePath, fileDownloadSessionClient, randomAccessFilePool, literalChunks
+					);
+				}
+				if (downloaded) {
+					//on mismatch temp file is discarded and original file stays untouched
+					fileDownloadSessionClient.commitFileDownload(
+						fileTransferFilter.transferredFileDigestOf(inlineChunkDigests, null, transferTask.getOptions())
+					);
+					fileDeltaApplier.replaceWithTempFile(tempFile, file);
+					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
+				} else {
+					fileDeleter.delete(localRootDirectory, singletonList(filePath));
+					progressListener.fileDeleted(filePath);
+					fileDownloadSessionClient.commitFileDownload();
+				}
+			} finally {
+				//no-op if temp file already replaced the original file
+				tempFile.delete();
+			}
+			progressListener.fileCompleted(filePath);
+		}
+
+		/**
+		 * Commits file download sending digests of received chunks to be verified by server.
+		 * On mismatch, file's modification time is reset so that next transfer doesn't skip it.
+		 */
+		private void commitVerifiedFileDownload(
+			File file,
+			FileDownloadSessionClient fileDownloadSessionClient,
+			InlineChunkDigests inlineChunkDigests
+		) {
+			try {
+				fileDownloadSessionClient.commitFileDownload(
+					fileTransferFilter.transferredFileDigestOf(inlineChunkDigests, null, transferTask.getOptions())
+				);
+			} catch (ServerSideTransferClientException ex) {
+				file.setLastModified(0);
+				throw ex;
+			}
+		}
+
+		/**
+		 * @return true if all chunks are downloaded, false if file got deleted on server side during download
+		 */
+		private boolean downloadChunks(
+			FilePath filePath,
+			FileDownloadSessionClient fileDownloadSessionClient,
+			RandomAccessFilePool randomAccessFilePool,
+			List<ChunkInfo> chunkInfos
+		) {
+			List<CompletableFuture<Void>> chunkCompletables = new ArrayList<>();
+			if (transferTask.getOptions().isFramedChunks()) {
+				for (List<ChunkInfo> chunksGroup : fileTransferFilter.framedChunkGroups(chunkInfos, transferTask.getOptions())) {
 					chunkCompletables.add(CompletableFuture.runAsync(
-						() -> downloadChunk(filePath, fileDownloadSessionClient, randomAccessFilePool, chunkInfo),
+						() -> downloadChunkFrames(filePath, fileDownloadSessionClient, randomAccessFilePool, chunksGroup),
 						chunkDownloadService
 					));
 				}
-				try {
-					chunkCompletables.forEach(CompletableFuture::join);
-					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
-				} catch (CompletionException completionEx) {
-					Throwable cause = completionEx.getCause();
-					if (cause instanceof FileDeletedOnServerSideException) {
-						fileDeleter.delete(transferTask.getLocalRootDirectory(), singletonList(filePath));
-						progressListener.fileDeleted(filePath);
+			} else {
+				for (ChunkInfo chunkInfo : chunkInfos) {
+					chunkCompletables.add(downloadChunkAsync(filePath, fileDownloadSessionClient, randomAccessFilePool, chunkInfo));
+				}
+			}
+			return awaitChunkDownloads(chunkCompletables);
+		}
+
+		/**
+		 * Downloads group of chunks as frames of single response, each chunk is written as soon as its frame arrives.
+		 * Chunks whose frames didn't arrive before response ended are downloaded again one by one.
+		 */
+		private void downloadChunkFrames(
+			FilePath filePath,
+			FileDownloadSessionClient fileDownloadSessionClient,
+			RandomAccessFilePool randomAccessFilePool,
+			List<ChunkInfo> chunkInfos
+		) {
+			Set<ChunkInfo> receivedChunks = new HashSet<>();
+			//try-with-resources so that randomAccessFile gets returned into pool
+			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+				fileDownloadSessionClient.downloadChunks(chunkInfos, (fileSession, chunkInfo, content) -> {
+					if (content == null) {
+						fileChunkWriter.writeZeroChunk(randomAccessFile, chunkInfo);
+						progressListener.fileZeroChunkTransferred(filePath, chunkInfo);
 					} else {
-						throw new UnknownTransferException(completionEx);
+						fileChunkWriter.writeChunk(
+							randomAccessFile,
+							chunkInfo,
+							new ProgressObservableInputStream(
+								content,
+								numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
+							)
+						);
+						progressListener.fileChunkTransferred(filePath, chunkInfo);
 					}
-				} finally {
-					chunkCompletables.forEach(future -> future.cancel(false));
+					receivedChunks.add(chunkInfo);
+				});
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			List<ChunkInfo> missingChunks = StreamEx.of(chunkInfos).remove(receivedChunks::contains).toList();
+			if (!missingChunks.isEmpty()) {
+				log.warn(
+					"Frames of {} out of {} chunks of file {} missing from response, downloading them one by one",
+					missingChunks.size(), chunkInfos.size(), filePath
+				);
+				missingChunks.forEach(chunkInfo -> downloadChunk(
+					filePath, fileDownloadSessionClient, randomAccessFilePool, chunkInfo
+				));
+			}
+		}
+
+		private CompletableFuture<Void> downloadChunkAsync(
+			FilePath filePath,
+			FileDownloadSessionClient fileDownloadSessionClient,
+			RandomAccessFilePool randomAccessFilePool,
+			ChunkInfo chunkInfo
+		) {
+			return CompletableFuture.runAsync(
+				() -> downloadChunk(filePath, fileDownloadSessionClient, randomAccessFilePool, chunkInfo),
+				chunkDownloadService
+			);
+		}
+
+		/**
+		 * @return true if all chunks are downloaded, false if file got deleted on server side during download
+		 */
+		private boolean awaitChunkDownloads(List<CompletableFuture<Void>> chunkCompletables) {
+			try {
+				chunkCompletables.forEach(CompletableFuture::join);
+				return true;
+			} catch (CompletionException completionEx) {
+				Throwable cause = completionEx.getCause();
+				if (cause instanceof FileDeletedOnServerSideException) {
+					return false;
+				} else {
+					throw new UnknownTransferException(completionEx);
 				}
+			} finally {
+				chunkCompletables.forEach(future -> future.cancel(false));
 			}
-			fileDownloadSessionClient.commitFileDownload();
-			progressListener.fileCompleted(filePath);
 		}
 
 		private void downloadChunk(
@@ -259,26 +764,124 @@ public class DownloadTransferExecutor {
 			RandomAccessFilePool randomAccessFilePool,
 			ChunkInfo chunkInfo
 		) {
+			boolean received;
+			AtomicLong wireBytes = new AtomicLong();
 			//try-with-resources so that randomAccessFile gets returned into pool
 			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
-				fileDownloadSessionClient.downloadChunk(chunkInfo, inputStream -> fileChunkWriter.writeChunk(
+				received = fileDownloadSessionClient.downloadChunk(chunkInfo, inputStream -> fileChunkWriter.writeChunk(
 					randomAccessFile,
 					chunkInfo,
 					new ProgressObservableInputStream(
 						inputStream,
 						numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
 					)
-				));
+				), wireBytes::set);
+				if (!received) {
+					fileChunkWriter.writeZeroChunk(randomAccessFile, chunkInfo);
+				}
 			} catch (IOException ex) {
 				throw new UncheckedIOException(ex);
 			}
-			progressListener.fileChunkTransferred(filePath, chunkInfo);
+			if (received) {
+				progressListener.fileChunkTransferred(filePath, chunkInfo);
+				if (transferTask.getOptions().getCompression() != CompressionType.NONE) {
+					progressListener.fileChunkCompressed(filePath, chunkInfo, wireBytes.get());
+				}
+			} else {
+				progressListener.fileZeroChunkTransferred(filePath, chunkInfo);
+			}
+		}
+
+		/**
+		 * Starts file download on first differing chunk and downloads differing chunks as they are
+		 * reported, while digests of rest of the file are still being compared. Chunks are written only
+		 * at offsets which are already hashed locally, file is resized to remote size after comparison.
+		 */
+		private class StreamingFileDownload implements ChunkComparisonListener {
+
+			private final FilePath filePath;
+			private final InlineChunkDigests inlineChunkDigests;
+			private final List<ChunkInfo> equalChunksBeforeStart = new ArrayList<>();
+			private final List<CompletableFuture<Void>> chunkCompletables = new ArrayList<>();
+			private FileDownloadSessionClient fileDownloadSessionClient;
+			private RandomAccessFilePool randomAccessFilePool;
+
+			StreamingFileDownload(FilePath filePath) {
+				this.filePath = filePath;
+				this.inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(transferTask.getOptions());
+			}
+
+			@Override
+			public synchronized void chunkEqual(ChunkInfo chunkInfo) {
+				if (fileDownloadSessionClient == null) {
+					equalChunksBeforeStart.add(chunkInfo);
+				} else {
+					progressListener.fileChunkSkipped(filePath, chunkInfo);
+				}
+			}
+
+			@Override
+			public synchronized void chunkDiffers(ChunkInfo chunkInfo) {
+				start();
+				chunkCompletables.add(downloadChunkAsync(filePath, fileDownloadSessionClient, randomAccessFilePool, chunkInfo));
+			}
+
+			private void start() {
+				if (fileDownloadSessionClient != null) {
+					return;
+				}
+				fileDownloadSessionClient = downloadSessionClient.initializeFileDownload(filePath, inlineChunkDigests);
+				progressListener.fileStarted(filePath);
+				File file = new File(filePath.toAbsolutePath(transferTask.getLocalRootDirectory()));
+				randomAccessFilePool = new RandomAccessFilePool(file, Mode.READ_WRITE);
+				equalChunksBeforeStart.forEach(chunkInfo -> progressListener.fileChunkSkipped(filePath, chunkInfo));
+				equalChunksBeforeStart.clear();
+			}
+
+			void complete(FileMetadata remoteFileMetadata, FileDigest remoteFileDigest) throws IOException {
+				List<CompletableFuture<Void>> completables;
+				synchronized (this) {
+					start();
+					completables = new ArrayList<>(chunkCompletables);
+				}
+				String localRootDirectory = transferTask.getLocalRootDirectory();
+				boolean downloaded;
+				try {
+					downloaded = awaitChunkDownloads(completables);
+					try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+						fileChunkWriter.allocateFileToSize(randomAccessFile, remoteFileMetadata.getFileSizeBytes());
+					}
+				} finally {
+					randomAccessFilePool.close();
+				}
+				if (downloaded) {
+					File file = new File(filePath.toAbsolutePath(localRootDirectory));
+					commitVerifiedFileDownload(file, fileDownloadSessionClient, inlineChunkDigests);
+					metadataWriter.writeFileMetadata(localRootDirectory, remoteFileMetadata);
+					fileTransferFilter.refreshDigestCache(
+						localRootDirectory, remoteFileMetadata, inlineChunkDigests, remoteFileDigest, transferTask.getOptions()
+					);
+				} else {
+					fileDeleter.delete(localRootDirectory, singletonList(filePath));
+					progressListener.fileDeleted(filePath);
+					fileDownloadSessionClient.commitFileDownload();
+				}
+				progressListener.fileCompleted(filePath);
+			}
+
+			synchronized void cancel() {
+				chunkCompletables.forEach(future -> future.cancel(false));
+				if (randomAccessFilePool != null) {
+					randomAccessFilePool.forceClose();
+				}
+			}
 		}
 
 		@Override
 		public void close() {
 			fileDownloadService.shutdown();
 			chunkDownloadService.shutdown();
+			fileAnalysisService.shutdownNow();
 		}
 	}
 
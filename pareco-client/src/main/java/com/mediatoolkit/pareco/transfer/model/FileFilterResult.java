@@ -1,6 +1,7 @@
 package com.mediatoolkit.pareco.transfer.model;
 
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.FileDelta;
 import com.mediatoolkit.pareco.model.FileDigest;
 import java.util.Collections;
 import java.util.Map;
@@ -20,13 +21,21 @@ public class FileFilterResult {
 		SKIP_TRANSFER,
 		ONLY_SET_METADATA,
 		TRANSFER_FULLY,
-		TRANSFER_PARTIALLY
+		TRANSFER_PARTIALLY,
+		TRANSFER_DELTA,
+		/**
+		 * Destination is equal to prefix of source of length {@link #appendOffsetBytes},
+		 * only appended tail needs to be transferred
+		 */
+		TRANSFER_APPENDED
 	}
 
 	@NonNull
 	private CheckResultType checkResultType;
 	private FileDigest sourceFileDigest;
 	private FileDigest destinationFileDigest;
+	private FileDelta sourceFileDelta;
+	private long appendOffsetBytes;
 
 	public Map<ChunkInfo, byte[]> sourceChunkDigestsOrEmptyMap() {
 		if (sourceFileDigest == null) {
@@ -1,6 +1,9 @@
 package com.mediatoolkit.pareco.transfer.model;
 
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.restclient.HttpTransport;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
@@ -15,6 +18,8 @@ import lombok.experimental.Wither;
 @Wither
 public class TransferOptions {
 
+	public static final int DEFAULT_MAX_BUNDLE_FILES = 1000;
+
 	private int numTransferConnections;
 	private int timeout;
 	private int connectTimeout;
@@ -22,11 +27,141 @@ public class TransferOptions {
 	private long chunkSizeBytes;
 	@NonNull
 	private FileIntegrityOptions fileIntegrityOptions;
+	@NonNull
+	@Builder.Default
+	private ChunkMatchingMode chunkMatchingMode = ChunkMatchingMode.FIXED_OFFSET;
+	/**
+	 * When greater than 1, {@link ChunkMatchingMode#FIXED_OFFSET} digests of remote files are exchanged
+	 * as Merkle tree with given fan-out, fetching only sub-trees which differ from local file
+	 */
+	private int digestTreeFanOut;
+	/**
+	 * Directory where digests of local files are persisted between transfers, {@code null} for no caching
+	 */
+	private String digestCacheDirectory;
+	/**
+	 * Max number of threads hashing chunks of single local file concurrently, values {@code <= 1} mean sequential
+	 */
+	private int digestParallelism;
+	/**
+	 * When set, {@link ChunkMatchingMode#FIXED_OFFSET} digests of both sides are streamed and compared
+	 * chunk by chunk, transfer of differing chunks starts while digests are still being calculated
+	 */
+	private boolean streamingDigests;
+	/**
+	 * When positive, remote {@link ChunkMatchingMode#FIXED_OFFSET} chunk digests are fetched truncated to
+	 * this many bytes, full digests are fetched only if prefix collision is detected
+	 */
+	private int digestPrefixBytes;
+	/**
+	 * When set, digests of transferred chunks are calculated inline on both sides and compared on file commit
+	 */
+	private boolean verifyChunks;
+	/**
+	 * When set, chunks which exist in some other destination file (i.e. renamed or copied file)
+	 * are copied on destination side instead of being transferred
+	 */
+	private boolean reuseDestinationChunks;
+	/**
+	 * Limits of local destination files which are digested for {@link #reuseDestinationChunks} on download
+	 */
+	@NonNull
+	@Builder.Default
+	private UnexpectedFilesLimits unexpectedFilesLimits = UnexpectedFilesLimits.DEFAULT;
+	/**
+	 * When set, files missing on destination are created by moving (or copying when unexpected
+	 * files are not deleted) unexpected destination files with same content before transfer
+	 */
+	private boolean detectMoves;
+	/**
+	 * Max number of big files whose digests are analyzed ahead of the file currently being transferred,
+	 * {@code 0} means each file is analyzed only when its transfer is about to start
+	 */
+	private int lookAhead;
+	/**
+	 * When positive, {@link ChunkMatchingMode#FIXED_OFFSET} chunks whose digests differ are compared again
+	 * in blocks of this size and only differing blocks are transferred, {@code 0} means whole chunks are transferred
+	 */
+	private long subChunkBytes;
+	/**
+	 * When set, destination file which is shorter than source is first compared with same length prefix of source
+	 * by single digest on each side, if prefixes are equal only appended tail is transferred
+	 */
+	private boolean detectAppends;
+	/**
+	 * HTTP protocol used for requests to server, {@link HttpTransport#HTTP_1_1_POOLED} streams chunks over
+	 * pool of persistent connections, {@link HttpTransport#HTTP_2} multiplexes concurrent chunk transfers
+	 * over single connection
+	 */
+	@NonNull
+	@Builder.Default
+	private HttpTransport httpTransport = HttpTransport.HTTP_1_1;
+	/**
+	 * When set, chunks of file are split into groups and each group is transferred as frames of single
+	 * streamed request instead of request per chunk, requires {@link HttpTransport#HTTP_1_1_POOLED}
+	 * or {@link HttpTransport#HTTP_2}
+	 */
+	private boolean framedChunks;
+	/**
+	 * When set, small files which need transfer are packed together with their metadata into bundles
+	 * of whole files, each bundle is transferred through single request instead of requests per file
+	 */
+	private boolean bundleSmallFiles;
+	/**
+	 * Bundle is sent once it collects this many files even if it didn't reach {@link #maxBundleSizeBytes()},
+	 * so that bundle of many tiny or empty files doesn't grow unbounded
+	 */
+	@Builder.Default
+	private int maxBundleFiles = DEFAULT_MAX_BUNDLE_FILES;
+	/**
+	 * Compression of content of chunks sent in request per chunk, content which turns out
+	 * incompressible by sampling is sent raw
+	 */
+	@NonNull
+	@Builder.Default
+	private CompressionType compression = CompressionType.NONE;
+	/**
+	 * Level of {@link CompressionType#ZSTD} compression, higher trades CPU time for less bytes on wire
+	 */
+	@Builder.Default
+	private int compressionLevel = CompressionType.DEFAULT_LEVEL;
+
+	/**
+	 * @return max number of requests in flight during transfer, one for each thread transferring files,
+	 * transferring chunks, analyzing files ahead and for main thread
+	 */
+	public int maxConcurrentRequests() {
+		return 2 * numTransferConnections + Math.max(1, lookAhead) + 1;
+	}
+
+	/**
+	 * @return size of files after which bundle is sent, same as threshold of small file size
+	 */
+	public long maxBundleSizeBytes() {
+		return chunkSizeBytes * numTransferConnections;
+	}
 
 	public enum IntegrityCheckType {
 		ONLY_FILE_METADATA, FILE_METADATA_AND_DIGEST
 	}
 
+	public enum ChunkMatchingMode {
+		/**
+		 * Chunk of source is compared only with chunk of destination at the same offset
+		 */
+		FIXED_OFFSET,
+		/**
+		 * Blocks of destination are matched at any byte offset of source using rolling checksum,
+		 * only unmatched literal data is transferred
+		 */
+		ROLLING,
+		/**
+		 * Files are cut into content-defined chunks (chunk size is average chunk size),
+		 * chunks of source are matched with chunks of destination regardless of offset
+		 */
+		CONTENT_DEFINED
+	}
+
 	@Value
 	public static class FileIntegrityOptions {
 
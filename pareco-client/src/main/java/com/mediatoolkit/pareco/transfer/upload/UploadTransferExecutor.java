@@ -2,25 +2,35 @@ package com.mediatoolkit.pareco.transfer.upload;
 
 import com.mediatoolkit.pareco.components.ChunkInfosGenerator;
 import com.mediatoolkit.pareco.components.DirectoryStructureReader;
-import com.mediatoolkit.pareco.components.FileChunkInputStream;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.ProgressObservableInputStream;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool.Mode;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool.ReturnableRandomAccessFile;
+import com.mediatoolkit.pareco.components.ZeroChunks;
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
 import com.mediatoolkit.pareco.exceptions.FileDeletedException;
 import com.mediatoolkit.pareco.exceptions.UnknownTransferException;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
+import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import com.mediatoolkit.pareco.model.FileStatus;
 import com.mediatoolkit.pareco.progress.TransferProgressListener;
 import com.mediatoolkit.pareco.restclient.UploadClient;
 import com.mediatoolkit.pareco.restclient.UploadClient.FileUploadSessionClient;
 import com.mediatoolkit.pareco.restclient.UploadClient.UploadSessionClient;
+import com.mediatoolkit.pareco.transfer.ChunkComparisonListener;
+import com.mediatoolkit.pareco.transfer.FileMoveDetector;
+import com.mediatoolkit.pareco.transfer.FileBundler;
 import com.mediatoolkit.pareco.transfer.FileSizeClassifier;
 import com.mediatoolkit.pareco.transfer.FileTransferFilter;
+import com.mediatoolkit.pareco.transfer.LookAheadScheduler;
 import com.mediatoolkit.pareco.transfer.UnexpectedFilesDeleter;
 import com.mediatoolkit.pareco.transfer.exit.TransferAbortTrigger;
 import com.mediatoolkit.pareco.transfer.model.FileFilterResult;
@@ -30,20 +40,25 @@ import com.mediatoolkit.pareco.transfer.model.TransferOptions;
 import com.mediatoolkit.pareco.transfer.model.TransferTask;
 import static com.mediatoolkit.pareco.util.Util.runIgnoreException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
 import lombok.AllArgsConstructor;
 import one.util.streamex.StreamEx;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
@@ -59,9 +74,12 @@ public class UploadTransferExecutor {
 
 	private final ThreadFactory chunkThreadFactory = new CustomizableThreadFactory("ChunkUpload_");
 	private final ThreadFactory fileThreadFactory = new CustomizableThreadFactory("FileUpload_");
+	private final ThreadFactory analysisThreadFactory = new CustomizableThreadFactory("FileAnalysis_");
 
 	private final UnexpectedFilesDeleter unexpectedFilesDeleter;
+	private final FileMoveDetector fileMoveDetector;
 	private final FileSizeClassifier fileSizeClassifier;
+	private final LookAheadScheduler lookAheadScheduler;
 	private final FileTransferFilter fileTransferFilter;
 	private final DirectoryStructureReader directoryStructureReader;
 	private final ChunkInfosGenerator chunkInfosGenerator;
@@ -73,7 +91,7 @@ public class UploadTransferExecutor {
 		TransferProgressListener progressListener
 	) throws IOException {
 		ServerInfo serverInfo = transferTask.getServerInfo();
-		UploadClient uploadClient = UploadClient.builder()
+		try (UploadClient uploadClient = UploadClient.builder()
 			.httpScheme(serverInfo.getHttpScheme())
 			.host(serverInfo.getHost())
 			.port(serverInfo.getPort())
@@ -81,7 +99,23 @@ public class UploadTransferExecutor {
 			.readTimeout(transferTask.getOptions().getTimeout())
 			.authToken(transferTask.getAuthToken())
 			.encoding(encoding)
-			.build();
+			.transport(transferTask.getOptions().getHttpTransport())
+			.maxConnections(transferTask.getOptions().maxConcurrentRequests())
+			.compression(transferTask.getOptions().getCompression())
+			.compressionLevel(transferTask.getOptions().getCompressionLevel())
+			.build()
+		) {
+			executeUpload(transferTask, abortTrigger, progressListener, uploadClient);
+		}
+	}
+
+	private void executeUpload(
+		TransferTask transferTask,
+		TransferAbortTrigger abortTrigger,
+		TransferProgressListener progressListener,
+		UploadClient uploadClient
+	) throws IOException {
+		ServerInfo serverInfo = transferTask.getServerInfo();
 		DirectoryStructure localDirectoryStructure = directoryStructureReader.readDirectoryStructure(
 			transferTask.getLocalRootDirectory(), transferTask.getInclude(), transferTask.getExclude()
 		);
@@ -100,12 +134,20 @@ public class UploadTransferExecutor {
 			abortTrigger.registerAbort(uploadSessionClient::abortUpload);
 			progressListener.analyzingFiles(transferTask.getLocalRootDirectory(), transferTask.getRemoteRootDirectory());
 			DirectoryStructure remoteDirectoryStructure = uploadSessionClient.getDirectoryStructure();
+			if (transferTask.getOptions().isDetectMoves()) {
+				remoteDirectoryStructure = moveRenamedFiles(
+					transferTask, localDirectoryStructure, remoteDirectoryStructure, uploadSessionClient, progressListener
+				);
+			}
 			Map<FilePath, FileMetadata> remoteFilesMetadata = remoteDirectoryStructure.filesMetadataAsMap();
 			int numTransferConnections = transferTask.getOptions().getNumTransferConnections();
 			ExecutorService fileUploadService = Executors.newFixedThreadPool(numTransferConnections, fileThreadFactory);
 			ExecutorService chunkUploadService = Executors.newFixedThreadPool(numTransferConnections, chunkThreadFactory);
+			ExecutorService fileAnalysisService = Executors.newFixedThreadPool(
+				Math.max(1, transferTask.getOptions().getLookAhead()), analysisThreadFactory
+			);
 			try (UploadSessionExecutor uploadSessionExecutor = new UploadSessionExecutor(
-				fileUploadService, chunkUploadService, transferTask,
+				fileUploadService, chunkUploadService, fileAnalysisService, transferTask,
 				localDirectoryStructure, remoteDirectoryStructure,
 				remoteFilesMetadata, uploadSessionClient, progressListener
 			)) {
@@ -118,11 +160,43 @@ public class UploadTransferExecutor {
 		}
 	}
 
+	/**
+	 * @return remote directory structure after moves
+	 */
+	private DirectoryStructure moveRenamedFiles(
+		TransferTask transferTask,
+		DirectoryStructure localDirectoryStructure,
+		DirectoryStructure remoteDirectoryStructure,
+		UploadSessionClient uploadSessionClient,
+		TransferProgressListener progressListener
+	) {
+		TransferOptions options = transferTask.getOptions();
+		Map<FilePath, List<FilePath>> moveCandidates = fileMoveDetector.resolveMoveCandidates(
+			localDirectoryStructure, remoteDirectoryStructure
+		);
+		if (moveCandidates.isEmpty()) {
+			return remoteDirectoryStructure;
+		}
+		Map<FilePath, byte[]> fingerprints = StreamEx.ofKeys(moveCandidates)
+			.toMap(filePath -> fileTransferFilter.localFileFingerprint(
+				transferTask.getLocalRootDirectory(), filePath, options
+			));
+		List<FileMove> fileMoves = uploadSessionClient.moveFiles(fileMoveDetector.toFileMoves(
+			moveCandidates, fingerprints, !options.isDeleteUnexpected(), options.getFileIntegrityOptions().getDigestType()
+		));
+		if (fileMoves.isEmpty()) {
+			return remoteDirectoryStructure;
+		}
+		progressListener.movedFiles(fileMoves);
+		return uploadSessionClient.getDirectoryStructure();
+	}
+
 	@AllArgsConstructor
 	private class UploadSessionExecutor implements AutoCloseable {
 
 		private final ExecutorService fileUploadService;
 		private final ExecutorService chunkUploadService;
+		private final ExecutorService fileAnalysisService;
 		private final TransferTask transferTask;
 		private final DirectoryStructure localDirectoryStructure;
 		private final DirectoryStructure remoteDirectoryStructure;
@@ -134,36 +208,173 @@ public class UploadTransferExecutor {
 			TransferOptions options = transferTask.getOptions();
 			progressListener.started(localDirectoryStructure, options.getChunkSizeBytes());
 			uploadSessionClient.createDirectories();
-			if (options.isDeleteUnexpected()) {
-				unexpectedFilesDeleter.deleteUnexpected(
-					progressListener,
-					localDirectoryStructure, remoteDirectoryStructure,
-					uploadSessionClient::deleteFiles
-				);
+			//when reusing chunks, unexpected files are kept until the end as possible source of chunks
+			if (options.isDeleteUnexpected() && !options.isReuseDestinationChunks()) {
+				deleteUnexpected();
 			}
 			SizeClassifiedFiles sizeClassifiedFiles = fileSizeClassifier.classifySmallAndBigFiles(
 				localDirectoryStructure.getFiles(), options.getChunkSizeBytes(), options.getNumTransferConnections()
 			);
-			List<CompletableFuture<Void>> smallFilesFutures = StreamEx.of(sizeClassifiedFiles.getSmallFiles())
-				.map(smallLocalFileMetadata -> CompletableFuture.runAsync(
-					() -> syncFile(smallLocalFileMetadata), fileUploadService
-				))
-				.toList();
+			FileBundler fileBundler = options.isBundleSmallFiles()
+				? new FileBundler(
+					options.maxBundleSizeBytes(), options.getMaxBundleFiles(), chunkUploadService, this::uploadBundle
+				)
+				: null;
+			List<CompletableFuture<Void>> smallFilesFutures = syncSmallFiles(sizeClassifiedFiles.getSmallFiles(), fileBundler);
 			smallFilesFutures.forEach(CompletableFuture::join);
-			sizeClassifiedFiles.getBigFiles().forEach(this::syncFile);
+			if (fileBundler != null) {
+				fileBundler.awaitBundles();
+			}
+			lookAheadScheduler.runPipelined(
+				sizeClassifiedFiles.getBigFiles(), options.getLookAhead(), fileAnalysisService,
+				this::analyzeFile, this::syncAnalyzedFile
+			);
+			if (options.isDeleteUnexpected() && options.isReuseDestinationChunks()) {
+				deleteUnexpected();
+			}
 			uploadSessionClient.commitUpload();
 			progressListener.completed();
 		}
 
-		private void syncFile(FileMetadata localFileMetadata) {
+		private void deleteUnexpected() throws IOException {
+			unexpectedFilesDeleter.deleteUnexpected(
+				progressListener,
+				localDirectoryStructure, remoteDirectoryStructure,
+				uploadSessionClient::deleteFiles
+			);
+		}
+
+		/**
+		 * Small files whose comparison needs remote digest are synced as their digests
+		 * arrive from batch request, others are synced right away
+		 *
+		 * @param fileBundler collects files which need transfer, {@code null} if each file is transferred on its own
+		 */
+		private List<CompletableFuture<Void>> syncSmallFiles(List<FileMetadata> smallFiles, FileBundler fileBundler) {
+			Map<FilePath, FileMetadata> batchedFiles = StreamEx.of(smallFiles)
+				.filter(localFileMetadata -> fileTransferFilter.isRemoteDigestBatchable(
+					transferTask.getOptions(), localFileMetadata, remoteFileStatusOf(localFileMetadata)
+				))
+				.mapToEntry(FileMetadata::getFilePath, Function.identity())
+				.toCustomMap(LinkedHashMap::new);
+			List<CompletableFuture<Void>> futures = StreamEx.of(smallFiles)
+				.remove(localFileMetadata -> batchedFiles.containsKey(localFileMetadata.getFilePath()))
+				.map(localFileMetadata -> CompletableFuture.runAsync(
+					() -> syncSmallFile(localFileMetadata, null, fileBundler), fileUploadService
+				))
+				.toCollection(ArrayList::new);
+			if (batchedFiles.isEmpty()) {
+				return futures;
+			}
+			fileTransferFilter.streamUploadDestinationDigests(
+				new ArrayList<>(batchedFiles.keySet()), uploadSessionClient, transferTask.getOptions(),
+				filePathDigest -> {
+					FileMetadata localFileMetadata = batchedFiles.remove(filePathDigest.getFilePath());
+					if (localFileMetadata != null) {
+						futures.add(CompletableFuture.runAsync(
+							() -> syncSmallFile(localFileMetadata, filePathDigest.getFileDigest(), fileBundler),
+							fileUploadService
+						));
+					}
+				}
+			);
+			batchedFiles.values().forEach(localFileMetadata -> futures.add(CompletableFuture.runAsync(
+				() -> syncSmallFile(localFileMetadata, null, fileBundler), fileUploadService
+			)));
+			return futures;
+		}
+
+		private void syncSmallFile(
+			FileMetadata localFileMetadata, FileDigest prefetchedRemoteFileDigest, FileBundler fileBundler
+		) {
+			if (fileBundler == null) {
+				syncFile(localFileMetadata, prefetchedRemoteFileDigest);
+				return;
+			}
+			progressListener.fileAnalyze(localFileMetadata.getFilePath());
+			FileFilterResult fileFilterResult = fileTransferFilter.checkIsUploadTransferNeeded(
+				transferTask.getLocalRootDirectory(), localFileMetadata, remoteFileStatusOf(localFileMetadata),
+				uploadSessionClient, transferTask.getOptions(), prefetchedRemoteFileDigest
+			);
+			switch (fileFilterResult.getCheckResultType()) {
+				case SKIP_TRANSFER:
+				case ONLY_SET_METADATA:
+					syncAnalyzedFile(localFileMetadata, fileFilterResult);
+					break;
+				default:
+					//whole file is sent no matter which part of it differs
+					fileBundler.add(localFileMetadata);
+			}
+		}
+
+		/**
+		 * Uploads whole files through single request, files are reported as transferred
+		 * once server accepted whole bundle
+		 */
+		private void uploadBundle(List<FileMetadata> filesMetadata) {
+			String localRootDirectory = transferTask.getLocalRootDirectory();
+			Set<FilePath> deletedFiles = new HashSet<>();
+			uploadSessionClient.uploadBundle(filesMetadata, fileMetadata -> {
+				FilePath filePath = fileMetadata.getFilePath();
+				ChunkInfo chunkInfo = ChunkInfo.of(0, fileMetadata.getFileSizeBytes());
+				progressListener.fileStarted(filePath);
+				try {
+					return new ProgressObservableInputStream(
+						new FileInputStream(filePath.toAbsolutePath(localRootDirectory)),
+						numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
+					);
+				} catch (FileNotFoundException ex) {
+					deletedFiles.add(filePath);
+					return null;
+				}
+			});
+			for (FileMetadata fileMetadata : filesMetadata) {
+				FilePath filePath = fileMetadata.getFilePath();
+				if (deletedFiles.contains(filePath)) {
+					progressListener.fileDeleted(filePath);
+				} else if (fileMetadata.getFileSizeBytes() > 0) {
+					progressListener.fileChunkTransferred(filePath, ChunkInfo.of(0, fileMetadata.getFileSizeBytes()));
+				}
+				progressListener.fileCompleted(filePath);
+			}
+		}
+
+		private void syncFile(FileMetadata localFileMetadata, FileDigest prefetchedRemoteFileDigest) {
+			syncAnalyzedFile(localFileMetadata, analyzeFile(localFileMetadata, prefetchedRemoteFileDigest));
+		}
+
+		private FileStatus remoteFileStatusOf(FileMetadata localFileMetadata) {
 			FileMetadata remoteFileMetadata = remoteFilesMetadata.get(localFileMetadata.getFilePath());
-			FileStatus remoteFileStatus = Optional.ofNullable(remoteFileMetadata)
+			return Optional.ofNullable(remoteFileMetadata)
 				.map(FileStatus::of)
 				.orElse(FileStatus.NOT_EXIST);
+		}
+
+		/**
+		 * @return result of comparison of local and remote file or {@code null} if streaming comparison
+		 * is used, in which case comparison is performed together with transfer
+		 */
+		private FileFilterResult analyzeFile(FileMetadata localFileMetadata) {
+			return analyzeFile(localFileMetadata, null);
+		}
+
+		private FileFilterResult analyzeFile(FileMetadata localFileMetadata, FileDigest prefetchedRemoteFileDigest) {
+			FileStatus remoteFileStatus = remoteFileStatusOf(localFileMetadata);
 			progressListener.fileAnalyze(localFileMetadata.getFilePath());
-			FileFilterResult fileFilterResult = fileTransferFilter.checkIsUploadTransferNeeded(
-				transferTask.getLocalRootDirectory(), localFileMetadata, remoteFileStatus, uploadSessionClient, transferTask.getOptions()
+			if (fileTransferFilter.isStreamingComparisonUsed(transferTask.getOptions(), localFileMetadata, remoteFileStatus)) {
+				return null;
+			}
+			return fileTransferFilter.checkIsUploadTransferNeeded(
+				transferTask.getLocalRootDirectory(), localFileMetadata, remoteFileStatus,
+				uploadSessionClient, transferTask.getOptions(), prefetchedRemoteFileDigest
 			);
+		}
+
+		private void syncAnalyzedFile(FileMetadata localFileMetadata, FileFilterResult fileFilterResult) {
+			if (fileFilterResult == null) {
+				syncFileStreaming(localFileMetadata, remoteFileStatusOf(localFileMetadata));
+				return;
+			}
 			FilePath filePath = localFileMetadata.getFilePath();
 			switch (fileFilterResult.getCheckResultType()) {
 				case SKIP_TRANSFER:
@@ -173,17 +384,33 @@ public class UploadTransferExecutor {
 				case TRANSFER_FULLY:
 					doSyncFile(
 						localFileMetadata,
+						null,
+						Collections.emptyMap(),
 						Collections.emptyMap(),
-						Collections.emptyMap()
+						0
 					);
 					break;
 				case TRANSFER_PARTIALLY:
 					doSyncFile(
 						localFileMetadata,
+						fileFilterResult.getSourceFileDigest(),
 						fileFilterResult.sourceChunkDigestsOrEmptyMap(),
-						fileFilterResult.destinationChunkDigestsOrEmptyMap()
+						fileFilterResult.destinationChunkDigestsOrEmptyMap(),
+						0
 					);
 					break;
+				case TRANSFER_APPENDED:
+					doSyncFile(
+						localFileMetadata,
+						null,
+						Collections.emptyMap(),
+						Collections.emptyMap(),
+						fileFilterResult.getAppendOffsetBytes()
+					);
+					break;
+				case TRANSFER_DELTA:
+					doSyncFileDelta(localFileMetadata, fileFilterResult.getSourceFileDelta());
+					break;
 				case ONLY_SET_METADATA:
 					setRemoteFileMetadata(localFileMetadata);
 					progressListener.fileSkipped(filePath);
@@ -193,49 +420,158 @@ public class UploadTransferExecutor {
 			}
 		}
 
+		private void syncFileStreaming(FileMetadata localFileMetadata, FileStatus remoteFileStatus) {
+			FilePath filePath = localFileMetadata.getFilePath();
+			StreamingFileUpload streamingFileUpload = new StreamingFileUpload(filePath);
+			FileFilterResult fileFilterResult;
+			try {
+				fileFilterResult = fileTransferFilter.compareUploadDigestsStreaming(
+					transferTask.getLocalRootDirectory(), localFileMetadata, remoteFileStatus,
+					uploadSessionClient, transferTask.getOptions(), streamingFileUpload
+				);
+			} catch (RuntimeException ex) {
+				streamingFileUpload.cancel();
+				throw ex;
+			}
+			switch (fileFilterResult.getCheckResultType()) {
+				case SKIP_TRANSFER:
+					uploadSessionClient.skipFileUpload(filePath);
+					progressListener.fileSkipped(filePath);
+					break;
+				case ONLY_SET_METADATA:
+					setRemoteFileMetadata(localFileMetadata);
+					progressListener.fileSkipped(filePath);
+					break;
+				case TRANSFER_PARTIALLY:
+					streamingFileUpload.complete(fileFilterResult.getSourceFileDigest());
+					break;
+				default:
+					throw new IllegalArgumentException("Unexpected CheckResultType: " + fileFilterResult.getCheckResultType());
+			}
+		}
+
 		private void doSyncFile(
 			FileMetadata fileMetadata,
+			FileDigest localFileDigest,
 			Map<ChunkInfo, byte[]> localFileChunkDigests,
-			Map<ChunkInfo, byte[]> remoteFileChunkDigests
+			Map<ChunkInfo, byte[]> remoteFileChunkDigests,
+			long appendOffsetBytes
 		) {
 			FilePath filePath = fileMetadata.getFilePath();
-			FileUploadSessionClient fileUploadSessionClient = uploadSessionClient.initializeFileUpload(filePath);
+			TransferOptions options = transferTask.getOptions();
+			InlineChunkDigests inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(options);
+			FileUploadSessionClient fileUploadSessionClient = uploadSessionClient.initializeFileUpload(
+				filePath, inlineChunkDigests
+			);
 			progressListener.fileStarted(filePath);
+			List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(
+				fileMetadata.getFileSizeBytes(), transferTask.getOptions().getChunkSizeBytes()
+			);
+			List<ChunkInfo> chunksToUpload = StreamEx.of(fileTransferFilter.appendedChunks(
+					chunkInfos, appendOffsetBytes, filePath, progressListener
+				))
+				.remove(chunkInfo -> fileTransferFilter.skipChunkIfNeeded(
+					localFileChunkDigests, remoteFileChunkDigests, filePath, chunkInfo, progressListener
+				))
+				.toList();
+			if (options.isReuseDestinationChunks() && !chunksToUpload.isEmpty()) {
+				if (localFileDigest == null) {
+					localFileDigest = fileTransferFilter.localFileDigest(
+						transferTask.getLocalRootDirectory(), filePath, options
+					);
+				}
+				chunksToUpload = fileTransferFilter.reuseDestinationChunks(
+					localFileDigest, chunksToUpload, fileUploadSessionClient::reuseChunks, filePath, progressListener
+				);
+			}
+			chunksToUpload = fileTransferFilter.refineDifferingChunks(
+				transferTask.getLocalRootDirectory(), filePath, chunksToUpload, localFileChunkDigests, remoteFileChunkDigests,
+				ranges -> uploadSessionClient.getFileBlockDigests(
+					filePath, options.getFileIntegrityOptions().getDigestType(), options.getSubChunkBytes(), ranges
+				),
+				options, progressListener
+			);
+			uploadChunks(filePath, fileUploadSessionClient, chunksToUpload);
+			fileUploadSessionClient.commitFileUpload(
+				fileTransferFilter.transferredFileDigestOf(inlineChunkDigests, localFileDigest, options)
+			);
+			progressListener.fileCompleted(filePath);
+		}
+
+		private void doSyncFileDelta(FileMetadata fileMetadata, FileDelta fileDelta) {
+			FilePath filePath = fileMetadata.getFilePath();
+			TransferOptions options = transferTask.getOptions();
+			InlineChunkDigests inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(options);
+			FileUploadSessionClient fileUploadSessionClient = uploadSessionClient.initializeFileDeltaUpload(
+				filePath, inlineChunkDigests
+			);
+			progressListener.fileStarted(filePath);
+			List<DeltaInstruction> copyInstructions = fileDelta.copyInstructions();
+			fileUploadSessionClient.copyBlocks(copyInstructions);
+			copyInstructions.forEach(copy -> progressListener.fileChunkSkipped(filePath, copy.getChunkInfo()));
+			List<ChunkInfo> literalChunks = fileDelta.literalChunks(transferTask.getOptions().getChunkSizeBytes());
+			uploadChunks(filePath, fileUploadSessionClient, literalChunks);
+			fileUploadSessionClient.commitFileUpload(
+				fileTransferFilter.transferredFileDigestOf(inlineChunkDigests, null, options)
+			);
+			progressListener.fileCompleted(filePath);
+		}
+
+		private void uploadChunks(
+			FilePath filePath,
+			FileUploadSessionClient fileUploadSessionClient,
+			List<ChunkInfo> chunkInfos
+		) {
 			String localRootDirectory = transferTask.getLocalRootDirectory();
 			File file = new File(filePath.toAbsolutePath(localRootDirectory));
 			try (RandomAccessFilePool randomAccessFilePool = new RandomAccessFilePool(file, Mode.READ_ONLY)) {
-				List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(
-					fileMetadata.getFileSizeBytes(), transferTask.getOptions().getChunkSizeBytes()
-				);
 				List<CompletableFuture<Void>> chunkCompletables = new ArrayList<>();
-				for (ChunkInfo chunkInfo : chunkInfos) {
-					boolean skipChunk = fileTransferFilter.skipChunkIfNeeded(
-						localFileChunkDigests, remoteFileChunkDigests, filePath, chunkInfo, progressListener
-					);
-					if (skipChunk) {
-						continue;
+				if (transferTask.getOptions().isFramedChunks()) {
+					for (List<ChunkInfo> chunksGroup : fileTransferFilter.framedChunkGroups(chunkInfos, transferTask.getOptions())) {
+						chunkCompletables.add(CompletableFuture.runAsync(
+							() -> uploadChunkFrames(filePath, fileUploadSessionClient, randomAccessFilePool, chunksGroup),
+							chunkUploadService
+						));
 					}
-					chunkCompletables.add(CompletableFuture.runAsync(
-						() -> uploadChunk(filePath, fileUploadSessionClient, randomAccessFilePool, chunkInfo),
-						chunkUploadService
-					));
-				}
-				try {
-					chunkCompletables.forEach(CompletableFuture::join);
-				} catch (CompletionException completionEx) {
-					Throwable cause = completionEx.getCause();
-					if (cause instanceof FileDeletedException) {
-						fileUploadSessionClient.deleteFile();
-						progressListener.fileDeleted(filePath);
-					} else {
-						throw new UnknownTransferException(cause);
+				} else {
+					for (ChunkInfo chunkInfo : chunkInfos) {
+						chunkCompletables.add(uploadChunkAsync(filePath, fileUploadSessionClient, randomAccessFilePool, chunkInfo));
 					}
-				} finally {
-					chunkCompletables.forEach(future -> future.cancel(false));
 				}
+				awaitChunkUploads(filePath, fileUploadSessionClient, chunkCompletables);
+			}
+		}
+
+		private CompletableFuture<Void> uploadChunkAsync(
+			FilePath filePath,
+			FileUploadSessionClient fileUploadSessionClient,
+			RandomAccessFilePool randomAccessFilePool,
+			ChunkInfo chunkInfo
+		) {
+			return CompletableFuture.runAsync(
+				() -> uploadChunk(filePath, fileUploadSessionClient, randomAccessFilePool, chunkInfo),
+				chunkUploadService
+			);
+		}
+
+		private void awaitChunkUploads(
+			FilePath filePath,
+			FileUploadSessionClient fileUploadSessionClient,
+			List<CompletableFuture<Void>> chunkCompletables
+		) {
+			try {
+				chunkCompletables.forEach(CompletableFuture::join);
+			} catch (CompletionException completionEx) {
+				Throwable cause = completionEx.getCause();
+				if (cause instanceof FileDeletedException) {
+					fileUploadSessionClient.deleteFile();
+					progressListener.fileDeleted(filePath);
+				} else {
+					throw new UnknownTransferException(cause);
+				}
+			} finally {
+				chunkCompletables.forEach(future -> future.cancel(false));
 			}
-			fileUploadSessionClient.commitFileUpload();
-			progressListener.fileCompleted(filePath);
 		}
 
 		private void uploadChunk(
@@ -244,21 +580,66 @@ public class UploadTransferExecutor {
 			RandomAccessFilePool randomAccessFilePool,
 			ChunkInfo chunkInfo
 		) {
+			long wireBytes;
 			//try-with-resources so that randomAccessFile gets returned into pool
 			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
-				InputStream chunkInputStream = new FileChunkInputStream(
-					randomAccessFile, chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes()
-				);
+				InputStream chunkInputStream = ZeroChunks.contentUnlessZeroChunk(randomAccessFile, chunkInfo);
+				if (chunkInputStream == null) {
+					fileUploadSessionClient.uploadZeroChunk(chunkInfo);
+					progressListener.fileZeroChunkTransferred(filePath, chunkInfo);
+					return;
+				}
 				InputStream observableChunkInputStream = new ProgressObservableInputStream(
 					chunkInputStream, numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
 				);
-				fileUploadSessionClient.uploadChunk(chunkInfo, observableChunkInputStream);
+				wireBytes = fileUploadSessionClient.uploadChunk(chunkInfo, observableChunkInputStream);
 			} catch (FileNotFoundException ex) {
 				throw new FileDeletedException(filePath, "Can't upload chunk of deleted file", ex);
 			} catch (IOException ex) {
 				throw new UncheckedIOException(ex);
 			}
 			progressListener.fileChunkTransferred(filePath, chunkInfo);
+			if (transferTask.getOptions().getCompression() != CompressionType.NONE) {
+				progressListener.fileChunkCompressed(filePath, chunkInfo, wireBytes);
+			}
+		}
+
+		/**
+		 * Uploads group of chunks as frames of single request, chunks are reported as transferred
+		 * once server accepted whole request
+		 */
+		private void uploadChunkFrames(
+			FilePath filePath,
+			FileUploadSessionClient fileUploadSessionClient,
+			RandomAccessFilePool randomAccessFilePool,
+			List<ChunkInfo> chunkInfos
+		) {
+			Set<ChunkInfo> zeroChunks = new HashSet<>();
+			//try-with-resources so that randomAccessFile gets returned into pool
+			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+				fileUploadSessionClient.uploadChunks(chunkInfos, chunkInfo -> {
+					InputStream chunkInputStream = ZeroChunks.contentUnlessZeroChunk(randomAccessFile, chunkInfo);
+					if (chunkInputStream == null) {
+						zeroChunks.add(chunkInfo);
+						return null;
+					}
+					return new ProgressObservableInputStream(
+						chunkInputStream,
+						numBytes -> progressListener.fileChunkTransferProgress(filePath, chunkInfo, numBytes)
+					);
+				});
+			} catch (FileNotFoundException ex) {
+				throw new FileDeletedException(filePath, "Can't upload chunk of deleted file", ex);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			for (ChunkInfo chunkInfo : chunkInfos) {
+				if (zeroChunks.contains(chunkInfo)) {
+					progressListener.fileZeroChunkTransferred(filePath, chunkInfo);
+				} else {
+					progressListener.fileChunkTransferred(filePath, chunkInfo);
+				}
+			}
 		}
 
 		private void setRemoteFileMetadata(FileMetadata fileMetadata) {
@@ -266,10 +647,81 @@ public class UploadTransferExecutor {
 			fileUploadSessionClient.commitFileUpload();
 		}
 
+		/**
+		 * Starts file upload on first differing chunk and uploads differing chunks as they are
+		 * reported, while digests of rest of the file are still being compared
+		 */
+		private class StreamingFileUpload implements ChunkComparisonListener {
+
+			private final FilePath filePath;
+			private final InlineChunkDigests inlineChunkDigests;
+			private final List<ChunkInfo> equalChunksBeforeStart = new ArrayList<>();
+			private final List<CompletableFuture<Void>> chunkCompletables = new ArrayList<>();
+			private FileUploadSessionClient fileUploadSessionClient;
+			private RandomAccessFilePool randomAccessFilePool;
+
+			StreamingFileUpload(FilePath filePath) {
+				this.filePath = filePath;
+				this.inlineChunkDigests = fileTransferFilter.inlineChunkDigestsOf(transferTask.getOptions());
+			}
+
+			@Override
+			public synchronized void chunkEqual(ChunkInfo chunkInfo) {
+				if (fileUploadSessionClient == null) {
+					equalChunksBeforeStart.add(chunkInfo);
+				} else {
+					progressListener.fileChunkSkipped(filePath, chunkInfo);
+				}
+			}
+
+			@Override
+			public synchronized void chunkDiffers(ChunkInfo chunkInfo) {
+				start();
+				chunkCompletables.add(uploadChunkAsync(filePath, fileUploadSessionClient, randomAccessFilePool, chunkInfo));
+			}
+
+			private void start() {
+				if (fileUploadSessionClient != null) {
+					return;
+				}
+				fileUploadSessionClient = uploadSessionClient.initializeFileUpload(filePath, inlineChunkDigests);
+				progressListener.fileStarted(filePath);
+				File file = new File(filePath.toAbsolutePath(transferTask.getLocalRootDirectory()));
+				randomAccessFilePool = new RandomAccessFilePool(file, Mode.READ_ONLY);
+				equalChunksBeforeStart.forEach(chunkInfo -> progressListener.fileChunkSkipped(filePath, chunkInfo));
+				equalChunksBeforeStart.clear();
+			}
+
+			void complete(FileDigest localFileDigest) {
+				List<CompletableFuture<Void>> completables;
+				synchronized (this) {
+					start();
+					completables = new ArrayList<>(chunkCompletables);
+				}
+				try {
+					awaitChunkUploads(filePath, fileUploadSessionClient, completables);
+				} finally {
+					randomAccessFilePool.close();
+				}
+				fileUploadSessionClient.commitFileUpload(fileTransferFilter.transferredFileDigestOf(
+					inlineChunkDigests, localFileDigest, transferTask.getOptions()
+				));
+				progressListener.fileCompleted(filePath);
+			}
+
+			synchronized void cancel() {
+				chunkCompletables.forEach(future -> future.cancel(false));
+				if (randomAccessFilePool != null) {
+					randomAccessFilePool.forceClose();
+				}
+			}
+		}
+
 		@Override
 		public void close() {
 			fileUploadService.shutdown();
 			chunkUploadService.shutdown();
+			fileAnalysisService.shutdownNow();
 		}
 	}
 
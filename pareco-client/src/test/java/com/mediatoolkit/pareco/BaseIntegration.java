@@ -5,6 +5,7 @@ import com.mediatoolkit.pareco.model.ChunkInfo;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryMetadata;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import com.mediatoolkit.pareco.progress.CompositeTransferProgressListener;
 import com.mediatoolkit.pareco.progress.LoggingTransferProgressListener;
@@ -35,6 +36,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -80,6 +82,12 @@ public abstract class BaseIntegration {
 	private ServerInfo serverInfo;
 	private File baseTestWorkspace;
 	private TransferAbortTrigger abortTrigger;
+	/**
+	 * Used for files created without explicit last modified time, so that source and destination files
+	 * don't differ just by being written in different milliseconds. Set in past and rounded to whole
+	 * second because some filesystems do not support millisecond precision.
+	 */
+	private final long defaultLastModified = 1000 * (System.currentTimeMillis() / 1000 - TimeUnit.DAYS.toSeconds(1));
 	TransferTask defaultTask;
 
 	@Autowired
@@ -211,6 +219,8 @@ public abstract class BaseIntegration {
 		soft.assertThat(stats.getSkippedFiles()).as("skipped files").isEqualTo(testCase.getSkippedFiles());
 		soft.assertThat(stats.getTransferredBytes()).as("transferred bytes").isEqualTo(testCase.getTransferredBytes());
 		soft.assertThat(stats.getSkippedBytes()).as("skipped bytes").isEqualTo(testCase.getSkippedBytes());
+		soft.assertThat(stats.getZeroBytes()).as("zero bytes").isEqualTo(testCase.getZeroBytes());
+		soft.assertThat(stats.getMovedFiles()).as("moved files").isEqualTo(testCase.getMovedFiles());
 		soft.assertThat(stats.getDeletedFiles()).as("deleted files").isEqualTo(testCase.getDeletedFiles());
 		soft.assertThat(stats.getDeletedDirectories()).as("deleted directories").isEqualTo(testCase.getDeletedDirs());
 		soft.assertThat(stats.getConcurrentDeletions()).as("concurrent deletions").isEqualTo(testCase.getDeletedConcurrently());
@@ -243,6 +253,8 @@ public abstract class BaseIntegration {
 		soft.assertThat(stats.getSkippedFiles()).as("skipped files").isEqualTo(testCase.getSkippedFiles());
 		soft.assertThat(stats.getTransferredBytes()).as("transferred bytes").isEqualTo(testCase.getTransferredBytes());
 		soft.assertThat(stats.getSkippedBytes()).as("skipped bytes").isEqualTo(testCase.getSkippedBytes());
+		soft.assertThat(stats.getZeroBytes()).as("zero bytes").isEqualTo(testCase.getZeroBytes());
+		soft.assertThat(stats.getMovedFiles()).as("moved files").isEqualTo(testCase.getMovedFiles());
 		soft.assertThat(stats.getDeletedFiles()).as("deleted files").isEqualTo(testCase.getDeletedFiles());
 		soft.assertThat(stats.getDeletedDirectories()).as("deleted directories").isEqualTo(testCase.getDeletedDirs());
 		soft.assertThat(stats.getConcurrentDeletions()).as("concurrent deletions").isEqualTo(testCase.getDeletedConcurrently());
@@ -331,9 +343,9 @@ public abstract class BaseIntegration {
 				} catch (UnsupportedOperationException ignore) {
 				}
 			}
-			if (fileContent.getLastModified() != null) {
-				file.setLastModified(fileContent.getLastModified());
-			}
+			file.setLastModified(
+				fileContent.getLastModified() != null ? fileContent.getLastModified() : defaultLastModified
+			);
 		}
 	}
 
@@ -361,6 +373,8 @@ public abstract class BaseIntegration {
 		private int skippedFiles;
 		private long transferredBytes;
 		private long skippedBytes;
+		private long zeroBytes;
+		private int movedFiles;
 		private int deletedFiles;
 		private int deletedDirs;
 		private int deletedConcurrently;
@@ -508,6 +522,7 @@ public abstract class BaseIntegration {
 		private final InjectingAction<InitializingArg> onInitializing;
 		private final InjectingAction<AnalyzingFilesArg> onAnalyzingFiles;
 		private final InjectingAction<StartedArg> onStarted;
+		private final InjectingAction<List<FileMove>> onMovedFiles;
 		private final InjectingAction<List<FilePath>> onDeletedFiles;
 		private final InjectingAction<List<FilePath>> onDeletedDirectories;
 		private final InjectingAction<FilePath> onFileAnalyze;
@@ -518,6 +533,7 @@ public abstract class BaseIntegration {
 		private final InjectingAction<FileChunkArg> onChunkSkipped;
 		private final InjectingAction<FileChunkProgressArg> onChunkTransferProgress;
 		private final InjectingAction<FileChunkArg> onChunkTransferred;
+		private final InjectingAction<FileChunkArg> onZeroChunkTransferred;
 		private final InjectingAction<Void> onCompleted;
 		private final InjectingAction<Void> onAborted;
 	}
@@ -585,6 +601,11 @@ public abstract class BaseIntegration {
 			doAction(injectingActions.onStarted, new StartedArg(directoryStructure, chunkSizeBytes));
 		}
 
+		@Override
+		public void movedFiles(List<FileMove> fileMoves) {
+			doAction(injectingActions.onMovedFiles, fileMoves);
+		}
+
 		@Override
 		public void deletedFiles(List<FilePath> filePaths) {
 			doAction(injectingActions.onDeletedFiles, filePaths);
@@ -635,6 +656,15 @@ public abstract class BaseIntegration {
 			doAction(injectingActions.onChunkTransferred, new FileChunkArg(filePath, chunkInfo));
 		}
 
+		@Override
+		public void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
+			doAction(injectingActions.onZeroChunkTransferred, new FileChunkArg(filePath, chunkInfo));
+		}
+
+		@Override
+		public void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes) {
+		}
+
 		@Override
 		public void completed() {
 			doAction(injectingActions.onCompleted, null);
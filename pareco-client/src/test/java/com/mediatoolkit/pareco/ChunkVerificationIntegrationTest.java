@@ -0,0 +1,273 @@
+package com.mediatoolkit.pareco;
+
+import com.google.common.base.Throwables;
+import com.mediatoolkit.pareco.exceptions.ChunkDigestMismatchException;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.restclient.TransferClientException.ServerSideTransferClientException;
+import com.mediatoolkit.pareco.transfer.model.TransferTask;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Flips first byte of every chunk sent through single chunk endpoints to verify that
+ * {@link com.mediatoolkit.pareco.transfer.model.TransferOptions#isVerifyChunks()} detects corruption in transit,
+ * sendfile is disabled so that downloaded chunks pass through servlet filter
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@TestPropertySource(properties = "server.sendfile.enabled=false")
+@Import(ChunkVerificationIntegrationTest.CorruptingFilterConfig.class)
+public class ChunkVerificationIntegrationTest extends BaseIntegration {
+
+	private static final AtomicBoolean CORRUPTING = new AtomicBoolean(false);
+
+	@After
+	public void stopCorrupting() {
+		CORRUPTING.set(false);
+	}
+
+	@Test
+	public void whenChunksVerified_and_chunkCorruptedInTransit_then_transferFails() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withVerifyChunks(true)
+		);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("file.txt", "content spreading across more than two chunks of file");
+		AtomicReference<TransferContext> abortedTransfer = new AtomicReference<>();
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(DirContents.newDir())
+			.expectedDestinationContents(srcDir)
+			.injectingActions(InjectingActions.builder()
+				.onAborted((ctx, arg) -> abortedTransfer.set(ctx))
+				.build()
+			)
+			.build();
+		CORRUPTING.set(true);
+		assertThatThrownBy(() -> testDownload(transferTestCase))
+			.satisfies(ChunkVerificationIntegrationTest::assertCorruptionDetected);
+		assertThat(abortedTransfer.getAndSet(null)).isNotNull();
+
+		assertThatThrownBy(() -> testUpload(transferTestCase))
+			.satisfies(ChunkVerificationIntegrationTest::assertCorruptionDetected);
+		TransferContext uploadContext = abortedTransfer.get();
+		assertThat(uploadContext).isNotNull();
+		FilePath filePath = FilePath.of("file.txt");
+		File srcFile = new File(filePath.toAbsolutePath(uploadContext.getSrcRootDir()));
+		File destFile = new File(filePath.toAbsolutePath(uploadContext.getDstRotDir()));
+		assertThat(destFile.lastModified())
+			.as("corrupted file must not look up to date, so that its chunks are sent again on next transfer")
+			.isNotEqualTo(srcFile.lastModified());
+	}
+
+	@Test
+	public void whenChunksVerified_and_notCorrupted_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withVerifyChunks(true)
+		);
+		String content = "content spreading across more than two chunks of file";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("file.txt", content);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(DirContents.newDir())
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf(content))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	private static void assertCorruptionDetected(Throwable ex) {
+		assertThat(Throwables.getRootCause(ex))
+			.isInstanceOf(ServerSideTransferClientException.class)
+			.hasMessageContaining(ChunkDigestMismatchException.class.getName());
+	}
+
+	static class CorruptingFilterConfig {
+
+		@Bean
+		public FilterRegistrationBean<CorruptingFilter> corruptingFilter() {
+			FilterRegistrationBean<CorruptingFilter> registration = new FilterRegistrationBean<>(new CorruptingFilter());
+			registration.addUrlPatterns("/upload/file/chunk", "/download/file/chunk");
+			return registration;
+		}
+	}
+
+	static class CorruptingFilter implements Filter {
+
+		@Override
+		public void init(FilterConfig filterConfig) {
+		}
+
+		@Override
+		public void doFilter(
+			ServletRequest request, ServletResponse response, FilterChain chain
+		) throws IOException, ServletException {
+			if (!CORRUPTING.get()) {
+				chain.doFilter(request, response);
+				return;
+			}
+			chain.doFilter(
+				new CorruptingRequest((HttpServletRequest) request),
+				new CorruptingResponse((HttpServletResponse) response)
+			);
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+
+	private static class CorruptingRequest extends HttpServletRequestWrapper {
+
+		private ServletInputStream inputStream;
+
+		CorruptingRequest(HttpServletRequest request) {
+			super(request);
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			if (inputStream == null) {
+				inputStream = new CorruptingInputStream(super.getInputStream());
+			}
+			return inputStream;
+		}
+	}
+
+	private static class CorruptingInputStream extends ServletInputStream {
+
+		private final ServletInputStream delegate;
+		private boolean corrupted;
+
+		CorruptingInputStream(ServletInputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = delegate.read();
+			if (b >= 0 && !corrupted) {
+				corrupted = true;
+				return b ^ 1;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = delegate.read(b, off, len);
+			if (read > 0 && !corrupted) {
+				corrupted = true;
+				b[off] ^= 1;
+			}
+			return read;
+		}
+
+		@Override
+		public boolean isFinished() {
+			return delegate.isFinished();
+		}
+
+		@Override
+		public boolean isReady() {
+			return delegate.isReady();
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			delegate.setReadListener(readListener);
+		}
+	}
+
+	private static class CorruptingResponse extends HttpServletResponseWrapper {
+
+		private ServletOutputStream outputStream;
+
+		CorruptingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (outputStream == null) {
+				outputStream = new CorruptingOutputStream(super.getOutputStream());
+			}
+			return outputStream;
+		}
+	}
+
+	private static class CorruptingOutputStream extends ServletOutputStream {
+
+		private final ServletOutputStream delegate;
+		private boolean corrupted;
+
+		CorruptingOutputStream(ServletOutputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (!corrupted) {
+				corrupted = true;
+				b ^= 1;
+			}
+			delegate.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len > 0 && !corrupted) {
+				corrupted = true;
+				byte[] copy = b.clone();
+				copy[off] ^= 1;
+				b = copy;
+			}
+			delegate.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			delegate.flush();
+		}
+
+		@Override
+		public boolean isReady() {
+			return delegate.isReady();
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			delegate.setWriteListener(writeListener);
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.mediatoolkit.pareco;
+
+import com.mediatoolkit.pareco.restclient.HttpTransport;
+import com.mediatoolkit.pareco.transfer.model.TransferTask;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Transfers through server which also accepts HTTP/2 (h2c) on its connector
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@TestPropertySource(properties = "server.h2c.enabled=true")
+public class Http2IntegrationTest extends BaseIntegration {
+
+	@Test
+	public void multipleFiles_whenHttp2Transport_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withHttpTransport(HttpTransport.HTTP_2)
+		);
+		String content1 = "0123456789abcdefghij--ver1";
+		String content2 = "0123456789abcdefghij--ver2";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1)
+			.withDir("sub")
+			.withFile("sub/new.txt", "new file content");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("--ver1") + byteCountOf("new file content"))
+			.skippedBytes(2 * 10)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenHttp2Transport_and_streamedBodies_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withNumTransferConnections(2)
+			.withHttpTransport(HttpTransport.HTTP_2)
+			.withFramedChunks(true)
+			.withStreamingDigests(true)
+		);
+		String zeros = "\0\0\0\0";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "0123456789abcdefghij--ver1")
+			.withDir("sub")
+			.withFile("sub/sparse.img", "aaaa" + zeros + "bbbbcccc");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", "0123456789abcdefghij--ver2");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("r1") + byteCountOf("aaaabbbbcccc"))
+			.zeroBytes(byteCountOf(zeros))
+			.skippedBytes(byteCountOf("0123456789abcdefghij--ve"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenHttp2Transport_and_bundlingSmallFiles_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withNumTransferConnections(2)
+			.withHttpTransport(HttpTransport.HTTP_2)
+			.withBundleSmallFiles(true)
+		);
+		String bigContent = "0123456789abcdefghij0123456789";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver1")
+			.withFile("big.txt", bigContent)
+			.withDir("sub")
+			.withFile("sub/new.txt", "new file content")
+			.withFile("sub/empty.txt", "");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver2");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(4)
+			.transferredBytes(byteCountOf("abcdefghij--ver1") + byteCountOf(bigContent) + byteCountOf("new file content"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.mediatoolkit.pareco;
+
+import com.mediatoolkit.pareco.restclient.HttpTransport;
+import com.mediatoolkit.pareco.transfer.model.ServerInfo;
+import com.mediatoolkit.pareco.transfer.model.TransferTask;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Compares transfer times of each {@link HttpTransport} when there is latency between client and server.
+ * Latency is injected by in-JVM TCP proxy in front of test server which delays every piece of data
+ * by half of round trip time in each direction, throughput is not limited.
+ * <br>
+ * Run with: {@code mvn test -pl pareco-client -am -Dtest=HttpTransportLatencyBenchmark -DfailIfNoTests=false},
+ * optionally with {@code -Dbenchmark.rttMs}, {@code -Dbenchmark.files}, {@code -Dbenchmark.fileSizeKB},
+ * {@code -Dbenchmark.chunkSizeKB}, {@code -Dbenchmark.connections} and {@code -Dbenchmark.iterations}.
+ * Each transfer syncs files into empty destination so that every chunk needs to cross the proxy.
+ * <br>
+ * It's a tool rather than test, surefire doesn't pick it up since it isn't named as test.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Slf4j
+@TestPropertySource(properties = "server.h2c.enabled=true")
+public class HttpTransportLatencyBenchmark extends BaseIntegration {
+
+	private final int rttMs = Integer.getInteger("benchmark.rttMs", 40);
+	private final int files = Integer.getInteger("benchmark.files", 20);
+	private final int fileSizeKB = Integer.getInteger("benchmark.fileSizeKB", 64);
+	private final int chunkSizeKB = Integer.getInteger("benchmark.chunkSizeKB", 4);
+	private final int connections = Integer.getInteger("benchmark.connections", 4);
+	private final int iterations = Integer.getInteger("benchmark.iterations", 3);
+
+	@Test
+	public void compareTransportsUnderLatency() throws IOException {
+		DirContents srcDir = randomDirContents();
+		ServerInfo serverInfo = defaultTask.getServerInfo();
+		StringBuilder results = new StringBuilder(String.format(
+			"rtt: %d ms, files: %d x %d KB, chunk size: %d KB, connections: %d, best of %d iterations%n" +
+				"%-18s %12s %12s%n",
+			rttMs, files, fileSizeKB, chunkSizeKB, connections, iterations,
+			"transport", "download ms", "upload ms"
+		));
+		try (DelayingProxy proxy = DelayingProxy.start(serverInfo.getPort(), rttMs / 2)) {
+			for (HttpTransport httpTransport : HttpTransport.values()) {
+				TransferTask task = defaultTask
+					.withServerInfo(new ServerInfo(serverInfo.getHttpScheme(), serverInfo.getHost(), proxy.getPort()))
+					.withOptions(defaultTask.getOptions()
+						.withChunkSizeBytes(chunkSizeKB * 1024L)
+						.withNumTransferConnections(connections)
+						.withHttpTransport(httpTransport)
+					);
+				TransferTestCase transferTestCase = TransferTestCase.builder()
+					.transferTask(task)
+					.sourceContents(srcDir)
+					.destinationContents(DirContents.newDir())
+					.expectedDestinationContents(srcDir)
+					.transferredFiles(files)
+					.transferredBytes(files * fileSizeKB * 1024L)
+					.build();
+				long bestDownloadNanos = Long.MAX_VALUE;
+				long bestUploadNanos = Long.MAX_VALUE;
+				for (int i = 0; i < iterations; i++) {
+					long start = System.nanoTime();
+					testDownload(transferTestCase);
+					bestDownloadNanos = Math.min(bestDownloadNanos, System.nanoTime() - start);
+					start = System.nanoTime();
+					testUpload(transferTestCase);
+					bestUploadNanos = Math.min(bestUploadNanos, System.nanoTime() - start);
+				}
+				results.append(String.format(
+					"%-18s %12d %12d%n", httpTransport,
+					TimeUnit.NANOSECONDS.toMillis(bestDownloadNanos), TimeUnit.NANOSECONDS.toMillis(bestUploadNanos)
+				));
+			}
+		}
+		log.info("Transport latency benchmark results:\n{}", results);
+	}
+
+	private DirContents randomDirContents() {
+		Random random = new Random(0);
+		char[] content = new char[fileSizeKB * 1024];
+		DirContents dirContents = DirContents.newDir();
+		for (int i = 0; i < files; i++) {
+			for (int c = 0; c < content.length; c++) {
+				content[c] = (char) ('a' + random.nextInt(26));
+			}
+			dirContents = dirContents.withFile("file" + i + ".txt", new String(content));
+		}
+		return dirContents;
+	}
+
+	/**
+	 * Forwards each accepted connection to target port on loopback, every read piece of data is
+	 * written to other side only after {@code delayMs} passed since it was read
+	 */
+	@Slf4j
+	@AllArgsConstructor
+	private static class DelayingProxy implements Closeable {
+
+		private static final int BUFFER_SIZE = 64 * 1024;
+
+		private final ServerSocket serverSocket;
+		private final int targetPort;
+		private final long delayMs;
+
+		static DelayingProxy start(int targetPort, long delayMs) throws IOException {
+			ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			DelayingProxy proxy = new DelayingProxy(serverSocket, targetPort, delayMs);
+			daemon("delaying-proxy-acceptor", proxy::acceptConnections).start();
+			return proxy;
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		private void acceptConnections() {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket client = serverSocket.accept();
+					Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+					client.setTcpNoDelay(true);
+					server.setTcpNoDelay(true);
+					forward(client, server);
+					forward(server, client);
+				} catch (IOException ex) {
+					if (!serverSocket.isClosed()) {
+						log.warn("Failed to accept proxy connection", ex);
+					}
+				}
+			}
+		}
+
+		private void forward(Socket from, Socket to) {
+			BlockingQueue<DelayedData> queue = new LinkedBlockingQueue<>();
+			daemon("delaying-proxy-reader", () -> {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				try (InputStream inputStream = from.getInputStream()) {
+					int read;
+					while ((read = inputStream.read(buffer)) >= 0) {
+						queue.add(new DelayedData(System.nanoTime(), Arrays.copyOf(buffer, read)));
+					}
+				} catch (IOException ignore) {
+					//connection closed from other side
+				} finally {
+					queue.add(new DelayedData(System.nanoTime(), null));
+				}
+			}).start();
+			daemon("delaying-proxy-writer", () -> {
+				try (OutputStream outputStream = to.getOutputStream()) {
+					while (true) {
+						DelayedData delayedData = queue.take();
+						long sleepNanos = delayedData.readNanos + TimeUnit.MILLISECONDS.toNanos(delayMs) - System.nanoTime();
+						if (sleepNanos > 0) {
+							TimeUnit.NANOSECONDS.sleep(sleepNanos);
+						}
+						if (delayedData.data == null) {
+							break;
+						}
+						outputStream.write(delayedData.data);
+						outputStream.flush();
+					}
+				} catch (IOException | InterruptedException ignore) {
+					//connection closed from other side
+				} finally {
+					closeQuietly(from);
+					closeQuietly(to);
+				}
+			}).start();
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+
+		private static Thread daemon(String name, Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+		private static void closeQuietly(Socket socket) {
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+			}
+		}
+
+		@AllArgsConstructor
+		private static class DelayedData {
+
+			private final long readNanos;
+			private final byte[] data;
+		}
+	}
+
+}
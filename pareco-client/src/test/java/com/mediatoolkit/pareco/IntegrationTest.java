@@ -1,5 +1,12 @@
 package com.mediatoolkit.pareco;
 
+import com.google.common.base.Strings;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.model.CompressionType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.restclient.HttpTransport;
+import com.mediatoolkit.pareco.transfer.model.TransferOptions.ChunkMatchingMode;
+import com.mediatoolkit.pareco.transfer.model.TransferOptions.FileIntegrityOptions;
 import com.mediatoolkit.pareco.transfer.model.TransferTask;
 import java.io.File;
 import java.io.IOException;
@@ -7,7 +14,15 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import one.util.streamex.IntStreamEx;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
@@ -101,6 +116,564 @@ public class IntegrationTest extends BaseIntegration {
 		evalTransferTestCase(transferTestCase);
 	}
 
+	@Test
+	public void multipleFiles_whenPooledTransport_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withNumTransferConnections(2)
+			.withVerifyChunks(true)
+			.withHttpTransport(HttpTransport.HTTP_1_1_POOLED)
+		);
+		String content1 = "0123456789abcdefghij--ver1";
+		String content2 = "0123456789abcdefghij--ver2";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1)
+			.withDir("sub")
+			.withFile("sub/new.txt", "new file content")
+			.withFile("sub/other.txt", "other file content");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(3)
+			.transferredBytes(byteCountOf("--ver1") + byteCountOf("new file content") + byteCountOf("other file content"))
+			.skippedBytes(2 * 10)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenBundlingSmallFiles_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withNumTransferConnections(2)
+			.withHttpTransport(HttpTransport.HTTP_1_1_POOLED)
+			.withBundleSmallFiles(true)
+		);
+		String bigContent = "0123456789abcdefghij0123456789";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver1")
+			.withFile("big.txt", bigContent)
+			.withDir("sub")
+			.withFile("sub/new.txt", "new file content")
+			.withFile("sub/empty.txt", "");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver2");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(4)
+			.transferredBytes(byteCountOf("abcdefghij--ver1") + byteCountOf(bigContent) + byteCountOf("new file content"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenZstdCompression_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(100)
+			.withVerifyChunks(true)
+			.withCompression(CompressionType.ZSTD)
+			.withCompressionLevel(9)
+		);
+		String compressible = Strings.repeat("compressible ", 20);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver1")
+			.withDir("sub")
+			.withFile("sub/compressible.txt", compressible);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver2");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("abcdefghij--ver1") + byteCountOf(compressible))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenSnappyCompression_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(100)
+			.withNumTransferConnections(2)
+			.withHttpTransport(HttpTransport.HTTP_1_1_POOLED)
+			.withCompression(CompressionType.SNAPPY)
+		);
+		String compressible = Strings.repeat("compressible ", 20);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "abcdefghij--ver1")
+			.withFile("compressible.txt", compressible);
+		DirContents destDir = DirContents.newDir();
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("abcdefghij--ver1") + byteCountOf(compressible))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleFiles_whenFramedChunks_then_filesAreSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withNumTransferConnections(2)
+			.withVerifyChunks(true)
+			.withHttpTransport(HttpTransport.HTTP_1_1_POOLED)
+			.withFramedChunks(true)
+		);
+		String zeros = "\0\0\0\0";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", "0123456789abcdefghij--ver1")
+			.withDir("sub")
+			.withFile("sub/sparse.img", "aaaa" + zeros + "bbbbcccc");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", "0123456789abcdefghij--ver2");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("r1") + byteCountOf("aaaabbbbcccc"))
+			.zeroBytes(byteCountOf(zeros))
+			.skippedBytes(byteCountOf("0123456789abcdefghij--ve"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithInsertedByte_whenRollingMatching_then_onlyInsertedByteIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withChunkMatchingMode(ChunkMatchingMode.ROLLING)
+		);
+		String content1 = "X0123456789abcdefghij--ver1";
+		String content2 = "0123456789abcdefghij--ver1";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("X"))
+			.skippedBytes(byteCountOf(content2))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingEqualFile_whenRollingMatching_then_fileIsSkipped() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkMatchingMode(ChunkMatchingMode.ROLLING)
+		);
+		String content = "dummy content which will be skipped";
+		DirContents dir = DirContents.newDir()
+			.withFile("forSkip.txt", content);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(dir)
+			.destinationContents(dir)
+			.expectedDestinationContents(dir)
+			.skippedFiles(1)
+			.skippedBytes(byteCountOf(content))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedChunk_whenDigestTreeUsed_then_onlyChangedChunkIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withDigestTreeFanOut(2)
+		);
+		String content1 = "aaaabbbbccccXXXXeeeeffffggg";
+		String content2 = "aaaabbbbccccddddeeeeffffggg";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("XXXX"))
+			.skippedBytes(byteCountOf("aaaabbbbcccceeeeffffggg"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedChunk_whenStreamingDigests_then_onlyChangedChunkIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withStreamingDigests(true)
+		);
+		String content1 = "aaaabbbbccccXXXXeeeeffffggg";
+		String content2 = "aaaabbbbccccddddeeeeffffggg";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("XXXX"))
+			.skippedBytes(byteCountOf("aaaabbbbcccceeeeffffggg"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingLongerFile_whenStreamingDigests_then_fileIsTruncated() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withStreamingDigests(true)
+		);
+		String content1 = "aaaabbbbcc";
+		String content2 = "aaaabbbbccccddddeeee";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("cc"))
+			.skippedBytes(byteCountOf("aaaabbbb"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedChunk_whenDigestPrefixesUsed_then_onlyChangedChunkIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withDigestPrefixBytes(8)
+			.withFileIntegrityOptions(FileIntegrityOptions.metadataAndDigest(DigestType.MD5))
+		);
+		String content1 = "aaaabbbbccccXXXXeeeeffffggg";
+		String content2 = "aaaabbbbccccddddeeeeffffggg";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("XXXX"))
+			.skippedBytes(byteCountOf("aaaabbbbcccceeeeffffggg"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedChunks_whenSubChunksUsed_then_onlyChangedBlocksAreTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(16)
+			.withSubChunkBytes(4)
+			.withFileIntegrityOptions(FileIntegrityOptions.metadataAndDigest(DigestType.MD5))
+		);
+		String content1 = "aaaabbbbXXXXddddeeeeffffggggYYhhii";
+		String content2 = "aaaabbbbccccddddeeeeffffgggghhhhii";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("XXXXYYhh"))
+			.skippedBytes(byteCountOf("aaaabbbbddddeeeeffffggggii"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingAppendedFile_whenDetectingAppends_then_onlyTailIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withDetectAppends(true)
+		);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("app.log", "aaaabbbbccXXXXXX");
+		DirContents destDir = DirContents.newDir()
+			.withFile("app.log", "aaaabbbbcc");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("XXXXXX"))
+			.skippedBytes(byteCountOf("aaaabbbbcc"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void fileWithZeroChunks_then_zeroChunksAreNotTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withVerifyChunks(true)
+		);
+		String zeros = "\0\0\0\0\0\0\0\0";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("sparse.img", "aaaa" + zeros + "bbbb\0\0")
+			.withFile("overwritten.img", "cccc" + zeros);
+		DirContents destDir = DirContents.newDir()
+			.withFile("overwritten.img", "ccccXXXXYYYY");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("aaaabbbb"))
+			.zeroBytes(byteCountOf(zeros + "\0\0" + zeros))
+			.skippedBytes(byteCountOf("cccc"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleSmallFilesWithChangedChunks_whenDigestPrefixesUsed_then_onlyChangedChunksAreTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withDigestPrefixBytes(8)
+			.withFileIntegrityOptions(FileIntegrityOptions.metadataAndDigest(DigestType.MD5))
+		);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("first.txt", "aaaaaaaaaaXXXXXXXXXXcc")
+			.withFile("second.txt", "YYYYYYYYYYbbbbbbbbbbcc")
+			.withFile("third.txt", "new file content");
+		DirContents destDir = DirContents.newDir()
+			.withFile("first.txt", "aaaaaaaaaabbbbbbbbbbcc")
+			.withFile("second.txt", "aaaaaaaaaabbbbbbbbbbcc");
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(3)
+			.transferredBytes(byteCountOf("XXXXXXXXXXYYYYYYYYYYnew file content"))
+			.skippedBytes(2 * byteCountOf("aaaaaaaaaacc"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedChunk_whenVerifyingChunks_then_onlyChangedChunkIsTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withVerifyChunks(true)
+			.withFileIntegrityOptions(FileIntegrityOptions.metadataAndDigest(DigestType.MD5))
+		);
+		String content1 = "aaaabbbbccccXXXXeeeeffffggg";
+		String content2 = "aaaabbbbccccddddeeeeffffggg";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1)
+			.withFile("new.txt", "new file content");
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("XXXX") + byteCountOf("new file content"))
+			.skippedBytes(byteCountOf("aaaabbbbcccceeeeffffggg"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void renamedAndEditedFiles_whenReusingDestinationChunks_then_chunksOfOldFileAreCopied() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withReuseDestinationChunks(true)
+			.withDeleteUnexpected(true)
+		);
+		String content = "aaaaaaaaaaaaaaaaaaaabbbbbbbbbbbbbbbbbbbbccccc";
+		String editedContent = "aaaaaaaaaaaaaaaaaaaabbbbbbbbbbbbbbbbbbbbXXXXX";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("renamed.txt", content)
+			.withFile("edited.txt", editedContent);
+		DirContents destDir = DirContents.newDir()
+			.withFile("old.txt", content);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(byteCountOf("XXXXX"))
+			.skippedBytes(byteCountOf(content) + byteCountOf(editedContent) - byteCountOf("XXXXX"))
+			.deletedFiles(1)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void renamedFile_whenUnexpectedFilesLimitReached_then_chunksAreTransferred() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withReuseDestinationChunks(true)
+			.withDeleteUnexpected(true)
+			.withUnexpectedFilesLimits(UnexpectedFilesLimits.of(0, 1000))
+		);
+		String content = "aaaaaaaaaaaaaaaaaaaabbbbbbbbbbbbbbbbbbbbccccc";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("renamed.txt", content);
+		DirContents destDir = DirContents.newDir()
+			.withFile("old.txt", content);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf(content))
+			.deletedFiles(1)
+			.build();
+		//limit is applied by client only when local directory is destination, server has its own limit
+		testDownload(transferTestCase);
+	}
+
+	@Test
+	public void movedDirectory_whenDetectingMoves_then_filesAreMovedOnDestination() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withDetectMoves(true)
+			.withDeleteUnexpected(true)
+		);
+		//round to whole second because some filesystems do not support millisecond precision
+		long lastModified = 1000 * (System.currentTimeMillis() / 1000 - TimeUnit.DAYS.toSeconds(1));
+		String content = "content of file which got moved into other directory";
+		DirContents srcDir = DirContents.newDir()
+			.withDir("new")
+			.withFile("new/moved.txt", content, lastModified, (PosixFilePermission[]) null);
+		DirContents destDir = DirContents.newDir()
+			.withDir("old")
+			.withFile("old/moved.txt", content, lastModified, (PosixFilePermission[]) null);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			//unexpected directory is emptied by deletion but directory itself is kept
+			.expectedDestinationContents(srcDir.withDir("old"))
+			.movedFiles(1)
+			.skippedFiles(1)
+			.skippedBytes(byteCountOf(content))
+			.deletedDirs(1)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void renamedFile_whenDetectingMovesWithoutDeletingUnexpected_then_fileIsCopiedOnDestination() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions().withDetectMoves(true));
+		long lastModified = 1000 * (System.currentTimeMillis() / 1000 - TimeUnit.DAYS.toSeconds(1));
+		String content = "content of file which got renamed";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("renamed.txt", content, lastModified, (PosixFilePermission[]) null)
+			.withFile("other.txt", "same size, other content!!!!!!!!!");
+		DirContents destDir = DirContents.newDir()
+			.withFile("original.txt", content, lastModified, (PosixFilePermission[]) null);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(destDir.withFile("renamed.txt", content).withFile("other.txt", "same size, other content!!!!!!!!!"))
+			.movedFiles(1)
+			.skippedFiles(1)
+			.skippedBytes(byteCountOf(content))
+			.transferredFiles(1)
+			.transferredBytes(byteCountOf("same size, other content!!!!!!!!!"))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void multipleBigFiles_whenAnalyzingAhead_then_eachFileIsSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(10)
+			.withLookAhead(2)
+		);
+		String changedContent = "aaaaaaaaaabbbbbbbbbbccccccccccddddddddddeeeeeeeeee";
+		String oldContent = "aaaaaaaaaabbbbbbbbbbXXXXXXXXXXddddddddddeeeeeeeeee";
+		String equalContent = "content of big file which is equal on both sides";
+		String newContent = "content of big file which exists only on source side";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("changed.txt", changedContent)
+			.withFile("equal.txt", equalContent)
+			.withFile("new.txt", newContent);
+		DirContents destDir = DirContents.newDir()
+			.withFile("changed.txt", oldContent)
+			.withFile("equal.txt", equalContent);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(2)
+			.transferredBytes(10 + byteCountOf(newContent))
+			.skippedFiles(1)
+			.skippedBytes(40 + byteCountOf(equalContent))
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
+	@Test
+	public void singleExistingFileWithChangedPrefix_whenContentDefinedMatching_then_contentIsSynced() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(8)
+			.withChunkMatchingMode(ChunkMatchingMode.CONTENT_DEFINED)
+		);
+		String content1 = "new prefix then some content which is the same in both versions of the file";
+		String content2 = "old one, then some content which is the same in both versions of the file";
+		DirContents srcDir = DirContents.newDir()
+			.withFile("dummy.txt", content1);
+		DirContents destDir = DirContents.newDir()
+			.withFile("dummy.txt", content2);
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(destDir)
+			.expectedDestinationContents(srcDir)
+			.transferredFiles(1)
+			.transferredBytes(28)
+			.skippedBytes(47)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
 	@Test
 	public void singleExistingEqualFile_then_fileIsSkipped() {
 		String content = "dummy content which will be skipped";
@@ -201,6 +774,39 @@ public class IntegrationTest extends BaseIntegration {
 		evalTransferTestCase(transferTestCase);
 	}
 
+	@Test
+	public void fileDeletedDuringFramedChunksTransfer() {
+		TransferTask task = defaultTask.withOptions(defaultTask.getOptions()
+			.withChunkSizeBytes(4)
+			.withHttpTransport(HttpTransport.HTTP_1_1_POOLED)
+			.withFramedChunks(true)
+		);
+		DirContents srcDir = DirContents.newDir()
+			.withFile("no_deletion", "content")
+			.withFile("to_be_deleted", IntStreamEx.range(30).mapToObj(i -> "x").joining());
+		TransferTestCase transferTestCase = TransferTestCase.builder()
+			.transferTask(task)
+			.sourceContents(srcDir)
+			.destinationContents(DirContents.newDir())
+			.expectedDestinationContents(DirContents.newDir()
+				.withFile("no_deletion", "content")
+			)
+			.transferredFiles(2)
+			.deletedConcurrently(1)
+			.transferredBytes(7)
+			.injectingActions(InjectingActions.builder()
+				.onFileStarted((ctx, filePath) -> {
+					//deleted once transfer of file is initialized so that chunks are requested
+					if (filePath.getFileName().equals("to_be_deleted")) {
+						ctx.deleteSrcFiles("to_be_deleted");
+					}
+				})
+				.build()
+			)
+			.build();
+		evalTransferTestCase(transferTestCase);
+	}
+
 	@Test
 	public void filesDeletedDuringTransfer() {
 		TransferTask task = defaultTask.withOptions(defaultTask.getOptions().withChunkSizeBytes(10));
@@ -226,4 +832,35 @@ public class IntegrationTest extends BaseIntegration {
 			.build();
 		evalTransferTestCase(transferTestCase);
 	}
+
+	@Test
+	public void invalidBlockSize_then_badRequest() {
+		RestTemplate restTemplate = new RestTemplate();
+		for (String mode : new String[]{"download", "upload"}) {
+			for (long blockSizeBytes : new long[]{0, -1}) {
+				String url = defaultTask.getServerInfo().toUrl() + "/" + mode + "/file/digest/blocks" +
+					"?" + mode + "Session=none&relativeDirectory=&fileName=file&digestType=CRC_32" +
+					"&blockSizeBytes=" + blockSizeBytes;
+				HttpHeaders headers = new HttpHeaders();
+				headers.setContentType(MediaType.APPLICATION_JSON);
+				assertThatThrownBy(() -> restTemplate.postForObject(url, new HttpEntity<>("[]", headers), String.class))
+					.isInstanceOfSatisfying(HttpClientErrorException.class, ex -> assertThat(ex.getStatusCode())
+						.isEqualTo(HttpStatus.BAD_REQUEST)
+					);
+			}
+		}
+	}
+
+	@Test
+	public void invalidCompressionLevel_then_badRequest() {
+		RestTemplate restTemplate = new RestTemplate();
+		for (int compressionLevel : new int[]{0, -1, 23}) {
+			String url = defaultTask.getServerInfo().toUrl() + "/download/file/chunk" +
+				"?fileDownloadSession=none&offsetBytes=0&sizeBytes=1&compressionLevel=" + compressionLevel;
+			assertThatThrownBy(() -> restTemplate.getForObject(url, String.class))
+				.isInstanceOfSatisfying(HttpClientErrorException.class, ex -> assertThat(ex.getStatusCode())
+					.isEqualTo(HttpStatus.BAD_REQUEST)
+				);
+		}
+	}
 }
@@ -0,0 +1,14 @@
+package com.mediatoolkit.pareco;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs all of {@link IntegrationTest} against server which transfers chunks through non-blocking servlets
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@TestPropertySource(properties = "server.nonblocking.enabled=true")
+public class NonBlockingIntegrationTest extends IntegrationTest {
+
+}
@@ -0,0 +1,18 @@
+package com.mediatoolkit.pareco;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs all of {@link IntegrationTest} against server which transfers chunks through non-blocking servlets
+ * without sendfile, so that downloaded chunks are written piece by piece as socket becomes ready
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@TestPropertySource(properties = {
+	"server.nonblocking.enabled=true",
+	"server.sendfile.enabled=false"
+})
+public class NonBlockingWithoutSendFileIntegrationTest extends IntegrationTest {
+
+}
@@ -0,0 +1,59 @@
+package com.mediatoolkit.pareco.transfer;
+
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import one.util.streamex.StreamEx;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+public class FileBundlerTest {
+
+	private final ExecutorService transferService = Executors.newFixedThreadPool(2);
+	private final List<List<FileMetadata>> bundles = Collections.synchronizedList(new ArrayList<>());
+
+	@After
+	public void tearDown() throws InterruptedException {
+		transferService.shutdownNow();
+		transferService.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testBundleIsSentWhenReachingMaxSize() {
+		FileBundler fileBundler = new FileBundler(100, 1000, transferService, bundles::add);
+		for (int i = 0; i < 5; i++) {
+			fileBundler.add(fileOf("file" + i, 40));
+		}
+		fileBundler.awaitBundles();
+		assertThat(bundleSizes()).containsExactlyInAnyOrder(3, 2);
+	}
+
+	@Test
+	public void testBundleIsSentWhenReachingMaxFiles() {
+		FileBundler fileBundler = new FileBundler(100, 3, transferService, bundles::add);
+		for (int i = 0; i < 7; i++) {
+			fileBundler.add(fileOf("empty" + i, 0));
+		}
+		fileBundler.awaitBundles();
+		assertThat(bundleSizes()).containsExactlyInAnyOrder(3, 3, 1);
+		assertThat(StreamEx.of(bundles).flatMap(List::stream).map(FileMetadata::getFilePath).toSet()).hasSize(7);
+	}
+
+	private List<Integer> bundleSizes() {
+		return StreamEx.of(bundles).map(List::size).toList();
+	}
+
+	private static FileMetadata fileOf(String fileName, long sizeBytes) {
+		return FileMetadata.builder()
+			.filePath(FilePath.of(fileName))
+			.fileSizeBytes(sizeBytes)
+			.build();
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.mediatoolkit.pareco.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import one.util.streamex.IntStreamEx;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.After;
+import org.junit.Test;
+
+public class LookAheadSchedulerTest {
+
+	private final LookAheadScheduler scheduler = new LookAheadScheduler();
+	private final ExecutorService analysisService = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() throws InterruptedException {
+		analysisService.shutdownNow();
+		analysisService.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testItemsAreExecutedInOrderWhenLaterAnalysesFinishFirst() {
+		List<Integer> items = IntStreamEx.range(10).boxed().toList();
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+		scheduler.runPipelined(
+			items, 3, analysisService,
+			item -> {
+				//earlier items take longer to analyze
+				sleep(5 * (10 - item));
+				return "analyzed-" + item;
+			},
+			(item, result) -> {
+				assertThat(result).isEqualTo("analyzed-" + item);
+				executed.add(item);
+			}
+		);
+		assertThat(executed).isEqualTo(items);
+	}
+
+	@Test
+	public void testAnalysesAheadOfExecutionAreBounded() {
+		int lookAhead = 2;
+		List<Integer> items = IntStreamEx.range(20).boxed().toList();
+		AtomicInteger startedAnalyses = new AtomicInteger();
+		AtomicInteger executed = new AtomicInteger();
+		AtomicInteger maxAhead = new AtomicInteger();
+		scheduler.runPipelined(
+			items, lookAhead, analysisService,
+			item -> {
+				int ahead = startedAnalyses.incrementAndGet() - executed.get();
+				maxAhead.accumulateAndGet(ahead, Math::max);
+				return item;
+			},
+			(item, result) -> {
+				//slow execution gives analyses time to run ahead as far as allowed
+				sleep(5);
+				executed.incrementAndGet();
+			}
+		);
+		assertThat(executed.get()).isEqualTo(items.size());
+		//currently executing item plus look ahead ones
+		assertThat(maxAhead.get()).isLessThanOrEqualTo(lookAhead + 1);
+		assertThat(maxAhead.get()).isGreaterThan(1);
+	}
+
+	@Test
+	public void testWithoutLookAheadAnalysisRunsInCallingThreadBeforeExecution() {
+		Thread callingThread = Thread.currentThread();
+		List<String> events = new ArrayList<>();
+		scheduler.runPipelined(
+			IntStreamEx.range(3).boxed().toList(), 0, analysisService,
+			item -> {
+				assertThat(Thread.currentThread()).isSameAs(callingThread);
+				events.add("analyze-" + item);
+				return item;
+			},
+			(item, result) -> events.add("execute-" + item)
+		);
+		assertThat(events).containsExactly(
+			"analyze-0", "execute-0", "analyze-1", "execute-1", "analyze-2", "execute-2"
+		);
+	}
+
+	@Test
+	public void testAnalysisFailureIsThrownAndLaterItemsAreNotExecuted() {
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+		assertThatThrownBy(() -> scheduler.runPipelined(
+			IntStreamEx.range(10).boxed().toList(), 2, analysisService,
+			item -> {
+				if (item == 3) {
+					throw new IllegalStateException("analysis failed");
+				}
+				return item;
+			},
+			(item, result) -> executed.add(item)
+		))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("analysis failed");
+		assertThat(executed).containsExactly(0, 1, 2);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
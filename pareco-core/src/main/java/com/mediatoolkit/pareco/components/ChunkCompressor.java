@@ -0,0 +1,84 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.CompressionType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import lombok.Getter;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Compresses chunk content on its way to wire. Beginning of content is sampled first and if sample doesn't
+ * compress well (i.e. content is already compressed, encrypted or random) content is written raw,
+ * so that no CPU time is wasted on compression which doesn't reduce wire bytes.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class ChunkCompressor {
+
+	public static final int SAMPLE_SIZE_BYTES = 64 * 1024;
+	public static final double MAX_SAMPLE_COMPRESSION_RATIO = 0.9;
+
+	@Getter
+	private final CompressionType compressionType;
+	private final int level;
+	private final InputStream content;
+
+	private ChunkCompressor(CompressionType compressionType, int level, InputStream content) {
+		this.compressionType = compressionType;
+		this.level = level;
+		this.content = content;
+	}
+
+	/**
+	 * Reads sample from beginning of {@code content} and decides if content is worth compressing
+	 *
+	 * @return compressor which writes whole {@code content}, with {@link #getCompressionType()} being
+	 * {@link CompressionType#NONE} if sample turned out to be incompressible
+	 */
+	public static ChunkCompressor sample(
+		InputStream content, CompressionType compressionType, int level
+	) throws IOException {
+		if (compressionType == CompressionType.NONE) {
+			return new ChunkCompressor(CompressionType.NONE, level, content);
+		}
+		byte[] sample = new byte[SAMPLE_SIZE_BYTES];
+		int sampleSize = IOUtils.read(content, sample);
+		InputStream wholeContent = new SequenceInputStream(
+			new ByteArrayInputStream(sample, 0, sampleSize), content
+		);
+		boolean compressible = sampleSize > 0 &&
+			compressionType.compressedSize(sample, sampleSize, level) <= sampleSize * MAX_SAMPLE_COMPRESSION_RATIO;
+		return new ChunkCompressor(compressible ? compressionType : CompressionType.NONE, level, wholeContent);
+	}
+
+	/**
+	 * Writes whole content, compressed if it was found compressible, leaving {@code outputStream} open
+	 *
+	 * @return number of bytes written into {@code outputStream}
+	 */
+	public long writeTo(OutputStream outputStream) throws IOException {
+		if (compressionType == CompressionType.NONE) {
+			return IOUtils.copyLarge(content, outputStream);
+		}
+		CountingOutputStream countingOutputStream = new CountingOutputStream(new CloseShieldOutputStream(outputStream));
+		try (OutputStream compressingOutputStream = compressionType.compressing(countingOutputStream, level)) {
+			IOUtils.copyLarge(content, compressingOutputStream);
+		}
+		return countingOutputStream.getByteCount();
+	}
+
+	/**
+	 * Receives sampled compressor, i.e. to announce chosen compression before writing content
+	 */
+	public interface Sink {
+
+		void write(ChunkCompressor chunkCompressor) throws IOException;
+	}
+
+}
@@ -0,0 +1,16 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.IOException;
+
+/**
+ * Receives chunk digests one by one as they get calculated
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 10/11/2018
+ */
+@FunctionalInterface
+public interface ChunkDigestListener {
+
+	void chunkDigested(ChunkDigest chunkDigest) throws IOException;
+}
@@ -0,0 +1,47 @@
+package com.mediatoolkit.pareco.components;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Newline delimited JSON (NDJSON) stream of {@link ChunkDigest}s, each chunk digest
+ * is written and flushed as soon as it's calculated so that receiver can process it
+ * while rest of file is still being hashed.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 10/11/2018
+ */
+public class ChunkDigestStream {
+
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final ObjectWriter WRITER = OBJECT_MAPPER.writerFor(ChunkDigest.class);
+	private static final ObjectReader READER = OBJECT_MAPPER.readerFor(ChunkDigest.class);
+	private static final byte NEW_LINE = '\n';
+
+	private ChunkDigestStream() {
+	}
+
+	public static ChunkDigestListener writerTo(OutputStream outputStream) {
+		return chunkDigest -> {
+			outputStream.write(WRITER.writeValueAsBytes(chunkDigest));
+			outputStream.write(NEW_LINE);
+			outputStream.flush();
+		};
+	}
+
+	public static void readFrom(InputStream inputStream, ChunkDigestListener listener) throws IOException {
+		try (MappingIterator<ChunkDigest> iterator = READER.readValues(inputStream)) {
+			while (iterator.hasNextValue()) {
+				listener.chunkDigested(iterator.nextValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives chunks read from {@link ChunkFrameStream} one by one, in order they were written
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@FunctionalInterface
+public interface ChunkFrameListener {
+
+	/**
+	 * @param fileSession file transfer session chunk belongs to
+	 * @param chunkInfo   range of file which chunk covers
+	 * @param content     stream of exactly {@code chunkInfo.getSizeBytes()} bytes which is valid only
+	 *                    during this call, {@code null} for chunk consisting only of zero bytes, see {@link ZeroChunks}
+	 */
+	void chunkReceived(String fileSession, ChunkInfo chunkInfo, InputStream content) throws IOException;
+
+	/**
+	 * Called when sender found file deleted or truncated, no more frames follow
+	 *
+	 * @param chunkInfo first chunk which couldn't be sent
+	 */
+	default void fileDeleted(String fileSession, ChunkInfo chunkInfo) throws IOException {
+		throw new IOException("File of session " + fileSession + " got deleted before sending chunk " + chunkInfo);
+	}
+}
@@ -0,0 +1,150 @@
+package com.mediatoolkit.pareco.components;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Binary stream of chunk frames, so that many chunks are transferred through single request
+ * instead of one request per chunk. Each frame consists of file session (modified UTF-8),
+ * offset and size (longs), frame type (byte) and, for {@link #DATA} frame, size bytes of chunk content.
+ * Stream ends with end of input or with {@link #DELETED} frame when file can't be sent anymore.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class ChunkFrameStream {
+
+	public static final String MEDIA_TYPE = "application/x-pareco-chunk-frames";
+
+	static final byte DATA = 0;
+	static final byte ZERO = 1;
+	static final byte DELETED = 2;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final ObjectWriter REQUEST_WRITER = OBJECT_MAPPER.writerFor(new TypeReference<List<ChunkInfo>>() {
+	});
+
+	private ChunkFrameStream() {
+	}
+
+	/**
+	 * Writes JSON body of request for chunks to be sent as frames
+	 */
+	public static void writeChunkInfos(List<ChunkInfo> chunkInfos, OutputStream outputStream) throws IOException {
+		REQUEST_WRITER.writeValue(outputStream, chunkInfos);
+	}
+
+	/**
+	 * Writes frame with chunk's content
+	 *
+	 * @throws InputStreamSizeMissMatchException if {@code content} has less bytes than chunk's size,
+	 *                                           stream is then left with incomplete frame
+	 */
+	public static void writeChunk(
+		DataOutputStream outputStream, String fileSession, ChunkInfo chunkInfo, InputStream content
+	) throws IOException {
+		writeChunk(
+			outputStream, fileSession, chunkInfo,
+			contentOutputStream -> IOUtils.copyLarge(content, contentOutputStream, 0, chunkInfo.getSizeBytes())
+		);
+	}
+
+	/**
+	 * Writes frame with chunk's content written by {@code contentWriter}
+	 *
+	 * @throws InputStreamSizeMissMatchException if {@code contentWriter} doesn't write exactly chunk's size
+	 *                                           bytes, stream is then left with invalid frame
+	 */
+	public static void writeChunk(
+		DataOutputStream outputStream, String fileSession, ChunkInfo chunkInfo, ContentWriter contentWriter
+	) throws IOException {
+		writeHeader(outputStream, fileSession, chunkInfo, DATA);
+		CountingOutputStream contentOutputStream = new CountingOutputStream(new CloseShieldOutputStream(outputStream));
+		contentWriter.writeContent(contentOutputStream);
+		if (contentOutputStream.getByteCount() != chunkInfo.getSizeBytes()) {
+			throw new InputStreamSizeMissMatchException(String.format(
+				"Chunk is expected to have %d bytes, but written %d bytes",
+				chunkInfo.getSizeBytes(), contentOutputStream.getByteCount()
+			));
+		}
+	}
+
+	/**
+	 * Writes frame of chunk which consists only of zero bytes, without its content
+	 */
+	public static void writeZeroChunk(
+		DataOutputStream outputStream, String fileSession, ChunkInfo chunkInfo
+	) throws IOException {
+		writeHeader(outputStream, fileSession, chunkInfo, ZERO);
+	}
+
+	/**
+	 * Writes frame telling that file got deleted or truncated so that chunk and the ones after it
+	 * can't be sent, response is already committed by then so this replaces error status
+	 */
+	public static void writeFileDeleted(
+		DataOutputStream outputStream, String fileSession, ChunkInfo chunkInfo
+	) throws IOException {
+		writeHeader(outputStream, fileSession, chunkInfo, DELETED);
+	}
+
+	private static void writeHeader(
+		DataOutputStream outputStream, String fileSession, ChunkInfo chunkInfo, byte type
+	) throws IOException {
+		outputStream.writeUTF(fileSession);
+		outputStream.writeLong(chunkInfo.getOffsetBytes());
+		outputStream.writeLong(chunkInfo.getSizeBytes());
+		outputStream.writeByte(type);
+	}
+
+	public static void readFrom(InputStream inputStream, ChunkFrameListener listener) throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(inputStream);
+		while (true) {
+			String fileSession;
+			try {
+				fileSession = dataInputStream.readUTF();
+			} catch (EOFException endOfFrames) {
+				return;
+			}
+			ChunkInfo chunkInfo = ChunkInfo.of(dataInputStream.readLong(), dataInputStream.readLong());
+			byte type = dataInputStream.readByte();
+			switch (type) {
+				case ZERO:
+					listener.chunkReceived(fileSession, chunkInfo, null);
+					break;
+				case DELETED:
+					listener.fileDeleted(fileSession, chunkInfo);
+					return;
+				case DATA:
+					BoundedInputStream content = new BoundedInputStream(dataInputStream, chunkInfo.getSizeBytes());
+					content.setPropagateClose(false);
+					listener.chunkReceived(fileSession, chunkInfo, content);
+					//skip what listener didn't read so that next frame is aligned
+					IOUtils.skip(content, Long.MAX_VALUE);
+					break;
+				default:
+					throw new IOException("Unknown chunk frame type: " + type);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface ContentWriter {
+
+		void writeContent(OutputStream outputStream) throws IOException;
+	}
+}
@@ -23,4 +23,18 @@ public class ChunkInfosGenerator {
 		return chunkInfos;
 	}
 
+	/**
+	 * Content-defined chunks are generated while reading file content, this creates
+	 * chunker with bounds derived from {@code avgChunkSizeBytes}:
+	 * minimal chunk is quarter and maximal chunk is four times of average chunk size.
+	 *
+	 * @param avgChunkSizeBytes desired average chunk size
+	 * @return new chunker instance
+	 */
+	public ContentDefinedChunker newContentDefinedChunker(long avgChunkSizeBytes) {
+		long minSize = Math.max(1, avgChunkSizeBytes / 4);
+		long maxSize = 4 * avgChunkSizeBytes;
+		return new ContentDefinedChunker(minSize, avgChunkSizeBytes, maxSize);
+	}
+
 }
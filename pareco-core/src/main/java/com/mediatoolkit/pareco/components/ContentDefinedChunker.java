@@ -0,0 +1,105 @@
+package com.mediatoolkit.pareco.components;
+
+import java.util.Random;
+
+/**
+ * Content-defined chunking engine based on FastCDC gear hash.
+ * <br>
+ * Gear hash of last ~64 bytes is maintained while feeding bytes, and boundary is declared when
+ * hash has enough zero bits. Boundaries depend only on local content, so insertion or deletion
+ * of bytes shifts boundaries only in neighbourhood of the modification and all other chunks
+ * stay the same.
+ * <br>
+ * Chunk sizes are bounded by {@code minSize} and {@code maxSize}. First {@code minSize} bytes of chunk
+ * are not hashed (cut-point skipping). Normalized chunking is used: stricter mask is used before
+ * chunk reaches {@code avgSize} and looser one after, so chunk sizes concentrate around {@code avgSize}.
+ * <br>
+ * Instance is stateful and not thread safe.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 06/11/2018
+ */
+public class ContentDefinedChunker {
+
+	/**
+	 * Fixed seed so that both sides of transfer produce the same gear table
+	 */
+	private static final long GEAR_SEED = 0x5DEECE66DL;
+	private static final long[] GEAR = gearTable();
+
+	private final long minSize;
+	private final long avgSize;
+	private final long maxSize;
+	private final long maskS;
+	private final long maskL;
+
+	private long hash;
+	private long currentSize;
+
+	public ContentDefinedChunker(long minSize, long avgSize, long maxSize) {
+		if (minSize <= 0 || minSize > avgSize || avgSize > maxSize) {
+			throw new IllegalArgumentException(String.format(
+				"Expected 0 < min <= avg <= max, got min=%d avg=%d max=%d", minSize, avgSize, maxSize
+			));
+		}
+		this.minSize = minSize;
+		this.avgSize = avgSize;
+		this.maxSize = maxSize;
+		int bits = 63 - Long.numberOfLeadingZeros(avgSize);
+		this.maskS = highBitsMask(bits + 1);
+		this.maskL = highBitsMask(Math.max(bits - 1, 0));
+	}
+
+	private static long highBitsMask(int numBits) {
+		if (numBits == 0) {
+			return 0;
+		}
+		return -1L << (64 - Math.min(numBits, 63));
+	}
+
+	private static long[] gearTable() {
+		Random random = new Random(GEAR_SEED);
+		long[] gear = new long[256];
+		for (int i = 0; i < gear.length; i++) {
+			gear[i] = random.nextLong();
+		}
+		return gear;
+	}
+
+	/**
+	 * Feed bytes {@code buf[off ... off + len)} and search for next chunk boundary.
+	 *
+	 * @return index in {@code buf} right after the end of current chunk if boundary is found,
+	 * in that case chunker is reset for next chunk and bytes after returned index are not consumed;
+	 * or {@code -1} if no boundary has been found and all bytes were consumed
+	 */
+	public int nextBoundary(byte[] buf, int off, int len) {
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			currentSize++;
+			if (currentSize <= minSize) {
+				continue;
+			}
+			hash = (hash << 1) + GEAR[buf[i] & 0xFF];
+			long mask = currentSize < avgSize ? maskS : maskL;
+			if ((hash & mask) == 0 || currentSize >= maxSize) {
+				reset();
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of bytes consumed since last boundary
+	 */
+	public long pendingSize() {
+		return currentSize;
+	}
+
+	public void reset() {
+		hash = 0;
+		currentSize = 0;
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.HashCode;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import one.util.streamex.StreamEx;
+
+/**
+ * Index of chunks which are present anywhere in destination directory tree, built from digests of
+ * destination files known during transfer session. Used to copy chunk from other destination file
+ * (i.e. renamed or copied file) instead of transferring it.
+ * <p>
+ * Indexed files may change during session, so each chunk is verified against its digest
+ * when it's being copied and chunks which don't match are left to be transferred.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 14/11/2018
+ */
+@Slf4j
+public class DestinationChunkIndex {
+
+	public static final int DEFAULT_MAX_UNEXPECTED_FILES = 1000;
+	public static final long DEFAULT_MAX_UNEXPECTED_BYTES = 256L * 1024 * 1024;
+
+	private final String rootDirectory;
+	private final Map<DigestType, Map<HashCode, ChunkLocation>> chunkLocations = new HashMap<>();
+
+	public DestinationChunkIndex(String rootDirectory) {
+		this.rootDirectory = rootDirectory;
+	}
+
+	@Value(staticConstructor = "of")
+	public static class ChunkLocation {
+
+		private FilePath filePath;
+		private ChunkInfo chunkInfo;
+	}
+
+	/**
+	 * Limits of how many unexpected files get digested for index, digesting is done on first
+	 * chunk reuse request and all chunk digests are kept in memory until session ends
+	 */
+	@Value(staticConstructor = "of")
+	public static class UnexpectedFilesLimits {
+
+		public static final UnexpectedFilesLimits DEFAULT = of(DEFAULT_MAX_UNEXPECTED_FILES, DEFAULT_MAX_UNEXPECTED_BYTES);
+
+		private int maxFiles;
+		private long maxBytes;
+	}
+
+	/**
+	 * Picks which of destination files that are not in source are worth digesting for index.
+	 * Only files which look like old version of some source file (i.e. renamed or copied file
+	 * has same size, moved or edited file has same name) are picked, within {@code limits}.
+	 *
+	 * @param unexpectedFiles destination files which are not present in source
+	 * @param srcFiles files being transferred
+	 * @return paths of files to index, same sized files first
+	 */
+	public static List<FilePath> selectUnexpectedFiles(
+		Collection<FileMetadata> unexpectedFiles, Collection<FileMetadata> srcFiles, UnexpectedFilesLimits limits
+	) {
+		Set<Long> srcSizes = StreamEx.of(srcFiles).map(FileMetadata::getFileSizeBytes).toSet();
+		Set<String> srcNames = StreamEx.of(srcFiles).map(fm -> fm.getFilePath().getFileName()).toSet();
+		List<FileMetadata> sameSize = StreamEx.of(unexpectedFiles)
+			.filter(fm -> srcSizes.contains(fm.getFileSizeBytes()))
+			.toList();
+		List<FileMetadata> sameName = StreamEx.of(unexpectedFiles)
+			.remove(fm -> srcSizes.contains(fm.getFileSizeBytes()))
+			.filter(fm -> srcNames.contains(fm.getFilePath().getFileName()))
+			.toList();
+		List<FilePath> selected = new ArrayList<>();
+		long selectedBytes = 0;
+		for (FileMetadata fileMetadata : StreamEx.of(sameSize).append(sameName)) {
+			if (selected.size() >= limits.getMaxFiles()) {
+				break;
+			}
+			if (selectedBytes + fileMetadata.getFileSizeBytes() > limits.getMaxBytes()) {
+				continue;
+			}
+			selected.add(fileMetadata.getFilePath());
+			selectedBytes += fileMetadata.getFileSizeBytes();
+		}
+		return selected;
+	}
+
+	/**
+	 * Indexes chunks of destination file with given digest, truncated digests are ignored
+	 * since they are not sufficient to identify chunk
+	 */
+	public synchronized void index(FilePath filePath, FileDigest fileDigest) {
+		if (fileDigest == null || DigestPrefixes.isTruncated(fileDigest)) {
+			return;
+		}
+		Map<HashCode, ChunkLocation> locations = chunkLocations.computeIfAbsent(
+			fileDigest.getDigestType(), digestType -> new HashMap<>()
+		);
+		for (ChunkDigest chunkDigest : fileDigest.getChunkDigests()) {
+			locations.put(
+				HashCode.fromBytes(chunkDigest.getDigest()),
+				ChunkLocation.of(filePath, chunkDigest.getChunkInfo())
+			);
+		}
+	}
+
+	public synchronized boolean isEmpty() {
+		return chunkLocations.values().stream().allMatch(Map::isEmpty);
+	}
+
+	/**
+	 * @return location of chunk with same size and digest in destination tree
+	 */
+	public synchronized Optional<ChunkLocation> find(DigestType digestType, ChunkDigest chunkDigest) {
+		return Optional.ofNullable(chunkLocations.get(digestType))
+			.map(locations -> locations.get(HashCode.fromBytes(chunkDigest.getDigest())))
+			.filter(location -> location.getChunkInfo().getSizeBytes() == chunkDigest.getChunkInfo().getSizeBytes());
+	}
+
+	/**
+	 * Copies each of {@code chunks} found in index into {@code targetFile} at chunk's offset.
+	 * Chunk is copied only if content at indexed location still has the expected digest.
+	 *
+	 * @param chunks digests of wanted chunks, all of same {@link DigestType}
+	 * @param targetFile file being written
+	 * @return chunks which were copied, others need to be transferred
+	 */
+	public List<ChunkInfo> copyChunks(FileDigest chunks, RandomAccessFile targetFile) {
+		DigestType digestType = chunks.getDigestType();
+		List<ChunkInfo> copiedChunks = new ArrayList<>();
+		for (ChunkDigest chunkDigest : chunks.getChunkDigests()) {
+			Optional<ChunkLocation> location = find(digestType, chunkDigest);
+			if (location.isPresent() && copyChunk(digestType, chunkDigest, location.get(), targetFile)) {
+				copiedChunks.add(chunkDigest.getChunkInfo());
+			}
+		}
+		return copiedChunks;
+	}
+
+	private boolean copyChunk(
+		DigestType digestType, ChunkDigest chunkDigest, ChunkLocation location, RandomAccessFile targetFile
+	) {
+		File sourceFile = new File(location.getFilePath().toAbsolutePath(rootDirectory));
+		byte[] buffer = new byte[(int) chunkDigest.getChunkInfo().getSizeBytes()];
+		try (RandomAccessFile source = new RandomAccessFile(sourceFile, "r")) {
+			if (source.length() < location.getChunkInfo().getOffsetBytes() + buffer.length) {
+				return false;
+			}
+			source.seek(location.getChunkInfo().getOffsetBytes());
+			source.readFully(buffer);
+			byte[] digest = digestType.getHashFunction().hashBytes(buffer).asBytes();
+			if (!HashCode.fromBytes(digest).equals(HashCode.fromBytes(chunkDigest.getDigest()))) {
+				return false;
+			}
+			targetFile.seek(chunkDigest.getChunkInfo().getOffsetBytes());
+			targetFile.write(buffer);
+			return true;
+		} catch (IOException ex) {
+			log.debug("Can't copy chunk from {}: {}", location, ex.toString());
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.mediatoolkit.pareco.components;
+
+import java.util.concurrent.Executor;
+import lombok.Value;
+
+/**
+ * How many threads may hash chunks of single file concurrently and on which executor.
+ * Executor should be dedicated for digest calculation so that waiting on chunk digests
+ * never blocks threads needed to calculate them.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 09/11/2018
+ */
+@Value(staticConstructor = "of")
+public class DigestParallelism {
+
+	public static final DigestParallelism SEQUENTIAL = of(1, Runnable::run);
+
+	private int numThreads;
+	private Executor executor;
+
+	public boolean isParallel() {
+		return numThreads > 1;
+	}
+}
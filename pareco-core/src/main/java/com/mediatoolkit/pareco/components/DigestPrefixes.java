@@ -0,0 +1,117 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.Hasher;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Truncation of chunk digests to prefixes to reduce size of digest exchange.
+ * Truncated {@link FileDigest} carries checksum of all full chunk digests so that receiver
+ * can detect prefix collision when all prefixes match and fall back to full digests.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 11/11/2018
+ */
+public class DigestPrefixes {
+
+	private DigestPrefixes() {
+	}
+
+	public static int fullDigestLength(DigestType digestType) {
+		return digestType.getHashFunction().bits() / 8;
+	}
+
+	/**
+	 * @return digest with each chunk digest truncated to {@code prefixBytes},
+	 * or same digest if prefix would not be shorter than full digest
+	 */
+	public static FileDigest truncate(FileDigest fileDigest, int prefixBytes) {
+		DigestType digestType = fileDigest.getDigestType();
+		if (prefixBytes <= 0 || prefixBytes >= fullDigestLength(digestType)) {
+			return fileDigest;
+		}
+		FileDigest.FileDigestBuilder builder = FileDigest.builder()
+			.digestType(digestType);
+		for (ChunkDigest chunkDigest : fileDigest.getChunkDigests()) {
+			builder.chunkDigest(ChunkDigest.of(
+				Arrays.copyOf(chunkDigest.getDigest(), prefixBytes), chunkDigest.getChunkInfo()
+			));
+		}
+		return builder
+			.chunkDigestsChecksum(checksumOf(digestType, fileDigest.getChunkDigests()))
+			.build();
+	}
+
+	/**
+	 * @return true if some of chunk digests are shorter than full digest
+	 */
+	public static boolean isTruncated(FileDigest fileDigest) {
+		int fullDigestLength = fullDigestLength(fileDigest.getDigestType());
+		return fileDigest.getChunkDigests().stream()
+			.anyMatch(chunkDigest -> chunkDigest.getDigest().length < fullDigestLength);
+	}
+
+	/**
+	 * Expands truncated {@code remoteFileDigest} using full digests of local file: chunk whose prefix
+	 * matches local one gets local full digest, others retain prefix since they differ anyway.
+	 *
+	 * @return expanded remote digest or {@link Optional#empty()} if prefixes of all chunks match but
+	 * checksum of full digests doesn't, i.e. there is prefix collision and full digests are needed
+	 */
+	public static Optional<FileDigest> expand(FileDigest remoteFileDigest, FileDigest localFileDigest) {
+		byte[] remoteChecksum = remoteFileDigest.getChunkDigestsChecksum();
+		if (remoteChecksum == null) {
+			return Optional.of(remoteFileDigest);
+		}
+		Map<ChunkInfo, byte[]> localChunkDigests = localFileDigest.toChunkInfoMap();
+		FileDigest.FileDigestBuilder builder = FileDigest.builder()
+			.digestType(remoteFileDigest.getDigestType());
+		boolean allPrefixesMatch = remoteFileDigest.getChunkDigests().size() == localFileDigest.getChunkDigests().size();
+		for (ChunkDigest remoteChunkDigest : remoteFileDigest.getChunkDigests()) {
+			byte[] prefix = remoteChunkDigest.getDigest();
+			byte[] localDigest = localChunkDigests.get(remoteChunkDigest.getChunkInfo());
+			if (localDigest != null && isPrefixOf(prefix, localDigest)) {
+				builder.chunkDigest(ChunkDigest.of(localDigest, remoteChunkDigest.getChunkInfo()));
+			} else {
+				builder.chunkDigest(remoteChunkDigest);
+				allPrefixesMatch = false;
+			}
+		}
+		if (allPrefixesMatch) {
+			byte[] localChecksum = checksumOf(localFileDigest.getDigestType(), localFileDigest.getChunkDigests());
+			if (!Arrays.equals(localChecksum, remoteChecksum)) {
+				return Optional.empty();
+			}
+		}
+		return Optional.of(builder.build());
+	}
+
+	private static boolean isPrefixOf(byte[] prefix, byte[] digest) {
+		if (prefix.length > digest.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (prefix[i] != digest[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return digest of concatenated chunk digests
+	 */
+	public static byte[] checksumOf(DigestType digestType, List<ChunkDigest> chunkDigests) {
+		Hasher hasher = digestType.getHashFunction().newHasher();
+		for (ChunkDigest chunkDigest : chunkDigests) {
+			hasher.putBytes(chunkDigest.getDigest());
+		}
+		return hasher.hash().asBytes();
+	}
+}
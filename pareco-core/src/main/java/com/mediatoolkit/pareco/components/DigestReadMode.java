@@ -0,0 +1,24 @@
+package com.mediatoolkit.pareco.components;
+
+/**
+ * How {@link FileDigestCalculator} reads fixed size chunks of file
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 09/11/2018
+ */
+public enum DigestReadMode {
+	/**
+	 * Chunk is read through input stream and copied through hashing stream
+	 */
+	STREAM,
+	/**
+	 * Chunk is read by positional {@link java.nio.channels.FileChannel} reads into reused buffer
+	 * which is fed directly to hasher
+	 */
+	CHANNEL,
+	/**
+	 * Chunk is memory mapped and mapped buffer is fed directly to hasher, avoids copying into user space
+	 * buffer but hash functions which don't support direct buffers natively (checksums) consume it byte by byte
+	 */
+	MEMORY_MAPPED
+}
@@ -0,0 +1,79 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.mediatoolkit.pareco.model.DigestType;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Short in-process micro-benchmark used to pick digest type when user doesn't choose one
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+@Slf4j
+public class DigestTypeBenchmark {
+
+	/**
+	 * Digest types of at least 64 bits, shorter ones have too high chance of collision for large trees
+	 */
+	public static final List<DigestType> ACCEPTABLE_DIGEST_TYPES = ImmutableList.of(
+		DigestType.XX_HASH_64,
+		DigestType.FARM_HASH_FINGERPRINT_64,
+		DigestType.MURMUR3_128,
+		DigestType.SIP_HASH_24,
+		DigestType.BLAKE3
+	);
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private static final Supplier<DigestType> FASTEST_ACCEPTABLE = Suppliers.memoize(
+		() -> fastestOf(ACCEPTABLE_DIGEST_TYPES)
+	)::get;
+
+	private DigestTypeBenchmark() {
+	}
+
+	/**
+	 * @return fastest of {@link #ACCEPTABLE_DIGEST_TYPES}, benchmark runs only once per JVM
+	 */
+	public static DigestType fastestAcceptable() {
+		return FASTEST_ACCEPTABLE.get();
+	}
+
+	public static DigestType fastestOf(List<DigestType> digestTypes) {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		new Random(0).nextBytes(buffer);
+		DigestType fastest = null;
+		long fastestNanos = Long.MAX_VALUE;
+		for (DigestType digestType : digestTypes) {
+			long nanos = bestRoundNanos(digestType.getHashFunction(), buffer);
+			log.debug("Digest type {} hashed {} bytes in {} us", digestType, buffer.length, nanos / 1000);
+			if (nanos < fastestNanos) {
+				fastest = digestType;
+				fastestNanos = nanos;
+			}
+		}
+		log.info("Using fastest digest type: {}", fastest);
+		return fastest;
+	}
+
+	private static long bestRoundNanos(HashFunction hashFunction, byte[] buffer) {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			hashFunction.hashBytes(buffer);
+		}
+		long bestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long startNanos = System.nanoTime();
+			hashFunction.hashBytes(buffer);
+			bestNanos = Math.min(bestNanos, System.nanoTime() - startNanos);
+		}
+		return bestNanos;
+	}
+}
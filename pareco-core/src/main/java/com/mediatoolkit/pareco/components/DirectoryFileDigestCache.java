@@ -0,0 +1,139 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.Hashing;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link FileDigestCache} which keeps one entry file per cached file (and chunking parameters)
+ * within cache directory. Entry holds {@link FileDigestCacheKey} it was calculated for, so entry
+ * of changed file is treated as missing and gets overwritten by next {@link #put}.
+ * <br>
+ * Entries are written into temp file and moved in place, so concurrent readers never see
+ * partially written entry.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 08/11/2018
+ */
+@Slf4j
+public class DirectoryFileDigestCache implements FileDigestCache {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final File directory;
+
+	public DirectoryFileDigestCache(File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public Optional<FileDigest> get(FileDigestCacheKey key) {
+		File entryFile = entryFileOf(key);
+		if (!entryFile.exists()) {
+			return Optional.empty();
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+			if (input.readInt() != FORMAT_VERSION) {
+				return Optional.empty();
+			}
+			FileDigestCacheKey entryKey = readKey(input);
+			if (!entryKey.equals(key)) {
+				return Optional.empty();
+			}
+			FileDigest.FileDigestBuilder builder = FileDigest.builder()
+				.digestType(key.getDigestType());
+			int numChunks = input.readInt();
+			for (int i = 0; i < numChunks; i++) {
+				long offsetBytes = input.readLong();
+				long sizeBytes = input.readLong();
+				byte[] digest = new byte[input.readUnsignedShort()];
+				input.readFully(digest);
+				builder.chunkDigest(ChunkDigest.of(digest, ChunkInfo.of(offsetBytes, sizeBytes)));
+			}
+			return Optional.of(builder.build());
+		} catch (IOException | IllegalArgumentException ex) {
+			log.warn("Failed to read digest cache entry {} for {}", entryFile, key.getAbsolutePath(), ex);
+			return Optional.empty();
+		}
+	}
+
+	@Override
+	public void put(FileDigestCacheKey key, FileDigest fileDigest) {
+		File entryFile = entryFileOf(key);
+		File tempFile = new File(entryFile.getParentFile(), entryFile.getName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			Files.createDirectories(entryFile.getParentFile().toPath());
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				output.writeInt(FORMAT_VERSION);
+				writeKey(output, key);
+				output.writeInt(fileDigest.getChunkDigests().size());
+				for (ChunkDigest chunkDigest : fileDigest.getChunkDigests()) {
+					output.writeLong(chunkDigest.getChunkInfo().getOffsetBytes());
+					output.writeLong(chunkDigest.getChunkInfo().getSizeBytes());
+					output.writeShort(chunkDigest.getDigest().length);
+					output.write(chunkDigest.getDigest());
+				}
+			}
+			try {
+				Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException ex) {
+			log.warn("Failed to write digest cache entry {} for {}", entryFile, key.getAbsolutePath(), ex);
+			tempFile.delete();
+		}
+	}
+
+	private File entryFileOf(FileDigestCacheKey key) {
+		String entryName = Hashing.sha256().newHasher()
+			.putString(key.getAbsolutePath(), StandardCharsets.UTF_8)
+			.putLong(key.getChunkSizeBytes())
+			.putString(key.getDigestType().name(), StandardCharsets.UTF_8)
+			.putString(key.getChunkingType().name(), StandardCharsets.UTF_8)
+			.hash().toString();
+		File shardDirectory = new File(directory, entryName.substring(0, 2));
+		return new File(shardDirectory, entryName);
+	}
+
+	private void writeKey(DataOutputStream output, FileDigestCacheKey key) throws IOException {
+		output.writeUTF(key.getAbsolutePath());
+		output.writeUTF(key.getFileKey());
+		output.writeLong(key.getSizeBytes());
+		output.writeLong(key.getLastModifiedMillis());
+		output.writeLong(key.getChunkSizeBytes());
+		output.writeUTF(key.getDigestType().name());
+		output.writeUTF(key.getChunkingType().name());
+	}
+
+	private FileDigestCacheKey readKey(DataInputStream input) throws IOException {
+		return new FileDigestCacheKey(
+			input.readUTF(),
+			input.readUTF(),
+			input.readLong(),
+			input.readLong(),
+			input.readLong(),
+			DigestType.valueOf(input.readUTF()),
+			ChunkingType.valueOf(input.readUTF())
+		);
+	}
+
+}
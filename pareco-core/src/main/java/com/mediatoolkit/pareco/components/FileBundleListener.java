@@ -0,0 +1,27 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives files read from {@link FileBundleStream} one by one, in order they were written
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public interface FileBundleListener {
+
+	/**
+	 * @param fileMetadata metadata which is to be applied on file once its content is written
+	 * @param content      stream of exactly {@code fileMetadata.getFileSizeBytes()} bytes which is valid only
+	 *                     during this call
+	 */
+	void fileReceived(FileMetadata fileMetadata, InputStream content) throws IOException;
+
+	/**
+	 * Invoked for file which got deleted on sender's side before its content was written into bundle
+	 */
+	void fileDeleted(FilePath filePath) throws IOException;
+}
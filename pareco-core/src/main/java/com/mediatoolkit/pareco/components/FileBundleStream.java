@@ -0,0 +1,150 @@
+package com.mediatoolkit.pareco.components;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * Binary tar-like stream of whole files, so that many small files are transferred through single request
+ * instead of requests for initialization, chunks and commit of each file. Each entry consists of
+ * entry type (byte), relative directory and file name (modified UTF-8) and, for {@link #FILE} entry,
+ * size and last modified time (longs), permissions (int bit set, {@code -1} when unknown) followed by
+ * size bytes of file content. Stream ends with end of input.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class FileBundleStream {
+
+	public static final String MEDIA_TYPE = "application/x-pareco-file-bundle";
+
+	static final byte FILE = 0;
+	static final byte DELETED = 1;
+
+	private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final ObjectWriter REQUEST_WRITER = OBJECT_MAPPER.writerFor(new TypeReference<List<FilePath>>() {
+	});
+
+	private FileBundleStream() {
+	}
+
+	/**
+	 * Writes JSON body of request for files to be sent as bundle
+	 */
+	public static void writeFilePaths(List<FilePath> filePaths, OutputStream outputStream) throws IOException {
+		REQUEST_WRITER.writeValue(outputStream, filePaths);
+	}
+
+	/**
+	 * Writes entry with file's metadata and content
+	 *
+	 * @throws InputStreamSizeMissMatchException if {@code content} has less bytes than file's size,
+	 *                                           stream is then left with incomplete entry
+	 */
+	public static void writeFile(
+		DataOutputStream outputStream, FileMetadata fileMetadata, InputStream content
+	) throws IOException {
+		writeHeader(outputStream, fileMetadata.getFilePath(), FILE);
+		outputStream.writeLong(fileMetadata.getFileSizeBytes());
+		outputStream.writeLong(fileMetadata.getLastModifiedTimeMillis());
+		outputStream.writeInt(encodePermissions(fileMetadata.getPermissions()));
+		long copied = IOUtils.copyLarge(content, outputStream, 0, fileMetadata.getFileSizeBytes());
+		if (copied != fileMetadata.getFileSizeBytes()) {
+			throw new InputStreamSizeMissMatchException(String.format(
+				"File '%s' is expected to have %d bytes, but written %d bytes",
+				fileMetadata.getFilePath(), fileMetadata.getFileSizeBytes(), copied
+			));
+		}
+	}
+
+	/**
+	 * Reads content of file which is about to be bundled before its entry is started, so that file
+	 * which shrunk since its metadata was taken doesn't leave incomplete entry in middle of stream
+	 *
+	 * @return exactly file's size of bytes of {@code content}, or {@code null} if it has less than that
+	 */
+	public static byte[] readContent(FileMetadata fileMetadata, InputStream content) throws IOException {
+		byte[] bytes = IOUtils.toByteArray(new BoundedInputStream(content, fileMetadata.getFileSizeBytes()));
+		return bytes.length == fileMetadata.getFileSizeBytes() ? bytes : null;
+	}
+
+	/**
+	 * Writes entry of file which no longer exists, without its content
+	 */
+	public static void writeDeletedFile(DataOutputStream outputStream, FilePath filePath) throws IOException {
+		writeHeader(outputStream, filePath, DELETED);
+	}
+
+	private static void writeHeader(DataOutputStream outputStream, FilePath filePath, byte type) throws IOException {
+		outputStream.writeByte(type);
+		outputStream.writeUTF(filePath.getRelativeDirectory());
+		outputStream.writeUTF(filePath.getFileName());
+	}
+
+	public static void readFrom(InputStream inputStream, FileBundleListener listener) throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(inputStream);
+		int type;
+		while ((type = dataInputStream.read()) != IOUtils.EOF) {
+			FilePath filePath = FilePath.of(dataInputStream.readUTF(), dataInputStream.readUTF());
+			switch (type) {
+				case DELETED:
+					listener.fileDeleted(filePath);
+					break;
+				case FILE:
+					FileMetadata fileMetadata = FileMetadata.builder()
+						.filePath(filePath)
+						.fileSizeBytes(dataInputStream.readLong())
+						.lastModifiedTimeMillis(dataInputStream.readLong())
+						.permissions(decodePermissions(dataInputStream.readInt()))
+						.build();
+					BoundedInputStream content = new BoundedInputStream(dataInputStream, fileMetadata.getFileSizeBytes());
+					content.setPropagateClose(false);
+					listener.fileReceived(fileMetadata, content);
+					//skip what listener didn't read so that next entry is aligned
+					IOUtils.skip(content, Long.MAX_VALUE);
+					break;
+				default:
+					throw new IOException("Unknown file bundle entry type: " + type);
+			}
+		}
+	}
+
+	private static int encodePermissions(Set<PosixFilePermission> permissions) {
+		if (permissions == null) {
+			return -1;
+		}
+		int bits = 0;
+		for (PosixFilePermission permission : permissions) {
+			bits |= 1 << permission.ordinal();
+		}
+		return bits;
+	}
+
+	private static Set<PosixFilePermission> decodePermissions(int bits) {
+		if (bits == -1) {
+			return null;
+		}
+		Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+		for (PosixFilePermission permission : PERMISSIONS) {
+			if ((bits & 1 << permission.ordinal()) != 0) {
+				permissions.add(permission);
+			}
+		}
+		return permissions;
+	}
+}
@@ -2,9 +2,16 @@ package com.mediatoolkit.pareco.components;
 
 import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.CompressionType;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.springframework.stereotype.Component;
@@ -17,6 +24,9 @@ import org.springframework.stereotype.Component;
 public class FileChunkWriter {
 
 	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER = ThreadLocal.withInitial(
+		() -> ByteBuffer.allocateDirect(BUFFER_SIZE)
+	);
 
 	/**
 	 * Method sets given {@code file} to have size exactly {@code sizeBytes}.
@@ -35,7 +45,8 @@ public class FileChunkWriter {
 
 	/**
 	 * Method which copies contents of {@code inputStream} to {@code file} starting at offset
-	 * specified by {@code chunkInfo}.
+	 * specified by {@code chunkInfo}. Range doesn't need to be aligned with chunks of file,
+	 * i.e. it can be only differing part of chunk.
 	 *
 	 * @param file to copy {@code inputStream} into
 	 * @param chunkInfo which defines location of where in {@code file} to write contents
@@ -48,29 +59,141 @@ public class FileChunkWriter {
 	 */
 	public void writeChunk(
 		RandomAccessFile file, ChunkInfo chunkInfo, InputStream inputStream
-	) throws IOException, InputStreamSizeMissMatchException{
+	) throws IOException, InputStreamSizeMissMatchException {
+		writeChunk(file.getChannel(), chunkInfo, inputStream);
+	}
+
+	/**
+	 * Same as {@link #writeChunk(RandomAccessFile, ChunkInfo, InputStream)} except that content is
+	 * written with positional writes which don't move {@code channel}'s position, so chunks of same
+	 * file can be written concurrently through single {@code channel}.
+	 * Content is copied through direct buffer reused by calling thread.
+	 *
+	 * @param channel to copy {@code inputStream} into
+	 */
+	public void writeChunk(
+		FileChannel channel, ChunkInfo chunkInfo, InputStream inputStream
+	) throws IOException, InputStreamSizeMissMatchException {
 		BoundedInputStream boundedInputStream = new BoundedInputStream(inputStream, chunkInfo.getSizeBytes());
-		file.seek(chunkInfo.getOffsetBytes());
-		long copied = copy(boundedInputStream, file);
+		long copied = copy(Channels.newChannel(boundedInputStream), channel, chunkInfo.getOffsetBytes());
 		if (copied != chunkInfo.getSizeBytes()) {
 			throw new InputStreamSizeMissMatchException(String.format(
 				"Chunk input stream is expected to have %d bytes, but copied %d bytes", chunkInfo.getSizeBytes(), copied
 			));
 		}
-		if (inputStream.available() > 0 || inputStream.read() != IOUtils.EOF) {
+		//available() is not reliable here, with chunked transfer encoding it counts unread framing bytes
+		if (inputStream.read() != IOUtils.EOF) {
 			throw new InputStreamSizeMissMatchException(String.format(
 				"Chunk input stream is expected to have %d bytes, but it has more", chunkInfo.getSizeBytes()
 			));
 		}
 	}
 
-	private long copy(InputStream in, RandomAccessFile out) throws IOException {
-		byte[] buffer = new byte[BUFFER_SIZE];
-		int count;
-		int copied = 0;
-		while ((count = in.read(buffer)) > 0) {
-			out.write(buffer, 0, count);
-			copied += count;
+	/**
+	 * Same as {@link #writeChunk(FileChannel, ChunkInfo, InputStream)} except that {@code inputStream}
+	 * is decompressed first, size specified by {@code chunkInfo} is size of decompressed content.
+	 *
+	 * @param compressionType compression used for {@code inputStream}
+	 */
+	public void writeChunk(
+		FileChannel channel, ChunkInfo chunkInfo, InputStream inputStream, CompressionType compressionType
+	) throws IOException, InputStreamSizeMissMatchException {
+		try (InputStream decompressingInputStream = compressionType.decompressing(inputStream)) {
+			writeChunk(channel, chunkInfo, decompressingInputStream);
+		}
+	}
+
+	/**
+	 * Same as {@link #writeChunk(RandomAccessFile, ChunkInfo, InputStream)} except that {@code inputStream}
+	 * is decompressed first, size specified by {@code chunkInfo} is size of decompressed content.
+	 *
+	 * @param compressionType compression used for {@code inputStream}
+	 */
+	public void writeChunk(
+		RandomAccessFile file, ChunkInfo chunkInfo, InputStream inputStream, CompressionType compressionType
+	) throws IOException, InputStreamSizeMissMatchException {
+		writeChunk(file.getChannel(), chunkInfo, inputStream, compressionType);
+	}
+
+	/**
+	 * Writes all remaining bytes of {@code content} at {@code positionBytes} of {@code channel}, for chunks
+	 * which arrive in pieces, i.e. from non-blocking request stream, so there is no stream to write chunk from.
+	 * Caller is responsible for pieces adding up to whole chunk.
+	 *
+	 * @return number of bytes written
+	 */
+	public int writeChunkPart(FileChannel channel, long positionBytes, ByteBuffer content) throws IOException {
+		int written = 0;
+		while (content.hasRemaining()) {
+			written += channel.write(content, positionBytes + written);
+		}
+		return written;
+	}
+
+	/**
+	 * Method which replaces whole content of {@code file} with contents of {@code inputStream},
+	 * file is created if it doesn't exist.
+	 *
+	 * @param file to write {@code inputStream} into
+	 * @param sizeBytes size of file and number of bytes in {@code inputStream}
+	 * @param inputStream to be copied into {@code file}
+	 * @throws IOException if thrown when reading from {@code inputStream} or if thrown
+	 * when writing to {@code file}
+	 * @throws InputStreamSizeMissMatchException if {@code inputStream} has more or less
+	 * bytes than {@code sizeBytes}
+	 */
+	public void writeFile(
+		File file, long sizeBytes, InputStream inputStream
+	) throws IOException, InputStreamSizeMissMatchException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			allocateFileToSize(randomAccessFile, sizeBytes);
+			writeChunk(randomAccessFile, ChunkInfo.of(0, sizeBytes), inputStream);
+		}
+	}
+
+	/**
+	 * Method which makes range of {@code file} specified by {@code chunkInfo} contain only zero bytes.
+	 * Zeros are written only over parts of range which are not zero already, so that holes of
+	 * sparse file (i.e. created by {@link #allocateFileToSize}) are not allocated.
+	 *
+	 * @param file to write zeros into
+	 * @param chunkInfo which defines range of {@code file} to be zeroed
+	 * @throws IOException if thrown when reading from or writing to {@code file}
+	 */
+	public void writeZeroChunk(RandomAccessFile file, ChunkInfo chunkInfo) throws IOException {
+		long endPosition = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+		long fileLength = file.length();
+		byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, chunkInfo.getSizeBytes())];
+		for (long position = chunkInfo.getOffsetBytes(); position < endPosition; position += buffer.length) {
+			int length = (int) Math.min(buffer.length, endPosition - position);
+			file.seek(position);
+			if (position + length <= fileLength) {
+				file.readFully(buffer, 0, length);
+				if (ZeroChunks.isZero(buffer, length)) {
+					continue;
+				}
+				Arrays.fill(buffer, 0, length, (byte) 0);
+				file.seek(position);
+			}
+			file.write(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Fills buffer as much as {@code in} allows before each write, so that file gets written
+	 * in blocks of buffer size and not in whatever pieces {@code in} yields
+	 */
+	private long copy(ReadableByteChannel in, FileChannel out, long position) throws IOException {
+		ByteBuffer buffer = DIRECT_BUFFER.get();
+		long copied = 0;
+		boolean endOfInput = false;
+		while (!endOfInput) {
+			buffer.clear();
+			while (buffer.hasRemaining() && !endOfInput) {
+				endOfInput = in.read(buffer) == IOUtils.EOF;
+			}
+			buffer.flip();
+			copied += writeChunkPart(out, position + copied, buffer);
 		}
 		return copied;
 	}
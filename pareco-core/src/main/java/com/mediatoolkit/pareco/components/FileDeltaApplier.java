@@ -0,0 +1,77 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Destination side of delta transfer. Reconstructed file is written into temporary file next
+ * to the basis file because blocks of basis file can be moved around and basis file needs to stay
+ * intact until reconstruction is completed. When reconstruction is completed, temporary file
+ * replaces basis file.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class FileDeltaApplier {
+
+	private static final String TEMP_FILE_SUFFIX = ".pareco-delta";
+
+	private final FileChunkWriter fileChunkWriter;
+
+	public File deltaTempFileOf(File targetFile) {
+		return new File(targetFile.getParentFile(), "." + targetFile.getName() + TEMP_FILE_SUFFIX);
+	}
+
+	/**
+	 * Copies blocks from {@code basisFile} into {@code targetFile} as specified by
+	 * {@link com.mediatoolkit.pareco.model.FileDelta.InstructionType#COPY} instructions.
+	 *
+	 * @param basisFile file to copy blocks from
+	 * @param targetFile file being reconstructed
+	 * @param copyInstructions which blocks to copy and where
+	 * @throws IOException on read or write failure
+	 */
+	public void copyBlocks(
+		File basisFile, RandomAccessFile targetFile, List<DeltaInstruction> copyInstructions
+	) throws IOException {
+		if (copyInstructions.isEmpty()) {
+			return;
+		}
+		try (RandomAccessFile basis = new RandomAccessFile(basisFile, "r")) {
+			for (DeltaInstruction copyInstruction : copyInstructions) {
+				ChunkInfo chunkInfo = copyInstruction.getChunkInfo();
+				FileChunkInputStream blockInputStream = new FileChunkInputStream(
+					basis, copyInstruction.getBasisOffsetBytes(), chunkInfo.getSizeBytes()
+				);
+				fileChunkWriter.writeChunk(targetFile, chunkInfo, blockInputStream);
+			}
+		}
+	}
+
+	/**
+	 * Replaces {@code targetFile} with fully reconstructed {@code tempFile}
+	 */
+	public void replaceWithTempFile(File tempFile, File targetFile) throws IOException {
+		try {
+			Files.move(
+				tempFile.toPath(), targetFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+			);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
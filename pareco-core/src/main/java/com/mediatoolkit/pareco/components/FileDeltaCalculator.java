@@ -0,0 +1,304 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.HashFunction;
+import com.mediatoolkit.pareco.exceptions.FileDeletedException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.FileDelta;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
+import com.mediatoolkit.pareco.model.FileDelta.InstructionType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.FileSignature.BlockSignature;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+import static org.apache.commons.io.IOUtils.EOF;
+import org.springframework.stereotype.Component;
+
+/**
+ * Calculates {@link FileDelta} of source file against {@link FileSignature} of destination file.
+ * <br>
+ * Source file is scanned with window of block size which slides byte by byte. For each window
+ * position weak {@link RollingChecksum} is updated in constant time and only when it matches weak
+ * checksum of some destination block, strong digest of window is calculated to confirm the match.
+ * This way blocks of destination file are found at any byte offset of source file, so inserted or
+ * removed bytes affect only blocks around the place of modification.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+@Component
+public class FileDeltaCalculator {
+
+	private static final int BUF_SIZE = 64 * 1024;
+	private static final int WEAK_TAG_TABLE_SIZE = 1 << 16;
+
+	public FileDelta calculateFileDelta(
+		String rootDirectory, FilePath filePath, FileSignature destinationSignature
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		try (InputStream inputStream = new FileInputStream(file)) {
+			return new DeltaScanner(destinationSignature, inputStream).scan();
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc delta of deleted file", ex);
+		}
+	}
+
+	/**
+	 * Calculates delta by matching chunks of source and destination digests regardless of
+	 * their offsets. Intended for content-defined chunking, where unchanged content produces
+	 * same chunks at shifted offsets.
+	 *
+	 * @param sourceDigest digest of source file
+	 * @param destinationDigest digest of destination (basis) file
+	 * @return delta which reconstructs source file
+	 */
+	public FileDelta calculateFileDelta(FileDigest sourceDigest, FileDigest destinationDigest) {
+		Map<ChunkKey, Long> destinationChunkOffsets = new HashMap<>();
+		Map<Long, ChunkKey> destinationChunksByOffset = new HashMap<>();
+		for (ChunkDigest chunkDigest : destinationDigest.getChunkDigests()) {
+			ChunkInfo chunkInfo = chunkDigest.getChunkInfo();
+			ChunkKey key = ChunkKey.of(ByteBuffer.wrap(chunkDigest.getDigest()), chunkInfo.getSizeBytes());
+			destinationChunkOffsets.putIfAbsent(key, chunkInfo.getOffsetBytes());
+			destinationChunksByOffset.put(chunkInfo.getOffsetBytes(), key);
+		}
+		DeltaBuilder deltaBuilder = new DeltaBuilder();
+		long fileSizeBytes = 0;
+		for (ChunkDigest chunkDigest : sourceDigest.getChunkDigests()) {
+			ChunkInfo chunkInfo = chunkDigest.getChunkInfo();
+			ChunkKey key = ChunkKey.of(ByteBuffer.wrap(chunkDigest.getDigest()), chunkInfo.getSizeBytes());
+			//prefer chunk at the same offset so that unchanged file is recognized as identity
+			Long basisOffset = key.equals(destinationChunksByOffset.get(chunkInfo.getOffsetBytes()))
+				? chunkInfo.getOffsetBytes()
+				: destinationChunkOffsets.get(key);
+			if (basisOffset == null) {
+				deltaBuilder.addLiteral(chunkInfo.getOffsetBytes(), chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes());
+			} else {
+				deltaBuilder.addCopy(chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes(), basisOffset);
+			}
+			fileSizeBytes = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+		}
+		return deltaBuilder.build(fileSizeBytes);
+	}
+
+	@Value(staticConstructor = "of")
+	private static class ChunkKey {
+
+		private ByteBuffer digest;
+		private long sizeBytes;
+	}
+
+	private static class DeltaScanner {
+
+		private final HashFunction hashFunction;
+		private final int blockSize;
+		private final InputStream inputStream;
+		private final Map<Integer, List<BlockSignature>> fullBlocks = new HashMap<>();
+		private final boolean[] weakTags = new boolean[WEAK_TAG_TABLE_SIZE];
+		private final BlockSignature tailBlock;
+		private final DeltaBuilder deltaBuilder = new DeltaBuilder();
+
+		private final byte[] readBuffer = new byte[BUF_SIZE];
+		private int readBufferPos = 0;
+		private int readBufferLimit = 0;
+
+		DeltaScanner(FileSignature signature, InputStream inputStream) {
+			this.hashFunction = signature.getDigestType().getHashFunction();
+			this.blockSize = (int) signature.getBlockSizeBytes();
+			this.inputStream = inputStream;
+			BlockSignature tailBlock = null;
+			for (BlockSignature block : signature.getBlockSignatures()) {
+				if (block.getChunkInfo().getSizeBytes() == blockSize) {
+					fullBlocks.computeIfAbsent(block.getWeakChecksum(), weak -> new ArrayList<>(1)).add(block);
+					weakTags[tagOf(block.getWeakChecksum())] = true;
+				} else {
+					tailBlock = block;
+				}
+			}
+			this.tailBlock = tailBlock;
+		}
+
+		private static int tagOf(int weakChecksum) {
+			return (weakChecksum ^ (weakChecksum >>> 16)) & (WEAK_TAG_TABLE_SIZE - 1);
+		}
+
+		FileDelta scan() throws IOException {
+			byte[] window = new byte[blockSize];
+			long position = 0;
+			long literalStart = 0;
+			int windowFill = readFully(window);
+			while (windowFill == blockSize) {
+				RollingChecksum checksum = RollingChecksum.of(window, 0, blockSize);
+				int windowStart = 0;
+				BlockSignature match = null;
+				while (true) {
+					match = findFullBlockMatch(checksum.getValue(), window, windowStart, position);
+					if (match != null) {
+						break;
+					}
+					int next = readByte();
+					if (next == EOF) {
+						break;
+					}
+					byte outByte = window[windowStart];
+					window[windowStart] = (byte) next;
+					windowStart = windowStart + 1 == blockSize ? 0 : windowStart + 1;
+					checksum.roll(outByte, (byte) next);
+					position++;
+				}
+				if (match == null) {
+					//reached end of file without matching last window
+					deltaBuilder.addLiteral(literalStart, position + blockSize);
+					return deltaBuilder.build(position + blockSize);
+				}
+				deltaBuilder.addLiteral(literalStart, position);
+				deltaBuilder.addCopy(position, blockSize, match.getChunkInfo().getOffsetBytes());
+				position += blockSize;
+				literalStart = position;
+				windowFill = readFully(window);
+			}
+			//less than block size remaining, try matching it with shorter tail block of destination
+			if (windowFill > 0 && tailMatches(window, windowFill)) {
+				deltaBuilder.addLiteral(literalStart, position);
+				deltaBuilder.addCopy(position, windowFill, tailBlock.getChunkInfo().getOffsetBytes());
+			} else {
+				deltaBuilder.addLiteral(literalStart, position + windowFill);
+			}
+			return deltaBuilder.build(position + windowFill);
+		}
+
+		private BlockSignature findFullBlockMatch(int weakChecksum, byte[] window, int windowStart, long position) {
+			if (!weakTags[tagOf(weakChecksum)]) {
+				return null;
+			}
+			List<BlockSignature> candidates = fullBlocks.get(weakChecksum);
+			if (candidates == null) {
+				return null;
+			}
+			byte[] strongDigest = hashFunction.newHasher()
+				.putBytes(window, windowStart, blockSize - windowStart)
+				.putBytes(window, 0, windowStart)
+				.hash().asBytes();
+			BlockSignature match = null;
+			for (BlockSignature candidate : candidates) {
+				if (!Arrays.equals(strongDigest, candidate.getStrongDigest())) {
+					continue;
+				}
+				if (candidate.getChunkInfo().getOffsetBytes() == position) {
+					//prefer block at the same offset so that unchanged file is recognized as identity
+					return candidate;
+				}
+				if (match == null) {
+					match = candidate;
+				}
+			}
+			return match;
+		}
+
+		private boolean tailMatches(byte[] window, int size) {
+			if (tailBlock == null || tailBlock.getChunkInfo().getSizeBytes() != size) {
+				return false;
+			}
+			if (RollingChecksum.checksumOf(window, 0, size) != tailBlock.getWeakChecksum()) {
+				return false;
+			}
+			byte[] strongDigest = hashFunction.hashBytes(window, 0, size).asBytes();
+			return Arrays.equals(strongDigest, tailBlock.getStrongDigest());
+		}
+
+		private int readByte() throws IOException {
+			if (readBufferPos == readBufferLimit) {
+				int count = inputStream.read(readBuffer);
+				if (count == EOF) {
+					return EOF;
+				}
+				readBufferPos = 0;
+				readBufferLimit = count;
+			}
+			return readBuffer[readBufferPos++] & 0xFF;
+		}
+
+		private int readFully(byte[] window) throws IOException {
+			int filled = 0;
+			while (filled < window.length) {
+				if (readBufferPos == readBufferLimit) {
+					int count = inputStream.read(readBuffer);
+					if (count == EOF) {
+						break;
+					}
+					readBufferPos = 0;
+					readBufferLimit = count;
+				}
+				int toCopy = Math.min(window.length - filled, readBufferLimit - readBufferPos);
+				System.arraycopy(readBuffer, readBufferPos, window, filled, toCopy);
+				readBufferPos += toCopy;
+				filled += toCopy;
+			}
+			return filled;
+		}
+	}
+
+	/**
+	 * Collects instructions and merges contiguous block copies into one instruction
+	 */
+	private static class DeltaBuilder {
+
+		private final List<DeltaInstruction> instructions = new ArrayList<>();
+
+		void addLiteral(long startOffset, long endOffset) {
+			if (endOffset <= startOffset) {
+				return;
+			}
+			int lastIndex = instructions.size() - 1;
+			if (lastIndex >= 0) {
+				DeltaInstruction last = instructions.get(lastIndex);
+				ChunkInfo lastChunk = last.getChunkInfo();
+				if (last.getType() == InstructionType.LITERAL && lastChunk.getOffsetBytes() + lastChunk.getSizeBytes() == startOffset) {
+					instructions.set(lastIndex, DeltaInstruction.literal(
+						ChunkInfo.of(lastChunk.getOffsetBytes(), endOffset - lastChunk.getOffsetBytes())
+					));
+					return;
+				}
+			}
+			instructions.add(DeltaInstruction.literal(ChunkInfo.of(startOffset, endOffset - startOffset)));
+		}
+
+		void addCopy(long offset, long sizeBytes, long basisOffset) {
+			int lastIndex = instructions.size() - 1;
+			if (lastIndex >= 0) {
+				DeltaInstruction last = instructions.get(lastIndex);
+				ChunkInfo lastChunk = last.getChunkInfo();
+				boolean contiguous = last.getType() == InstructionType.COPY
+					&& lastChunk.getOffsetBytes() + lastChunk.getSizeBytes() == offset
+					&& last.getBasisOffsetBytes() + lastChunk.getSizeBytes() == basisOffset;
+				if (contiguous) {
+					instructions.set(lastIndex, DeltaInstruction.copy(
+						ChunkInfo.of(lastChunk.getOffsetBytes(), lastChunk.getSizeBytes() + sizeBytes),
+						last.getBasisOffsetBytes()
+					));
+					return;
+				}
+			}
+			instructions.add(DeltaInstruction.copy(ChunkInfo.of(offset, sizeBytes), basisOffset));
+		}
+
+		FileDelta build(long fileSizeBytes) {
+			return FileDelta.builder()
+				.fileSizeBytes(fileSizeBytes)
+				.instructions(instructions)
+				.build();
+		}
+	}
+
+}
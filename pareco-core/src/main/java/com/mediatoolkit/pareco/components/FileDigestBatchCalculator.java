@@ -0,0 +1,95 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FilePathDigest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Calculates digests of many (small) files concurrently, each file is hashed by single thread.
+ * Used to answer batch digest requests so that analysis of many small files doesn't cost
+ * one request and one sequential file read per file.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Slf4j
+public class FileDigestBatchCalculator implements AutoCloseable {
+
+	private final FileDigestCalculator fileDigestCalculator;
+	private final ExecutorService executor;
+
+	public FileDigestBatchCalculator(FileDigestCalculator fileDigestCalculator, int numThreads) {
+		this.fileDigestCalculator = fileDigestCalculator;
+		this.executor = Executors.newFixedThreadPool(
+			numThreads, new CustomizableThreadFactory("batchDigest")
+		);
+	}
+
+	/**
+	 * Digests are passed to {@code listener} in calling thread in order in which they get calculated.
+	 * File whose digest can't be calculated is reported with {@code null} digest.
+	 */
+	public void calculateFileDigests(
+		String rootDirectory, List<FilePath> filePaths, long chunkSizeBytes,
+		DigestType digestType, ChunkingType chunkingType, FileDigestCache fileDigestCache,
+		FileDigestBatchListener listener
+	) throws IOException {
+		CompletionService<FilePathDigest> completionService = new ExecutorCompletionService<>(executor);
+		List<Future<FilePathDigest>> futures = new ArrayList<>(filePaths.size());
+		try {
+			for (FilePath filePath : filePaths) {
+				futures.add(completionService.submit(() -> FilePathDigest.of(filePath, calculateOrNull(
+					rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, fileDigestCache
+				))));
+			}
+			for (int i = 0; i < filePaths.size(); i++) {
+				listener.fileDigested(take(completionService));
+			}
+		} finally {
+			futures.forEach(future -> future.cancel(true));
+		}
+	}
+
+	private FileDigest calculateOrNull(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes,
+		DigestType digestType, ChunkingType chunkingType, FileDigestCache fileDigestCache
+	) {
+		try {
+			return fileDigestCalculator.calculateFileDigest(
+				rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType,
+				fileDigestCache, DigestParallelism.SEQUENTIAL
+			);
+		} catch (IOException ex) {
+			log.debug("Can't calculate digest of {}: {}", filePath, ex.toString());
+			return null;
+		}
+	}
+
+	@SneakyThrows
+	private static FilePathDigest take(CompletionService<FilePathDigest> completionService) {
+		try {
+			return completionService.take().get();
+		} catch (ExecutionException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,16 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.FilePathDigest;
+import java.io.IOException;
+
+/**
+ * Receives digests of files requested in batch one by one, in order of completion
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@FunctionalInterface
+public interface FileDigestBatchListener {
+
+	void fileDigested(FilePathDigest filePathDigest) throws IOException;
+}
@@ -0,0 +1,59 @@
+package com.mediatoolkit.pareco.components;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FilePathDigest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Newline delimited JSON (NDJSON) stream of {@link FilePathDigest}s, same format as {@link ChunkDigestStream}.
+ * Each file digest is flushed as soon as it's calculated so that receiver can start transfer of that file
+ * while rest of batch is still being hashed.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class FileDigestBatchStream {
+
+	public static final String MEDIA_TYPE = ChunkDigestStream.MEDIA_TYPE;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final ObjectWriter WRITER = OBJECT_MAPPER.writerFor(FilePathDigest.class);
+	private static final ObjectReader READER = OBJECT_MAPPER.readerFor(FilePathDigest.class);
+	private static final ObjectWriter REQUEST_WRITER = OBJECT_MAPPER.writerFor(new TypeReference<List<FilePath>>() {
+	});
+	private static final byte NEW_LINE = '\n';
+
+	private FileDigestBatchStream() {
+	}
+
+	/**
+	 * Writes JSON body of batch request, list of files whose digests are requested
+	 */
+	public static void writeFilePaths(List<FilePath> filePaths, OutputStream outputStream) throws IOException {
+		REQUEST_WRITER.writeValue(outputStream, filePaths);
+	}
+
+	public static FileDigestBatchListener writerTo(OutputStream outputStream) {
+		return filePathDigest -> {
+			outputStream.write(WRITER.writeValueAsBytes(filePathDigest));
+			outputStream.write(NEW_LINE);
+			outputStream.flush();
+		};
+	}
+
+	public static void readFrom(InputStream inputStream, FileDigestBatchListener listener) throws IOException {
+		try (MappingIterator<FilePathDigest> iterator = READER.readValues(inputStream)) {
+			while (iterator.hasNextValue()) {
+				listener.fileDigested(iterator.nextValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Compact binary representation of {@link FileDigest}. Chunks are contiguous so for fixed size
+ * chunking only chunk size and file size are written in header followed by packed digest bytes,
+ * for any other layout (content defined chunking) offset and size of each chunk are written before its digest.
+ * <pre>
+ * int     format version
+ * UTF     digest type
+ * byte    layout (FIXED / VARIABLE)
+ * int     number of chunks
+ * short   digest length in bytes
+ * long    chunk size bytes   (FIXED only)
+ * long    file size bytes    (FIXED only)
+ * ...     per chunk: [long offset, long size (VARIABLE only)] digest bytes
+ * short   length of chunk digests checksum (0 if none) followed by checksum bytes
+ * </pre>
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 11/11/2018
+ */
+public class FileDigestBinaryCodec {
+
+	public static final String MEDIA_TYPE = "application/x-pareco-digest";
+
+	private static final int FORMAT_VERSION = 1;
+	private static final byte LAYOUT_FIXED = 0;
+	private static final byte LAYOUT_VARIABLE = 1;
+
+	private FileDigestBinaryCodec() {
+	}
+
+	public static void write(FileDigest fileDigest, OutputStream outputStream) throws IOException {
+		DataOutputStream output = new DataOutputStream(outputStream);
+		List<ChunkDigest> chunkDigests = fileDigest.getChunkDigests();
+		int digestLength = digestLengthOf(chunkDigests);
+		output.writeInt(FORMAT_VERSION);
+		output.writeUTF(fileDigest.getDigestType().name());
+		boolean fixedLayout = isFixedLayout(chunkDigests);
+		output.writeByte(fixedLayout ? LAYOUT_FIXED : LAYOUT_VARIABLE);
+		output.writeInt(chunkDigests.size());
+		output.writeShort(digestLength);
+		if (fixedLayout) {
+			output.writeLong(chunkDigests.isEmpty() ? 0 : chunkDigests.get(0).getChunkInfo().getSizeBytes());
+			output.writeLong(fileSizeOf(chunkDigests));
+		}
+		for (ChunkDigest chunkDigest : chunkDigests) {
+			if (!fixedLayout) {
+				output.writeLong(chunkDigest.getChunkInfo().getOffsetBytes());
+				output.writeLong(chunkDigest.getChunkInfo().getSizeBytes());
+			}
+			output.write(chunkDigest.getDigest());
+		}
+		byte[] checksum = fileDigest.getChunkDigestsChecksum();
+		if (checksum == null) {
+			output.writeShort(0);
+		} else {
+			output.writeShort(checksum.length);
+			output.write(checksum);
+		}
+		output.flush();
+	}
+
+	public static FileDigest read(InputStream inputStream) throws IOException {
+		DataInputStream input = new DataInputStream(inputStream);
+		int formatVersion = input.readInt();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported digest format version: " + formatVersion);
+		}
+		DigestType digestType = DigestType.valueOf(input.readUTF());
+		boolean fixedLayout = input.readByte() == LAYOUT_FIXED;
+		int numChunks = input.readInt();
+		int digestLength = input.readUnsignedShort();
+		long chunkSizeBytes = 0;
+		long fileSizeBytes = 0;
+		if (fixedLayout) {
+			chunkSizeBytes = input.readLong();
+			fileSizeBytes = input.readLong();
+		}
+		FileDigest.FileDigestBuilder builder = FileDigest.builder()
+			.digestType(digestType);
+		long offsetBytes = 0;
+		for (int i = 0; i < numChunks; i++) {
+			long sizeBytes;
+			if (fixedLayout) {
+				sizeBytes = Math.min(chunkSizeBytes, fileSizeBytes - offsetBytes);
+			} else {
+				offsetBytes = input.readLong();
+				sizeBytes = input.readLong();
+			}
+			byte[] digest = new byte[digestLength];
+			input.readFully(digest);
+			builder.chunkDigest(ChunkDigest.of(digest, ChunkInfo.of(offsetBytes, sizeBytes)));
+			offsetBytes += sizeBytes;
+		}
+		int checksumLength = input.readUnsignedShort();
+		if (checksumLength > 0) {
+			byte[] checksum = new byte[checksumLength];
+			input.readFully(checksum);
+			builder.chunkDigestsChecksum(checksum);
+		}
+		return builder.build();
+	}
+
+	private static int digestLengthOf(List<ChunkDigest> chunkDigests) {
+		if (chunkDigests.isEmpty()) {
+			return 0;
+		}
+		int digestLength = chunkDigests.get(0).getDigest().length;
+		for (ChunkDigest chunkDigest : chunkDigests) {
+			if (chunkDigest.getDigest().length != digestLength) {
+				throw new IllegalArgumentException(
+					"All chunk digests must have same length, got " + chunkDigest.getDigest().length + " and " + digestLength
+				);
+			}
+		}
+		return digestLength;
+	}
+
+	/**
+	 * @return true if chunks are contiguous from start of file and all except last one are of same size
+	 */
+	private static boolean isFixedLayout(List<ChunkDigest> chunkDigests) {
+		if (chunkDigests.isEmpty()) {
+			return true;
+		}
+		long chunkSizeBytes = chunkDigests.get(0).getChunkInfo().getSizeBytes();
+		long expectedOffsetBytes = 0;
+		for (int i = 0; i < chunkDigests.size(); i++) {
+			ChunkInfo chunkInfo = chunkDigests.get(i).getChunkInfo();
+			boolean last = i == chunkDigests.size() - 1;
+			if (chunkInfo.getOffsetBytes() != expectedOffsetBytes) {
+				return false;
+			}
+			if (last ? chunkInfo.getSizeBytes() > chunkSizeBytes : chunkInfo.getSizeBytes() != chunkSizeBytes) {
+				return false;
+			}
+			expectedOffsetBytes += chunkInfo.getSizeBytes();
+		}
+		return true;
+	}
+
+	private static long fileSizeOf(List<ChunkDigest> chunkDigests) {
+		if (chunkDigests.isEmpty()) {
+			return 0;
+		}
+		ChunkInfo lastChunk = chunkDigests.get(chunkDigests.size() - 1).getChunkInfo();
+		return lastChunk.getOffsetBytes() + lastChunk.getSizeBytes();
+	}
+}
@@ -0,0 +1,44 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.FileDigest;
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Persistent storage of file digests so that unchanged files don't need to be re-read
+ * on each transfer.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 08/11/2018
+ */
+public interface FileDigestCache {
+
+	FileDigestCache NO_CACHE = new FileDigestCache() {
+		@Override
+		public Optional<FileDigest> get(FileDigestCacheKey key) {
+			return Optional.empty();
+		}
+
+		@Override
+		public void put(FileDigestCacheKey key, FileDigest fileDigest) {
+		}
+	};
+
+	/**
+	 * @return cached digest if one exists for exactly same file state as given {@code key}
+	 */
+	Optional<FileDigest> get(FileDigestCacheKey key);
+
+	void put(FileDigestCacheKey key, FileDigest fileDigest);
+
+	/**
+	 * @param directory where to store cache, {@code null} for no caching
+	 */
+	static FileDigestCache inDirectory(String directory) {
+		if (directory == null) {
+			return NO_CACHE;
+		}
+		return new DirectoryFileDigestCache(new File(directory));
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import lombok.Value;
+
+/**
+ * Identifies state of file for which digest is cached, any change of file's
+ * inode, size or last modified time makes cached digest stale.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 08/11/2018
+ */
+@Value
+public class FileDigestCacheKey {
+
+	private String absolutePath;
+	/**
+	 * Inode identity of file (as given by file system), empty if not supported
+	 */
+	private String fileKey;
+	private long sizeBytes;
+	private long lastModifiedMillis;
+	private long chunkSizeBytes;
+	private DigestType digestType;
+	private ChunkingType chunkingType;
+
+	public static FileDigestCacheKey of(
+		File file, long chunkSizeBytes, DigestType digestType, ChunkingType chunkingType
+	) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		Object fileKey = attributes.fileKey();
+		return new FileDigestCacheKey(
+			file.getAbsolutePath(),
+			fileKey == null ? "" : fileKey.toString(),
+			attributes.size(),
+			attributes.lastModifiedTime().toMillis(),
+			chunkSizeBytes,
+			digestType,
+			chunkingType
+		);
+	}
+
+}
@@ -1,49 +1,417 @@
 package com.mediatoolkit.pareco.components;
 
+import com.google.common.base.Throwables;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.HashingInputStream;
 import com.mediatoolkit.pareco.exceptions.FileDeletedException;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import static com.mediatoolkit.pareco.util.Util.uncheckedConsumerSneaky;
+import static com.mediatoolkit.pareco.util.Util.uncheckedRunnableSneaky;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import lombok.AllArgsConstructor;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import static org.apache.commons.io.IOUtils.EOF;
 import org.apache.commons.io.output.NullOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
  * @since 24/10/2018
  */
+@Slf4j
 @Component
-@AllArgsConstructor(onConstructor = @__(@Autowired))
 public class FileDigestCalculator {
 
 	private static final int BUF_SIZE = 64 * 1024;
+	private static final long MAX_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+	/**
+	 * System property by which explicit unmapping of hashed regions can be turned off
+	 */
+	public static final String UNMAP_PROPERTY = "pareco.digest.unmap";
+	private static volatile Consumer<ByteBuffer> UNMAPPER = createUnmapper();
 
 	private final ChunkInfosGenerator chunkInfosGenerator;
+	private final DigestReadMode digestReadMode;
+
+	@Autowired
+	public FileDigestCalculator(
+		ChunkInfosGenerator chunkInfosGenerator,
+		@Value("${digest.read.mode:STREAM}") DigestReadMode digestReadMode
+	) {
+		this.chunkInfosGenerator = chunkInfosGenerator;
+		this.digestReadMode = digestReadMode;
+	}
+
+	public FileDigestCalculator(ChunkInfosGenerator chunkInfosGenerator) {
+		this(chunkInfosGenerator, DigestReadMode.STREAM);
+	}
 
 	public FileDigest calculateFileDigest(
 		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType
 	) throws IOException {
+		return calculateFileDigest(rootDirectory, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED);
+	}
+
+	public FileDigest calculateFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType, ChunkingType chunkingType
+	) throws IOException {
+		return calculateUncachedFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, DigestParallelism.SEQUENTIAL
+		);
+	}
+
+	private FileDigest calculateUncachedFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		ChunkingType chunkingType, DigestParallelism digestParallelism
+	) throws IOException {
+		switch (chunkingType) {
+			case FIXED:
+				return calculateFixedChunksFileDigest(rootDirectory, filePath, chunkSizeBytes, digestType, digestParallelism);
+			case CONTENT_DEFINED:
+				return calculateContentDefinedFileDigest(rootDirectory, filePath, chunkSizeBytes, digestType);
+			default:
+				throw new IllegalArgumentException("Unknown chunking type: " + chunkingType);
+		}
+	}
+
+	/**
+	 * Same as {@link #calculateFileDigest(String, FilePath, long, DigestType, ChunkingType)} but digest
+	 * is taken from {@code fileDigestCache} when file didn't change since it was cached, calculated
+	 * digest is stored into cache only if file didn't change during calculation
+	 */
+	public FileDigest calculateFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		ChunkingType chunkingType, FileDigestCache fileDigestCache
+	) throws IOException {
+		return calculateFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, fileDigestCache, DigestParallelism.SEQUENTIAL
+		);
+	}
+
+	/**
+	 * Same as {@link #calculateFileDigest(String, FilePath, long, DigestType, ChunkingType, FileDigestCache)}
+	 * but chunks of {@link ChunkingType#FIXED} chunking are hashed concurrently according to {@code digestParallelism},
+	 * resulting digest is same as sequentially calculated one
+	 */
+	public FileDigest calculateFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		ChunkingType chunkingType, FileDigestCache fileDigestCache, DigestParallelism digestParallelism
+	) throws IOException {
+		if (fileDigestCache == FileDigestCache.NO_CACHE) {
+			return calculateUncachedFileDigest(
+				rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, digestParallelism
+			);
+		}
 		File file = new File(filePath.toAbsolutePath(rootDirectory));
-		long totalSizeBytes = getFileSize(file);
-		List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(totalSizeBytes, chunkSizeBytes);
+		FileDigestCacheKey key = cacheKeyOf(file, filePath, chunkSizeBytes, digestType, chunkingType);
+		Optional<FileDigest> cachedFileDigest = fileDigestCache.get(key);
+		if (cachedFileDigest.isPresent()) {
+			return cachedFileDigest.get();
+		}
+		FileDigest fileDigest = calculateUncachedFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, digestParallelism
+		);
+		if (key.equals(cacheKeyOf(file, filePath, chunkSizeBytes, digestType, chunkingType))) {
+			fileDigestCache.put(key, fileDigest);
+		}
+		return fileDigest;
+	}
+
+	/**
+	 * Calculates digest of {@link ChunkingType#FIXED} chunks sequentially, each chunk digest is given
+	 * to {@code listener} as soon as it's calculated (or all of them at once when cached digest is used)
+	 */
+	public FileDigest streamFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		FileDigestCache fileDigestCache, ChunkDigestListener listener
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		FileDigestCacheKey key = cacheKeyOf(file, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED);
+		Optional<FileDigest> cachedFileDigest = fileDigestCache.get(key);
+		if (cachedFileDigest.isPresent()) {
+			for (ChunkDigest chunkDigest : cachedFileDigest.get().getChunkDigests()) {
+				listener.chunkDigested(chunkDigest);
+			}
+			return cachedFileDigest.get();
+		}
+		List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(key.getSizeBytes(), chunkSizeBytes);
 		List<ChunkDigest> chunkDigests = new ArrayList<>(chunkInfos.size());
 		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
 			for (ChunkInfo chunkInfo : chunkInfos) {
 				byte[] digest = calculateChunkDigest(randomAccessFile, chunkInfo, digestType);
-				chunkDigests.add(ChunkDigest.of(digest, chunkInfo));
+				ChunkDigest chunkDigest = ChunkDigest.of(digest, chunkInfo);
+				chunkDigests.add(chunkDigest);
+				listener.chunkDigested(chunkDigest);
+			}
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc digest of deleted file", ex);
+		}
+		FileDigest fileDigest = FileDigest.builder()
+			.digestType(digestType)
+			.chunkDigests(chunkDigests)
+			.build();
+		if (key.equals(cacheKeyOf(file, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED))) {
+			fileDigestCache.put(key, fileDigest);
+		}
+		return fileDigest;
+	}
+
+	private FileDigestCacheKey cacheKeyOf(
+		File file, FilePath filePath, long chunkSizeBytes, DigestType digestType, ChunkingType chunkingType
+	) throws IOException {
+		try {
+			return FileDigestCacheKey.of(file, chunkSizeBytes, digestType, chunkingType);
+		} catch (NoSuchFileException ex) {
+			throw new FileDeletedException(filePath, "Can't calc digest of deleted file", ex);
+		}
+	}
+
+	/**
+	 * Calculates hierarchical digest on top of fixed size chunks digests
+	 *
+	 * @param fanOut maximal number of children of each tree node
+	 */
+	public MerkleTree calculateMerkleTree(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType, int fanOut
+	) throws IOException {
+		return calculateMerkleTree(
+			rootDirectory, filePath, chunkSizeBytes, digestType, fanOut,
+			FileDigestCache.NO_CACHE, DigestParallelism.SEQUENTIAL
+		);
+	}
+
+	public MerkleTree calculateMerkleTree(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType, int fanOut,
+		FileDigestCache fileDigestCache, DigestParallelism digestParallelism
+	) throws IOException {
+		FileDigest fileDigest = calculateFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED, fileDigestCache, digestParallelism
+		);
+		return MerkleTree.of(fileDigest, fanOut);
+	}
+
+	/**
+	 * Calculates digests of blocks of at most {@code blockSizeBytes} within each of {@code ranges},
+	 * used to find which parts of chunks with differing digests actually differ.
+	 * Parts of ranges which are beyond the end of file have no block digests.
+	 *
+	 * @return digest whose chunks are blocks at their absolute offsets in file
+	 */
+	public FileDigest calculateBlockDigests(
+		String rootDirectory, FilePath filePath, List<ChunkInfo> ranges, long blockSizeBytes, DigestType digestType
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		long totalSizeBytes;
+		List<ChunkInfo> blockInfos = new ArrayList<>();
+		try {
+			totalSizeBytes = getFileSize(file);
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc block digests of deleted file", ex);
+		}
+		for (ChunkInfo range : ranges) {
+			long rangeEnd = Math.min(range.getOffsetBytes() + range.getSizeBytes(), totalSizeBytes);
+			if (rangeEnd <= range.getOffsetBytes()) {
+				continue;
+			}
+			chunkInfosGenerator.generateChunkInfos(rangeEnd - range.getOffsetBytes(), blockSizeBytes).stream()
+				.map(block -> ChunkInfo.of(range.getOffsetBytes() + block.getOffsetBytes(), block.getSizeBytes()))
+				.forEach(blockInfos::add);
+		}
+		byte[][] digests = new byte[blockInfos.size()][];
+		try {
+			calculateChunkDigests(file, blockInfos, 0, blockInfos.size(), digestType, digests);
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc block digests of deleted file", ex);
+		}
+		List<ChunkDigest> blockDigests = new ArrayList<>(blockInfos.size());
+		for (int i = 0; i < blockInfos.size(); i++) {
+			blockDigests.add(ChunkDigest.of(digests[i], blockInfos.get(i)));
+		}
+		return FileDigest.builder()
+			.digestType(digestType)
+			.chunkDigests(blockDigests)
+			.build();
+	}
+
+	/**
+	 * Calculates single digest of first {@code prefixSizeBytes} bytes of file, used to check whether
+	 * file only grew by appending since shorter copy of it was made
+	 *
+	 * @return digest of prefix, {@code null} if file is shorter than {@code prefixSizeBytes}
+	 */
+	public byte[] calculatePrefixDigest(
+		String rootDirectory, FilePath filePath, long prefixSizeBytes, DigestType digestType
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		try {
+			if (getFileSize(file) < prefixSizeBytes) {
+				return null;
+			}
+			byte[][] digests = new byte[1][];
+			calculateChunkDigests(
+				file, Collections.singletonList(ChunkInfo.of(0, prefixSizeBytes)), 0, 1, digestType, digests
+			);
+			return digests[0];
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc prefix digest of deleted file", ex);
+		}
+	}
+
+	private FileDigest calculateFixedChunksFileDigest(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		DigestParallelism digestParallelism
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		long totalSizeBytes = getFileSize(file);
+		List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(totalSizeBytes, chunkSizeBytes);
+		byte[][] digests = new byte[chunkInfos.size()][];
+		try {
+			int numRanges = Math.min(digestParallelism.getNumThreads(), chunkInfos.size());
+			if (numRanges <= 1) {
+				calculateChunkDigests(file, chunkInfos, 0, chunkInfos.size(), digestType, digests);
+			} else {
+				calculateChunkDigestsInParallel(file, chunkInfos, numRanges, digestType, digestParallelism, digests);
+			}
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc digest of deleted file", ex);
+		}
+		List<ChunkDigest> chunkDigests = new ArrayList<>(chunkInfos.size());
+		for (int i = 0; i < chunkInfos.size(); i++) {
+			chunkDigests.add(ChunkDigest.of(digests[i], chunkInfos.get(i)));
+		}
+		return FileDigest.builder()
+			.digestType(digestType)
+			.chunkDigests(chunkDigests)
+			.build();
+	}
+
+	/**
+	 * Splits chunks into {@code numRanges} contiguous ranges, each range is hashed sequentially
+	 * with its own file handle so that reads within range stay sequential
+	 */
+	private void calculateChunkDigestsInParallel(
+		File file, List<ChunkInfo> chunkInfos, int numRanges, DigestType digestType,
+		DigestParallelism digestParallelism, byte[][] digests
+	) throws IOException {
+		List<CompletableFuture<Void>> rangeFutures = new ArrayList<>(numRanges);
+		for (int range = 0; range < numRanges; range++) {
+			int fromIndex = (int) ((long) chunkInfos.size() * range / numRanges);
+			int toIndex = (int) ((long) chunkInfos.size() * (range + 1) / numRanges);
+			rangeFutures.add(CompletableFuture.runAsync(
+				uncheckedRunnableSneaky(() -> calculateChunkDigests(
+					file, chunkInfos, fromIndex, toIndex, digestType, digests
+				)),
+				digestParallelism.getExecutor()
+			));
+		}
+		try {
+			CompletableFuture.allOf(rangeFutures.toArray(new CompletableFuture[0])).join();
+		} catch (CompletionException ex) {
+			Throwables.throwIfInstanceOf(ex.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(ex.getCause());
+			throw ex;
+		}
+	}
+
+	private void calculateChunkDigests(
+		File file, List<ChunkInfo> chunkInfos, int fromIndex, int toIndex, DigestType digestType, byte[][] digests
+	) throws IOException {
+		switch (digestReadMode) {
+			case STREAM:
+				try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+					for (int i = fromIndex; i < toIndex; i++) {
+						digests[i] = calculateChunkDigest(randomAccessFile, chunkInfos.get(i), digestType);
+					}
+				}
+				break;
+			case CHANNEL:
+			case MEMORY_MAPPED:
+				try (FileChannel channel = openChannel(file)) {
+					ByteBuffer buffer = ByteBuffer.allocate(BUF_SIZE);
+					for (int i = fromIndex; i < toIndex; i++) {
+						digests[i] = digestReadMode == DigestReadMode.CHANNEL
+							? calculateChunkDigest(channel, buffer, chunkInfos.get(i), digestType)
+							: calculateMappedChunkDigest(channel, chunkInfos.get(i), digestType);
+					}
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown digest read mode: " + digestReadMode);
+		}
+	}
+
+	private FileChannel openChannel(File file) throws IOException {
+		try {
+			return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} catch (NoSuchFileException ex) {
+			throw new FileNotFoundException(file.getPath());
+		}
+	}
+
+	/**
+	 * Chunk boundaries and chunk digests are calculated in single pass through file
+	 */
+	private FileDigest calculateContentDefinedFileDigest(
+		String rootDirectory, FilePath filePath, long avgChunkSizeBytes, DigestType digestType
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		ContentDefinedChunker chunker = chunkInfosGenerator.newContentDefinedChunker(avgChunkSizeBytes);
+		List<ChunkDigest> chunkDigests = new ArrayList<>();
+		try (InputStream inputStream = new FileInputStream(file)) {
+			byte[] buffer = new byte[BUF_SIZE];
+			Hasher hasher = digestType.getHashFunction().newHasher();
+			long chunkOffset = 0;
+			long bufferOffset = 0;
+			int count;
+			while ((count = inputStream.read(buffer)) != EOF) {
+				int pos = 0;
+				while (pos < count) {
+					int boundary = chunker.nextBoundary(buffer, pos, count - pos);
+					if (boundary == -1) {
+						hasher.putBytes(buffer, pos, count - pos);
+						break;
+					}
+					hasher.putBytes(buffer, pos, boundary - pos);
+					pos = boundary;
+					long chunkEnd = bufferOffset + boundary;
+					chunkDigests.add(ChunkDigest.of(hasher.hash().asBytes(), ChunkInfo.of(chunkOffset, chunkEnd - chunkOffset)));
+					chunkOffset = chunkEnd;
+					hasher = digestType.getHashFunction().newHasher();
+				}
+				bufferOffset += count;
+			}
+			if (chunker.pendingSize() > 0) {
+				chunkDigests.add(ChunkDigest.of(hasher.hash().asBytes(), ChunkInfo.of(chunkOffset, chunker.pendingSize())));
 			}
 		} catch (FileNotFoundException ex) {
 			throw new FileDeletedException(filePath, "Can't calc digest of deleted file", ex);
@@ -62,6 +430,53 @@ public class FileDigestCalculator {
 		return totalSize;
 	}
 
+	private byte[] calculateChunkDigest(
+		FileChannel channel, ByteBuffer buffer, ChunkInfo chunkInfo, DigestType digestType
+	) throws IOException {
+		Hasher hasher = digestType.getHashFunction().newHasher();
+		long position = chunkInfo.getOffsetBytes();
+		long endPosition = position + chunkInfo.getSizeBytes();
+		while (position < endPosition) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), endPosition - position));
+			int count = channel.read(buffer, position);
+			if (count == EOF) {
+				throw new EOFException("Unexpected end of file at position " + position + ", expected end at " + endPosition);
+			}
+			buffer.flip();
+			hasher.putBytes(buffer);
+			position += count;
+		}
+		return hasher.hash().asBytes();
+	}
+
+	/**
+	 * Chunk is mapped in regions of at most {@link #MAX_MAPPED_REGION_SIZE} so that
+	 * huge chunks don't exhaust address space. Each region is unmapped as soon as it's hashed,
+	 * otherwise mappings pile up until GC and exhaust max number of mappings on large trees.
+	 */
+	private byte[] calculateMappedChunkDigest(
+		FileChannel channel, ChunkInfo chunkInfo, DigestType digestType
+	) throws IOException {
+		Hasher hasher = digestType.getHashFunction().newHasher();
+		long position = chunkInfo.getOffsetBytes();
+		long endPosition = position + chunkInfo.getSizeBytes();
+		if (endPosition > channel.size()) {
+			throw new EOFException("Chunk end " + endPosition + " is beyond end of file " + channel.size());
+		}
+		while (position < endPosition) {
+			long regionSize = Math.min(MAX_MAPPED_REGION_SIZE, endPosition - position);
+			MappedByteBuffer region = channel.map(MapMode.READ_ONLY, position, regionSize);
+			try {
+				hasher.putBytes(region);
+			} finally {
+				unmap(region);
+			}
+			position += regionSize;
+		}
+		return hasher.hash().asBytes();
+	}
+
 	private byte[] calculateChunkDigest(
 		RandomAccessFile file, ChunkInfo chunkInfo, DigestType digestType
 	) throws IOException {
@@ -76,5 +491,57 @@ public class FileDigestCalculator {
 		return hash.asBytes();
 	}
 
+	/**
+	 * Releases mapping of {@code region} without waiting for GC, region must not be accessed afterwards.
+	 * Mapping is left to GC if JVM doesn't allow explicit unmapping or unmapping ever failed.
+	 */
+	private static void unmap(MappedByteBuffer region) {
+		Consumer<ByteBuffer> unmapper = UNMAPPER;
+		if (unmapper == null) {
+			return;
+		}
+		try {
+			unmapper.accept(region);
+		} catch (Exception | LinkageError ex) {
+			UNMAPPER = null;
+			log.warn("Failed to unmap region, mapped regions are left to GC from now on: {}", ex.toString());
+		}
+	}
+
+	/**
+	 * Unmapping relies on JDK internals, so unmapper is used only if it's found and it successfully
+	 * releases probe buffer, otherwise {@code null} is returned and mappings are left to GC
+	 */
+	private static Consumer<ByteBuffer> createUnmapper() {
+		if (!Boolean.parseBoolean(System.getProperty(UNMAP_PROPERTY, "true"))) {
+			return null;
+		}
+		Consumer<ByteBuffer> unmapper;
+		try {
+			unmapper = findUnmapper();
+			unmapper.accept(ByteBuffer.allocateDirect(1));
+		} catch (Exception | LinkageError ex) {
+			log.warn("Mapped regions can't be unmapped explicitly, they are left to GC: {}", ex.toString());
+			return null;
+		}
+		return unmapper;
+	}
+
+	private static Consumer<ByteBuffer> findUnmapper() throws ReflectiveOperationException {
+		try {
+			//java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			return uncheckedConsumerSneaky(buffer -> invokeCleaner.invoke(unsafe, buffer));
+		} catch (ReflectiveOperationException | RuntimeException ignore) {
+		}
+		//java 8
+		Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+		Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+		return uncheckedConsumerSneaky(buffer -> cleanMethod.invoke(cleanerMethod.invoke(buffer)));
+	}
 
 }
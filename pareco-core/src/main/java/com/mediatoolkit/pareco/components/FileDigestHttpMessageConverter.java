@@ -0,0 +1,49 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.FileDigest;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Reads/writes {@link FileDigest} in {@link FileDigestBinaryCodec} format, selected by
+ * content negotiation so that peers which accept only JSON still get JSON.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 11/11/2018
+ */
+public class FileDigestHttpMessageConverter extends AbstractHttpMessageConverter<FileDigest> {
+
+	public FileDigestHttpMessageConverter() {
+		super(MediaType.valueOf(FileDigestBinaryCodec.MEDIA_TYPE));
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return FileDigest.class.equals(clazz);
+	}
+
+	@Override
+	protected FileDigest readInternal(
+		Class<? extends FileDigest> clazz, HttpInputMessage inputMessage
+	) throws IOException {
+		try {
+			return FileDigestBinaryCodec.read(new BufferedInputStream(inputMessage.getBody()));
+		} catch (IllegalArgumentException ex) {
+			throw new HttpMessageNotReadableException("Invalid binary file digest", ex);
+		}
+	}
+
+	@Override
+	protected void writeInternal(FileDigest fileDigest, HttpOutputMessage outputMessage) throws IOException {
+		OutputStream outputStream = new BufferedOutputStream(outputMessage.getBody());
+		FileDigestBinaryCodec.write(fileDigest, outputStream);
+		outputStream.flush();
+	}
+}
@@ -0,0 +1,138 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileMove;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Destination side of rename/move detection, creates missing files out of existing files
+ * with same content instead of transferring them.
+ * <p>
+ * Fingerprint of file is digest of its fixed size chunk digests so it's cheap to get
+ * from digest cache and it's same on both sides when both use same chunk size.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 14/11/2018
+ */
+@Slf4j
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class FileMover {
+
+	private final FileDigestCalculator fileDigestCalculator;
+
+	public byte[] fingerprintOf(
+		String rootDirectory, FilePath filePath, long chunkSizeBytes, DigestType digestType,
+		FileDigestCache fileDigestCache, DigestParallelism digestParallelism
+	) throws IOException {
+		FileDigest fileDigest = fileDigestCalculator.calculateFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED,
+			fileDigestCache, digestParallelism
+		);
+		return DigestPrefixes.checksumOf(digestType, fileDigest.getChunkDigests());
+	}
+
+	/**
+	 * Performs {@code fileMoves} in given order. Move is skipped if target file already exists (i.e. created
+	 * by previous move), if existing file is gone or if its fingerprint doesn't match.
+	 * Moves whose paths point outside of {@code rootDirectory} or whose existing file is not regular file
+	 * (i.e. directory or symbolic link) are rejected.
+	 *
+	 * @return performed moves
+	 */
+	public List<FileMove> moveFiles(
+		String rootDirectory, List<FileMove> fileMoves, long chunkSizeBytes,
+		FileDigestCache fileDigestCache, DigestParallelism digestParallelism
+	) {
+		Map<FilePath, byte[]> fingerprints = new HashMap<>();
+		List<FileMove> performedMoves = new ArrayList<>();
+		Path rootPath = Paths.get(rootDirectory).toAbsolutePath().normalize();
+		for (FileMove fileMove : fileMoves) {
+			Path fromPath = resolveWithinRoot(rootPath, fileMove.getFromFilePath());
+			Path toPath = resolveWithinRoot(rootPath, fileMove.getToFilePath());
+			if (fromPath == null || toPath == null) {
+				log.warn("Rejecting {}, path is outside of root directory", fileMove);
+				continue;
+			}
+			if (Files.exists(toPath, LinkOption.NOFOLLOW_LINKS) || !Files.isRegularFile(fromPath, LinkOption.NOFOLLOW_LINKS)) {
+				continue;
+			}
+			try {
+				if (!isWithinRealRoot(rootPath, fromPath) || !isWithinRealRoot(rootPath, toPath)) {
+					log.warn("Rejecting {}, path leads outside of root directory through symbolic link", fileMove);
+					continue;
+				}
+				byte[] fingerprint = fingerprints.get(fileMove.getFromFilePath());
+				if (fingerprint == null) {
+					fingerprint = fingerprintOf(
+						rootDirectory, fileMove.getFromFilePath(), chunkSizeBytes, fileMove.getDigestType(),
+						fileDigestCache, digestParallelism
+					);
+					fingerprints.put(fileMove.getFromFilePath(), fingerprint);
+				}
+				if (!Arrays.equals(fingerprint, fileMove.getFingerprint())) {
+					continue;
+				}
+				Files.createDirectories(toPath.getParent());
+				if (fileMove.isCopy()) {
+					Files.copy(fromPath, toPath, StandardCopyOption.COPY_ATTRIBUTES);
+				} else {
+					move(fromPath, toPath);
+				}
+				performedMoves.add(fileMove);
+			} catch (IOException ex) {
+				log.debug("Can't perform {}: {}", fileMove, ex.toString());
+			}
+		}
+		return performedMoves;
+	}
+
+	/**
+	 * @return normalized absolute path of {@code filePath} or {@code null} if it's not within {@code rootPath}
+	 */
+	private static Path resolveWithinRoot(Path rootPath, FilePath filePath) {
+		Path path = rootPath.resolve(filePath.toRelativePath()).normalize();
+		if (!path.startsWith(rootPath) || path.equals(rootPath)) {
+			return null;
+		}
+		return path;
+	}
+
+	/**
+	 * @return whether real path of {@code path}, or of its closest existing ancestor, is within {@code rootPath}
+	 */
+	private static boolean isWithinRealRoot(Path rootPath, Path path) throws IOException {
+		Path existingPath = path;
+		while (!Files.exists(existingPath, LinkOption.NOFOLLOW_LINKS)) {
+			existingPath = existingPath.getParent();
+		}
+		return existingPath.toRealPath().startsWith(rootPath.toRealPath());
+	}
+
+	private void move(Path fromPath, Path toPath) throws IOException {
+		try {
+			Files.move(fromPath, toPath, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(fromPath, toPath);
+		}
+	}
+
+}
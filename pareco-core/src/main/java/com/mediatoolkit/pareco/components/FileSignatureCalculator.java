@@ -0,0 +1,76 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.Hasher;
+import com.mediatoolkit.pareco.exceptions.FileDeletedException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.FileSignature.BlockSignature;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import static org.apache.commons.io.IOUtils.EOF;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Calculates {@link FileSignature} of file, weak rolling checksum and strong
+ * digest of each block are calculated in a single read of block.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class FileSignatureCalculator {
+
+	private static final int BUF_SIZE = 64 * 1024;
+
+	private final ChunkInfosGenerator chunkInfosGenerator;
+
+	public FileSignature calculateFileSignature(
+		String rootDirectory, FilePath filePath, long blockSizeBytes, DigestType digestType
+	) throws IOException {
+		File file = new File(filePath.toAbsolutePath(rootDirectory));
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			long totalSizeBytes = randomAccessFile.length();
+			List<ChunkInfo> chunkInfos = chunkInfosGenerator.generateChunkInfos(totalSizeBytes, blockSizeBytes);
+			List<BlockSignature> blockSignatures = new ArrayList<>(chunkInfos.size());
+			byte[] buffer = new byte[BUF_SIZE];
+			for (ChunkInfo chunkInfo : chunkInfos) {
+				blockSignatures.add(calculateBlockSignature(randomAccessFile, chunkInfo, digestType, buffer));
+			}
+			return FileSignature.builder()
+				.digestType(digestType)
+				.blockSizeBytes(blockSizeBytes)
+				.fileSizeBytes(totalSizeBytes)
+				.blockSignatures(blockSignatures)
+				.build();
+		} catch (FileNotFoundException ex) {
+			throw new FileDeletedException(filePath, "Can't calc signature of deleted file", ex);
+		}
+	}
+
+	private BlockSignature calculateBlockSignature(
+		RandomAccessFile file, ChunkInfo chunkInfo, DigestType digestType, byte[] buffer
+	) throws IOException {
+		InputStream inputStream = new FileChunkInputStream(
+			file, chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes()
+		);
+		RollingChecksum rollingChecksum = RollingChecksum.ofWindowSize((int) chunkInfo.getSizeBytes());
+		Hasher hasher = digestType.getHashFunction().newHasher();
+		int count;
+		while ((count = inputStream.read(buffer)) != EOF) {
+			rollingChecksum.update(buffer, 0, count);
+			hasher.putBytes(buffer, 0, count);
+		}
+		return BlockSignature.of(rollingChecksum.getValue(), hasher.hash().asBytes(), chunkInfo);
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
+import org.apache.commons.io.input.NullInputStream;
+
+/**
+ * Digests of chunks calculated inline while chunk bytes are being transferred. Sender and receiver
+ * both record them so that at file commit it can be verified that receiver got exactly the bytes which
+ * were sent, without reading the file again.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 13/11/2018
+ */
+public class InlineChunkDigests {
+
+	@Getter
+	private final DigestType digestType;
+	private final Map<ChunkInfo, byte[]> chunkDigests = new ConcurrentHashMap<>();
+
+	public InlineChunkDigests(DigestType digestType) {
+		this.digestType = digestType;
+	}
+
+	public HashingInputStream hashing(InputStream inputStream) {
+		return new HashingInputStream(digestType.getHashFunction(), inputStream);
+	}
+
+	/**
+	 * @return hasher for chunk whose bytes arrive in pieces instead of through stream
+	 */
+	public Hasher hasher() {
+		return digestType.getHashFunction().newHasher();
+	}
+
+	/**
+	 * Records digest of bytes which were read through {@code hashingInputStream} as digest of chunk
+	 */
+	public void record(ChunkInfo chunkInfo, HashingInputStream hashingInputStream) {
+		record(chunkInfo, hashingInputStream.hash());
+	}
+
+	public void record(ChunkInfo chunkInfo, HashCode hash) {
+		chunkDigests.put(chunkInfo, hash.asBytes());
+	}
+
+	/**
+	 * Records digest of chunk transferred as zero chunk marker, see {@link ZeroChunks}
+	 */
+	public void recordZeroChunk(ChunkInfo chunkInfo) throws IOException {
+		HashingInputStream hashingInputStream = hashing(new NullInputStream(chunkInfo.getSizeBytes()));
+		ByteStreams.exhaust(hashingInputStream);
+		record(chunkInfo, hashingInputStream);
+	}
+
+	public FileDigest toFileDigest() {
+		return mergedInto(null);
+	}
+
+	/**
+	 * @return {@code baseFileDigest} where digests of recorded chunks are replaced with recorded ones,
+	 * i.e. digests of bytes which were actually transferred
+	 */
+	public FileDigest mergedInto(FileDigest baseFileDigest) {
+		Map<ChunkInfo, byte[]> merged = new LinkedHashMap<>();
+		if (baseFileDigest != null && baseFileDigest.getDigestType() == digestType) {
+			merged.putAll(baseFileDigest.toChunkInfoMap());
+		}
+		merged.putAll(chunkDigests);
+		return FileDigest.builder()
+			.digestType(digestType)
+			.chunkDigests(EntryStream.of(merged)
+				.sorted(Comparator.comparingLong(entry -> entry.getKey().getOffsetBytes()))
+				.mapKeyValue((chunkInfo, digest) -> ChunkDigest.of(digest, chunkInfo))
+				.toList()
+			)
+			.build();
+	}
+
+	/**
+	 * @return recorded chunks whose digest is missing in {@code transferredFileDigest} or differs from it
+	 */
+	public List<ChunkInfo> mismatchedChunks(FileDigest transferredFileDigest) {
+		if (transferredFileDigest.getDigestType() != digestType) {
+			return StreamEx.ofKeys(chunkDigests).toList();
+		}
+		Map<ChunkInfo, byte[]> transferredChunkDigests = transferredFileDigest.toChunkInfoMap();
+		return EntryStream.of(chunkDigests)
+			.removeKeyValue((chunkInfo, digest) -> Arrays.equals(digest, transferredChunkDigests.get(chunkInfo)))
+			.keys()
+			.sortedByLong(ChunkInfo::getOffsetBytes)
+			.toList();
+	}
+
+	/**
+	 * @return true if {@code fileDigest} has digests of all fixed size chunks of file with size {@code fileSizeBytes}
+	 */
+	public static boolean coversWholeFile(FileDigest fileDigest, long fileSizeBytes, long chunkSizeBytes) {
+		long expectedOffsetBytes = 0;
+		for (ChunkDigest chunkDigest : fileDigest.getChunkDigests()) {
+			ChunkInfo chunkInfo = chunkDigest.getChunkInfo();
+			long expectedSizeBytes = Math.min(chunkSizeBytes, fileSizeBytes - expectedOffsetBytes);
+			if (chunkInfo.getOffsetBytes() != expectedOffsetBytes || chunkInfo.getSizeBytes() != expectedSizeBytes) {
+				return false;
+			}
+			expectedOffsetBytes += expectedSizeBytes;
+		}
+		return expectedOffsetBytes == fileSizeBytes;
+	}
+}
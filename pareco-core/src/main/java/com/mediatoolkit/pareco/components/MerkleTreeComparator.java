@@ -0,0 +1,110 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconstructs {@link FileDigest} of remote file by comparing its {@link MerkleTree} with local one
+ * top-down, only nodes of sub-trees which mismatch are fetched from remote.
+ * <br>
+ * Chunk digests within sub-trees equal to local ones are taken from local tree, so resulting digest
+ * is same as one which would be received by fetching whole remote {@link FileDigest}.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 07/11/2018
+ */
+@Component
+public class MerkleTreeComparator {
+
+	/**
+	 * Access to tree of remote file
+	 */
+	public interface RemoteMerkleTree {
+
+		MerkleTreeSummary summary();
+
+		/**
+		 * @return digests of nodes on {@code level} with given {@code indices}, in same order
+		 */
+		byte[][] nodes(int level, List<Integer> indices);
+	}
+
+	public FileDigest resolveRemoteFileDigest(
+		MerkleTree localTree, long chunkSizeBytes, RemoteMerkleTree remoteTree
+	) {
+		MerkleTreeSummary summary = remoteTree.summary();
+		int fanOut = localTree.getFanOut();
+		if (summary.getFanOut() != fanOut || summary.getDigestType() != localTree.getDigestType()) {
+			throw new IllegalStateException(
+				"Remote tree with fanOut " + summary.getFanOut() + " and " + summary.getDigestType() +
+					" doesn't match local tree with fanOut " + fanOut + " and " + localTree.getDigestType()
+			);
+		}
+		int remoteNumLeaves = summary.getNumLeaves();
+		if (remoteNumLeaves == localTree.numLeaves() && Arrays.equals(summary.getRootDigest(), localTree.rootDigest())) {
+			return localTree.getFileDigest();
+		}
+		Map<Integer, byte[]> mismatchingLeaves = new HashMap<>();
+		if (remoteNumLeaves > 0) {
+			int remoteHeight = MerkleTree.height(remoteNumLeaves, fanOut);
+			int level = Math.min(remoteHeight, localTree.height()) - 1;
+			List<Integer> indices = new ArrayList<>();
+			for (int i = 0; i < MerkleTree.levelSize(remoteNumLeaves, fanOut, level); i++) {
+				indices.add(i);
+			}
+			while (!indices.isEmpty()) {
+				byte[][] remoteNodes = remoteTree.nodes(level, indices);
+				List<Integer> mismatching = new ArrayList<>();
+				for (int i = 0; i < indices.size(); i++) {
+					int index = indices.get(i);
+					boolean localExists = localTree.numLeaves() > 0 && index < localTree.levelSize(level);
+					if (!localExists || !Arrays.equals(remoteNodes[i], localTree.node(level, index))) {
+						mismatching.add(index);
+						if (level == 0) {
+							mismatchingLeaves.put(index, remoteNodes[i]);
+						}
+					}
+				}
+				if (level == 0) {
+					break;
+				}
+				level--;
+				indices = childrenOf(mismatching, fanOut, MerkleTree.levelSize(remoteNumLeaves, fanOut, level));
+			}
+		}
+		FileDigest.FileDigestBuilder builder = FileDigest.builder()
+			.digestType(localTree.getDigestType());
+		for (int leaf = 0; leaf < remoteNumLeaves; leaf++) {
+			long offsetBytes = leaf * chunkSizeBytes;
+			ChunkInfo chunkInfo = ChunkInfo.of(
+				offsetBytes, Math.min(chunkSizeBytes, summary.getFileSizeBytes() - offsetBytes)
+			);
+			byte[] digest = mismatchingLeaves.containsKey(leaf)
+				? mismatchingLeaves.get(leaf)
+				: localTree.node(0, leaf);
+			builder.chunkDigest(ChunkDigest.of(digest, chunkInfo));
+		}
+		return builder.build();
+	}
+
+	private static List<Integer> childrenOf(List<Integer> parents, int fanOut, int childLevelSize) {
+		List<Integer> children = new ArrayList<>();
+		for (int parent : parents) {
+			int to = Math.min((parent + 1) * fanOut, childLevelSize);
+			for (int child = parent * fanOut; child < to; child++) {
+				children.add(child);
+			}
+		}
+		return children;
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.mediatoolkit.pareco.components;
+
+/**
+ * Weak rsync-style rolling checksum over window of fixed length.
+ * <br>
+ * Checksum consists of two 16-bit sums: {@code a} which is sum of all bytes in window
+ * and {@code b} which is sum of prefix sums. Both can be updated in constant time when window
+ * slides by one byte, so checksum of every window in file can be computed in single pass.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+public class RollingChecksum {
+
+	private static final int MOD_MASK = 0xFFFF;
+
+	private final int windowSize;
+	private int a;
+	private int b;
+	private int position;
+
+	private RollingChecksum(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	public static RollingChecksum ofWindowSize(int windowSize) {
+		return new RollingChecksum(windowSize);
+	}
+
+	/**
+	 * Calculate checksum of window {@code buf[off ... off + len)}
+	 */
+	public static RollingChecksum of(byte[] buf, int off, int len) {
+		RollingChecksum checksum = new RollingChecksum(len);
+		checksum.update(buf, off, len);
+		return checksum;
+	}
+
+	/**
+	 * Feed next bytes of initial window, total number of fed bytes should
+	 * be equal to window size before starting to {@link #roll(byte, byte)}.
+	 */
+	public void update(byte[] buf, int off, int len) {
+		int a = this.a;
+		int b = this.b;
+		for (int i = 0; i < len; i++) {
+			int x = buf[off + i] & 0xFF;
+			a += x;
+			b += (windowSize - position - i) * x;
+		}
+		position += len;
+		this.a = a & MOD_MASK;
+		this.b = b & MOD_MASK;
+	}
+
+	/**
+	 * Slide window by one byte.
+	 *
+	 * @param outByte byte which leaves window (first byte of current window)
+	 * @param inByte byte which enters window (byte right after current window)
+	 */
+	public void roll(byte outByte, byte inByte) {
+		int out = outByte & 0xFF;
+		int in = inByte & 0xFF;
+		a = (a - out + in) & MOD_MASK;
+		b = (b - windowSize * out + a) & MOD_MASK;
+	}
+
+	public int getValue() {
+		return (b << 16) | a;
+	}
+
+	public static int checksumOf(byte[] buf, int off, int len) {
+		return of(buf, off, len).getValue();
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+/**
+ * Detection of chunks which consist only of zero bytes (i.e. holes of sparse files or preallocated
+ * regions of database files). Such chunks are transferred as marker without content and receiver
+ * writes zeros only where its file doesn't already contain them, so that holes stay sparse.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class ZeroChunks {
+
+	/**
+	 * Response header by which server marks downloaded chunk as zero chunk sent without content
+	 */
+	public static final String ZERO_CHUNK_HEADER = "X-Pareco-Zero-Chunk";
+
+	static final int BUF_SIZE = 64 * 1024;
+	private static final int FIRST_READ_SIZE = 4 * 1024;
+
+	private ZeroChunks() {
+	}
+
+	/**
+	 * @return {@code true} if range of {@code file} defined by {@code chunkInfo} is within file
+	 * and contains only zero bytes
+	 */
+	public static boolean isZeroChunk(RandomAccessFile file, ChunkInfo chunkInfo) throws IOException {
+		if (!isWithinFile(file, chunkInfo)) {
+			return false;
+		}
+		byte[] firstBytes = readFirstBytes(file, chunkInfo);
+		return isZero(firstBytes, firstBytes.length) && isZeroAfter(file, chunkInfo, firstBytes.length);
+	}
+
+	/**
+	 * Same check as {@link #isZeroChunk} for chunk which is about to be sent, bytes read to recognize
+	 * non-zero chunk are part of returned content so that they are not read from file twice.
+	 *
+	 * @return content of chunk or {@code null} if it's zero chunk
+	 */
+	public static InputStream contentUnlessZeroChunk(RandomAccessFile file, ChunkInfo chunkInfo) throws IOException {
+		if (!isWithinFile(file, chunkInfo)) {
+			return new FileChunkInputStream(file, chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes());
+		}
+		byte[] firstBytes = readFirstBytes(file, chunkInfo);
+		if (isZero(firstBytes, firstBytes.length) && isZeroAfter(file, chunkInfo, firstBytes.length)) {
+			return null;
+		}
+		//sequence closes exhausted streams, file itself must stay open
+		return new SequenceInputStream(
+			new ByteArrayInputStream(firstBytes),
+			new CloseShieldInputStream(new FileChunkInputStream(
+				file, chunkInfo.getOffsetBytes() + firstBytes.length, chunkInfo.getSizeBytes() - firstBytes.length
+			))
+		);
+	}
+
+	private static boolean isWithinFile(RandomAccessFile file, ChunkInfo chunkInfo) throws IOException {
+		long endPosition = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+		return chunkInfo.getSizeBytes() > 0 && file.length() >= endPosition;
+	}
+
+	/**
+	 * Most non-zero chunks are recognized by first {@link #FIRST_READ_SIZE} bytes without reading more
+	 */
+	private static byte[] readFirstBytes(RandomAccessFile file, ChunkInfo chunkInfo) throws IOException {
+		byte[] firstBytes = new byte[(int) Math.min(FIRST_READ_SIZE, chunkInfo.getSizeBytes())];
+		file.seek(chunkInfo.getOffsetBytes());
+		file.readFully(firstBytes);
+		return firstBytes;
+	}
+
+	private static boolean isZeroAfter(RandomAccessFile file, ChunkInfo chunkInfo, int skipBytes) throws IOException {
+		long endPosition = chunkInfo.getOffsetBytes() + chunkInfo.getSizeBytes();
+		long position = chunkInfo.getOffsetBytes() + skipBytes;
+		byte[] buffer = new byte[(int) Math.min(BUF_SIZE, endPosition - position)];
+		while (position < endPosition) {
+			int length = (int) Math.min(buffer.length, endPosition - position);
+			file.seek(position);
+			file.readFully(buffer, 0, length);
+			if (!isZero(buffer, length)) {
+				return false;
+			}
+			position += length;
+		}
+		return true;
+	}
+
+	static boolean isZero(byte[] buffer, int length) {
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
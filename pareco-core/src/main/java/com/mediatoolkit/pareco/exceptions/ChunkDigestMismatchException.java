@@ -0,0 +1,36 @@
+package com.mediatoolkit.pareco.exceptions;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ErrorBody.Type;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Thrown when digests of chunk bytes received by one side of transfer differ from digests
+ * of bytes sent by the other side
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 13/11/2018
+ */
+public class ChunkDigestMismatchException extends ParecoException {
+
+	@Getter
+	private final FilePath filePath;
+	@Getter
+	private final List<ChunkInfo> mismatchedChunks;
+
+	public ChunkDigestMismatchException(FilePath filePath, List<ChunkInfo> mismatchedChunks) {
+		super(String.format(
+			"Transferred chunks of file %s are corrupted, mismatched %d chunks, first: %s",
+			filePath.toRelativePath(), mismatchedChunks.size(), mismatchedChunks.get(0)
+		));
+		this.filePath = filePath;
+		this.mismatchedChunks = mismatchedChunks;
+	}
+
+	@Override
+	public Type type() {
+		return Type.ILLEGAL_STATE;
+	}
+}
@@ -0,0 +1,27 @@
+package com.mediatoolkit.pareco.exceptions;
+
+import com.mediatoolkit.pareco.model.ErrorBody.Type;
+import lombok.Getter;
+
+/**
+ * Thrown when request parameter has value which server can't work with, responded as bad request
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class InvalidRequestParameterException extends ParecoException {
+
+	@Getter
+	private final String parameterName;
+
+	public InvalidRequestParameterException(String parameterName, Object value, String requirement) {
+		super(String.format("Invalid value of parameter %s: %s, %s", parameterName, value, requirement));
+		this.parameterName = parameterName;
+	}
+
+	@Override
+	public Type type() {
+		return Type.ILLEGAL_STATE;
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.mediatoolkit.pareco.exceptions;
+
+import com.mediatoolkit.pareco.model.ErrorBody.Type;
+
+/**
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class UnsupportedCompressionException extends ParecoException {
+
+	public UnsupportedCompressionException(String contentEncoding) {
+		super("Unsupported content encoding: " + contentEncoding);
+	}
+
+	@Override
+	public Type type() {
+		return Type.ILLEGAL_STATE;
+	}
+
+}
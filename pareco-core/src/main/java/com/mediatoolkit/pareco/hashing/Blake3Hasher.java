@@ -0,0 +1,27 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.HashCode;
+import org.apache.commons.codec.digest.Blake3;
+
+/**
+ * 256-bit BLAKE3 hash backed by commons-codec implementation
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+class Blake3Hasher extends ByteArrayHasher {
+
+	static final int BITS = 256;
+
+	private final Blake3 blake3 = Blake3.initHash();
+
+	@Override
+	protected void update(byte[] bytes, int offset, int length) {
+		blake3.update(bytes, offset, length);
+	}
+
+	@Override
+	public HashCode hash() {
+		return HashCode.fromBytes(blake3.doFinalize(BITS / 8));
+	}
+}
@@ -0,0 +1,119 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Hasher;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Base for {@link Hasher}s which consume only byte arrays, primitives are fed in
+ * little endian order same as in guava's hashers.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+abstract class ByteArrayHasher implements Hasher {
+
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	private final byte[] scratch = new byte[8];
+
+	protected abstract void update(byte[] bytes, int offset, int length);
+
+	@Override
+	public Hasher putByte(byte b) {
+		scratch[0] = b;
+		update(scratch, 0, 1);
+		return this;
+	}
+
+	@Override
+	public Hasher putBytes(byte[] bytes) {
+		update(bytes, 0, bytes.length);
+		return this;
+	}
+
+	@Override
+	public Hasher putBytes(byte[] bytes, int off, int len) {
+		update(bytes, off, len);
+		return this;
+	}
+
+	@Override
+	public Hasher putBytes(ByteBuffer bytes) {
+		if (bytes.hasArray()) {
+			update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+			bytes.position(bytes.limit());
+			return this;
+		}
+		byte[] buffer = new byte[Math.min(COPY_BUFFER_SIZE, bytes.remaining())];
+		while (bytes.hasRemaining()) {
+			int length = Math.min(buffer.length, bytes.remaining());
+			bytes.get(buffer, 0, length);
+			update(buffer, 0, length);
+		}
+		return this;
+	}
+
+	@Override
+	public Hasher putShort(short s) {
+		return putLittleEndian(s, 2);
+	}
+
+	@Override
+	public Hasher putInt(int i) {
+		return putLittleEndian(i, 4);
+	}
+
+	@Override
+	public Hasher putLong(long l) {
+		return putLittleEndian(l, 8);
+	}
+
+	@Override
+	public Hasher putFloat(float f) {
+		return putInt(Float.floatToRawIntBits(f));
+	}
+
+	@Override
+	public Hasher putDouble(double d) {
+		return putLong(Double.doubleToRawLongBits(d));
+	}
+
+	@Override
+	public Hasher putBoolean(boolean b) {
+		return putByte(b ? (byte) 1 : (byte) 0);
+	}
+
+	@Override
+	public Hasher putChar(char c) {
+		return putLittleEndian(c, 2);
+	}
+
+	@Override
+	public Hasher putUnencodedChars(CharSequence charSequence) {
+		for (int i = 0; i < charSequence.length(); i++) {
+			putChar(charSequence.charAt(i));
+		}
+		return this;
+	}
+
+	@Override
+	public Hasher putString(CharSequence charSequence, Charset charset) {
+		return putBytes(charSequence.toString().getBytes(charset));
+	}
+
+	@Override
+	public <T> Hasher putObject(T instance, Funnel<? super T> funnel) {
+		funnel.funnel(instance, this);
+		return this;
+	}
+
+	private Hasher putLittleEndian(long value, int numBytes) {
+		for (int i = 0; i < numBytes; i++) {
+			scratch[i] = (byte) (value >>> (8 * i));
+		}
+		update(scratch, 0, numBytes);
+		return this;
+	}
+}
@@ -0,0 +1,29 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.HashCode;
+import java.util.zip.Checksum;
+
+/**
+ * 32-bit hash of {@link Checksum}, same representation as guava's checksum based hash functions
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+class ChecksumHasher extends ByteArrayHasher {
+
+	private final Checksum checksum;
+
+	ChecksumHasher(Checksum checksum) {
+		this.checksum = checksum;
+	}
+
+	@Override
+	protected void update(byte[] bytes, int offset, int length) {
+		checksum.update(bytes, offset, length);
+	}
+
+	@Override
+	public HashCode hash() {
+		return HashCode.fromInt((int) checksum.getValue());
+	}
+}
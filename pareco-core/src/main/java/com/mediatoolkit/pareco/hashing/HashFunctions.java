@@ -0,0 +1,56 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+import lombok.SneakyThrows;
+
+/**
+ * Hash functions which are not provided by guava's {@link Hashing}
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+public class HashFunctions {
+
+	private static final String JDK_CRC32C_CLASS = "java.util.zip.CRC32C";
+
+	private HashFunctions() {
+	}
+
+	public static HashFunction xxHash64() {
+		return new StreamingHashFunction("HashFunctions.xxHash64()", 64, XxHash64Hasher::new);
+	}
+
+	public static HashFunction blake3() {
+		return new StreamingHashFunction("HashFunctions.blake3()", Blake3Hasher.BITS, Blake3Hasher::new);
+	}
+
+	/**
+	 * CRC32C using {@code java.util.zip.CRC32C} (hardware intrinsic) when running on java 9+,
+	 * otherwise guava's table based implementation. Both give same hash codes.
+	 */
+	public static HashFunction crc32c() {
+		Constructor<? extends Checksum> jdkCrc32cConstructor = jdkCrc32cConstructor();
+		if (jdkCrc32cConstructor == null) {
+			return Hashing.crc32c();
+		}
+		return new StreamingHashFunction(
+			"HashFunctions.crc32c()", 32, () -> new ChecksumHasher(newChecksum(jdkCrc32cConstructor))
+		);
+	}
+
+	private static Constructor<? extends Checksum> jdkCrc32cConstructor() {
+		try {
+			return Class.forName(JDK_CRC32C_CLASS).asSubclass(Checksum.class).getConstructor();
+		} catch (ClassNotFoundException | NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	@SneakyThrows
+	private static Checksum newChecksum(Constructor<? extends Checksum> constructor) {
+		return constructor.newInstance();
+	}
+}
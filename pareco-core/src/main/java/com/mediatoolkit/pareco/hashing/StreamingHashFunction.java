@@ -0,0 +1,88 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.function.Supplier;
+
+/**
+ * {@link HashFunction} whose every hash is computed by new {@link Hasher}
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+class StreamingHashFunction implements HashFunction {
+
+	private final String name;
+	private final int bits;
+	private final Supplier<Hasher> hasherSupplier;
+
+	StreamingHashFunction(String name, int bits, Supplier<Hasher> hasherSupplier) {
+		this.name = name;
+		this.bits = bits;
+		this.hasherSupplier = hasherSupplier;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		return hasherSupplier.get();
+	}
+
+	@Override
+	public Hasher newHasher(int expectedInputSize) {
+		return newHasher();
+	}
+
+	@Override
+	public HashCode hashInt(int input) {
+		return newHasher().putInt(input).hash();
+	}
+
+	@Override
+	public HashCode hashLong(long input) {
+		return newHasher().putLong(input).hash();
+	}
+
+	@Override
+	public HashCode hashBytes(byte[] input) {
+		return newHasher().putBytes(input).hash();
+	}
+
+	@Override
+	public HashCode hashBytes(byte[] input, int off, int len) {
+		return newHasher().putBytes(input, off, len).hash();
+	}
+
+	@Override
+	public HashCode hashBytes(ByteBuffer input) {
+		return newHasher().putBytes(input).hash();
+	}
+
+	@Override
+	public HashCode hashUnencodedChars(CharSequence input) {
+		return newHasher().putUnencodedChars(input).hash();
+	}
+
+	@Override
+	public HashCode hashString(CharSequence input, Charset charset) {
+		return newHasher().putString(input, charset).hash();
+	}
+
+	@Override
+	public <T> HashCode hashObject(T instance, Funnel<? super T> funnel) {
+		return newHasher().putObject(instance, funnel).hash();
+	}
+
+	@Override
+	public int bits() {
+		return bits;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
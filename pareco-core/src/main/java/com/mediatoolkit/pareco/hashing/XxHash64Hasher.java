@@ -0,0 +1,124 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Streaming implementation of 64-bit xxHash (XXH64) with seed 0
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 12/11/2018
+ */
+class XxHash64Hasher extends ByteArrayHasher {
+
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+	private static final int STRIPE_LENGTH = 32;
+
+	private final byte[] buffer = new byte[STRIPE_LENGTH];
+	private int bufferedLength = 0;
+	private long totalLength = 0;
+	private long v1 = PRIME64_1 + PRIME64_2;
+	private long v2 = PRIME64_2;
+	private long v3 = 0;
+	private long v4 = -PRIME64_1;
+
+	@Override
+	protected void update(byte[] bytes, int offset, int length) {
+		totalLength += length;
+		if (bufferedLength + length < STRIPE_LENGTH) {
+			System.arraycopy(bytes, offset, buffer, bufferedLength, length);
+			bufferedLength += length;
+			return;
+		}
+		int end = offset + length;
+		if (bufferedLength > 0) {
+			int fill = STRIPE_LENGTH - bufferedLength;
+			System.arraycopy(bytes, offset, buffer, bufferedLength, fill);
+			processStripe(buffer, 0);
+			offset += fill;
+			bufferedLength = 0;
+		}
+		while (end - offset >= STRIPE_LENGTH) {
+			processStripe(bytes, offset);
+			offset += STRIPE_LENGTH;
+		}
+		bufferedLength = end - offset;
+		System.arraycopy(bytes, offset, buffer, 0, bufferedLength);
+	}
+
+	private void processStripe(byte[] bytes, int offset) {
+		v1 = round(v1, readLong(bytes, offset));
+		v2 = round(v2, readLong(bytes, offset + 8));
+		v3 = round(v3, readLong(bytes, offset + 16));
+		v4 = round(v4, readLong(bytes, offset + 24));
+	}
+
+	@Override
+	public HashCode hash() {
+		long h;
+		if (totalLength >= STRIPE_LENGTH) {
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = mergeRound(h, v1);
+			h = mergeRound(h, v2);
+			h = mergeRound(h, v3);
+			h = mergeRound(h, v4);
+		} else {
+			h = PRIME64_5;
+		}
+		h += totalLength;
+		int offset = 0;
+		while (bufferedLength - offset >= 8) {
+			h ^= round(0, readLong(buffer, offset));
+			h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+			offset += 8;
+		}
+		if (bufferedLength - offset >= 4) {
+			h ^= (readInt(buffer, offset) & 0xFFFFFFFFL) * PRIME64_1;
+			h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+			offset += 4;
+		}
+		while (offset < bufferedLength) {
+			h ^= (buffer[offset] & 0xFF) * PRIME64_5;
+			h = Long.rotateLeft(h, 11) * PRIME64_1;
+			offset++;
+		}
+		h ^= h >>> 33;
+		h *= PRIME64_2;
+		h ^= h >>> 29;
+		h *= PRIME64_3;
+		h ^= h >>> 32;
+		return HashCode.fromLong(h);
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * PRIME64_2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME64_1;
+	}
+
+	private static long mergeRound(long acc, long val) {
+		acc ^= round(0, val);
+		return acc * PRIME64_1 + PRIME64_4;
+	}
+
+	private static long readLong(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFFL)
+			| (bytes[offset + 1] & 0xFFL) << 8
+			| (bytes[offset + 2] & 0xFFL) << 16
+			| (bytes[offset + 3] & 0xFFL) << 24
+			| (bytes[offset + 4] & 0xFFL) << 32
+			| (bytes[offset + 5] & 0xFFL) << 40
+			| (bytes[offset + 6] & 0xFFL) << 48
+			| (bytes[offset + 7] & 0xFFL) << 56;
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF)
+			| (bytes[offset + 1] & 0xFF) << 8
+			| (bytes[offset + 2] & 0xFF) << 16
+			| (bytes[offset + 3] & 0xFF) << 24;
+	}
+}
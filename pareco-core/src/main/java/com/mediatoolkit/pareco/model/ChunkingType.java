@@ -0,0 +1,19 @@
+package com.mediatoolkit.pareco.model;
+
+/**
+ * Defines how file is split into chunks for digest calculation.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 06/11/2018
+ */
+public enum ChunkingType {
+
+	/**
+	 * File is cut at fixed chunk size boundaries
+	 */
+	FIXED,
+	/**
+	 * File is cut at content-defined boundaries, chunk size is chunk size on average
+	 */
+	CONTENT_DEFINED
+}
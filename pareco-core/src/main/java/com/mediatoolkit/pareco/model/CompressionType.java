@@ -0,0 +1,136 @@
+package com.mediatoolkit.pareco.model;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.mediatoolkit.pareco.exceptions.UnsupportedCompressionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.iq80.snappy.Snappy;
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+
+/**
+ * Compression of chunk content on wire, negotiated through {@code Content-Encoding} and
+ * {@code Accept-Encoding} headers. Compression level is used only by {@link #ZSTD}.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@AllArgsConstructor
+@Getter
+public enum CompressionType {
+
+	NONE("identity") {
+		@Override
+		public int compressedSize(byte[] data, int length, int level) {
+			return length;
+		}
+
+		@Override
+		public OutputStream compressing(OutputStream outputStream, int level) {
+			return outputStream;
+		}
+
+		@Override
+		public InputStream decompressing(InputStream inputStream) {
+			return new CloseShieldInputStream(inputStream);
+		}
+	},
+	SNAPPY("x-snappy-framed") {
+		@Override
+		public int compressedSize(byte[] data, int length, int level) {
+			return Snappy.compress(data, 0, length, new byte[Snappy.maxCompressedLength(length)], 0);
+		}
+
+		@Override
+		public OutputStream compressing(OutputStream outputStream, int level) throws IOException {
+			return new SnappyFramedOutputStream(outputStream);
+		}
+
+		@Override
+		public InputStream decompressing(InputStream inputStream) throws IOException {
+			return new SnappyFramedInputStream(new CloseShieldInputStream(inputStream), true);
+		}
+	},
+	ZSTD("zstd") {
+		@Override
+		public int compressedSize(byte[] data, int length, int level) {
+			return Zstd.compress(Arrays.copyOf(data, length), level).length;
+		}
+
+		@Override
+		public OutputStream compressing(OutputStream outputStream, int level) throws IOException {
+			return new ZstdOutputStream(outputStream, level);
+		}
+
+		@Override
+		public InputStream decompressing(InputStream inputStream) throws IOException {
+			return new ZstdInputStream(new CloseShieldInputStream(inputStream));
+		}
+	};
+
+	public static final int DEFAULT_LEVEL = 3;
+	public static final int MIN_LEVEL = 1;
+	public static final int MAX_LEVEL = 22;
+
+	private final String contentEncoding;
+
+	/**
+	 * @return number of bytes first {@code length} bytes of {@code data} take once compressed
+	 */
+	public abstract int compressedSize(byte[] data, int length, int level);
+
+	/**
+	 * @return stream which compresses everything written into {@code outputStream}, closing it
+	 * finishes compression and closes {@code outputStream}
+	 */
+	public abstract OutputStream compressing(OutputStream outputStream, int level) throws IOException;
+
+	/**
+	 * @return stream of decompressed content of {@code inputStream}, it should be closed to release
+	 * decompressor, which leaves {@code inputStream} open (i.e. request stream which container reuses)
+	 */
+	public abstract InputStream decompressing(InputStream inputStream) throws IOException;
+
+	/**
+	 * @param contentEncoding value of {@code Content-Encoding} header, {@code null} means no compression
+	 * @throws UnsupportedCompressionException if encoding is not known
+	 */
+	public static CompressionType ofContentEncoding(String contentEncoding) {
+		if (contentEncoding == null) {
+			return NONE;
+		}
+		for (CompressionType compressionType : values()) {
+			if (compressionType.contentEncoding.equalsIgnoreCase(contentEncoding.trim())) {
+				return compressionType;
+			}
+		}
+		throw new UnsupportedCompressionException(contentEncoding);
+	}
+
+	/**
+	 * @param acceptEncoding value of {@code Accept-Encoding} header, list of encodings
+	 * @return first known encoding from list or {@link #NONE} if there is none
+	 */
+	public static CompressionType ofAcceptEncoding(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return NONE;
+		}
+		for (String encoding : acceptEncoding.split(",")) {
+			String encodingName = encoding.split(";")[0].trim();
+			for (CompressionType compressionType : values()) {
+				if (compressionType.contentEncoding.equalsIgnoreCase(encodingName)) {
+					return compressionType;
+				}
+			}
+		}
+		return NONE;
+	}
+
+}
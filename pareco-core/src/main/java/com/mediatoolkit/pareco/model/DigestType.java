@@ -2,6 +2,7 @@ package com.mediatoolkit.pareco.model;
 
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import com.mediatoolkit.pareco.hashing.HashFunctions;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -22,10 +23,12 @@ public enum DigestType {
 	SHA_256(Hashing.sha256()),
 	SHA_384(Hashing.sha384()),
 	SHA_512(Hashing.sha512()),
-	CRC_32_C(Hashing.crc32c()),
+	CRC_32_C(HashFunctions.crc32c()),
 	CRC_32(Hashing.crc32()),
 	ADLER_32(Hashing.adler32()),
-	FARM_HASH_FINGERPRINT_64(Hashing.farmHashFingerprint64());
+	FARM_HASH_FINGERPRINT_64(Hashing.farmHashFingerprint64()),
+	XX_HASH_64(HashFunctions.xxHash64()),
+	BLAKE3(HashFunctions.blake3());
 
 	private final HashFunction hashFunction;
 
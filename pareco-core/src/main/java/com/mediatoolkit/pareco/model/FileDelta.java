@@ -0,0 +1,111 @@
+package com.mediatoolkit.pareco.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.Singular;
+import one.util.streamex.StreamEx;
+
+/**
+ * Recipe for reconstructing source file on destination side out of blocks of
+ * existing destination (basis) file and literal data from source file.
+ * <br>
+ * Instructions are ordered by offset in reconstructed file and together they
+ * cover whole source file without overlaps.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+@Builder
+public class FileDelta {
+
+	private long fileSizeBytes;
+	@Singular
+	private List<DeltaInstruction> instructions;
+
+	public enum InstructionType {
+		/**
+		 * Copy block from basis file at {@link DeltaInstruction#basisOffsetBytes}
+		 */
+		COPY,
+		/**
+		 * Transfer literal data from source file
+		 */
+		LITERAL
+	}
+
+	/**
+	 * @return true if applying this delta would produce exactly the same file as basis file
+	 */
+	public boolean identityOf(long basisFileSizeBytes) {
+		if (fileSizeBytes != basisFileSizeBytes) {
+			return false;
+		}
+		return StreamEx.of(instructions).allMatch(instruction ->
+			instruction.getType() == InstructionType.COPY &&
+				instruction.getBasisOffsetBytes() == instruction.getChunkInfo().getOffsetBytes()
+		);
+	}
+
+	public List<DeltaInstruction> copyInstructions() {
+		return StreamEx.of(instructions)
+			.filter(instruction -> instruction.getType() == InstructionType.COPY)
+			.toList();
+	}
+
+	/**
+	 * @param maxChunkSizeBytes maximal size of produced chunk
+	 * @return chunks of source file that need to be transferred, literal ranges
+	 * bigger than {@code maxChunkSizeBytes} are split into multiple chunks
+	 */
+	public List<ChunkInfo> literalChunks(long maxChunkSizeBytes) {
+		List<ChunkInfo> chunkInfos = new ArrayList<>();
+		for (DeltaInstruction instruction : instructions) {
+			if (instruction.getType() != InstructionType.LITERAL) {
+				continue;
+			}
+			ChunkInfo literal = instruction.getChunkInfo();
+			long endOffset = literal.getOffsetBytes() + literal.getSizeBytes();
+			for (long offset = literal.getOffsetBytes(); offset < endOffset; offset += maxChunkSizeBytes) {
+				long sizeBytes = Math.min(maxChunkSizeBytes, endOffset - offset);
+				chunkInfos.add(ChunkInfo.of(offset, sizeBytes));
+			}
+		}
+		return chunkInfos;
+	}
+
+	@Data
+	@AllArgsConstructor(staticName = "of")
+	@NoArgsConstructor(access = AccessLevel.PRIVATE)
+	@Setter(AccessLevel.PRIVATE)
+	@Builder
+	public static class DeltaInstruction {
+
+		private InstructionType type;
+		/**
+		 * Location in reconstructed (source) file
+		 */
+		private ChunkInfo chunkInfo;
+		/**
+		 * Offset in basis file, meaningful only for {@link InstructionType#COPY}
+		 */
+		private long basisOffsetBytes;
+
+		public static DeltaInstruction copy(ChunkInfo chunkInfo, long basisOffsetBytes) {
+			return of(InstructionType.COPY, chunkInfo, basisOffsetBytes);
+		}
+
+		public static DeltaInstruction literal(ChunkInfo chunkInfo) {
+			return of(InstructionType.LITERAL, chunkInfo, chunkInfo.getOffsetBytes());
+		}
+	}
+}
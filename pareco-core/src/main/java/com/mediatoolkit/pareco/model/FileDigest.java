@@ -25,6 +25,11 @@ public class FileDigest {
 	private DigestType digestType;
 	@Singular
 	private List<ChunkDigest> chunkDigests;
+	/**
+	 * Set only when chunk digests are truncated to prefixes, digest of all full chunk digests
+	 * which allows to detect false match of prefixes, see {@code DigestPrefixes}
+	 */
+	private byte[] chunkDigestsChecksum;
 
 	public Map<ChunkInfo, byte[]> toChunkInfoMap() {
 		return StreamEx.of(chunkDigests)
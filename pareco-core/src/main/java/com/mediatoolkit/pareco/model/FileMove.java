@@ -0,0 +1,42 @@
+package com.mediatoolkit.pareco.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Proposal to create missing destination file out of existing destination file which
+ * is expected to have same content, i.e. when file got renamed or moved on source side.
+ * Move is performed only if existing file has expected fingerprint.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 14/11/2018
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+@Builder
+public class FileMove {
+
+	/**
+	 * Existing destination file
+	 */
+	private FilePath fromFilePath;
+	/**
+	 * Missing destination file
+	 */
+	private FilePath toFilePath;
+	/**
+	 * If true {@link #fromFilePath} is copied and kept, otherwise it's moved
+	 */
+	private boolean copy;
+	private DigestType digestType;
+	/**
+	 * Fingerprint of source file, see {@code FileMover#fingerprintOf}
+	 */
+	private byte[] fingerprint;
+}
@@ -0,0 +1,28 @@
+package com.mediatoolkit.pareco.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Digest of one of files requested in batch
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Data
+@AllArgsConstructor(staticName = "of")
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+@Builder
+public class FilePathDigest {
+
+	private FilePath filePath;
+	/**
+	 * {@code null} if digest of file couldn't be calculated, i.e. file got deleted in meantime
+	 */
+	private FileDigest fileDigest;
+}
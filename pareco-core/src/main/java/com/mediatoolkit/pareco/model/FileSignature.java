@@ -0,0 +1,44 @@
+package com.mediatoolkit.pareco.model;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.Singular;
+
+/**
+ * Signature of destination file used for rolling checksum block matching.
+ * Each block has weak rolling checksum which can be cheaply re-computed at
+ * any byte offset of source file and strong digest used to confirm a match.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 05/11/2018
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+@Builder
+public class FileSignature {
+
+	private DigestType digestType;
+	private long blockSizeBytes;
+	private long fileSizeBytes;
+	@Singular
+	private List<BlockSignature> blockSignatures;
+
+	@Data
+	@AllArgsConstructor(staticName = "of")
+	@NoArgsConstructor(access = AccessLevel.PRIVATE)
+	@Setter(AccessLevel.PRIVATE)
+	@Builder
+	public static class BlockSignature {
+
+		private int weakChecksum;
+		private byte[] strongDigest;
+		private ChunkInfo chunkInfo;
+	}
+}
@@ -0,0 +1,131 @@
+package com.mediatoolkit.pareco.model;
+
+import com.google.common.hash.Hasher;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Hierarchical digest of file built on top of chunk digests.
+ * <br>
+ * Level {@code 0} are leaves, digests of file chunks in order of offset. Each node on level
+ * {@code l > 0} is digest of concatenated digests of (at most) {@code fanOut} consecutive nodes
+ * on level {@code l - 1}, node {@code i} on level {@code l} covers leaves
+ * {@code [i * fanOut^l, (i + 1) * fanOut^l)}. Top level has single node, the root.
+ * <br>
+ * Two files of same size are equal (according to chunk digests) when their roots are equal,
+ * and mismatching chunks can be located by descending only into mismatching sub-trees.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 07/11/2018
+ */
+public class MerkleTree {
+
+	@Getter
+	private final DigestType digestType;
+	@Getter
+	private final int fanOut;
+	private final List<List<byte[]>> levels;
+	@Getter
+	private final FileDigest fileDigest;
+
+	private MerkleTree(DigestType digestType, int fanOut, List<List<byte[]>> levels, FileDigest fileDigest) {
+		this.digestType = digestType;
+		this.fanOut = fanOut;
+		this.levels = levels;
+		this.fileDigest = fileDigest;
+	}
+
+	public static MerkleTree of(FileDigest fileDigest, int fanOut) {
+		if (fanOut < 2) {
+			throw new IllegalArgumentException("Fan out must be at least 2, got: " + fanOut);
+		}
+		DigestType digestType = fileDigest.getDigestType();
+		List<List<byte[]>> levels = new ArrayList<>();
+		List<byte[]> leaves = new ArrayList<>(fileDigest.getChunkDigests().size());
+		for (ChunkDigest chunkDigest : fileDigest.getChunkDigests()) {
+			leaves.add(chunkDigest.getDigest());
+		}
+		levels.add(leaves);
+		List<byte[]> current = leaves;
+		while (current.size() > 1) {
+			List<byte[]> parents = new ArrayList<>(levelSize(current.size(), fanOut, 1));
+			for (int from = 0; from < current.size(); from += fanOut) {
+				int to = Math.min(from + fanOut, current.size());
+				Hasher hasher = digestType.getHashFunction().newHasher();
+				for (int i = from; i < to; i++) {
+					hasher.putBytes(current.get(i));
+				}
+				parents.add(hasher.hash().asBytes());
+			}
+			levels.add(parents);
+			current = parents;
+		}
+		return new MerkleTree(digestType, fanOut, Collections.unmodifiableList(levels), fileDigest);
+	}
+
+	/**
+	 * @return number of nodes on {@code level} of tree with {@code numLeaves} leaves
+	 */
+	public static int levelSize(int numLeaves, int fanOut, int level) {
+		long size = numLeaves;
+		for (int l = 0; l < level; l++) {
+			size = (size + fanOut - 1) / fanOut;
+		}
+		return (int) size;
+	}
+
+	/**
+	 * @return number of levels of tree with {@code numLeaves} leaves, tree without leaves has single empty level
+	 */
+	public static int height(int numLeaves, int fanOut) {
+		int height = 1;
+		for (int size = numLeaves; size > 1; size = (size + fanOut - 1) / fanOut) {
+			height++;
+		}
+		return height;
+	}
+
+	public int height() {
+		return levels.size();
+	}
+
+	public int numLeaves() {
+		return levels.get(0).size();
+	}
+
+	public int levelSize(int level) {
+		return levels.get(level).size();
+	}
+
+	public byte[] node(int level, int index) {
+		return levels.get(level).get(index);
+	}
+
+	/**
+	 * @return digest of root node or {@code null} if file is empty
+	 */
+	public byte[] rootDigest() {
+		List<byte[]> top = levels.get(levels.size() - 1);
+		return top.isEmpty() ? null : top.get(0);
+	}
+
+	public MerkleTreeSummary toSummary() {
+		List<ChunkDigest> chunkDigests = fileDigest.getChunkDigests();
+		long fileSizeBytes = 0;
+		if (!chunkDigests.isEmpty()) {
+			ChunkInfo lastChunk = chunkDigests.get(chunkDigests.size() - 1).getChunkInfo();
+			fileSizeBytes = lastChunk.getOffsetBytes() + lastChunk.getSizeBytes();
+		}
+		return MerkleTreeSummary.builder()
+			.digestType(digestType)
+			.fanOut(fanOut)
+			.numLeaves(numLeaves())
+			.fileSizeBytes(fileSizeBytes)
+			.rootDigest(rootDigest())
+			.build();
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.mediatoolkit.pareco.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Shape and root of {@link MerkleTree}, enough to tell if file is equal and to
+ * start top-down descent into sub-trees.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 07/11/2018
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+@Builder
+public class MerkleTreeSummary {
+
+	private DigestType digestType;
+	private int fanOut;
+	private int numLeaves;
+	private long fileSizeBytes;
+	private byte[] rootDigest;
+}
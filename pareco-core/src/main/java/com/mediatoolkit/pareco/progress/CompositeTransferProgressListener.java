@@ -2,6 +2,7 @@ package com.mediatoolkit.pareco.progress;
 
 import com.mediatoolkit.pareco.model.ChunkInfo;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import java.util.Arrays;
 import java.util.List;
@@ -54,6 +55,11 @@ public class CompositeTransferProgressListener implements TransferProgressListen
 		listeners.forEach(listener -> listener.started(directoryStructure, chunkSizeBytes));
 	}
 
+	@Override
+	public void movedFiles(List<FileMove> fileMoves) {
+		listeners.forEach(listener -> listener.movedFiles(fileMoves));
+	}
+
 	@Override
 	public void deletedFiles(List<FilePath> filePaths) {
 		listeners.forEach(listener -> listener.deletedFiles(filePaths));
@@ -104,6 +110,16 @@ public class CompositeTransferProgressListener implements TransferProgressListen
 		listeners.forEach(listener -> listener.fileChunkTransferred(filePath, chunkInfo));
 	}
 
+	@Override
+	public void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
+		listeners.forEach(listener -> listener.fileZeroChunkTransferred(filePath, chunkInfo));
+	}
+
+	@Override
+	public void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes) {
+		listeners.forEach(listener -> listener.fileChunkCompressed(filePath, chunkInfo, wireBytes));
+	}
+
 	@Override
 	public void completed() {
 		listeners.forEach(TransferProgressListener::completed);
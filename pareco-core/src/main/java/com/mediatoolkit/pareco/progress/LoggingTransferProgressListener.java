@@ -3,6 +3,7 @@ package com.mediatoolkit.pareco.progress;
 import com.mediatoolkit.pareco.model.ChunkInfo;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import com.mediatoolkit.pareco.progress.StatsRecordingTransferProgressListener.FileTransferStats;
 import com.mediatoolkit.pareco.progress.log.LoggingAppender;
@@ -102,7 +103,8 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 	}
 
 	private double totalProgressPercent() {
-		long bytesCompleted = statsListener.getTransferredBytes() + statsListener.getSkippedBytes();
+		long bytesCompleted = statsListener.getTransferredBytes() + statsListener.getSkippedBytes()
+			+ statsListener.getZeroBytes();
 		long bytesTotal = statsListener.getTotalSize();
 		return round1d(100. * bytesCompleted / bytesTotal);
 	}
@@ -120,7 +122,8 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		}
 		long bytesLeft = statsListener.getTotalSize()
 			- statsListener.getTransferredBytes()
-			- statsListener.getSkippedBytes();
+			- statsListener.getSkippedBytes()
+			- statsListener.getZeroBytes();
 		double secondsLeft = bytesLeft / transferSpeed;
 
 		double percentSkipped = (double) statsListener.getSkippedBytes() / statsListener.getTotalSize();
@@ -166,6 +169,17 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		logTransfer("--------------------------------------------");
 	}
 
+	@Override
+	public void movedFiles(List<FileMove> fileMoves) {
+		if (!loggingFilter.isFiles()) {
+			return;
+		}
+		fileMoves.forEach(fileMove -> logFile(
+			fileMove.isCopy() ? "Copied existing file: " : "Moved existing file: ",
+			quote(fileMove.getFromFilePath()), " -> ", quote(fileMove.getToFilePath())
+		));
+	}
+
 	@Override
 	public void deletedFiles(List<FilePath> filePaths) {
 		if (!loggingFilter.isFiles()) {
@@ -339,6 +353,38 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		);
 	}
 
+	@Override
+	public void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
+		if (!loggingFilter.isChunks()) {
+			return;
+		}
+		long fileSize = fileMetadataMap.get(filePath).getFileSizeBytes();
+		String chunkRank = chunkRank(filePath, chunkInfo);
+		if (statsListener == null) {
+			logChunk(format("[%s] | (%s) [%s] | Completed zero chunk in file: ",
+				fileSizePretty(fileSize), chunkRank, fileSizePretty(chunkInfo.getSizeBytes())),
+				quote(filePath)
+			);
+			return;
+		}
+		logChunk(format("Total: %s%% | (%s) [%s] | (%s) [%s] | Completed zero chunk in file: ",
+			totalProgressPercent(), fileRank(filePath), fileSizePretty(fileSize),
+			chunkRank, fileSizePretty(chunkInfo.getSizeBytes())),
+			quote(filePath)
+		);
+	}
+
+	@Override
+	public void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes) {
+		if (!loggingFilter.isChunks()) {
+			return;
+		}
+		logChunk(format("(%s) [%s] | Sent as [%s] on wire, chunk in file: ",
+			chunkRank(filePath, chunkInfo), fileSizePretty(chunkInfo.getSizeBytes()), fileSizePretty(wireBytes)),
+			quote(filePath)
+		);
+	}
+
 	@Override
 	public void completed() {
 		if (!loggingFilter.isStartEnd()) {
@@ -357,6 +403,8 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		double skippedSizePercent = divRound1d(100 * statsListener.getSkippedBytes(), totalSize);
 		String transferredSize = fileSizePretty(statsListener.getTransferredBytes());
 		double transferredSizePercent = divRound1d(100 * statsListener.getTransferredBytes(), totalSize);
+		String zeroSize = fileSizePretty(statsListener.getZeroBytes());
+		double zeroSizePercent = divRound1d(100 * statsListener.getZeroBytes(), totalSize);
 		int numDirectories = statsListener.getNumDirectories();
 		int numFiles = statsListener.getNumFiles();
 		int numSkippedFiles = statsListener.getSkippedFiles();
@@ -366,15 +414,25 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		double avgSpeed = divRound1d(1000 * statsListener.getTransferredBytes(), statsListener.totalTime());
 		double effectiveAvgSpeed = divRound1d(1000 * totalSize, statsListener.totalTime());
 		int numSkippedFilesChunks = statsListener.getSkippedFilesChunks();
-		int numTransferredFilesChunks = statsListener.getTransferredChunks() + statsListener.getSkippedChunks();
+		int numTransferredFilesChunks = statsListener.getTransferredChunks() + statsListener.getSkippedChunks()
+			+ statsListener.getZeroChunks();
 		double skippedChunksPercent = divRound1d(100 * statsListener.getSkippedChunks(), numTransferredFilesChunks);
 		double transferredChunksPercent = divRound1d(100 * statsListener.getTransferredChunks(), numTransferredFilesChunks);
+		double zeroChunksPercent = divRound1d(100 * statsListener.getZeroChunks(), numTransferredFilesChunks);
 		logTransfer("--------------------------------------------");
 		logTransfer("Transfer task is ", highlight("completed"), ", stats:");
 		logTransfer("  - Total duration: ", totalDuration);
 		logTransfer("  - Total size: ", totalSizePretty);
 		logTransfer("     - Skipped: ", skippedSize, ", ", skippedSizePercent + "%");
 		logTransfer("     - Transferred: ", transferredSize, ", ", transferredSizePercent + "%");
+		logTransfer("     - Zero: ", zeroSize, ", ", zeroSizePercent + "%");
+		if (statsListener.getCompressedChunks() > 0) {
+			String wireSize = fileSizePretty(statsListener.wireBytes());
+			double compressionRatio = divRound1d(
+				100 * statsListener.getCompressedWireBytes(), statsListener.getCompressedPayloadBytes()
+			);
+			logTransfer("     - On wire: ", wireSize, ", compressed chunks to ", compressionRatio + "%");
+		}
 		logTransfer("  - Num directories: ", numDirectories);
 		logTransfer("     - Deleted: ", statsListener.getDeletedDirectories());
 		logTransfer("  - Num files: ", numFiles);
@@ -384,6 +442,7 @@ public class LoggingTransferProgressListener implements TransferProgressListener
 		logTransfer("         - Num chunks: ", numTransferredFilesChunks);
 		logTransfer("             - Skipped: ", statsListener.getSkippedChunks(), ", ", skippedChunksPercent + "%");
 		logTransfer("             - Transferred: ", statsListener.getTransferredChunks(), ", ", transferredChunksPercent + "%");
+		logTransfer("             - Zero: ", statsListener.getZeroChunks(), ", ", zeroChunksPercent + "%");
 		logTransfer("     - Deleted: ", statsListener.getDeletedFiles());
 		logTransfer("     - Concurrent deletions: ", statsListener.getConcurrentDeletions());
 		logTransfer("  - Speed:");
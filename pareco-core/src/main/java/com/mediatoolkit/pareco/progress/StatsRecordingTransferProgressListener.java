@@ -3,6 +3,7 @@ package com.mediatoolkit.pareco.progress;
 import com.mediatoolkit.pareco.model.ChunkInfo;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import java.util.HashMap;
 import java.util.List;
@@ -28,9 +29,11 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 	private long analyzeTimeEnd;
 	private long skippedBytes;
 	private long transferredBytes;
+	private long zeroBytes;
 	private int skippedFiles;
 	private int transferredFiles;
 	private long totalSize;
+	private int movedFiles;
 	private int deletedFiles;
 	private int deletedDirectories;
 	private int concurrentDeletions;
@@ -39,6 +42,13 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 	private int skippedFilesChunks;
 	private int transferredChunks;
 	private int skippedChunks;
+	private int zeroChunks;
+	private int compressedChunks;
+	/**
+	 * Payload and wire bytes of chunks transferred with compression enabled
+	 */
+	private long compressedPayloadBytes;
+	private long compressedWireBytes;
 
 	private Map<FilePath, FileTransferStats> filesStats = new HashMap<>();
 	private int currentFileRank = 0;
@@ -56,6 +66,14 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 		return analyzeTimeEnd - analyzeTimeStart;
 	}
 
+	/**
+	 * @return number of bytes of transferred chunks' content which went over wire, differs from
+	 * {@link #getTransferredBytes()} by effect of compression
+	 */
+	public long wireBytes() {
+		return transferredBytes - compressedPayloadBytes + compressedWireBytes;
+	}
+
 	public FileTransferStats getFileStats(FilePath filePath) {
 		return filesStats.get(filePath);
 	}
@@ -88,6 +106,11 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 			.sum();
 	}
 
+	@Override
+	public void movedFiles(List<FileMove> fileMoves) {
+		movedFiles += fileMoves.size();
+	}
+
 	@Override
 	public void deletedFiles(List<FilePath> filePaths) {
 		deletedFiles += filePaths.size();
@@ -163,6 +186,27 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 		transferredChunks++;
 	}
 
+	@Override
+	@Synchronized
+	public void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
+		FileTransferStats fileStats = filesStats.get(filePath);
+		fileStats.zeroChunks++;
+		fileStats.zeroBytes += chunkInfo.getSizeBytes();
+		zeroChunks++;
+		zeroBytes += chunkInfo.getSizeBytes();
+	}
+
+	@Override
+	@Synchronized
+	public void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes) {
+		FileTransferStats fileStats = filesStats.get(filePath);
+		fileStats.compressedPayloadBytes += chunkInfo.getSizeBytes();
+		fileStats.compressedWireBytes += wireBytes;
+		compressedChunks++;
+		compressedPayloadBytes += chunkInfo.getSizeBytes();
+		compressedWireBytes += wireBytes;
+	}
+
 	@Override
 	public void completed() {
 		timeEnd = System.currentTimeMillis();
@@ -181,13 +225,21 @@ public class StatsRecordingTransferProgressListener implements TransferProgressL
 
 		private int skippedChunks;
 		private int transferredChunks;
+		private int zeroChunks;
 
 		private long skippedBytes;
 		private long transferredBytes;
+		private long zeroBytes;
+		private long compressedPayloadBytes;
+		private long compressedWireBytes;
 
 		public long totalTime() {
 			return timeEnd - timeStart;
 		}
+
+		public long wireBytes() {
+			return transferredBytes - compressedPayloadBytes + compressedWireBytes;
+		}
 	}
 
 }
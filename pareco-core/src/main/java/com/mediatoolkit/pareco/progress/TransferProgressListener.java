@@ -2,6 +2,7 @@ package com.mediatoolkit.pareco.progress;
 
 import com.mediatoolkit.pareco.model.ChunkInfo;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
 import java.util.List;
 
@@ -17,6 +18,8 @@ public interface TransferProgressListener {
 
 	void started(DirectoryStructure directoryStructure, long chunkSizeBytes);
 
+	void movedFiles(List<FileMove> fileMoves);
+
 	void deletedFiles(List<FilePath> filePaths);
 
 	void deletedDirectories(List<FilePath> filePaths);
@@ -37,6 +40,19 @@ public interface TransferProgressListener {
 
 	void fileChunkTransferred(FilePath filePath, ChunkInfo chunkInfo);
 
+	/**
+	 * Chunk consisting only of zero bytes is transferred as marker without its content
+	 */
+	void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo);
+
+	/**
+	 * Chunk is transferred with compression enabled, invoked after {@link #fileChunkTransferred}
+	 *
+	 * @param wireBytes number of bytes chunk's content took on wire, equal to chunk's size if
+	 *                  content turned out incompressible and was sent raw
+	 */
+	void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes);
+
 	void completed();
 
 	void aborted();
@@ -55,6 +71,10 @@ public interface TransferProgressListener {
 		public void started(DirectoryStructure directoryStructure, long chunkSizeBytes) {
 		}
 
+		@Override
+		public void movedFiles(List<FileMove> fileMoves) {
+		}
+
 		@Override
 		public void deletedFiles(List<FilePath> filePaths) {
 		}
@@ -95,6 +115,14 @@ public interface TransferProgressListener {
 		public void fileChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
 		}
 
+		@Override
+		public void fileZeroChunkTransferred(FilePath filePath, ChunkInfo chunkInfo) {
+		}
+
+		@Override
+		public void fileChunkCompressed(FilePath filePath, ChunkInfo chunkInfo, long wireBytes) {
+		}
+
 		@Override
 		public void completed() {
 		}
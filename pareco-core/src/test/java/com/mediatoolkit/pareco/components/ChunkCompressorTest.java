@@ -0,0 +1,66 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.base.Strings;
+import com.mediatoolkit.pareco.model.CompressionType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class ChunkCompressorTest {
+
+	@Test
+	public void testCompressibleRoundTrip() throws IOException {
+		byte[] content = Strings.repeat("compressible content ", 10_000).getBytes(StandardCharsets.UTF_8);
+		for (CompressionType compressionType : CompressionType.values()) {
+			ChunkCompressor chunkCompressor = ChunkCompressor.sample(
+				new ByteArrayInputStream(content), compressionType, CompressionType.DEFAULT_LEVEL
+			);
+			assertThat(chunkCompressor.getCompressionType()).isEqualTo(compressionType);
+			ByteArrayOutputStream wire = new ByteArrayOutputStream();
+			long wireBytes = chunkCompressor.writeTo(wire);
+			assertThat(wireBytes).isEqualTo(wire.size());
+			if (compressionType != CompressionType.NONE) {
+				assertThat(wireBytes).isLessThan(content.length / 10);
+			}
+			byte[] decompressed = IOUtils.toByteArray(
+				compressionType.decompressing(new ByteArrayInputStream(wire.toByteArray()))
+			);
+			assertThat(decompressed).isEqualTo(content);
+		}
+	}
+
+	@Test
+	public void testIncompressibleIsSentRaw() throws IOException {
+		byte[] content = new byte[3 * ChunkCompressor.SAMPLE_SIZE_BYTES];
+		new Random(42).nextBytes(content);
+		ChunkCompressor chunkCompressor = ChunkCompressor.sample(
+			new ByteArrayInputStream(content), CompressionType.ZSTD, CompressionType.DEFAULT_LEVEL
+		);
+		assertThat(chunkCompressor.getCompressionType()).isEqualTo(CompressionType.NONE);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		assertThat(chunkCompressor.writeTo(wire)).isEqualTo(content.length);
+		assertThat(wire.toByteArray()).isEqualTo(content);
+	}
+
+	@Test
+	public void testEmptyContentIsSentRaw() throws IOException {
+		ChunkCompressor chunkCompressor = ChunkCompressor.sample(
+			new ByteArrayInputStream(new byte[0]), CompressionType.SNAPPY, CompressionType.DEFAULT_LEVEL
+		);
+		assertThat(chunkCompressor.getCompressionType()).isEqualTo(CompressionType.NONE);
+		assertThat(chunkCompressor.writeTo(new ByteArrayOutputStream())).isEqualTo(0);
+	}
+
+	@Test
+	public void testEncodingNegotiation() {
+		assertThat(CompressionType.ofContentEncoding(null)).isEqualTo(CompressionType.NONE);
+		assertThat(CompressionType.ofContentEncoding("zstd")).isEqualTo(CompressionType.ZSTD);
+		assertThat(CompressionType.ofAcceptEncoding("gzip, x-snappy-framed;q=0.5")).isEqualTo(CompressionType.SNAPPY);
+		assertThat(CompressionType.ofAcceptEncoding("gzip")).isEqualTo(CompressionType.NONE);
+	}
+}
@@ -0,0 +1,87 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.Test;
+
+public class ChunkFrameStreamTest {
+
+	@Test
+	public void testFramesRoundTrip() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(buffer);
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(0, 4), stream("abcd"));
+		ChunkFrameStream.writeZeroChunk(outputStream, "s1", ChunkInfo.of(4, 4));
+		ChunkFrameStream.writeChunk(outputStream, "s2", ChunkInfo.of(8, 2), stream("efgh"));
+		List<String> received = new ArrayList<>();
+		ChunkFrameStream.readFrom(new ByteArrayInputStream(buffer.toByteArray()), (fileSession, chunkInfo, content) ->
+			received.add(fileSession + " " + chunkInfo.getOffsetBytes() + " " + chunkInfo.getSizeBytes() + " " + (
+				content == null ? "<zero>" : IOUtils.toString(content, StandardCharsets.UTF_8)
+			))
+		);
+		assertThat(received).containsExactly("s1 0 4 abcd", "s1 4 4 <zero>", "s2 8 2 ef");
+	}
+
+	@Test
+	public void testUnreadContentIsSkipped() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(buffer);
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(0, 4), stream("abcd"));
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(4, 4), stream("efgh"));
+		List<ChunkInfo> received = new ArrayList<>();
+		ChunkFrameStream.readFrom(new ByteArrayInputStream(buffer.toByteArray()), (fileSession, chunkInfo, content) ->
+			received.add(chunkInfo)
+		);
+		assertThat(received).containsExactly(ChunkInfo.of(0, 4), ChunkInfo.of(4, 4));
+	}
+
+	@Test
+	public void testDeletedFrameEndsStream() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(buffer);
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(0, 4), stream("abcd"));
+		ChunkFrameStream.writeFileDeleted(outputStream, "s1", ChunkInfo.of(4, 4));
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(8, 4), stream("ijkl"));
+		List<String> received = new ArrayList<>();
+		ChunkFrameStream.readFrom(new ByteArrayInputStream(buffer.toByteArray()), new ChunkFrameListener() {
+
+			@Override
+			public void chunkReceived(String fileSession, ChunkInfo chunkInfo, InputStream content) {
+				received.add("chunk " + chunkInfo.getOffsetBytes());
+			}
+
+			@Override
+			public void fileDeleted(String fileSession, ChunkInfo chunkInfo) {
+				received.add("deleted " + chunkInfo.getOffsetBytes());
+			}
+		});
+		assertThat(received).containsExactly("chunk 0", "deleted 4");
+		assertThatThrownBy(() -> ChunkFrameStream.readFrom(
+			new ByteArrayInputStream(buffer.toByteArray()), (fileSession, chunkInfo, content) -> {
+			}
+		))
+			.isInstanceOf(IOException.class)
+			.hasMessageContaining("deleted");
+	}
+
+	@Test(expected = InputStreamSizeMissMatchException.class)
+	public void testShortContentIsRejected() throws IOException {
+		DataOutputStream outputStream = new DataOutputStream(new ByteArrayOutputStream());
+		ChunkFrameStream.writeChunk(outputStream, "s1", ChunkInfo.of(0, 4), stream("abc"));
+	}
+
+	private static ByteArrayInputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,129 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.util.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DestinationChunkIndexTest {
+
+	private static final long CHUNK_SIZE = 4;
+
+	private final File root = new File("testTmpChunkIndexDir");
+	private final FilePath sourcePath = FilePath.of("", "old");
+	private final FilePath targetPath = FilePath.of("", "new");
+	private final FileDigestCalculator digestCalculator = new FileDigestCalculator(new ChunkInfosGenerator());
+
+	@Before
+	public void setUp() {
+		Files.delete(root);
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		Files.delete(root);
+	}
+
+	@Test
+	public void testIndexedChunksAreCopiedToOtherOffsets() throws IOException {
+		write(sourcePath, "aaaabbbbcc");
+		DestinationChunkIndex index = new DestinationChunkIndex(root.getPath());
+		index.index(sourcePath, digestOf(sourcePath));
+		write(targetPath, "bbbbXXXXcc");
+		FileDigest wanted = digestOf(targetPath);
+		write(targetPath, "          ");
+		try (RandomAccessFile targetFile = new RandomAccessFile(fileOf(targetPath), "rw")) {
+			assertThat(index.copyChunks(wanted, targetFile)).containsExactly(
+				ChunkInfo.of(0, 4), ChunkInfo.of(8, 2)
+			);
+		}
+		assertThat(read(targetPath)).isEqualTo("bbbb    cc");
+	}
+
+	@Test
+	public void testChangedSourceChunkIsNotCopied() throws IOException {
+		write(sourcePath, "aaaabbbb");
+		DestinationChunkIndex index = new DestinationChunkIndex(root.getPath());
+		index.index(sourcePath, digestOf(sourcePath));
+		write(sourcePath, "aaaaXXXX");
+		write(targetPath, "aaaabbbb");
+		FileDigest wanted = digestOf(targetPath);
+		try (RandomAccessFile targetFile = new RandomAccessFile(fileOf(targetPath), "rw")) {
+			assertThat(index.copyChunks(wanted, targetFile)).containsExactly(ChunkInfo.of(0, 4));
+		}
+	}
+
+	@Test
+	public void testOnlyPlausibleUnexpectedFilesAreSelected() {
+		FileMetadata renamed = metadataOf(FilePath.of("", "old"), 100);
+		FileMetadata moved = metadataOf(FilePath.of("old", "moved"), 50);
+		FileMetadata unrelated = metadataOf(FilePath.of("", "unrelated"), 30);
+		FileMetadata huge = metadataOf(FilePath.of("", "huge"), DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_BYTES + 1);
+		assertThat(DestinationChunkIndex.selectUnexpectedFiles(
+			Arrays.asList(moved, unrelated, renamed, huge),
+			Arrays.asList(
+				metadataOf(FilePath.of("", "new"), 100),
+				metadataOf(FilePath.of("new", "moved"), 60),
+				metadataOf(FilePath.of("", "huge"), 10)
+			),
+			UnexpectedFilesLimits.DEFAULT
+		)).containsExactly(renamed.getFilePath(), moved.getFilePath());
+	}
+
+	@Test
+	public void testUnexpectedFilesSelectionStopsAtLimits() {
+		List<FileMetadata> srcFiles = Arrays.asList(
+			metadataOf(FilePath.of("", "a"), 100),
+			metadataOf(FilePath.of("", "b"), 50)
+		);
+		FileMetadata renamed1 = metadataOf(FilePath.of("", "old1"), 100);
+		FileMetadata renamed2 = metadataOf(FilePath.of("", "old2"), 100);
+		FileMetadata renamed3 = metadataOf(FilePath.of("", "old3"), 50);
+		List<FileMetadata> unexpectedFiles = Arrays.asList(renamed1, renamed2, renamed3);
+		assertThat(DestinationChunkIndex.selectUnexpectedFiles(
+			unexpectedFiles, srcFiles, UnexpectedFilesLimits.of(2, 1000)
+		)).containsExactly(renamed1.getFilePath(), renamed2.getFilePath());
+		//file which would exceed byte limit is skipped, smaller one still fits
+		assertThat(DestinationChunkIndex.selectUnexpectedFiles(
+			unexpectedFiles, srcFiles, UnexpectedFilesLimits.of(10, 150)
+		)).containsExactly(renamed1.getFilePath(), renamed3.getFilePath());
+		assertThat(DestinationChunkIndex.selectUnexpectedFiles(
+			unexpectedFiles, srcFiles, UnexpectedFilesLimits.of(0, 1000)
+		)).isEmpty();
+	}
+
+	private FileMetadata metadataOf(FilePath filePath, long sizeBytes) {
+		return new FileMetadata(filePath, sizeBytes, 0, Collections.emptySet());
+	}
+
+	private FileDigest digestOf(FilePath filePath) throws IOException {
+		return digestCalculator.calculateFileDigest(root.getPath(), filePath, CHUNK_SIZE, DigestType.MD5);
+	}
+
+	private File fileOf(FilePath filePath) {
+		return new File(filePath.toAbsolutePath(root.getPath()));
+	}
+
+	private void write(FilePath filePath, String content) throws IOException {
+		java.nio.file.Files.write(fileOf(filePath).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String read(FilePath filePath) throws IOException {
+		return new String(java.nio.file.Files.readAllBytes(fileOf(filePath).toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,67 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures digest calculation throughput for each {@link DigestType} and {@link DigestReadMode}.
+ * <br>
+ * Run with: {@code DigestReadModeBenchmark [fileSizeMB] [chunkSizeKB] [iterations]}, file is written
+ * to temp dir and read once before measuring, so results show CPU/copy cost rather than disk speed.
+ * Fastest read mode of each digest is reported as candidate for {@code --digestReadMode}.
+ * <br>
+ * It's a tool rather than test, surefire doesn't pick it up since it isn't named as test.
+ */
+public class DigestReadModeBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int fileSizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int chunkSizeKB = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		File file = File.createTempFile("pareco-digest-benchmark", ".bin");
+		file.deleteOnExit();
+		writeRandomFile(file, fileSizeMB);
+		FilePath filePath = FilePath.of("", file.getName());
+		String root = file.getParent();
+		long chunkSizeBytes = chunkSizeKB * 1024L;
+		System.out.printf("file size: %d MB, chunk size: %d KB, best of %d iterations%n", fileSizeMB, chunkSizeKB, iterations);
+		System.out.printf("%-26s %-14s %12s%n", "digest", "read mode", "MB/s");
+		for (DigestType digestType : DigestType.values()) {
+			DigestReadMode fastestReadMode = null;
+			double fastestMbPerSec = 0;
+			for (DigestReadMode readMode : DigestReadMode.values()) {
+				FileDigestCalculator calculator = new FileDigestCalculator(new ChunkInfosGenerator(), readMode);
+				calculator.calculateFileDigest(root, filePath, chunkSizeBytes, digestType);
+				long bestNanos = Long.MAX_VALUE;
+				for (int i = 0; i < iterations; i++) {
+					long start = System.nanoTime();
+					calculator.calculateFileDigest(root, filePath, chunkSizeBytes, digestType);
+					bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+				}
+				double mbPerSec = fileSizeMB / (bestNanos / 1e9);
+				System.out.printf("%-26s %-14s %12.1f%n", digestType, readMode, mbPerSec);
+				if (mbPerSec > fastestMbPerSec) {
+					fastestMbPerSec = mbPerSec;
+					fastestReadMode = readMode;
+				}
+			}
+			System.out.printf("%-26s fastest: %s%n", digestType, fastestReadMode);
+		}
+		file.delete();
+	}
+
+	private static void writeRandomFile(File file, int sizeMB) throws IOException {
+		Random random = new Random(0);
+		byte[] buffer = new byte[1024 * 1024];
+		try (FileOutputStream outputStream = new FileOutputStream(file)) {
+			for (int i = 0; i < sizeMB; i++) {
+				random.nextBytes(buffer);
+				outputStream.write(buffer);
+			}
+		}
+	}
+}
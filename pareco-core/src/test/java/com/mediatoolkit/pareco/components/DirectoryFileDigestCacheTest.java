@@ -0,0 +1,75 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.util.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryFileDigestCacheTest {
+
+	private final File root = new File("testTmpDigestCacheDir");
+	private final File cacheDir = new File(root, "cache");
+	private final FilePath filePath = FilePath.of("", "file");
+	private final File file = new File(filePath.toAbsolutePath(root.getPath()));
+	private final FileDigestCache cache = FileDigestCache.inDirectory(cacheDir.getPath());
+	private final FileDigestCalculator digestCalculator = new FileDigestCalculator(new ChunkInfosGenerator());
+
+	@Before
+	public void setUp() {
+		Files.delete(root);
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		Files.delete(root);
+	}
+
+	@Test
+	public void testDigestIsCachedForUnchangedFile() throws IOException {
+		write("some content of file");
+		FileDigest fileDigest = calculateDigest();
+		Optional<FileDigest> cached = cache.get(keyOfFile());
+		assertThat(cached).contains(fileDigest);
+		assertThat(calculateDigest()).isEqualTo(fileDigest);
+	}
+
+	@Test
+	public void testChangedFileMissesCache() throws IOException {
+		write("some content of file");
+		FileDigest fileDigest = calculateDigest();
+		write("other content of file");
+		file.setLastModified(file.lastModified() + 2000);
+		assertThat(cache.get(keyOfFile())).isEmpty();
+		FileDigest changedFileDigest = calculateDigest();
+		assertThat(changedFileDigest).isNotEqualTo(fileDigest);
+		assertThat(cache.get(keyOfFile())).contains(changedFileDigest);
+	}
+
+	private FileDigestCacheKey keyOfFile() throws IOException {
+		return FileDigestCacheKey.of(file, 4, DigestType.MD5, ChunkingType.FIXED);
+	}
+
+	private FileDigest calculateDigest() throws IOException {
+		return digestCalculator.calculateFileDigest(
+			root.getPath(), filePath, 4, DigestType.MD5, ChunkingType.FIXED, cache
+		);
+	}
+
+	private void write(String content) throws IOException {
+		try (FileOutputStream outputStream = new FileOutputStream(file)) {
+			outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+}
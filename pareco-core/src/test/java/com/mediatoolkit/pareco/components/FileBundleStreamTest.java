@@ -0,0 +1,106 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
+import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class FileBundleStreamTest {
+
+	@Test
+	public void testFilesRoundTrip() throws IOException {
+		FileMetadata file1 = fileMetadata(FilePath.of("dir/sub", "a.txt"), 4, EnumSet.of(PosixFilePermission.OWNER_READ));
+		FileMetadata file2 = fileMetadata(FilePath.of("b.txt"), 0, null);
+		FileMetadata file3 = fileMetadata(FilePath.of("dir", "c.txt"), 2, EnumSet.allOf(PosixFilePermission.class));
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(buffer);
+		FileBundleStream.writeFile(outputStream, file1, stream("abcd"));
+		FileBundleStream.writeFile(outputStream, file2, stream(""));
+		FileBundleStream.writeDeletedFile(outputStream, FilePath.of("dir", "deleted.txt"));
+		FileBundleStream.writeFile(outputStream, file3, stream("efgh"));
+		List<FileMetadata> receivedFiles = new ArrayList<>();
+		List<String> received = new ArrayList<>();
+		FileBundleStream.readFrom(new ByteArrayInputStream(buffer.toByteArray()), new FileBundleListener() {
+
+			@Override
+			public void fileReceived(FileMetadata fileMetadata, InputStream content) throws IOException {
+				receivedFiles.add(fileMetadata);
+				received.add(fileMetadata.getFilePath() + " " + IOUtils.toString(content, StandardCharsets.UTF_8));
+			}
+
+			@Override
+			public void fileDeleted(FilePath filePath) {
+				received.add(filePath + " <deleted>");
+			}
+		});
+		assertThat(receivedFiles).containsExactly(file1, file2, file3);
+		assertThat(received).containsExactly(
+			FilePath.of("dir/sub", "a.txt") + " abcd",
+			FilePath.of("b.txt") + " ",
+			FilePath.of("dir", "deleted.txt") + " <deleted>",
+			FilePath.of("dir", "c.txt") + " ef"
+		);
+	}
+
+	@Test
+	public void testUnreadContentIsSkipped() throws IOException {
+		FileMetadata file1 = fileMetadata(FilePath.of("a.txt"), 4, null);
+		FileMetadata file2 = fileMetadata(FilePath.of("b.txt"), 4, null);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(buffer);
+		FileBundleStream.writeFile(outputStream, file1, stream("abcd"));
+		FileBundleStream.writeFile(outputStream, file2, stream("efgh"));
+		List<FileMetadata> received = new ArrayList<>();
+		FileBundleStream.readFrom(new ByteArrayInputStream(buffer.toByteArray()), new FileBundleListener() {
+
+			@Override
+			public void fileReceived(FileMetadata fileMetadata, InputStream content) {
+				received.add(fileMetadata);
+			}
+
+			@Override
+			public void fileDeleted(FilePath filePath) {
+			}
+		});
+		assertThat(received).containsExactly(file1, file2);
+	}
+
+	@Test(expected = InputStreamSizeMissMatchException.class)
+	public void testShortContentIsRejected() throws IOException {
+		DataOutputStream outputStream = new DataOutputStream(new ByteArrayOutputStream());
+		FileBundleStream.writeFile(outputStream, fileMetadata(FilePath.of("a.txt"), 4, null), stream("abc"));
+	}
+
+	@Test
+	public void testContentIsReadUpToFileSize() throws IOException {
+		FileMetadata fileMetadata = fileMetadata(FilePath.of("a.txt"), 4, null);
+		assertThat(FileBundleStream.readContent(fileMetadata, stream("abcdef")))
+			.isEqualTo("abcd".getBytes(StandardCharsets.UTF_8));
+		assertThat(FileBundleStream.readContent(fileMetadata, stream("abc"))).isNull();
+	}
+
+	private static FileMetadata fileMetadata(FilePath filePath, long sizeBytes, EnumSet<PosixFilePermission> permissions) {
+		return FileMetadata.builder()
+			.filePath(filePath)
+			.fileSizeBytes(sizeBytes)
+			.lastModifiedTimeMillis(1541030400000L + sizeBytes)
+			.permissions(permissions)
+			.build();
+	}
+
+	private static ByteArrayInputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
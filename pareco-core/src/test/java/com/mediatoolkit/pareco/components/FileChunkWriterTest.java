@@ -0,0 +1,74 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.IntStream;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileChunkWriterTest {
+
+	private static final int CHUNK_SIZE = 100_000;
+	private static final int NUM_CHUNKS = 8;
+
+	private final FileChunkWriter fileChunkWriter = new FileChunkWriter();
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("pareco-chunk-writer", ".tmp");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testConcurrentChunksThroughSharedChannel() throws IOException {
+		byte[] content = new byte[CHUNK_SIZE * NUM_CHUNKS - 123];
+		new Random(42).nextBytes(content);
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			fileChunkWriter.allocateFileToSize(randomAccessFile, content.length);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			IntStream.range(0, NUM_CHUNKS).parallel().forEach(chunk -> {
+				int offset = chunk * CHUNK_SIZE;
+				int size = Math.min(CHUNK_SIZE, content.length - offset);
+				try {
+					fileChunkWriter.writeChunk(
+						channel, ChunkInfo.of(offset, size), new ByteArrayInputStream(content, offset, size)
+					);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+		assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+	}
+
+	@Test
+	public void testSizeMissMatch() throws IOException {
+		byte[] content = new byte[1000];
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			assertThatThrownBy(() -> fileChunkWriter.writeChunk(
+				channel, ChunkInfo.of(0, 2000), new ByteArrayInputStream(content)
+			)).isInstanceOf(InputStreamSizeMissMatchException.class);
+			assertThatThrownBy(() -> fileChunkWriter.writeChunk(
+				channel, ChunkInfo.of(0, 500), new ByteArrayInputStream(content)
+			)).isInstanceOf(InputStreamSizeMissMatchException.class);
+		}
+	}
+
+}
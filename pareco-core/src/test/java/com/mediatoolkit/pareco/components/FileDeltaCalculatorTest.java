@@ -0,0 +1,159 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDelta;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
+import com.mediatoolkit.pareco.model.FileDelta.InstructionType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.util.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileDeltaCalculatorTest {
+
+	private static final int BLOCK_SIZE = 16;
+
+	private final File root = new File("testTmpDeltaDir");
+	private final FilePath basis = FilePath.of("", "basis");
+	private final FilePath source = FilePath.of("", "source");
+	private final FileSignatureCalculator signatureCalculator = new FileSignatureCalculator(new ChunkInfosGenerator());
+	private final FileDeltaCalculator deltaCalculator = new FileDeltaCalculator();
+	private final FileDigestCalculator digestCalculator = new FileDigestCalculator(new ChunkInfosGenerator());
+
+	@Before
+	public void setUp() {
+		Files.delete(root);
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		Files.delete(root);
+	}
+
+	@Test
+	public void testRollingChecksumRoll() {
+		byte[] data = randomBytes(100);
+		RollingChecksum checksum = RollingChecksum.of(data, 0, BLOCK_SIZE);
+		for (int i = 1; i + BLOCK_SIZE <= data.length; i++) {
+			checksum.roll(data[i - 1], data[i + BLOCK_SIZE - 1]);
+			assertThat(checksum.getValue()).isEqualTo(RollingChecksum.checksumOf(data, i, BLOCK_SIZE));
+		}
+	}
+
+	@Test
+	public void testEqualFilesGiveIdentityDelta() throws IOException {
+		byte[] data = randomBytes(10 * BLOCK_SIZE + 5);
+		write(basis, data);
+		write(source, data);
+		FileDelta delta = calculateDelta();
+		assertThat(delta.identityOf(data.length)).isTrue();
+		assertThat(delta.getInstructions()).containsExactly(
+			DeltaInstruction.copy(ChunkInfo.of(0, data.length), 0)
+		);
+	}
+
+	@Test
+	public void testInsertedByteAtStartOnlySendsLiteralByte() throws IOException {
+		byte[] data = randomBytes(10 * BLOCK_SIZE + 5);
+		byte[] shifted = new byte[data.length + 1];
+		shifted[0] = 42;
+		System.arraycopy(data, 0, shifted, 1, data.length);
+		write(basis, data);
+		write(source, shifted);
+		FileDelta delta = calculateDelta();
+		assertThat(delta.getFileSizeBytes()).isEqualTo(shifted.length);
+		assertThat(delta.getInstructions()).containsExactly(
+			DeltaInstruction.literal(ChunkInfo.of(0, 1)),
+			DeltaInstruction.copy(ChunkInfo.of(1, data.length), 0)
+		);
+	}
+
+	@Test
+	public void testModifiedMiddleSendsOnlyModifiedRange() throws IOException {
+		byte[] data = "0123456789abcdef0123456789ABCDEF--------old-----ghijklmnopqrstuv".getBytes(StandardCharsets.UTF_8);
+		byte[] modified = "0123456789abcdef0123456789ABCDEF*new*ghijklmnopqrstuv".getBytes(StandardCharsets.UTF_8);
+		write(basis, data);
+		write(source, modified);
+		FileDelta delta = calculateDelta();
+		assertThat(delta.getInstructions()).containsExactly(
+			DeltaInstruction.copy(ChunkInfo.of(0, 32), 0),
+			DeltaInstruction.literal(ChunkInfo.of(32, 5)),
+			DeltaInstruction.copy(ChunkInfo.of(37, 16), 48)
+		);
+		assertThat(delta.literalChunks(2)).containsExactly(
+			ChunkInfo.of(32, 2), ChunkInfo.of(34, 2), ChunkInfo.of(36, 1)
+		);
+	}
+
+	@Test
+	public void testTotallyDifferentFilesAreLiteral() throws IOException {
+		write(basis, randomBytes(3 * BLOCK_SIZE));
+		byte[] sourceData = new byte[2 * BLOCK_SIZE + 3];
+		write(source, sourceData);
+		FileDelta delta = calculateDelta();
+		assertThat(delta.getInstructions()).containsExactly(
+			DeltaInstruction.literal(ChunkInfo.of(0, sourceData.length))
+		);
+	}
+
+	@Test
+	public void testContentDefinedChunksSurviveInsertion() throws IOException {
+		int avgChunkSize = 256;
+		byte[] data = randomBytes(100 * avgChunkSize);
+		byte[] inserted = new byte[data.length + 3];
+		int insertOffset = data.length / 2;
+		System.arraycopy(data, 0, inserted, 0, insertOffset);
+		System.arraycopy(data, insertOffset, inserted, insertOffset + 3, data.length - insertOffset);
+		write(basis, data);
+		write(source, inserted);
+		FileDigest basisDigest = digestCalculator.calculateFileDigest(
+			root.getPath(), basis, avgChunkSize, DigestType.MD5, ChunkingType.CONTENT_DEFINED
+		);
+		FileDigest sourceDigest = digestCalculator.calculateFileDigest(
+			root.getPath(), source, avgChunkSize, DigestType.MD5, ChunkingType.CONTENT_DEFINED
+		);
+		assertThat(basisDigest.getChunkDigests().stream().mapToLong(chunk -> chunk.getChunkInfo().getSizeBytes()).sum())
+			.isEqualTo(data.length);
+		assertThat(basisDigest.getChunkDigests())
+			.allMatch(chunk -> chunk.getChunkInfo().getSizeBytes() <= 4 * avgChunkSize);
+		FileDelta delta = deltaCalculator.calculateFileDelta(sourceDigest, basisDigest);
+		long literalBytes = delta.getInstructions().stream()
+			.filter(instruction -> instruction.getType() == InstructionType.LITERAL)
+			.mapToLong(instruction -> instruction.getChunkInfo().getSizeBytes())
+			.sum();
+		assertThat(delta.getFileSizeBytes()).isEqualTo(inserted.length);
+		assertThat(literalBytes).isGreaterThan(0).isLessThanOrEqualTo(2 * 4 * avgChunkSize);
+	}
+
+	private FileDelta calculateDelta() throws IOException {
+		FileSignature signature = signatureCalculator.calculateFileSignature(
+			root.getPath(), basis, BLOCK_SIZE, DigestType.MD5
+		);
+		return deltaCalculator.calculateFileDelta(root.getPath(), source, signature);
+	}
+
+	private byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+
+	private void write(FilePath filePath, byte[] content) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(filePath.toAbsolutePath(root.getPath()))) {
+			out.write(content);
+		}
+	}
+
+}
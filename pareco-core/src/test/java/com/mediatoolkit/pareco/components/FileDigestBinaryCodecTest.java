@@ -0,0 +1,76 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.Hashing;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class FileDigestBinaryCodecTest {
+
+	@Test
+	public void testFixedChunksRoundTrip() throws IOException {
+		FileDigest fileDigest = fileDigestOf(ChunkInfo.of(0, 10), ChunkInfo.of(10, 10), ChunkInfo.of(20, 3));
+		assertThat(roundTrip(fileDigest)).isEqualTo(fileDigest);
+	}
+
+	@Test
+	public void testVariableChunksRoundTrip() throws IOException {
+		FileDigest fileDigest = fileDigestOf(ChunkInfo.of(0, 7), ChunkInfo.of(7, 12), ChunkInfo.of(19, 3));
+		assertThat(roundTrip(fileDigest)).isEqualTo(fileDigest);
+	}
+
+	@Test
+	public void testEmptyRoundTrip() throws IOException {
+		FileDigest fileDigest = fileDigestOf();
+		assertThat(roundTrip(fileDigest)).isEqualTo(fileDigest);
+	}
+
+	@Test
+	public void testTruncatedRoundTripAndExpand() throws IOException {
+		FileDigest fileDigest = fileDigestOf(ChunkInfo.of(0, 10), ChunkInfo.of(10, 10), ChunkInfo.of(20, 3));
+		FileDigest truncated = DigestPrefixes.truncate(fileDigest, 8);
+		assertThat(truncated.getChunkDigests().get(0).getDigest()).hasSize(8);
+		assertThat(DigestPrefixes.isTruncated(truncated)).isTrue();
+		FileDigest decoded = roundTrip(truncated);
+		assertThat(decoded).isEqualTo(truncated);
+		assertThat(DigestPrefixes.expand(decoded, fileDigest)).contains(fileDigest);
+	}
+
+	@Test
+	public void testPrefixCollisionIsDetected() {
+		FileDigest fileDigest = fileDigestOf(ChunkInfo.of(0, 10), ChunkInfo.of(10, 10));
+		ChunkDigest first = fileDigest.getChunkDigests().get(0);
+		byte[] collidingDigest = first.getDigest().clone();
+		collidingDigest[collidingDigest.length - 1]++;
+		FileDigest collidingFileDigest = FileDigest.builder()
+			.digestType(DigestType.MD5)
+			.chunkDigest(ChunkDigest.of(collidingDigest, first.getChunkInfo()))
+			.chunkDigest(fileDigest.getChunkDigests().get(1))
+			.build();
+		FileDigest truncated = DigestPrefixes.truncate(fileDigest, 8);
+		assertThat(DigestPrefixes.expand(truncated, collidingFileDigest)).isEmpty();
+	}
+
+	private FileDigest roundTrip(FileDigest fileDigest) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		FileDigestBinaryCodec.write(fileDigest, output);
+		return FileDigestBinaryCodec.read(new ByteArrayInputStream(output.toByteArray()));
+	}
+
+	private FileDigest fileDigestOf(ChunkInfo... chunkInfos) {
+		FileDigest.FileDigestBuilder builder = FileDigest.builder()
+			.digestType(DigestType.MD5);
+		for (ChunkInfo chunkInfo : chunkInfos) {
+			byte[] digest = Hashing.md5().hashString(chunkInfo.toString(), StandardCharsets.UTF_8).asBytes();
+			builder.chunkDigest(ChunkDigest.of(digest, chunkInfo));
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,116 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.util.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileDigestCalculatorTest {
+
+	private final File root = new File("testTmpDigestDir");
+	private final FilePath filePath = FilePath.of("", "file");
+	private final FileDigestCalculator digestCalculator = new FileDigestCalculator(new ChunkInfosGenerator());
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@Before
+	public void setUp() {
+		Files.delete(root);
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		Files.delete(root);
+		executor.shutdown();
+	}
+
+	@Test
+	public void testParallelDigestEqualsSequential() throws IOException {
+		writeRandomFile(100_003);
+		for (int numThreads : new int[]{2, 3, 4, 64}) {
+			for (long chunkSize : new long[]{7, 1000, 100_003, 200_000}) {
+				FileDigest sequential = digestCalculator.calculateFileDigest(
+					root.getPath(), filePath, chunkSize, DigestType.MD5
+				);
+				FileDigest parallel = calculateInParallel(chunkSize, numThreads);
+				assertThat(parallel).isEqualTo(sequential);
+			}
+		}
+	}
+
+	@Test
+	public void testAllReadModesGiveSameDigest() throws IOException {
+		writeRandomFile(100_003);
+		for (DigestType digestType : DigestType.values()) {
+			FileDigest expected = digestCalculator.calculateFileDigest(
+				root.getPath(), filePath, 1000, digestType
+			);
+			for (DigestReadMode readMode : DigestReadMode.values()) {
+				FileDigestCalculator calculator = new FileDigestCalculator(new ChunkInfosGenerator(), readMode);
+				FileDigest fileDigest = calculator.calculateFileDigest(
+					root.getPath(), filePath, 1000, digestType
+				);
+				assertThat(fileDigest).as("%s with %s", digestType, readMode).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelDigestOfEmptyFile() throws IOException {
+		new File(filePath.toAbsolutePath(root.getPath())).createNewFile();
+		assertThat(calculateInParallel(10, 4).getChunkDigests()).isEmpty();
+	}
+
+	@Test
+	public void testBlockDigestsMatchChunkDigestsWithinRanges() throws IOException {
+		writeRandomFile(1005);
+		FileDigest chunkDigest = digestCalculator.calculateFileDigest(root.getPath(), filePath, 100, DigestType.MD5);
+		FileDigest blockDigest = digestCalculator.calculateBlockDigests(
+			root.getPath(), filePath, Arrays.asList(ChunkInfo.of(200, 200), ChunkInfo.of(900, 200)), 100, DigestType.MD5
+		);
+		assertThat(blockDigest.getChunkDigests()).containsExactly(
+			chunkDigest.getChunkDigests().get(2),
+			chunkDigest.getChunkDigests().get(3),
+			chunkDigest.getChunkDigests().get(9),
+			chunkDigest.getChunkDigests().get(10)
+		);
+	}
+
+	@Test
+	public void testPrefixDigestEqualsDigestOfSingleChunk() throws IOException {
+		writeRandomFile(1005);
+		FileDigest chunkDigest = digestCalculator.calculateFileDigest(root.getPath(), filePath, 500, DigestType.MD5);
+		assertThat(digestCalculator.calculatePrefixDigest(root.getPath(), filePath, 500, DigestType.MD5))
+			.isEqualTo(chunkDigest.getChunkDigests().get(0).getDigest());
+		assertThat(digestCalculator.calculatePrefixDigest(root.getPath(), filePath, 1006, DigestType.MD5)).isNull();
+	}
+
+	private void writeRandomFile(int size) throws IOException {
+		byte[] data = new byte[size];
+		new Random(0).nextBytes(data);
+		try (FileOutputStream outputStream = new FileOutputStream(filePath.toAbsolutePath(root.getPath()))) {
+			outputStream.write(data);
+		}
+	}
+
+	private FileDigest calculateInParallel(long chunkSize, int numThreads) throws IOException {
+		return digestCalculator.calculateFileDigest(
+			root.getPath(), filePath, chunkSize, DigestType.MD5, ChunkingType.FIXED,
+			FileDigestCache.NO_CACHE, DigestParallelism.of(numThreads, executor)
+		);
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileMove;
+import com.mediatoolkit.pareco.model.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.assertj.core.util.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileMoverTest {
+
+	private static final long CHUNK_SIZE = 4;
+
+	private final File workspace = new File("testTmpFileMoverDir");
+	private final File root = new File(workspace, "root");
+	private final FileMover fileMover = new FileMover(new FileDigestCalculator(new ChunkInfosGenerator()));
+
+	@Before
+	public void setUp() {
+		Files.delete(workspace);
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		Files.delete(workspace);
+	}
+
+	@Test
+	public void testFileWithMatchingFingerprintIsMoved() throws IOException {
+		write(new File(root, "old"), "content");
+		FileMove fileMove = moveOf(FilePath.of("", "old"), FilePath.of("sub", "new"), "content");
+		assertThat(moveFiles(fileMove)).containsExactly(fileMove);
+		assertThat(new File(root, "old")).doesNotExist();
+		assertThat(new File(root, "sub/new")).hasContent("content");
+	}
+
+	@Test
+	public void testFileWithDifferentFingerprintIsNotMoved() throws IOException {
+		write(new File(root, "old"), "content");
+		assertThat(moveFiles(moveOf(FilePath.of("", "old"), FilePath.of("", "new"), "other"))).isEmpty();
+		assertThat(new File(root, "old")).exists();
+		assertThat(new File(root, "new")).doesNotExist();
+	}
+
+	@Test
+	public void testPathsOutsideOfRootAreRejected() throws IOException {
+		File outside = new File(workspace, "outside");
+		write(outside, "secret");
+		assertThat(moveFiles(
+			moveOf(FilePath.of("..", "outside"), FilePath.of("", "stolen"), "secret"),
+			moveOf(FilePath.of("sub/../..", "outside"), FilePath.of("", "stolen"), "secret"),
+			moveOf(FilePath.of("", outside.getAbsolutePath()), FilePath.of("", "stolen"), "secret")
+		)).isEmpty();
+		write(new File(root, "old"), "content");
+		assertThat(moveFiles(moveOf(FilePath.of("", "old"), FilePath.of("..", "escaped"), "content"))).isEmpty();
+		assertThat(new File(root, "stolen")).doesNotExist();
+		assertThat(new File(workspace, "escaped")).doesNotExist();
+		assertThat(outside).hasContent("secret");
+		assertThat(new File(root, "old")).exists();
+	}
+
+	@Test
+	public void testNonRegularFilesAreRejected() throws IOException {
+		File outside = new File(workspace, "outside");
+		write(outside, "secret");
+		java.nio.file.Files.createSymbolicLink(new File(root, "link").toPath(), outside.getAbsoluteFile().toPath());
+		java.nio.file.Files.createSymbolicLink(new File(root, "linkDir").toPath(), workspace.getAbsoluteFile().toPath());
+		new File(root, "dir").mkdirs();
+		assertThat(moveFiles(
+			moveOf(FilePath.of("", "link"), FilePath.of("", "stolen"), "secret"),
+			moveOf(FilePath.of("linkDir", "outside"), FilePath.of("", "stolen"), "secret"),
+			moveOf(FilePath.of("", "dir"), FilePath.of("", "moved"), "")
+		)).isEmpty();
+		assertThat(new File(root, "stolen")).doesNotExist();
+		assertThat(new File(root, "dir")).isDirectory();
+		assertThat(outside).hasContent("secret");
+	}
+
+	private List<FileMove> moveFiles(FileMove... fileMoves) {
+		return fileMover.moveFiles(
+			root.getPath(), Arrays.asList(fileMoves), CHUNK_SIZE,
+			FileDigestCache.NO_CACHE, DigestParallelism.SEQUENTIAL
+		);
+	}
+
+	private FileMove moveOf(FilePath from, FilePath to, String content) throws IOException {
+		File fingerprintFile = new File(workspace, "fingerprint");
+		write(fingerprintFile, content);
+		byte[] fingerprint = fileMover.fingerprintOf(
+			workspace.getPath(), FilePath.of("", "fingerprint"), CHUNK_SIZE, DigestType.MD5,
+			FileDigestCache.NO_CACHE, DigestParallelism.SEQUENTIAL
+		);
+		fingerprintFile.delete();
+		return FileMove.builder()
+			.fromFilePath(from)
+			.toFilePath(to)
+			.copy(false)
+			.digestType(DigestType.MD5)
+			.fingerprint(fingerprint)
+			.build();
+	}
+
+	private void write(File file, String content) throws IOException {
+		java.nio.file.Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.mediatoolkit.pareco.components;
+
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class InlineChunkDigestsTest {
+
+	private static final ChunkInfo CHUNK_1 = ChunkInfo.of(0, 4);
+	private static final ChunkInfo CHUNK_2 = ChunkInfo.of(4, 4);
+
+	@Test
+	public void testEqualTransferredChunksHaveNoMismatches() throws IOException {
+		InlineChunkDigests sent = new InlineChunkDigests(DigestType.MD5);
+		InlineChunkDigests received = new InlineChunkDigests(DigestType.MD5);
+		transfer(sent, CHUNK_1, "aaaa");
+		transfer(received, CHUNK_1, "aaaa");
+		transfer(sent, CHUNK_2, "bbbb");
+		transfer(received, CHUNK_2, "bbbb");
+		assertThat(sent.mismatchedChunks(received.toFileDigest())).isEmpty();
+	}
+
+	@Test
+	public void testCorruptedAndMissingChunksAreMismatched() throws IOException {
+		InlineChunkDigests sent = new InlineChunkDigests(DigestType.MD5);
+		InlineChunkDigests received = new InlineChunkDigests(DigestType.MD5);
+		transfer(sent, CHUNK_1, "aaaa");
+		transfer(received, CHUNK_1, "aaXa");
+		transfer(sent, CHUNK_2, "bbbb");
+		assertThat(sent.mismatchedChunks(received.toFileDigest())).containsExactly(CHUNK_1, CHUNK_2);
+	}
+
+	@Test
+	public void testMergedIntoOverridesBaseDigests() throws IOException {
+		InlineChunkDigests base = new InlineChunkDigests(DigestType.MD5);
+		transfer(base, CHUNK_1, "aaaa");
+		transfer(base, CHUNK_2, "cccc");
+		InlineChunkDigests transferred = new InlineChunkDigests(DigestType.MD5);
+		transfer(transferred, CHUNK_2, "bbbb");
+		InlineChunkDigests expected = new InlineChunkDigests(DigestType.MD5);
+		transfer(expected, CHUNK_1, "aaaa");
+		transfer(expected, CHUNK_2, "bbbb");
+		FileDigest merged = transferred.mergedInto(base.toFileDigest());
+		assertThat(expected.mismatchedChunks(merged)).isEmpty();
+		assertThat(InlineChunkDigests.coversWholeFile(merged, 8, 4)).isTrue();
+		assertThat(InlineChunkDigests.coversWholeFile(transferred.toFileDigest(), 8, 4)).isFalse();
+	}
+
+	private void transfer(InlineChunkDigests inlineChunkDigests, ChunkInfo chunkInfo, String content) throws IOException {
+		HashingInputStream inputStream = inlineChunkDigests.hashing(
+			new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))
+		);
+		ByteStreams.exhaust(inputStream);
+		inlineChunkDigests.record(chunkInfo, inputStream);
+	}
+}
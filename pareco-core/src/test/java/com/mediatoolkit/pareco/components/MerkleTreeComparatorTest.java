@@ -0,0 +1,103 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.components.MerkleTreeComparator.RemoteMerkleTree;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileDigest.ChunkDigest;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class MerkleTreeComparatorTest {
+
+	private static final int CHUNK_SIZE = 8;
+	private static final int FAN_OUT = 4;
+
+	private final MerkleTreeComparator comparator = new MerkleTreeComparator();
+
+	@Test
+	public void testEqualFilesNeedOnlyRoot() {
+		byte[] content = randomBytes(1000 * CHUNK_SIZE);
+		CountingRemoteTree remote = new CountingRemoteTree(treeOf(content));
+		FileDigest resolved = comparator.resolveRemoteFileDigest(treeOf(content), CHUNK_SIZE, remote);
+		assertThat(resolved).isEqualTo(digestOf(content));
+		assertThat(remote.fetchedNodes).isEqualTo(0);
+	}
+
+	@Test
+	public void testSingleChangedChunkFetchesOnlyMismatchingSubTrees() {
+		byte[] local = randomBytes(1000 * CHUNK_SIZE + 3);
+		byte[] remoteContent = local.clone();
+		remoteContent[517 * CHUNK_SIZE + 2]++;
+		CountingRemoteTree remote = new CountingRemoteTree(treeOf(remoteContent));
+		FileDigest resolved = comparator.resolveRemoteFileDigest(treeOf(local), CHUNK_SIZE, remote);
+		assertThat(resolved).isEqualTo(digestOf(remoteContent));
+		int height = MerkleTree.height(1001, FAN_OUT);
+		assertThat(remote.fetchedNodes).isLessThanOrEqualTo(height * FAN_OUT);
+	}
+
+	@Test
+	public void testDifferentSizes() {
+		byte[] remoteContent = randomBytes(300 * CHUNK_SIZE + 5);
+		byte[] shorter = Arrays.copyOf(remoteContent, 20 * CHUNK_SIZE + 1);
+		assertThat(comparator.resolveRemoteFileDigest(treeOf(shorter), CHUNK_SIZE, new CountingRemoteTree(treeOf(remoteContent))))
+			.isEqualTo(digestOf(remoteContent));
+		assertThat(comparator.resolveRemoteFileDigest(treeOf(remoteContent), CHUNK_SIZE, new CountingRemoteTree(treeOf(shorter))))
+			.isEqualTo(digestOf(shorter));
+		assertThat(comparator.resolveRemoteFileDigest(treeOf(new byte[0]), CHUNK_SIZE, new CountingRemoteTree(treeOf(shorter))))
+			.isEqualTo(digestOf(shorter));
+		assertThat(comparator.resolveRemoteFileDigest(treeOf(shorter), CHUNK_SIZE, new CountingRemoteTree(treeOf(new byte[0]))))
+			.isEqualTo(digestOf(new byte[0]));
+	}
+
+	private static class CountingRemoteTree implements RemoteMerkleTree {
+
+		private final MerkleTree tree;
+		private int fetchedNodes = 0;
+
+		CountingRemoteTree(MerkleTree tree) {
+			this.tree = tree;
+		}
+
+		@Override
+		public MerkleTreeSummary summary() {
+			return tree.toSummary();
+		}
+
+		@Override
+		public byte[][] nodes(int level, List<Integer> indices) {
+			fetchedNodes += indices.size();
+			byte[][] nodes = new byte[indices.size()][];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = tree.node(level, indices.get(i));
+			}
+			return nodes;
+		}
+	}
+
+	private MerkleTree treeOf(byte[] content) {
+		return MerkleTree.of(digestOf(content), FAN_OUT);
+	}
+
+	private FileDigest digestOf(byte[] content) {
+		FileDigest.FileDigestBuilder builder = FileDigest.builder().digestType(DigestType.MD5);
+		for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+			int size = Math.min(CHUNK_SIZE, content.length - offset);
+			byte[] digest = DigestType.MD5.getHashFunction().hashBytes(content, offset, size).asBytes();
+			builder.chunkDigest(ChunkDigest.of(digest, ChunkInfo.of(offset, size)));
+		}
+		return builder.build();
+	}
+
+	private byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+
+}
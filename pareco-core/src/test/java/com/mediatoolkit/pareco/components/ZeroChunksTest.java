@@ -0,0 +1,61 @@
+package com.mediatoolkit.pareco.components;
+
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZeroChunksTest {
+
+	private static final int CHUNK_SIZE = 100_000;
+
+	private File file;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("pareco-zero-chunks", ".tmp");
+		content = new byte[3 * CHUNK_SIZE];
+		new Random(42).nextBytes(content);
+		Arrays.fill(content, CHUNK_SIZE, 2 * CHUNK_SIZE, (byte) 0);
+		//zeros are past first read, chunk is recognized as non-zero only when scanning rest of it
+		Arrays.fill(content, 2 * CHUNK_SIZE, 3 * CHUNK_SIZE - 1, (byte) 0);
+		Files.write(file.toPath(), content);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testContentUnlessZeroChunk() throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			for (int chunk = 0; chunk < 3; chunk++) {
+				ChunkInfo chunkInfo = ChunkInfo.of(chunk * CHUNK_SIZE, CHUNK_SIZE);
+				InputStream chunkContent = ZeroChunks.contentUnlessZeroChunk(randomAccessFile, chunkInfo);
+				assertThat(chunkContent == null).isEqualTo(ZeroChunks.isZeroChunk(randomAccessFile, chunkInfo));
+				if (chunkContent != null) {
+					chunkContent = ZeroChunks.contentUnlessZeroChunk(randomAccessFile, chunkInfo);
+					assertThat(IOUtils.toByteArray(chunkContent))
+						.isEqualTo(Arrays.copyOfRange(content, chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE));
+				}
+			}
+			assertThat(ZeroChunks.isZeroChunk(randomAccessFile, ChunkInfo.of(CHUNK_SIZE, CHUNK_SIZE))).isTrue();
+			assertThat(ZeroChunks.isZeroChunk(randomAccessFile, ChunkInfo.of(2 * CHUNK_SIZE, CHUNK_SIZE))).isFalse();
+			assertThat(ZeroChunks.contentUnlessZeroChunk(randomAccessFile, ChunkInfo.of(2 * CHUNK_SIZE, 2 * CHUNK_SIZE)))
+				.hasSameContentAs(new ByteArrayInputStream(content, 2 * CHUNK_SIZE, CHUNK_SIZE));
+		}
+	}
+
+}
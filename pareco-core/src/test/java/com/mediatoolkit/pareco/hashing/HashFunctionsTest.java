@@ -0,0 +1,53 @@
+package com.mediatoolkit.pareco.hashing;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class HashFunctionsTest {
+
+	@Test
+	public void testXxHash64KnownValues() {
+		HashFunction xxHash64 = HashFunctions.xxHash64();
+		assertThat(xxHash64.hashBytes(new byte[0]).asLong()).isEqualTo(0xEF46DB3751D8E999L);
+		assertThat(xxHash64.hashString("abc", StandardCharsets.UTF_8).asLong()).isEqualTo(0x44BC2CF5AD770999L);
+	}
+
+	@Test
+	public void testBlake3KnownValue() {
+		assertThat(HashFunctions.blake3().hashBytes(new byte[0]).toString())
+			.isEqualTo("af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262");
+	}
+
+	@Test
+	public void testCrc32cSameAsGuava() {
+		byte[] bytes = randomBytes(1000);
+		assertThat(HashFunctions.crc32c().hashBytes(bytes)).isEqualTo(Hashing.crc32c().hashBytes(bytes));
+	}
+
+	@Test
+	public void testIncrementalHashingSameAsWhole() {
+		byte[] bytes = randomBytes(1000);
+		for (HashFunction hashFunction : new HashFunction[]{HashFunctions.xxHash64(), HashFunctions.blake3()}) {
+			ByteBuffer directBuffer = ByteBuffer.allocateDirect(500);
+			directBuffer.put(bytes, 300, 500).flip();
+			assertThat(hashFunction.newHasher()
+				.putBytes(bytes, 0, 7)
+				.putBytes(bytes, 7, 293)
+				.putBytes(directBuffer)
+				.putBytes(bytes, 800, 200)
+				.hash()
+			).isEqualTo(hashFunction.hashBytes(bytes));
+		}
+	}
+
+	private byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		new Random(0).nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -29,6 +29,17 @@ public class ParecoServer {
 		properties.setProperty("server.port", String.valueOf(options.getPort()));
 		properties.setProperty("auth.token.generate", String.valueOf(options.isGenerateToken()));
 		properties.setProperty("session.expire.max_inactive", String.valueOf(options.getSessionExpire()));
+		properties.setProperty("digest.parallelism", String.valueOf(options.getDigestParallelism()));
+		properties.setProperty("digest.read.mode", options.getDigestReadMode().name());
+		properties.setProperty("digest.batch.threads", String.valueOf(options.getBatchDigestThreads()));
+		properties.setProperty("server.h2c.enabled", String.valueOf(options.isH2c()));
+		properties.setProperty("server.sendfile.enabled", String.valueOf(!options.isNoSendFile()));
+		properties.setProperty("server.nonblocking.enabled", String.valueOf(options.isNonBlocking()));
+		properties.setProperty("chunk.reuse.max_unexpected_files", String.valueOf(options.getReuseMaxUnexpectedFiles()));
+		properties.setProperty("chunk.reuse.max_unexpected_bytes", String.valueOf(options.getReuseMaxUnexpectedBytes()));
+		if (options.getDigestCacheDirectory() != null) {
+			properties.setProperty("digest.cache.directory", options.getDigestCacheDirectory());
+		}
 		if (options.getAuthToken() != null) {
 			properties.setProperty("auth.token", options.getAuthToken());
 		}
@@ -3,6 +3,8 @@ package com.mediatoolkit.pareco.commandline;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex;
+import com.mediatoolkit.pareco.components.DigestReadMode;
 import com.mediatoolkit.pareco.util.commandline.CommandLineOptions;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -30,6 +32,33 @@ public class ServerCommandLineOptions implements CommandLineOptions {
 	@Parameter(names = {"-e", "--expire"}, description = "Duration in millis after inactive sessions get expired", order = 4)
 	private int sessionExpire = 150_000;
 
+	@Parameter(names = "--digestCache", description = "Directory where to persist file digests so unchanged files are not re-read on each transfer", order = 5)
+	private String digestCacheDirectory;
+
+	@Parameter(names = "--digestParallelism", description = "Max number of threads hashing chunks of single file concurrently, all files share pool of this size", order = 6)
+	private int digestParallelism = 1;
+
+	@Parameter(names = "--digestReadMode", description = "How file chunks are read for digest calculation", order = 7)
+	private DigestReadMode digestReadMode = DigestReadMode.STREAM;
+
+	@Parameter(names = "--batchDigestThreads", description = "Number of threads hashing files requested in batch (many small files) concurrently", order = 8)
+	private int batchDigestThreads = 4;
+
+	@Parameter(names = "--h2c", description = "If set, clients can use HTTP/2 over plain connection (prior knowledge or upgrade) besides HTTP/1.1", order = 9)
+	private boolean h2c;
+
+	@Parameter(names = "--noSendFile", description = "If set, chunks are downloaded by copying through server instead of being sent by connector directly from file (sendfile)", order = 10)
+	private boolean noSendFile;
+
+	@Parameter(names = "--nonBlocking", description = "If set, chunks are uploaded and downloaded with non-blocking I/O so that slow clients don't hold server threads", order = 11)
+	private boolean nonBlocking;
+
+	@Parameter(names = "--reuseMaxUnexpectedFiles", description = "Max number of destination files not present in source which are digested to offer their chunks for reuse", order = 12)
+	private int reuseMaxUnexpectedFiles = DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_FILES;
+
+	@Parameter(names = "--reuseMaxUnexpectedBytes", description = "Max total size of destination files not present in source which are digested to offer their chunks for reuse", order = 12)
+	private long reuseMaxUnexpectedBytes = DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_BYTES;
+
 	@Parameter(names = {"-h", "--help"}, help = true, description = "Print this help with parameters", order = 1000)
 	private boolean help;
 
@@ -43,6 +72,15 @@ public class ServerCommandLineOptions implements CommandLineOptions {
 		if (authToken != null && authToken.isEmpty()) {
 			throw new ParameterException("Auth token must not be empty string");
 		}
+		if (digestParallelism < 1) {
+			throw new ParameterException("Digest parallelism must be positive, got: " + digestParallelism);
+		}
+		if (batchDigestThreads < 1) {
+			throw new ParameterException("Batch digest threads must be positive, got: " + batchDigestThreads);
+		}
+		if (reuseMaxUnexpectedFiles < 0 || reuseMaxUnexpectedBytes < 0) {
+			throw new ParameterException("Limits of unexpected files for chunk reuse must not be negative");
+		}
 		if (port < 0 || port > 65535) {
 			throw new ParameterException("Port must be in range [1, 65535], got: " + port);
 		}
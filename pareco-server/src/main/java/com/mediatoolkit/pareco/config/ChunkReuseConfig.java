@@ -0,0 +1,23 @@
+package com.mediatoolkit.pareco.config;
+
+import com.mediatoolkit.pareco.components.DestinationChunkIndex;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 14/11/2018
+ */
+@Configuration
+public class ChunkReuseConfig {
+
+	@Bean
+	public UnexpectedFilesLimits unexpectedFilesLimits(
+		@Value("${chunk.reuse.max_unexpected_files:" + DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_FILES + "}") int maxFiles,
+		@Value("${chunk.reuse.max_unexpected_bytes:" + DestinationChunkIndex.DEFAULT_MAX_UNEXPECTED_BYTES + "}") long maxBytes
+	) {
+		return UnexpectedFilesLimits.of(maxFiles, maxBytes);
+	}
+}
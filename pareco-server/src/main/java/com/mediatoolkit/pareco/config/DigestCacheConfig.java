@@ -0,0 +1,21 @@
+package com.mediatoolkit.pareco.config;
+
+import com.mediatoolkit.pareco.components.FileDigestCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 08/11/2018
+ */
+@Configuration
+public class DigestCacheConfig {
+
+	@Bean
+	public FileDigestCache fileDigestCache(
+		@Value("${digest.cache.directory:#{null}}") String digestCacheDirectory
+	) {
+		return FileDigestCache.inDirectory(digestCacheDirectory);
+	}
+}
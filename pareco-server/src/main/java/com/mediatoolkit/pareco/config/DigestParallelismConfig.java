@@ -0,0 +1,47 @@
+package com.mediatoolkit.pareco.config;
+
+import com.mediatoolkit.pareco.components.DigestParallelism;
+import com.mediatoolkit.pareco.components.FileDigestBatchCalculator;
+import com.mediatoolkit.pareco.components.FileDigestCalculator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 09/11/2018
+ */
+@Configuration
+public class DigestParallelismConfig {
+
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService chunkDigestExecutor(
+		@Value("${digest.parallelism:1}") int digestParallelism
+	) {
+		return Executors.newFixedThreadPool(
+			digestParallelism, new CustomizableThreadFactory("chunkDigest")
+		);
+	}
+
+	@Bean
+	public DigestParallelism digestParallelism(
+		@Value("${digest.parallelism:1}") int digestParallelism,
+		ExecutorService chunkDigestExecutor
+	) {
+		if (digestParallelism <= 1) {
+			return DigestParallelism.SEQUENTIAL;
+		}
+		return DigestParallelism.of(digestParallelism, chunkDigestExecutor);
+	}
+
+	@Bean(destroyMethod = "close")
+	public FileDigestBatchCalculator fileDigestBatchCalculator(
+		FileDigestCalculator fileDigestCalculator,
+		@Value("${digest.batch.threads:4}") int batchDigestThreads
+	) {
+		return new FileDigestBatchCalculator(fileDigestCalculator, batchDigestThreads);
+	}
+}
@@ -0,0 +1,21 @@
+package com.mediatoolkit.pareco.config;
+
+import com.mediatoolkit.pareco.components.FileDigestHttpMessageConverter;
+import java.util.List;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 11/11/2018
+ */
+@Configuration
+public class MessageConvertersConfig implements WebMvcConfigurer {
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		//binary digest is preferred over json when client accepts both
+		converters.add(0, new FileDigestHttpMessageConverter());
+	}
+}
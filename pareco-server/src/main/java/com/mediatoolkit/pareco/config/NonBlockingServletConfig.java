@@ -0,0 +1,67 @@
+package com.mediatoolkit.pareco.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatoolkit.pareco.restapi.NonBlockingDownloadChunkServlet;
+import com.mediatoolkit.pareco.restapi.NonBlockingUploadChunkServlet;
+import com.mediatoolkit.pareco.restapi.TransferExceptionHandler;
+import com.mediatoolkit.pareco.session.SessionRepository;
+import javax.servlet.Servlet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers non-blocking servlets for chunk upload and download, their exact mappings take precedence
+ * over {@code DispatcherServlet} so that chunk transfers don't pin container threads
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Configuration
+@ConditionalOnProperty(name = "server.nonblocking.enabled", havingValue = "true")
+public class NonBlockingServletConfig {
+
+	/**
+	 * Non-blocking transfer of single chunk taking longer than session may stay inactive is given up
+	 */
+	private final long asyncTimeoutMillis;
+
+	public NonBlockingServletConfig(
+		@Value("${session.expire.max_inactive}") long asyncTimeoutMillis
+	) {
+		this.asyncTimeoutMillis = asyncTimeoutMillis;
+	}
+
+	@Bean
+	public ServletRegistrationBean<NonBlockingUploadChunkServlet> nonBlockingUploadChunkServlet(
+		SessionRepository sessionRepository,
+		TransferExceptionHandler exceptionHandler,
+		ObjectMapper objectMapper
+	) {
+		return registration(
+			new NonBlockingUploadChunkServlet(sessionRepository, exceptionHandler, objectMapper, asyncTimeoutMillis),
+			NonBlockingUploadChunkServlet.PATH
+		);
+	}
+
+	@Bean
+	public ServletRegistrationBean<NonBlockingDownloadChunkServlet> nonBlockingDownloadChunkServlet(
+		SessionRepository sessionRepository,
+		TransferExceptionHandler exceptionHandler,
+		ObjectMapper objectMapper
+	) {
+		return registration(
+			new NonBlockingDownloadChunkServlet(sessionRepository, exceptionHandler, objectMapper, asyncTimeoutMillis),
+			NonBlockingDownloadChunkServlet.PATH
+		);
+	}
+
+	private static <S extends Servlet> ServletRegistrationBean<S> registration(S servlet, String path) {
+		ServletRegistrationBean<S> registration = new ServletRegistrationBean<>(servlet, path);
+		registration.setName(servlet.getClass().getSimpleName());
+		registration.setAsyncSupported(true);
+		return registration;
+	}
+}
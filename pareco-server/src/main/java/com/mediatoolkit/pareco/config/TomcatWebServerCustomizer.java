@@ -1,5 +1,12 @@
 package com.mediatoolkit.pareco.config;
 
+import java.io.File;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.catalina.Globals;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
 import org.springframework.boot.web.server.WebServerFactoryCustomizer;
 import org.springframework.stereotype.Component;
@@ -11,8 +18,57 @@ import org.springframework.stereotype.Component;
 @Component
 public class TomcatWebServerCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
 
+	/**
+	 * Flow control window of HTTP/2 stream, default of 64K would limit each chunk upload to
+	 * one window per round trip. Tomcat allocates input buffer of window size for each stream
+	 * with request body, so it's kept at default chunk size rather than larger.
+	 */
+	private static final int HTTP2_INITIAL_WINDOW_SIZE = 1 << 20;
+
+	private final boolean h2cEnabled;
+	private final boolean sendFileEnabled;
+
+	public TomcatWebServerCustomizer(
+		@Value("${server.h2c.enabled:false}") boolean h2cEnabled,
+		@Value("${server.sendfile.enabled:true}") boolean sendFileEnabled
+	) {
+		this.h2cEnabled = h2cEnabled;
+		this.sendFileEnabled = sendFileEnabled;
+	}
+
 	@Override
 	public void customize(TomcatServletWebServerFactory factory) {
 		factory.addConnectorCustomizers(connector -> connector.setAttribute("relaxedQueryChars", "[]{}|"));
+		if (!sendFileEnabled) {
+			//download chunks then fall back to being copied through response stream
+			factory.addConnectorCustomizers(connector -> connector.setAttribute("useSendfile", "false"));
+		}
+		if (h2cEnabled) {
+			factory.addConnectorCustomizers(connector -> {
+				Http2Protocol http2Protocol = new Http2Protocol();
+				http2Protocol.setInitialWindowSize(HTTP2_INITIAL_WINDOW_SIZE);
+				connector.addUpgradeProtocol(http2Protocol);
+			});
+		}
+	}
+
+	/**
+	 * @return {@code true} if connector which received request can send response body directly from file
+	 */
+	public static boolean isSendFileSupported(HttpServletRequest request) {
+		return Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR));
+	}
+
+	/**
+	 * Leaves writing of response body to connector which transfers range of file directly
+	 * to socket once request handling returns, see {@link #isSendFileSupported}
+	 */
+	public static void sendFile(
+		HttpServletRequest request, HttpServletResponse response, File file, long offsetBytes, long sizeBytes
+	) throws IOException {
+		response.setContentLengthLong(sizeBytes);
+		request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+		request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, offsetBytes);
+		request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, offsetBytes + sizeBytes);
 	}
 }
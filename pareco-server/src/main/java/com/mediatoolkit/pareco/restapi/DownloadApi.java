@@ -1,19 +1,43 @@
 package com.mediatoolkit.pareco.restapi;
 
+import com.mediatoolkit.pareco.components.ChunkCompressor;
+import com.mediatoolkit.pareco.components.ChunkDigestStream;
+import com.mediatoolkit.pareco.components.ChunkFrameStream;
+import com.mediatoolkit.pareco.components.FileBundleStream;
+import com.mediatoolkit.pareco.components.FileDigestBatchStream;
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
+import com.mediatoolkit.pareco.components.ZeroChunks;
+import com.mediatoolkit.pareco.config.TomcatWebServerCustomizer;
+import com.mediatoolkit.pareco.exceptions.FileDeletedException;
+import com.mediatoolkit.pareco.exceptions.InvalidRequestParameterException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta;
 import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
 import com.mediatoolkit.pareco.session.DownloadSession;
 import com.mediatoolkit.pareco.session.DownloadSession.FileDownloadSession;
 import com.mediatoolkit.pareco.session.SessionRepository;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -60,10 +84,140 @@ public class DownloadApi {
 		@RequestParam("downloadSession") String transferSession,
 		@RequestParam("relativeDirectory") String relativeDirectory,
 		@RequestParam("fileName") String fileName,
-		@RequestParam("digestType") DigestType digestType
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam(name = "chunkingType", required = false, defaultValue = "FIXED") ChunkingType chunkingType,
+		@RequestParam(name = "digestPrefixBytes", required = false, defaultValue = "0") Integer digestPrefixBytes
 	) throws IOException {
 		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
-		return downloadSession.getFileDigest(decode(relativeDirectory), decode(fileName), digestType);
+		return downloadSession.getFileDigest(
+			decode(relativeDirectory), decode(fileName), digestType, chunkingType, digestPrefixBytes
+		);
+	}
+
+	@PostMapping("/file/fingerprints")
+	public byte[][] getFileFingerprints(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestBody List<FilePath> filePaths
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFileFingerprints(filePaths, digestType);
+	}
+
+	@PostMapping(value = "/file/digests", produces = FileDigestBatchStream.MEDIA_TYPE)
+	public void streamFileDigests(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam(name = "chunkingType", required = false, defaultValue = "FIXED") ChunkingType chunkingType,
+		@RequestParam(name = "digestPrefixBytes", required = false, defaultValue = "0") Integer digestPrefixBytes,
+		@RequestBody List<FilePath> filePaths,
+		HttpServletResponse response
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		response.setContentType(FileDigestBatchStream.MEDIA_TYPE);
+		downloadSession.streamFileDigests(
+			filePaths, digestType, chunkingType, digestPrefixBytes,
+			FileDigestBatchStream.writerTo(response.getOutputStream())
+		);
+	}
+
+	/**
+	 * Sends requested files as {@link FileBundleStream} of whole files with their metadata, in requested order
+	 */
+	@PostMapping(value = "/file/bundle", produces = FileBundleStream.MEDIA_TYPE)
+	public void downloadBundle(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestBody List<FilePath> filePaths,
+		HttpServletResponse response
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		response.setContentType(FileBundleStream.MEDIA_TYPE);
+		downloadSession.downloadBundle(filePaths, response.getOutputStream());
+	}
+
+	@GetMapping(value = "/file/digest/stream", produces = ChunkDigestStream.MEDIA_TYPE)
+	public void streamFileDigest(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		HttpServletResponse response
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		response.setContentType(ChunkDigestStream.MEDIA_TYPE);
+		downloadSession.streamFileDigest(
+			decode(relativeDirectory), decode(fileName), digestType,
+			ChunkDigestStream.writerTo(response.getOutputStream())
+		);
+	}
+
+	@GetMapping("/file/digest/prefix")
+	public byte[] getFilePrefixDigest(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("prefixSizeBytes") Long prefixSizeBytes
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFilePrefixDigest(decode(relativeDirectory), decode(fileName), digestType, prefixSizeBytes);
+	}
+
+	@PostMapping("/file/digest/blocks")
+	public FileDigest getFileBlockDigests(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("blockSizeBytes") Long blockSizeBytes,
+		@RequestBody List<ChunkInfo> ranges
+	) throws IOException {
+		if (blockSizeBytes <= 0) {
+			throw new InvalidRequestParameterException("blockSizeBytes", blockSizeBytes, "must be positive");
+		}
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFileBlockDigests(
+			decode(relativeDirectory), decode(fileName), digestType, blockSizeBytes, ranges
+		);
+	}
+
+	@GetMapping("/file/digest/tree")
+	public MerkleTreeSummary getFileDigestTreeSummary(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("fanOut") Integer fanOut
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFileDigestTreeSummary(decode(relativeDirectory), decode(fileName), digestType, fanOut);
+	}
+
+	@PostMapping("/file/digest/tree/nodes")
+	public byte[][] getFileDigestTreeNodes(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("fanOut") Integer fanOut,
+		@RequestParam("level") Integer level,
+		@RequestBody List<Integer> indices
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFileDigestTreeNodes(
+			decode(relativeDirectory), decode(fileName), digestType, fanOut, level, indices
+		);
+	}
+
+	@PostMapping("/file/delta")
+	public FileDelta getFileDelta(
+		@RequestParam("downloadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestBody FileSignature destinationSignature
+	) throws IOException {
+		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
+		return downloadSession.getFileDelta(decode(relativeDirectory), decode(fileName), destinationSignature);
 	}
 
 	@PutMapping("/file/skip")
@@ -80,10 +234,11 @@ public class DownloadApi {
 	public String initializeFileDownload(
 		@RequestParam("downloadSession") String transferSession,
 		@RequestParam("relativeDirectory") String relativeDirectory,
-		@RequestParam("fileName") String fileName
+		@RequestParam("fileName") String fileName,
+		@RequestParam(name = "verifyDigestType", required = false) DigestType verifyDigestType
 	) throws IOException {
 		DownloadSession downloadSession = sessionRepository.getDownloadSession(transferSession);
-		return downloadSession.initFileDownloadSession(decode(relativeDirectory), decode(fileName));
+		return downloadSession.initFileDownloadSession(decode(relativeDirectory), decode(fileName), verifyDigestType);
 	}
 
 	@GetMapping("/file/chunk")
@@ -91,18 +246,96 @@ public class DownloadApi {
 		@RequestParam("fileDownloadSession") String fileTransferSession,
 		@RequestParam("offsetBytes") Long offsetBytes,
 		@RequestParam("sizeBytes") Long sizeBytes,
-		OutputStream outputStream
+		@RequestParam(name = "zeroChunks", required = false, defaultValue = "false") Boolean zeroChunks,
+		@RequestParam(name = "compressionLevel", required = false) Integer compressionLevel,
+		@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+		HttpServletRequest request,
+		HttpServletResponse response
+	) throws IOException {
+		if (compressionLevel != null
+			&& (compressionLevel < CompressionType.MIN_LEVEL || compressionLevel > CompressionType.MAX_LEVEL)) {
+			throw new InvalidRequestParameterException(
+				"compressionLevel", compressionLevel,
+				"must be between " + CompressionType.MIN_LEVEL + " and " + CompressionType.MAX_LEVEL
+			);
+		}
+		FileDownloadSession fileDownloadSession = sessionRepository.getFileDownloadSession(fileTransferSession);
+		CompressionType compressionType = CompressionType.ofAcceptEncoding(acceptEncoding);
+		int level = compressionLevel == null ? CompressionType.DEFAULT_LEVEL : compressionLevel;
+		ChunkCompressor.Sink sink = chunkCompressor -> {
+			CompressionType usedCompressionType = chunkCompressor.getCompressionType();
+			if (usedCompressionType != CompressionType.NONE) {
+				response.setHeader(HttpHeaders.CONTENT_ENCODING, usedCompressionType.getContentEncoding());
+			}
+			chunkCompressor.writeTo(response.getOutputStream());
+		};
+		if (zeroChunks) {
+			//content read to check for zero chunk is sent right away instead of being read again by sendfile
+			if (fileDownloadSession.downloadChunkUnlessZero(offsetBytes, sizeBytes, compressionType, level, sink)) {
+				response.setHeader(ZeroChunks.ZERO_CHUNK_HEADER, "true");
+			}
+			return;
+		}
+		if (compressionType == CompressionType.NONE && TomcatWebServerCustomizer.isSendFileSupported(request)) {
+			Optional<File> file = fileDownloadSession.downloadChunkFromFile(offsetBytes, sizeBytes);
+			if (file.isPresent()) {
+				TomcatWebServerCustomizer.sendFile(request, response, file.get(), offsetBytes, sizeBytes);
+				return;
+			}
+		}
+		fileDownloadSession.downloadChunk(offsetBytes, sizeBytes, compressionType, level, sink);
+	}
+
+	/**
+	 * Sends requested chunks as stream of {@link ChunkFrameStream} frames, in requested order.
+	 * File found deleted or truncated is reported by deleted frame since error status can't be sent
+	 * after response got committed by earlier frames.
+	 */
+	@PostMapping(value = "/file/chunks", produces = ChunkFrameStream.MEDIA_TYPE)
+	public void downloadChunks(
+		@RequestParam("fileDownloadSession") String fileTransferSession,
+		@RequestParam(name = "zeroChunks", required = false, defaultValue = "false") Boolean zeroChunks,
+		@RequestBody List<ChunkInfo> chunkInfos,
+		HttpServletResponse response
 	) throws IOException {
 		FileDownloadSession fileDownloadSession = sessionRepository.getFileDownloadSession(fileTransferSession);
-		fileDownloadSession.downloadChunk(offsetBytes, sizeBytes, outputStream);
+		response.setContentType(ChunkFrameStream.MEDIA_TYPE);
+		DataOutputStream outputStream = new DataOutputStream(response.getOutputStream());
+		for (ChunkInfo chunkInfo : chunkInfos) {
+			long offsetBytes = chunkInfo.getOffsetBytes();
+			long sizeBytes = chunkInfo.getSizeBytes();
+			try {
+				fileDownloadSession.checkChunkInFile(offsetBytes, sizeBytes);
+			} catch (FileDeletedException ex) {
+				ChunkFrameStream.writeFileDeleted(outputStream, fileTransferSession, chunkInfo);
+				return;
+			}
+			if (zeroChunks) {
+				boolean zeroChunk = fileDownloadSession.downloadChunkUnlessZero(
+					offsetBytes, sizeBytes, CompressionType.NONE, CompressionType.DEFAULT_LEVEL,
+					chunkCompressor -> ChunkFrameStream.writeChunk(
+						outputStream, fileTransferSession, chunkInfo, chunkCompressor::writeTo
+					)
+				);
+				if (zeroChunk) {
+					ChunkFrameStream.writeZeroChunk(outputStream, fileTransferSession, chunkInfo);
+				}
+			} else {
+				ChunkFrameStream.writeChunk(
+					outputStream, fileTransferSession, chunkInfo,
+					contentOutputStream -> fileDownloadSession.downloadChunk(offsetBytes, sizeBytes, contentOutputStream)
+				);
+			}
+		}
 	}
 
 	@PutMapping("/file/commit")
 	public void commitFileDownload(
-		@RequestParam("fileDownloadSession") String fileTransferSession
+		@RequestParam("fileDownloadSession") String fileTransferSession,
+		@RequestBody(required = false) FileDigest transferredFileDigest
 	) {
 		FileDownloadSession fileDownloadSession = sessionRepository.getFileDownloadSession(fileTransferSession);
-		fileDownloadSession.commit();
+		fileDownloadSession.commit(transferredFileDigest);
 	}
 
 	@PutMapping("/commit")
@@ -0,0 +1,130 @@
+package com.mediatoolkit.pareco.restapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatoolkit.pareco.model.ErrorBody;
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.http.MediaType;
+
+/**
+ * Base of servlets which transfer chunk content with non-blocking (servlet async) I/O, so that request
+ * doesn't pin container thread while waiting for slow client. Container thread is used only while
+ * socket is ready, and content is moved through single buffer of {@link #BUFFER_SIZE} per request,
+ * so memory per connection doesn't depend on client speed.
+ * Requests which can't be handled without blocking (i.e. compressed content or HTTP/2 streams)
+ * are forwarded to controllers of {@code DispatcherServlet}.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Slf4j
+public abstract class NonBlockingChunkServlet extends HttpServlet {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private final TransferExceptionHandler exceptionHandler;
+	private final ObjectMapper objectMapper;
+	private final long asyncTimeoutMillis;
+
+	NonBlockingChunkServlet(
+		TransferExceptionHandler exceptionHandler, ObjectMapper objectMapper, long asyncTimeoutMillis
+	) {
+		this.exceptionHandler = exceptionHandler;
+		this.objectMapper = objectMapper;
+		this.asyncTimeoutMillis = asyncTimeoutMillis;
+	}
+
+	void forwardToDispatcher(
+		HttpServletRequest request, HttpServletResponse response
+	) throws ServletException, IOException {
+		getServletContext()
+			.getNamedDispatcher(DispatcherServletAutoConfiguration.DEFAULT_DISPATCHER_SERVLET_BEAN_NAME)
+			.forward(request, response);
+	}
+
+	AsyncContext startAsync(HttpServletRequest request) {
+		return startAsync(request, () -> {
+		});
+	}
+
+	/**
+	 * Puts request into async mode, {@code onEnd} is invoked once request is completed, timed out or failed
+	 */
+	AsyncContext startAsync(HttpServletRequest request, Runnable onEnd) {
+		AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(asyncTimeoutMillis);
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				onEnd.run();
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				log.warn("Non-blocking chunk transfer timed out: {}", request.getQueryString());
+				event.getAsyncContext().complete();
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				event.getAsyncContext().complete();
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		return asyncContext;
+	}
+
+	/**
+	 * Writes same error response as {@link TransferExceptionHandler} does for controllers,
+	 * unless response is already committed
+	 */
+	void writeError(HttpServletRequest request, HttpServletResponse response, Exception ex) {
+		ErrorBody errorBody = exceptionHandler.toErrorBody(ex, request.getContextPath());
+		if (response.isCommitted()) {
+			return;
+		}
+		try {
+			response.setStatus(errorBody.getStatus());
+			response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+			objectMapper.writeValue(response.getOutputStream(), errorBody);
+		} catch (IOException e) {
+			log.debug("Failed to write error response", e);
+		}
+	}
+
+	/**
+	 * Non-blocking reads of HTTP/2 streams in this version of Tomcat can stall without ever
+	 * notifying listener, so streams multiplexed over HTTP/2 connection are left to controllers
+	 */
+	static boolean isNonBlockingSupported(HttpServletRequest request) {
+		return !request.getProtocol().startsWith("HTTP/2");
+	}
+
+	/**
+	 * @return value of parameter or {@code null} if it's missing or malformed, such requests
+	 * are left to controller to reject
+	 */
+	static Long longParameter(HttpServletRequest request, String name) {
+		String value = request.getParameter(name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
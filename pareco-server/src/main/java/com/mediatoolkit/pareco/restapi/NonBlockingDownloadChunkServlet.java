@@ -0,0 +1,150 @@
+package com.mediatoolkit.pareco.restapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatoolkit.pareco.components.FileChunkInputStream;
+import com.mediatoolkit.pareco.components.ZeroChunks;
+import com.mediatoolkit.pareco.config.TomcatWebServerCustomizer;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.CompressionType;
+import com.mediatoolkit.pareco.session.DownloadSession.FileDownloadSession;
+import com.mediatoolkit.pareco.session.SessionRepository;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Optional;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Non-blocking variant of {@link DownloadApi#downloadChunk}. Chunk is sent by connector directly from file
+ * when it supports sendfile, otherwise next piece is read from file only once socket is ready to accept it,
+ * so slow client holds back reading instead of content being buffered in memory.
+ * Chunk which client accepts as zero chunk is checked for zeros and, unless it is zero chunk, sent from
+ * what was read during the check, without sendfile. Chunks which need to be compressed or digested while
+ * sent are forwarded to controller.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+@Slf4j
+public class NonBlockingDownloadChunkServlet extends NonBlockingChunkServlet {
+
+	public static final String PATH = "/download/file/chunk";
+
+	private final SessionRepository sessionRepository;
+
+	public NonBlockingDownloadChunkServlet(
+		SessionRepository sessionRepository,
+		TransferExceptionHandler exceptionHandler,
+		ObjectMapper objectMapper,
+		long asyncTimeoutMillis
+	) {
+		super(exceptionHandler, objectMapper, asyncTimeoutMillis);
+		this.sessionRepository = sessionRepository;
+	}
+
+	@Override
+	protected void service(
+		HttpServletRequest request, HttpServletResponse response
+	) throws ServletException, IOException {
+		String fileTransferSession = request.getParameter("fileDownloadSession");
+		Long offsetBytes = longParameter(request, "offsetBytes");
+		Long sizeBytes = longParameter(request, "sizeBytes");
+		boolean eligible = "GET".equals(request.getMethod())
+			&& isNonBlockingSupported(request)
+			&& CompressionType.ofAcceptEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) == CompressionType.NONE
+			&& request.getParameter("compressionLevel") == null
+			&& fileTransferSession != null && offsetBytes != null && sizeBytes != null;
+		if (!eligible) {
+			forwardToDispatcher(request, response);
+			return;
+		}
+		boolean zeroChunks = Boolean.parseBoolean(request.getParameter("zeroChunks"));
+		RandomAccessFile randomAccessFile = null;
+		InputStream content;
+		try {
+			FileDownloadSession fileDownloadSession = sessionRepository.getFileDownloadSession(fileTransferSession);
+			Optional<File> file = fileDownloadSession.downloadChunkFromFile(offsetBytes, sizeBytes);
+			if (!file.isPresent()) {
+				forwardToDispatcher(request, response);
+				return;
+			}
+			if (!zeroChunks && TomcatWebServerCustomizer.isSendFileSupported(request)) {
+				TomcatWebServerCustomizer.sendFile(request, response, file.get(), offsetBytes, sizeBytes);
+				return;
+			}
+			randomAccessFile = new RandomAccessFile(file.get(), "r");
+			ChunkInfo chunkInfo = ChunkInfo.of(offsetBytes, sizeBytes);
+			//bytes read while checking for zeros are sent as part of content instead of being read again
+			content = zeroChunks
+				? ZeroChunks.contentUnlessZeroChunk(randomAccessFile, chunkInfo)
+				: new FileChunkInputStream(randomAccessFile, offsetBytes, sizeBytes);
+			if (content == null) {
+				IOUtils.closeQuietly(randomAccessFile);
+				response.setHeader(ZeroChunks.ZERO_CHUNK_HEADER, "true");
+				return;
+			}
+		} catch (RuntimeException | IOException ex) {
+			IOUtils.closeQuietly(randomAccessFile);
+			writeError(request, response, ex);
+			return;
+		}
+		response.setContentLengthLong(sizeBytes);
+		Closeable openedFile = randomAccessFile;
+		AsyncContext asyncContext = startAsync(request, () -> IOUtils.closeQuietly(openedFile));
+		ServletOutputStream outputStream = response.getOutputStream();
+		outputStream.setWriteListener(new ChunkWriteListener(asyncContext, outputStream, content, sizeBytes));
+	}
+
+	private static class ChunkWriteListener implements WriteListener {
+
+		private final AsyncContext asyncContext;
+		private final ServletOutputStream outputStream;
+		private final InputStream content;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private long remainingBytes;
+
+		ChunkWriteListener(
+			AsyncContext asyncContext, ServletOutputStream outputStream, InputStream content, long sizeBytes
+		) {
+			this.asyncContext = asyncContext;
+			this.outputStream = outputStream;
+			this.content = content;
+			this.remainingBytes = sizeBytes;
+		}
+
+		@Override
+		public void onWritePossible() throws IOException {
+			while (outputStream.isReady()) {
+				if (remainingBytes == 0) {
+					asyncContext.complete();
+					return;
+				}
+				int read = content.read(buffer, 0, (int) Math.min(buffer.length, remainingBytes));
+				if (read == -1) {
+					//content length is already sent, client will detect incomplete chunk
+					throw new EOFException("File got truncated while sending chunk, " + remainingBytes + " bytes missing");
+				}
+				outputStream.write(buffer, 0, read);
+				remainingBytes -= read;
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			log.debug("Non-blocking chunk download failed", throwable);
+			asyncContext.complete();
+		}
+	}
+
+}
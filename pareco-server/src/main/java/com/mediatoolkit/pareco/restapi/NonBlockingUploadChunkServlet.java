@@ -0,0 +1,129 @@
+package com.mediatoolkit.pareco.restapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatoolkit.pareco.session.SessionRepository;
+import com.mediatoolkit.pareco.session.UploadSession.FileUploadSession.ChunkReceiver;
+import java.io.IOException;
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Non-blocking variant of {@link UploadApi#uploadChunk}. Request body is read only when socket has data
+ * and each piece is written into file before next one is read, so slow disk holds back client
+ * through TCP flow control instead of content being buffered in memory.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 15/11/2018
+ */
+public class NonBlockingUploadChunkServlet extends NonBlockingChunkServlet {
+
+	public static final String PATH = "/upload/file/chunk";
+
+	private final SessionRepository sessionRepository;
+
+	public NonBlockingUploadChunkServlet(
+		SessionRepository sessionRepository,
+		TransferExceptionHandler exceptionHandler,
+		ObjectMapper objectMapper,
+		long asyncTimeoutMillis
+	) {
+		super(exceptionHandler, objectMapper, asyncTimeoutMillis);
+		this.sessionRepository = sessionRepository;
+	}
+
+	@Override
+	protected void service(
+		HttpServletRequest request, HttpServletResponse response
+	) throws ServletException, IOException {
+		String fileTransferSession = request.getParameter("fileUploadSession");
+		Long offsetBytes = longParameter(request, "offsetBytes");
+		Long sizeBytes = longParameter(request, "sizeBytes");
+		boolean eligible = "PUT".equals(request.getMethod())
+			&& isNonBlockingSupported(request)
+			&& request.getHeader(HttpHeaders.CONTENT_ENCODING) == null
+			&& fileTransferSession != null && offsetBytes != null && sizeBytes != null;
+		if (!eligible) {
+			forwardToDispatcher(request, response);
+			return;
+		}
+		ChunkReceiver chunkReceiver;
+		try {
+			chunkReceiver = sessionRepository.getFileUploadSession(fileTransferSession)
+				.receiveChunk(offsetBytes, sizeBytes);
+		} catch (RuntimeException ex) {
+			writeError(request, response, ex);
+			return;
+		}
+		AsyncContext asyncContext = startAsync(request);
+		ServletInputStream inputStream = request.getInputStream();
+		inputStream.setReadListener(new ChunkReadListener(asyncContext, inputStream, chunkReceiver));
+	}
+
+	private class ChunkReadListener implements ReadListener {
+
+		private final AsyncContext asyncContext;
+		private final ServletInputStream inputStream;
+		private final ChunkReceiver chunkReceiver;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private boolean failed = false;
+
+		ChunkReadListener(AsyncContext asyncContext, ServletInputStream inputStream, ChunkReceiver chunkReceiver) {
+			this.asyncContext = asyncContext;
+			this.inputStream = inputStream;
+			this.chunkReceiver = chunkReceiver;
+		}
+
+		@Override
+		public void onDataAvailable() {
+			if (failed) {
+				return;
+			}
+			try {
+				while (inputStream.isReady()) {
+					int read = inputStream.read(buffer);
+					if (read == -1) {
+						return;
+					}
+					chunkReceiver.receive(buffer, read);
+				}
+			} catch (Exception ex) {
+				fail(ex);
+			}
+		}
+
+		@Override
+		public void onAllDataRead() {
+			if (failed) {
+				return;
+			}
+			try {
+				chunkReceiver.complete();
+			} catch (Exception ex) {
+				fail(ex);
+				return;
+			}
+			asyncContext.complete();
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			//i.e. client disconnected, there is no one to respond to
+			failed = true;
+			asyncContext.complete();
+		}
+
+		private void fail(Exception ex) {
+			failed = true;
+			writeError(
+				(HttpServletRequest) asyncContext.getRequest(), (HttpServletResponse) asyncContext.getResponse(), ex
+			);
+			asyncContext.complete();
+		}
+	}
+
+}
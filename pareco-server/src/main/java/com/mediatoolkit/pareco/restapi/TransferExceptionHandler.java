@@ -1,6 +1,7 @@
 package com.mediatoolkit.pareco.restapi;
 
 import com.mediatoolkit.pareco.exceptions.FileDeletedException;
+import com.mediatoolkit.pareco.exceptions.InvalidRequestParameterException;
 import com.mediatoolkit.pareco.exceptions.ParecoException;
 import com.mediatoolkit.pareco.model.ErrorBody;
 import java.util.Date;
@@ -25,8 +26,20 @@ public class TransferExceptionHandler extends ResponseEntityExceptionHandler {
 	@Order(Ordered.HIGHEST_PRECEDENCE)
 	@ExceptionHandler(Exception.class)
 	public final ResponseEntity<ErrorBody> handleParecoException(Exception ex, WebRequest request) {
+		ErrorBody errorBody = toErrorBody(ex, request.getContextPath());
+		return new ResponseEntity<>(errorBody, HttpStatus.valueOf(errorBody.getStatus()));
+	}
+
+	/**
+	 * Logs {@code ex} and creates body of error response for it, for requests which are
+	 * not handled by controllers, i.e. non-blocking chunk transfers
+	 */
+	public ErrorBody toErrorBody(Exception ex, String path) {
 		ErrorBody.Type type;
 		String message;
+		HttpStatus status = ex instanceof InvalidRequestParameterException
+			? HttpStatus.BAD_REQUEST
+			: HttpStatus.INTERNAL_SERVER_ERROR;
 		if (ex instanceof ParecoException) {
 			type = ((ParecoException) ex).type();
 			if (ex instanceof FileDeletedException) {
@@ -40,10 +53,10 @@ public class TransferExceptionHandler extends ResponseEntityExceptionHandler {
 			message = ex.toString();
 		}
 		ErrorBody errorBody = ErrorBody.builder()
-			.error("Server Exception")
-			.status(500)
+			.error(status == HttpStatus.BAD_REQUEST ? "Bad Request" : "Server Exception")
+			.status(status.value())
 			.message(message)
-			.path(request.getContextPath())
+			.path(path)
 			.timestamp(new Date())
 			.type(type)
 			.build();
@@ -57,7 +70,7 @@ public class TransferExceptionHandler extends ResponseEntityExceptionHandler {
 			default:
 				log.error("Exception returning error: {}", errorBody);
 		}
-		return new ResponseEntity<>(errorBody, HttpStatus.INTERNAL_SERVER_ERROR);
+		return errorBody;
 	}
 
 }
@@ -1,10 +1,22 @@
 package com.mediatoolkit.pareco.restapi;
 
+import com.mediatoolkit.pareco.components.ChunkDigestStream;
+import com.mediatoolkit.pareco.components.ChunkFrameStream;
+import com.mediatoolkit.pareco.components.FileBundleStream;
+import com.mediatoolkit.pareco.components.FileDigestBatchStream;
 import com.mediatoolkit.pareco.components.TransferNamesEncoding;
+import com.mediatoolkit.pareco.exceptions.InvalidRequestParameterException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
 import com.mediatoolkit.pareco.model.FileDigest;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
 import com.mediatoolkit.pareco.session.SessionRepository;
 import com.mediatoolkit.pareco.session.UploadSession;
 import com.mediatoolkit.pareco.session.UploadSession.FileUploadSession;
@@ -14,14 +26,17 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -81,15 +96,130 @@ public class UploadApi {
 		uploadSession.deleteFiles(filePaths);
 	}
 
+	@PostMapping("/file/move")
+	public List<FileMove> moveFiles(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestBody List<FileMove> fileMoves
+	) {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.moveFiles(fileMoves);
+	}
+
 	@GetMapping("/file/digest")
 	public FileDigest getFileDigest(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam(name = "chunkingType", required = false, defaultValue = "FIXED") ChunkingType chunkingType,
+		@RequestParam(name = "digestPrefixBytes", required = false, defaultValue = "0") Integer digestPrefixBytes
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.getFileDigest(
+			decode(relativeDirectory), decode(fileName), digestType, chunkingType, digestPrefixBytes
+		);
+	}
+
+	@PostMapping(value = "/file/digests", produces = FileDigestBatchStream.MEDIA_TYPE)
+	public void streamFileDigests(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam(name = "chunkingType", required = false, defaultValue = "FIXED") ChunkingType chunkingType,
+		@RequestParam(name = "digestPrefixBytes", required = false, defaultValue = "0") Integer digestPrefixBytes,
+		@RequestBody List<FilePath> filePaths,
+		HttpServletResponse response
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		response.setContentType(FileDigestBatchStream.MEDIA_TYPE);
+		uploadSession.streamFileDigests(
+			filePaths, digestType, chunkingType, digestPrefixBytes,
+			FileDigestBatchStream.writerTo(response.getOutputStream())
+		);
+	}
+
+	@GetMapping(value = "/file/digest/stream", produces = ChunkDigestStream.MEDIA_TYPE)
+	public void streamFileDigest(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		HttpServletResponse response
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		response.setContentType(ChunkDigestStream.MEDIA_TYPE);
+		uploadSession.streamFileDigest(
+			decode(relativeDirectory), decode(fileName), digestType,
+			ChunkDigestStream.writerTo(response.getOutputStream())
+		);
+	}
+
+	@GetMapping("/file/digest/prefix")
+	public byte[] getFilePrefixDigest(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("prefixSizeBytes") Long prefixSizeBytes
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.getFilePrefixDigest(decode(relativeDirectory), decode(fileName), digestType, prefixSizeBytes);
+	}
+
+	@PostMapping("/file/digest/blocks")
+	public FileDigest getFileBlockDigests(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("blockSizeBytes") Long blockSizeBytes,
+		@RequestBody List<ChunkInfo> ranges
+	) throws IOException {
+		if (blockSizeBytes <= 0) {
+			throw new InvalidRequestParameterException("blockSizeBytes", blockSizeBytes, "must be positive");
+		}
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.getFileBlockDigests(
+			decode(relativeDirectory), decode(fileName), digestType, blockSizeBytes, ranges
+		);
+	}
+
+	@GetMapping("/file/digest/tree")
+	public MerkleTreeSummary getFileDigestTreeSummary(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("fanOut") Integer fanOut
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.getFileDigestTreeSummary(decode(relativeDirectory), decode(fileName), digestType, fanOut);
+	}
+
+	@PostMapping("/file/digest/tree/nodes")
+	public byte[][] getFileDigestTreeNodes(
+		@RequestParam("uploadSession") String transferSession,
+		@RequestParam("relativeDirectory") String relativeDirectory,
+		@RequestParam("fileName") String fileName,
+		@RequestParam("digestType") DigestType digestType,
+		@RequestParam("fanOut") Integer fanOut,
+		@RequestParam("level") Integer level,
+		@RequestBody List<Integer> indices
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		return uploadSession.getFileDigestTreeNodes(
+			decode(relativeDirectory), decode(fileName), digestType, fanOut, level, indices
+		);
+	}
+
+	@GetMapping("/file/signature")
+	public FileSignature getFileSignature(
 		@RequestParam("uploadSession") String transferSession,
 		@RequestParam("relativeDirectory") String relativeDirectory,
 		@RequestParam("fileName") String fileName,
 		@RequestParam("digestType") DigestType digestType
 	) throws IOException {
 		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
-		return uploadSession.getFileDigest(decode(relativeDirectory), decode(fileName), digestType);
+		return uploadSession.getFileSignature(decode(relativeDirectory), decode(fileName), digestType);
 	}
 
 	@PutMapping("/file/skip")
@@ -106,10 +236,12 @@ public class UploadApi {
 	public String initializeFileUpload(
 		@RequestParam("uploadSession") String transferSession,
 		@RequestParam("relativeDirectory") String relativeDirectory,
-		@RequestParam("fileName") String fileName
+		@RequestParam("fileName") String fileName,
+		@RequestParam(name = "delta", required = false, defaultValue = "false") boolean delta,
+		@RequestParam(name = "verifyDigestType", required = false) DigestType verifyDigestType
 	) throws IOException {
 		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
-		return uploadSession.initFileUploadSession(decode(relativeDirectory), decode(fileName));
+		return uploadSession.initFileUploadSession(decode(relativeDirectory), decode(fileName), delta, verifyDigestType);
 	}
 
 	@PutMapping("/file/chunk")
@@ -117,18 +249,78 @@ public class UploadApi {
 		@RequestParam("fileUploadSession") String fileTransferSession,
 		@RequestParam("offsetBytes") Long offsetBytes,
 		@RequestParam("sizeBytes") Long sizeBytes,
+		@RequestHeader(name = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
 		InputStream inputStream
 	) throws IOException {
+		CompressionType compressionType = CompressionType.ofContentEncoding(contentEncoding);
 		FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
-		uploadSession.uploadChunk(offsetBytes, sizeBytes, inputStream);
+		uploadSession.uploadChunk(offsetBytes, sizeBytes, inputStream, compressionType);
+	}
+
+	/**
+	 * Receives stream of {@link ChunkFrameStream} frames, each frame is written as it arrives
+	 */
+	@PutMapping("/file/chunks")
+	public void uploadChunks(
+		InputStream inputStream
+	) throws IOException {
+		ChunkFrameStream.readFrom(inputStream, (fileTransferSession, chunkInfo, content) -> {
+			FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
+			if (content == null) {
+				uploadSession.uploadZeroChunk(chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes());
+			} else {
+				uploadSession.uploadChunk(chunkInfo.getOffsetBytes(), chunkInfo.getSizeBytes(), content);
+			}
+		});
+	}
+
+	/**
+	 * Receives {@link FileBundleStream} of whole files, each file is written as it arrives
+	 */
+	@PutMapping("/file/bundle")
+	public void uploadBundle(
+		@RequestParam("uploadSession") String transferSession,
+		InputStream inputStream
+	) throws IOException {
+		UploadSession uploadSession = sessionRepository.getUploadSession(transferSession);
+		uploadSession.uploadBundle(inputStream);
+	}
+
+	@PutMapping("/file/chunk/zero")
+	public void uploadZeroChunk(
+		@RequestParam("fileUploadSession") String fileTransferSession,
+		@RequestParam("offsetBytes") Long offsetBytes,
+		@RequestParam("sizeBytes") Long sizeBytes
+	) throws IOException {
+		FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
+		uploadSession.uploadZeroChunk(offsetBytes, sizeBytes);
+	}
+
+	@PutMapping("/file/copy")
+	public void copyBlocks(
+		@RequestParam("fileUploadSession") String fileTransferSession,
+		@RequestBody List<DeltaInstruction> copyInstructions
+	) throws IOException {
+		FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
+		uploadSession.copyBlocks(copyInstructions);
+	}
+
+	@PostMapping("/file/reuse")
+	public List<ChunkInfo> reuseChunks(
+		@RequestParam("fileUploadSession") String fileTransferSession,
+		@RequestBody FileDigest chunks
+	) throws IOException {
+		FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
+		return uploadSession.reuseChunks(chunks);
 	}
 
 	@PutMapping("/file/commit")
 	public void commitFileUpload(
-		@RequestParam("fileUploadSession") String fileTransferSession
+		@RequestParam("fileUploadSession") String fileTransferSession,
+		@RequestBody(required = false) FileDigest transferredFileDigest
 	) {
 		FileUploadSession uploadSession = sessionRepository.getFileUploadSession(fileTransferSession);
-		uploadSession.commit();
+		uploadSession.commit(transferredFileDigest);
 	}
 
 	@DeleteMapping("/file/delete")
@@ -1,33 +1,61 @@
 package com.mediatoolkit.pareco.session;
 
+import com.google.common.hash.HashingInputStream;
+import com.mediatoolkit.pareco.components.ChunkCompressor;
+import com.mediatoolkit.pareco.components.ChunkDigestListener;
+import com.mediatoolkit.pareco.components.DigestParallelism;
+import com.mediatoolkit.pareco.components.DigestPrefixes;
+import com.mediatoolkit.pareco.components.FileDigestBatchCalculator;
+import com.mediatoolkit.pareco.components.FileDigestBatchListener;
 import com.mediatoolkit.pareco.components.DirectoryStructureReader;
+import com.mediatoolkit.pareco.components.FileBundleStream;
 import com.mediatoolkit.pareco.components.FileChunkInputStream;
+import com.mediatoolkit.pareco.components.FileDeltaCalculator;
+import com.mediatoolkit.pareco.components.FileDigestCache;
 import com.mediatoolkit.pareco.components.FileDigestCalculator;
+import com.mediatoolkit.pareco.components.FileMover;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool.Mode;
+import com.mediatoolkit.pareco.components.RandomAccessFilePool.ReturnableRandomAccessFile;
+import com.mediatoolkit.pareco.components.ZeroChunks;
 import com.mediatoolkit.pareco.exceptions.AlreadyCommitedException;
+import com.mediatoolkit.pareco.exceptions.ChunkDigestMismatchException;
 import com.mediatoolkit.pareco.exceptions.DuplicateFileMetadataException;
 import com.mediatoolkit.pareco.exceptions.FileDeletedException;
 import com.mediatoolkit.pareco.exceptions.FileNotSpecifiedDuringInitializationException;
 import com.mediatoolkit.pareco.exceptions.SessionNotExistsException;
+import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.ChunkingType;
+import com.mediatoolkit.pareco.model.CompressionType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta;
 import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FileMetadata;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FilePathDigest;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.Synchronized;
 import one.util.streamex.StreamEx;
-import org.apache.commons.io.IOUtils;
 
 /**
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
@@ -36,6 +64,11 @@ import org.apache.commons.io.IOUtils;
 public class DownloadSession {
 
 	private final FileDigestCalculator fileDigestCalculator;
+	private final FileDigestCache fileDigestCache;
+	private final DigestParallelism digestParallelism;
+	private final FileDigestBatchCalculator fileDigestBatchCalculator;
+	private final FileDeltaCalculator fileDeltaCalculator;
+	private final FileMover fileMover;
 
 	private final String id;
 	@Getter
@@ -46,6 +79,7 @@ public class DownloadSession {
 
 	private final Map<FilePath, FileMetadata> fileMetadatas;
 	private final Map<String, FileDownloadSession> fileSessions;
+	private final MerkleTreeCache merkleTreeCache;
 	private boolean committed;
 	@Getter
 	private long lastActivityTime;
@@ -53,16 +87,27 @@ public class DownloadSession {
 	public DownloadSession(
 		DirectoryStructureReader directoryStructureReader,
 		FileDigestCalculator fileDigestCalculator,
+		FileDigestCache fileDigestCache,
+		DigestParallelism digestParallelism,
+		FileDigestBatchCalculator fileDigestBatchCalculator,
+		FileDeltaCalculator fileDeltaCalculator,
+		FileMover fileMover,
 		String id, String rootDirectory, long chunkSizeBytes,
 		String include, String exclude
 	) throws IOException {
 		this.fileDigestCalculator = fileDigestCalculator;
+		this.fileDigestCache = fileDigestCache;
+		this.digestParallelism = digestParallelism;
+		this.fileDigestBatchCalculator = fileDigestBatchCalculator;
+		this.fileDeltaCalculator = fileDeltaCalculator;
+		this.fileMover = fileMover;
 		this.id = id;
 		this.rootDirectory = rootDirectory;
 		this.directoryStructure = directoryStructureReader.readDirectoryStructure(rootDirectory, include, exclude);
 		this.chunkSizeBytes = chunkSizeBytes;
 		this.committed = false;
 		this.fileSessions = new HashMap<>();
+		this.merkleTreeCache = new MerkleTreeCache();
 		this.fileMetadatas = StreamEx.of(directoryStructure.getFiles())
 			.mapToEntry(FileMetadata::getFilePath)
 			.invert()
@@ -74,11 +119,160 @@ public class DownloadSession {
 		this.lastActivityTime = System.currentTimeMillis();
 	}
 
-	public FileDigest getFileDigest(String relativeDirectory, String fileName, DigestType digestType) throws IOException {
+	public FileDigest getFileDigest(
+		String relativeDirectory, String fileName, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		FileDigest fileDigest = fileDigestCalculator.calculateFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, fileDigestCache, digestParallelism
+		);
+		return DigestPrefixes.truncate(fileDigest, digestPrefixBytes);
+	}
+
+	/**
+	 * Calculates digests of many files concurrently, each one is passed to {@code listener} as soon as it's calculated
+	 */
+	public void streamFileDigests(
+		List<FilePath> filePaths, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes,
+		FileDigestBatchListener listener
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		filePaths.forEach(this::checkFileRegistered);
+		fileDigestBatchCalculator.calculateFileDigests(
+			rootDirectory, filePaths, chunkSizeBytes, digestType, chunkingType, fileDigestCache,
+			filePathDigest -> {
+				this.lastActivityTime = System.currentTimeMillis();
+				FileDigest fileDigest = filePathDigest.getFileDigest();
+				listener.fileDigested(FilePathDigest.of(
+					filePathDigest.getFilePath(),
+					fileDigest != null ? DigestPrefixes.truncate(fileDigest, digestPrefixBytes) : null
+				));
+			}
+		);
+	}
+
+	/**
+	 * @return fingerprints of files in same order, used by client to detect renamed files
+	 */
+	public byte[][] getFileFingerprints(List<FilePath> filePaths, DigestType digestType) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		byte[][] fingerprints = new byte[filePaths.size()][];
+		for (int i = 0; i < filePaths.size(); i++) {
+			checkFileRegistered(filePaths.get(i));
+			fingerprints[i] = fileMover.fingerprintOf(
+				rootDirectory, filePaths.get(i), chunkSizeBytes, digestType, fileDigestCache, digestParallelism
+			);
+		}
+		return fingerprints;
+	}
+
+	public void streamFileDigest(
+		String relativeDirectory, String fileName, DigestType digestType, ChunkDigestListener listener
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		fileDigestCalculator.streamFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, fileDigestCache, chunkDigest -> {
+				this.lastActivityTime = System.currentTimeMillis();
+				listener.chunkDigested(chunkDigest);
+			}
+		);
+	}
+
+	/**
+	 * @return digest of first {@code prefixSizeBytes} bytes of file, {@code null} if file is shorter,
+	 * see {@link FileDigestCalculator#calculatePrefixDigest}
+	 */
+	public byte[] getFilePrefixDigest(
+		String relativeDirectory, String fileName, DigestType digestType, long prefixSizeBytes
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileDigestCalculator.calculatePrefixDigest(rootDirectory, filePath, prefixSizeBytes, digestType);
+	}
+
+	/**
+	 * Calculates digests of blocks of at most {@code blockSizeBytes} within given ranges of file,
+	 * see {@link FileDigestCalculator#calculateBlockDigests}
+	 */
+	public FileDigest getFileBlockDigests(
+		String relativeDirectory, String fileName, DigestType digestType, long blockSizeBytes, List<ChunkInfo> ranges
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileDigestCalculator.calculateBlockDigests(rootDirectory, filePath, ranges, blockSizeBytes, digestType);
+	}
+
+	public MerkleTreeSummary getFileDigestTreeSummary(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut
+	) throws IOException {
+		return getFileDigestTree(relativeDirectory, fileName, digestType, fanOut).toSummary();
+	}
+
+	public byte[][] getFileDigestTreeNodes(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut, int level, List<Integer> indices
+	) throws IOException {
+		MerkleTree tree = getFileDigestTree(relativeDirectory, fileName, digestType, fanOut);
+		return MerkleTreeCache.nodesOf(tree, level, indices);
+	}
+
+	private MerkleTree getFileDigestTree(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut
+	) throws IOException {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
-		return fileDigestCalculator.calculateFileDigest(rootDirectory, filePath, chunkSizeBytes, digestType);
+		return merkleTreeCache.get(filePath, digestType, fanOut, () -> fileDigestCalculator.calculateMerkleTree(
+			rootDirectory, filePath, chunkSizeBytes, digestType, fanOut, fileDigestCache, digestParallelism
+		));
+	}
+
+	public FileDelta getFileDelta(String relativeDirectory, String fileName, FileSignature destinationSignature) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileDeltaCalculator.calculateFileDelta(rootDirectory, filePath, destinationSignature);
+	}
+
+	/**
+	 * Writes whole files as {@link FileBundleStream} entries with metadata as of session initialization.
+	 * Content of each (small) file is read before its entry is started, so file which got deleted or
+	 * shrunk in the meantime is written as deleted entry instead of breaking rest of the bundle,
+	 * same as such file is reported deleted when its chunks are downloaded.
+	 */
+	public void downloadBundle(List<FilePath> filePaths, OutputStream outputStream) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		filePaths.forEach(this::checkFileRegistered);
+		DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+		for (FilePath filePath : filePaths) {
+			this.lastActivityTime = System.currentTimeMillis();
+			merkleTreeCache.evict(filePath);
+			FileMetadata fileMetadata = fileMetadatas.get(filePath);
+			byte[] content = readBundledContent(fileMetadata);
+			if (content != null) {
+				FileBundleStream.writeFile(dataOutputStream, fileMetadata, new ByteArrayInputStream(content));
+			} else {
+				FileBundleStream.writeDeletedFile(dataOutputStream, filePath);
+			}
+		}
+		dataOutputStream.flush();
+	}
+
+	/**
+	 * @return content of file up to its size from session initialization,
+	 * {@code null} if file doesn't exist anymore or is shorter than that
+	 */
+	private byte[] readBundledContent(FileMetadata fileMetadata) throws IOException {
+		try (InputStream input = new FileInputStream(fileMetadata.getFilePath().toAbsolutePath(rootDirectory))) {
+			return FileBundleStream.readContent(fileMetadata, input);
+		} catch (FileNotFoundException ex) {
+			return null;
+		}
 	}
 
 	private void checkFileRegistered(FilePath filePath) {
@@ -89,13 +283,16 @@ public class DownloadSession {
 	}
 
 	@Synchronized
-	public String initFileDownloadSession(String relativeDirectory, String fileName) throws IOException {
+	public String initFileDownloadSession(
+		String relativeDirectory, String fileName, DigestType verifyDigestType
+	) throws IOException {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
+		merkleTreeCache.evict(filePath);
 		FileMetadata fileMetadata = fileMetadatas.get(filePath);
 		String fileSessionId = id + "_" + UUID.randomUUID().toString();
-		FileDownloadSession fileDownloadSession = new FileDownloadSession(rootDirectory, fileMetadata);
+		FileDownloadSession fileDownloadSession = new FileDownloadSession(rootDirectory, fileMetadata, verifyDigestType);
 		fileSessions.put(fileSessionId, fileDownloadSession);
 		return fileSessionId;
 	}
@@ -105,6 +302,7 @@ public class DownloadSession {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
+		merkleTreeCache.evict(filePath);
 	}
 
 	private void checkSessionCommitted() {
@@ -139,41 +337,153 @@ public class DownloadSession {
 	public class FileDownloadSession {
 
 		private final FileMetadata fileMetadata;
+		private final File file;
 		private final RandomAccessFilePool randomAccessFilePool;
+		/**
+		 * Digests of sent chunks, {@code null} if client didn't request verification
+		 */
+		private final InlineChunkDigests inlineChunkDigests;
 		private volatile boolean committed;
 
-		FileDownloadSession(String rootDirectory, FileMetadata fileMetadata) {
+		FileDownloadSession(String rootDirectory, FileMetadata fileMetadata, DigestType verifyDigestType) {
 			this.fileMetadata = fileMetadata;
-			File file = new File(fileMetadata.getFilePath().toAbsolutePath(rootDirectory));
+			this.inlineChunkDigests = verifyDigestType == null ? null : new InlineChunkDigests(verifyDigestType);
+			file = new File(fileMetadata.getFilePath().toAbsolutePath(rootDirectory));
 			randomAccessFilePool = new RandomAccessFilePool(file, Mode.READ_ONLY);
 			committed = false;
 		}
 
 		public void downloadChunk(
 			long offsetBytes, long sizeBytes, OutputStream outputStream
+		) throws IOException {
+			downloadChunk(
+				offsetBytes, sizeBytes, CompressionType.NONE, CompressionType.DEFAULT_LEVEL,
+				chunkCompressor -> chunkCompressor.writeTo(outputStream)
+			);
+		}
+
+		/**
+		 * Checks whether chunk can be sent by container directly from file (i.e. sendfile), without
+		 * its content being copied through user space
+		 *
+		 * @return file to send chunk from, or empty if chunk must be sent through {@link #downloadChunk}
+		 * because its digest needs to be recorded
+		 * @throws FileDeletedException if file doesn't exist anymore or got truncated so that it doesn't
+		 *                              contain whole chunk, connector would otherwise fail only once
+		 *                              response is already committed
+		 */
+		public Optional<File> downloadChunkFromFile(long offsetBytes, long sizeBytes) {
+			checkFileCommitted();
+			if (inlineChunkDigests != null) {
+				return Optional.empty();
+			}
+			checkChunkInFile(offsetBytes, sizeBytes);
+			return Optional.of(file);
+		}
+
+		/**
+		 * Checks that file still contains whole chunk, for senders which can't report error once
+		 * they started writing response
+		 *
+		 * @throws FileDeletedException if file doesn't exist anymore or got truncated
+		 */
+		public void checkChunkInFile(long offsetBytes, long sizeBytes) {
+			if (!file.isFile()) {
+				throw new FileDeletedException(
+					fileMetadata.getFilePath(), "Can't download chunk on deleted file",
+					new FileNotFoundException(file.getPath())
+				);
+			}
+			if (file.length() < offsetBytes + sizeBytes) {
+				throw new FileDeletedException(
+					fileMetadata.getFilePath(), "Can't download chunk on truncated file",
+					new EOFException(file.getPath() + " is shorter than " + (offsetBytes + sizeBytes) + " bytes")
+				);
+			}
+		}
+
+		/**
+		 * Samples chunk content and hands it over to {@code sink} which writes it compressed
+		 * with {@code compressionType} or raw if sample turned out incompressible
+		 */
+		public void downloadChunk(
+			long offsetBytes, long sizeBytes, CompressionType compressionType, int compressionLevel,
+			ChunkCompressor.Sink sink
 		) throws IOException {
 			checkFileCommitted();
 			try {
-				randomAccessFilePool.doOnFile(file -> {
-					FileChunkInputStream inputStream = new FileChunkInputStream(file, offsetBytes, sizeBytes);
-					IOUtils.copy(inputStream, outputStream);
-				});
+				randomAccessFilePool.doOnFile(file -> sendContent(
+					ChunkInfo.of(offsetBytes, sizeBytes), new FileChunkInputStream(file, offsetBytes, sizeBytes),
+					compressionType, compressionLevel, sink
+				));
+			} catch (FileNotFoundException ex) {
+				throw new FileDeletedException(fileMetadata.getFilePath(), "Can't download chunk on deleted file", ex);
+			}
+		}
+
+		/**
+		 * Same as {@link #downloadChunk} for client which accepts zero chunks, chunk is read only once
+		 * both to check whether it consists only of zero bytes and to be handed over to {@code sink},
+		 * see {@link ZeroChunks#contentUnlessZeroChunk}. Zero chunk is recorded as sent and client
+		 * is told to write zeros instead of receiving its content.
+		 *
+		 * @return {@code true} if chunk is zero chunk and nothing was handed over to {@code sink}
+		 */
+		public boolean downloadChunkUnlessZero(
+			long offsetBytes, long sizeBytes, CompressionType compressionType, int compressionLevel,
+			ChunkCompressor.Sink sink
+		) throws IOException {
+			checkFileCommitted();
+			ChunkInfo chunkInfo = ChunkInfo.of(offsetBytes, sizeBytes);
+			try (ReturnableRandomAccessFile file = randomAccessFilePool.borrowFile()) {
+				InputStream content = ZeroChunks.contentUnlessZeroChunk(file, chunkInfo);
+				if (content == null) {
+					if (inlineChunkDigests != null) {
+						inlineChunkDigests.recordZeroChunk(chunkInfo);
+					}
+					return true;
+				}
+				sendContent(chunkInfo, content, compressionType, compressionLevel, sink);
+				return false;
 			} catch (FileNotFoundException ex) {
 				throw new FileDeletedException(fileMetadata.getFilePath(), "Can't download chunk on deleted file", ex);
 			}
 		}
 
+		private void sendContent(
+			ChunkInfo chunkInfo, InputStream content, CompressionType compressionType, int compressionLevel,
+			ChunkCompressor.Sink sink
+		) throws IOException {
+			if (inlineChunkDigests == null) {
+				sink.write(ChunkCompressor.sample(content, compressionType, compressionLevel));
+			} else {
+				HashingInputStream hashingInputStream = inlineChunkDigests.hashing(content);
+				sink.write(ChunkCompressor.sample(hashingInputStream, compressionType, compressionLevel));
+				inlineChunkDigests.record(chunkInfo, hashingInputStream);
+			}
+		}
+
 		private void checkFileCommitted() {
 			if (committed) {
 				throw new AlreadyCommitedException("File: " + fileMetadata.getFilePath());
 			}
 		}
 
+		/**
+		 * @param transferredFileDigest digests of chunks client received, verified against sent chunks
+		 * if verification was requested on initialization
+		 */
 		@SneakyThrows
-		public void commit() {
+		public void commit(FileDigest transferredFileDigest) {
 			checkFileCommitted();
 			committed = true;
 			randomAccessFilePool.close();
+			if (inlineChunkDigests != null && transferredFileDigest != null) {
+				List<ChunkInfo> mismatchedChunks = inlineChunkDigests.mismatchedChunks(transferredFileDigest);
+				if (!mismatchedChunks.isEmpty()) {
+					throw new ChunkDigestMismatchException(fileMetadata.getFilePath(), mismatchedChunks);
+				}
+			}
 		}
 
 		private void abort() {
@@ -0,0 +1,54 @@
+package com.mediatoolkit.pareco.session;
+
+import com.mediatoolkit.pareco.model.DigestType;
+import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds {@link MerkleTree}s of files within one transfer session so that client's
+ * top-down descent doesn't re-calculate digests on each request for sub-tree nodes.
+ *
+ * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
+ * @since 07/11/2018
+ */
+class MerkleTreeCache {
+
+	private final Map<FilePath, MerkleTree> trees = new ConcurrentHashMap<>();
+
+	interface TreeCalculator {
+
+		MerkleTree calculate() throws IOException;
+	}
+
+	MerkleTree get(
+		FilePath filePath, DigestType digestType, int fanOut, TreeCalculator calculator
+	) throws IOException {
+		MerkleTree tree = trees.get(filePath);
+		if (tree != null && tree.getDigestType() == digestType && tree.getFanOut() == fanOut) {
+			return tree;
+		}
+		tree = calculator.calculate();
+		trees.put(filePath, tree);
+		return tree;
+	}
+
+	static byte[][] nodesOf(MerkleTree tree, int level, List<Integer> indices) {
+		if (level < 0 || level >= tree.height()) {
+			throw new IllegalArgumentException("Invalid tree level: " + level + ", tree height: " + tree.height());
+		}
+		byte[][] nodes = new byte[indices.size()][];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = tree.node(level, indices.get(i));
+		}
+		return nodes;
+	}
+
+	void evict(FilePath filePath) {
+		trees.remove(filePath);
+	}
+
+}
@@ -1,10 +1,18 @@
 package com.mediatoolkit.pareco.session;
 
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.components.DigestParallelism;
 import com.mediatoolkit.pareco.components.DirectoryStructureReader;
 import com.mediatoolkit.pareco.components.DirectoryWriter;
 import com.mediatoolkit.pareco.components.FileChunkWriter;
 import com.mediatoolkit.pareco.components.FileDeleter;
+import com.mediatoolkit.pareco.components.FileDeltaApplier;
+import com.mediatoolkit.pareco.components.FileDeltaCalculator;
+import com.mediatoolkit.pareco.components.FileDigestBatchCalculator;
+import com.mediatoolkit.pareco.components.FileDigestCache;
 import com.mediatoolkit.pareco.components.FileDigestCalculator;
+import com.mediatoolkit.pareco.components.FileMover;
+import com.mediatoolkit.pareco.components.FileSignatureCalculator;
 import com.mediatoolkit.pareco.components.MetadataWriter;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
 import java.io.IOException;
@@ -24,8 +32,16 @@ public class SessionFactory {
 	private final DirectoryWriter directoryWriter;
 	private final FileDeleter fileDeleter;
 	private final FileDigestCalculator fileDigestCalculator;
+	private final FileDigestCache fileDigestCache;
+	private final DigestParallelism digestParallelism;
+	private final FileDigestBatchCalculator fileDigestBatchCalculator;
+	private final FileSignatureCalculator fileSignatureCalculator;
+	private final FileDeltaCalculator fileDeltaCalculator;
 	private final FileChunkWriter fileChunkWriter;
+	private final FileDeltaApplier fileDeltaApplier;
 	private final MetadataWriter metadataWriter;
+	private final FileMover fileMover;
+	private final UnexpectedFilesLimits unexpectedFilesLimits;
 
 	public DownloadSession newDownloadSession(
 		String id, String rootDirectory, long chunkSizeBytes, String include, String exclude
@@ -33,6 +49,11 @@ public class SessionFactory {
 		return new DownloadSession(
 			directoryStructureReader,
 			fileDigestCalculator,
+			fileDigestCache,
+			digestParallelism,
+			fileDigestBatchCalculator,
+			fileDeltaCalculator,
+			fileMover,
 			id,
 			rootDirectory,
 			chunkSizeBytes,
@@ -50,8 +71,15 @@ public class SessionFactory {
 			directoryWriter,
 			fileDeleter,
 			fileDigestCalculator,
+			fileDigestCache,
+			digestParallelism,
+			fileDigestBatchCalculator,
+			fileSignatureCalculator,
 			fileChunkWriter,
+			fileDeltaApplier,
 			metadataWriter,
+			fileMover,
+			unexpectedFilesLimits,
 			id,
 			rootDirectory,
 			directoryStructure,
@@ -1,34 +1,70 @@
 package com.mediatoolkit.pareco.session;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashingInputStream;
+import com.mediatoolkit.pareco.components.ChunkDigestListener;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex;
+import com.mediatoolkit.pareco.components.DestinationChunkIndex.UnexpectedFilesLimits;
+import com.mediatoolkit.pareco.components.DigestParallelism;
+import com.mediatoolkit.pareco.components.DigestPrefixes;
+import com.mediatoolkit.pareco.components.FileDigestBatchCalculator;
+import com.mediatoolkit.pareco.components.FileDigestBatchListener;
 import com.mediatoolkit.pareco.components.DirectoryStructureReader;
 import com.mediatoolkit.pareco.components.DirectoryWriter;
+import com.mediatoolkit.pareco.components.FileBundleListener;
+import com.mediatoolkit.pareco.components.FileBundleStream;
 import com.mediatoolkit.pareco.components.FileChunkWriter;
 import com.mediatoolkit.pareco.components.FileDeleter;
+import com.mediatoolkit.pareco.components.FileDeltaApplier;
+import com.mediatoolkit.pareco.components.FileDigestCache;
+import com.mediatoolkit.pareco.components.FileDigestCacheKey;
 import com.mediatoolkit.pareco.components.FileDigestCalculator;
+import com.mediatoolkit.pareco.components.FileMover;
+import com.mediatoolkit.pareco.components.FileSignatureCalculator;
+import com.mediatoolkit.pareco.components.InlineChunkDigests;
 import com.mediatoolkit.pareco.components.MetadataWriter;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool;
 import com.mediatoolkit.pareco.components.RandomAccessFilePool.Mode;
+import com.mediatoolkit.pareco.components.RandomAccessFilePool.ReturnableRandomAccessFile;
+import com.mediatoolkit.pareco.components.ZeroChunks;
 import com.mediatoolkit.pareco.exceptions.AlreadyCommitedException;
+import com.mediatoolkit.pareco.exceptions.ChunkDigestMismatchException;
 import com.mediatoolkit.pareco.exceptions.DuplicateFileMetadataException;
 import com.mediatoolkit.pareco.exceptions.FileNotSpecifiedDuringInitializationException;
+import com.mediatoolkit.pareco.exceptions.InputStreamSizeMissMatchException;
 import com.mediatoolkit.pareco.exceptions.SessionNotExistsException;
 import com.mediatoolkit.pareco.model.ChunkInfo;
+import com.mediatoolkit.pareco.model.CompressionType;
+import com.mediatoolkit.pareco.model.ChunkingType;
 import com.mediatoolkit.pareco.model.DigestType;
 import com.mediatoolkit.pareco.model.DirectoryStructure;
+import com.mediatoolkit.pareco.model.FileDelta.DeltaInstruction;
 import com.mediatoolkit.pareco.model.FileDigest;
 import com.mediatoolkit.pareco.model.FileMetadata;
+import com.mediatoolkit.pareco.model.FileMove;
 import com.mediatoolkit.pareco.model.FilePath;
+import com.mediatoolkit.pareco.model.FilePathDigest;
+import com.mediatoolkit.pareco.model.FileSignature;
+import com.mediatoolkit.pareco.model.MerkleTree;
+import com.mediatoolkit.pareco.model.MerkleTreeSummary;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.Synchronized;
 import one.util.streamex.StreamEx;
+import org.apache.commons.io.IOUtils;
 
 /**
  * @author Antonio Tomac, <antonio.tomac@mediatoolkit.com>
@@ -40,8 +76,15 @@ public class UploadSession {
 	private final DirectoryWriter directoryWriter;
 	private final FileDeleter fileDeleter;
 	private final FileDigestCalculator fileDigestCalculator;
+	private final FileDigestCache fileDigestCache;
+	private final DigestParallelism digestParallelism;
+	private final FileDigestBatchCalculator fileDigestBatchCalculator;
+	private final FileSignatureCalculator fileSignatureCalculator;
 	private final FileChunkWriter fileChunkWriter;
+	private final FileDeltaApplier fileDeltaApplier;
 	private final MetadataWriter metadataWriter;
+	private final FileMover fileMover;
+	private final UnexpectedFilesLimits unexpectedFilesLimits;
 
 	private final String id;
 	@Getter
@@ -53,6 +96,13 @@ public class UploadSession {
 
 	private final Map<FilePath, FileMetadata> srcFileMetadatas;
 	private final Map<String, FileUploadSession> fileSessions;
+	private final MerkleTreeCache merkleTreeCache;
+	private final DestinationChunkIndex destinationChunkIndex;
+	/**
+	 * Digest types for which destination files not being uploaded are already indexed
+	 */
+	private final Set<DigestType> unexpectedFilesIndexed;
+	private final Object indexLock = new Object();
 	private boolean committed;
 	@Getter
 	private long lastActivityTime;
@@ -62,8 +112,15 @@ public class UploadSession {
 		DirectoryWriter directoryWriter,
 		FileDeleter fileDeleter,
 		FileDigestCalculator fileDigestCalculator,
+		FileDigestCache fileDigestCache,
+		DigestParallelism digestParallelism,
+		FileDigestBatchCalculator fileDigestBatchCalculator,
+		FileSignatureCalculator fileSignatureCalculator,
 		FileChunkWriter fileChunkWriter,
+		FileDeltaApplier fileDeltaApplier,
 		MetadataWriter metadataWriter,
+		FileMover fileMover,
+		UnexpectedFilesLimits unexpectedFilesLimits,
 		String id, String rootDirectory,
 		DirectoryStructure directoryStructure,
 		long chunkSizeBytes,
@@ -74,8 +131,15 @@ public class UploadSession {
 		this.directoryWriter = directoryWriter;
 		this.fileDeleter = fileDeleter;
 		this.fileDigestCalculator = fileDigestCalculator;
+		this.fileDigestCache = fileDigestCache;
+		this.digestParallelism = digestParallelism;
+		this.fileDigestBatchCalculator = fileDigestBatchCalculator;
+		this.fileSignatureCalculator = fileSignatureCalculator;
 		this.fileChunkWriter = fileChunkWriter;
+		this.fileDeltaApplier = fileDeltaApplier;
 		this.metadataWriter = metadataWriter;
+		this.fileMover = fileMover;
+		this.unexpectedFilesLimits = unexpectedFilesLimits;
 		this.id = id;
 		this.rootDirectory = rootDirectory;
 		this.directoryStructure = directoryStructure;
@@ -84,6 +148,9 @@ public class UploadSession {
 		this.exclude = exclude;
 		this.committed = false;
 		this.fileSessions = new HashMap<>();
+		this.merkleTreeCache = new MerkleTreeCache();
+		this.destinationChunkIndex = new DestinationChunkIndex(rootDirectory);
+		this.unexpectedFilesIndexed = EnumSet.noneOf(DigestType.class);
 		this.srcFileMetadatas = StreamEx.of(directoryStructure.getFiles())
 			.mapToEntry(FileMetadata::getFilePath)
 			.invert()
@@ -108,11 +175,140 @@ public class UploadSession {
 		return directoryStructureReader.readDirectoryStructure(rootDirectory, include, exclude);
 	}
 
-	public FileDigest getFileDigest(String relativeDirectory, String fileName, DigestType digestType) throws IOException {
+	public FileDigest getFileDigest(
+		String relativeDirectory, String fileName, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes
+	) throws IOException {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
-		return fileDigestCalculator.calculateFileDigest(rootDirectory, filePath, chunkSizeBytes, digestType);
+		FileDigest fileDigest = fileDigestCalculator.calculateFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, chunkingType, fileDigestCache, digestParallelism
+		);
+		destinationChunkIndex.index(filePath, fileDigest);
+		return DigestPrefixes.truncate(fileDigest, digestPrefixBytes);
+	}
+
+	/**
+	 * Calculates digests of many files concurrently, each one is passed to {@code listener} as soon as it's calculated
+	 */
+	public void streamFileDigests(
+		List<FilePath> filePaths, DigestType digestType, ChunkingType chunkingType, int digestPrefixBytes,
+		FileDigestBatchListener listener
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		filePaths.forEach(this::checkFileRegistered);
+		fileDigestBatchCalculator.calculateFileDigests(
+			rootDirectory, filePaths, chunkSizeBytes, digestType, chunkingType, fileDigestCache,
+			filePathDigest -> {
+				this.lastActivityTime = System.currentTimeMillis();
+				destinationChunkIndex.index(filePathDigest.getFilePath(), filePathDigest.getFileDigest());
+				FileDigest fileDigest = filePathDigest.getFileDigest();
+				listener.fileDigested(FilePathDigest.of(
+					filePathDigest.getFilePath(),
+					fileDigest != null ? DigestPrefixes.truncate(fileDigest, digestPrefixBytes) : null
+				));
+			}
+		);
+	}
+
+	public void streamFileDigest(
+		String relativeDirectory, String fileName, DigestType digestType, ChunkDigestListener listener
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		fileDigestCalculator.streamFileDigest(
+			rootDirectory, filePath, chunkSizeBytes, digestType, fileDigestCache, chunkDigest -> {
+				this.lastActivityTime = System.currentTimeMillis();
+				listener.chunkDigested(chunkDigest);
+			}
+		);
+	}
+
+	public MerkleTreeSummary getFileDigestTreeSummary(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut
+	) throws IOException {
+		return getFileDigestTree(relativeDirectory, fileName, digestType, fanOut).toSummary();
+	}
+
+	public byte[][] getFileDigestTreeNodes(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut, int level, List<Integer> indices
+	) throws IOException {
+		MerkleTree tree = getFileDigestTree(relativeDirectory, fileName, digestType, fanOut);
+		return MerkleTreeCache.nodesOf(tree, level, indices);
+	}
+
+	private MerkleTree getFileDigestTree(
+		String relativeDirectory, String fileName, DigestType digestType, int fanOut
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return merkleTreeCache.get(filePath, digestType, fanOut, () -> fileDigestCalculator.calculateMerkleTree(
+			rootDirectory, filePath, chunkSizeBytes, digestType, fanOut, fileDigestCache, digestParallelism
+		));
+	}
+
+	/**
+	 * @return digest of first {@code prefixSizeBytes} bytes of file, {@code null} if file is shorter,
+	 * see {@link FileDigestCalculator#calculatePrefixDigest}
+	 */
+	public byte[] getFilePrefixDigest(
+		String relativeDirectory, String fileName, DigestType digestType, long prefixSizeBytes
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileDigestCalculator.calculatePrefixDigest(rootDirectory, filePath, prefixSizeBytes, digestType);
+	}
+
+	/**
+	 * Calculates digests of blocks of at most {@code blockSizeBytes} within given ranges of file,
+	 * see {@link FileDigestCalculator#calculateBlockDigests}
+	 */
+	public FileDigest getFileBlockDigests(
+		String relativeDirectory, String fileName, DigestType digestType, long blockSizeBytes, List<ChunkInfo> ranges
+	) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileDigestCalculator.calculateBlockDigests(rootDirectory, filePath, ranges, blockSizeBytes, digestType);
+	}
+
+	public FileSignature getFileSignature(String relativeDirectory, String fileName, DigestType digestType) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FilePath filePath = FilePath.of(relativeDirectory, fileName);
+		checkFileRegistered(filePath);
+		return fileSignatureCalculator.calculateFileSignature(rootDirectory, filePath, chunkSizeBytes, digestType);
+	}
+
+	/**
+	 * @return index of destination chunks, on first use for {@code digestType} files which are
+	 * present in destination but not in source (i.e. old names of renamed files) get indexed,
+	 * limited to plausible ones by {@link DestinationChunkIndex#selectUnexpectedFiles}
+	 */
+	@Synchronized("indexLock")
+	private DestinationChunkIndex destinationChunkIndexOf(DigestType digestType) throws IOException {
+		if (unexpectedFilesIndexed.add(digestType)) {
+			List<FilePath> unexpectedFiles = DestinationChunkIndex.selectUnexpectedFiles(
+				StreamEx.of(getCurrentDirectoryStructure().getFiles())
+					.remove(fileMetadata -> srcFileMetadatas.containsKey(fileMetadata.getFilePath()))
+					.toList(),
+				srcFileMetadatas.values(),
+				unexpectedFilesLimits
+			);
+			for (FilePath filePath : unexpectedFiles) {
+				try {
+					destinationChunkIndex.index(filePath, fileDigestCalculator.calculateFileDigest(
+						rootDirectory, filePath, chunkSizeBytes, digestType, ChunkingType.FIXED,
+						fileDigestCache, digestParallelism
+					));
+				} catch (IOException ex) {
+					//file vanished or is unreadable, it's just not a candidate for chunk reuse
+				}
+			}
+		}
+		return destinationChunkIndex;
 	}
 
 	private void checkFileRegistered(FilePath filePath) {
@@ -124,23 +320,72 @@ public class UploadSession {
 	}
 
 	@Synchronized
-	public String initFileUploadSession(String relativeDirectory, String fileName) throws IOException {
+	public String initFileUploadSession(
+		String relativeDirectory, String fileName, boolean delta, DigestType verifyDigestType
+	) throws IOException {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
+		merkleTreeCache.evict(filePath);
 		FileMetadata srcFileMetadata = srcFileMetadatas.get(filePath);
 		String fileSessionId = id + "_" + UUID.randomUUID().toString();
-		FileUploadSession fileUploadSession = new FileUploadSession(rootDirectory, srcFileMetadata);
+		FileUploadSession fileUploadSession = new FileUploadSession(rootDirectory, srcFileMetadata, delta, verifyDigestType);
 		fileUploadSession.allocateFileToRequiredSize();
 		fileSessions.put(fileSessionId, fileUploadSession);
 		return fileSessionId;
 	}
 
+	/**
+	 * Writes whole files of {@link FileBundleStream} as they arrive, instead of going through
+	 * {@link FileUploadSession} for each one. File gets metadata specified on initialization applied
+	 * as soon as its content is written.
+	 */
+	public void uploadBundle(InputStream inputStream) throws IOException {
+		this.lastActivityTime = System.currentTimeMillis();
+		FileBundleStream.readFrom(inputStream, new FileBundleListener() {
+
+			@Override
+			public void fileReceived(FileMetadata fileMetadata, InputStream content) throws IOException {
+				FilePath filePath = fileMetadata.getFilePath();
+				checkFileRegistered(filePath);
+				merkleTreeCache.evict(filePath);
+				FileMetadata srcFileMetadata = srcFileMetadatas.get(filePath);
+				File file = new File(filePath.toAbsolutePath(rootDirectory));
+				fileChunkWriter.writeFile(file, srcFileMetadata.getFileSizeBytes(), content);
+				metadataWriter.writeFileMetadata(rootDirectory, srcFileMetadata);
+			}
+
+			@Override
+			public void fileDeleted(FilePath filePath) throws IOException {
+				checkFileRegistered(filePath);
+				merkleTreeCache.evict(filePath);
+				fileDeleter.delete(rootDirectory, Collections.singletonList(filePath));
+			}
+		});
+	}
+
+	/**
+	 * Creates missing files by moving or copying existing destination files with same content,
+	 * moving is allowed only for files which are not expected by client
+	 *
+	 * @return performed moves
+	 */
+	@Synchronized
+	public List<FileMove> moveFiles(List<FileMove> fileMoves) {
+		this.lastActivityTime = System.currentTimeMillis();
+		fileMoves.forEach(fileMove -> checkFileRegistered(fileMove.getToFilePath()));
+		List<FileMove> allowedMoves = StreamEx.of(fileMoves)
+			.remove(fileMove -> !fileMove.isCopy() && srcFileMetadatas.containsKey(fileMove.getFromFilePath()))
+			.toList();
+		return fileMover.moveFiles(rootDirectory, allowedMoves, chunkSizeBytes, fileDigestCache, digestParallelism);
+	}
+
 	@Synchronized
 	public void skipFileUpload(String relativeDirectory, String fileName) {
 		this.lastActivityTime = System.currentTimeMillis();
 		FilePath filePath = FilePath.of(relativeDirectory, fileName);
 		checkFileRegistered(filePath);
+		merkleTreeCache.evict(filePath);
 	}
 
 	private void checkSessionCommitted() {
@@ -183,15 +428,33 @@ public class UploadSession {
 		private final String rootDirectory;
 		private final FileMetadata srcFileMetadata;
 		private final RandomAccessFilePool randomAccessFilePool;
+		/**
+		 * Shared by all concurrently uploaded chunks, they are written with positional writes
+		 * so there is no need for separate handle per chunk, opened once file is allocated
+		 */
+		private volatile FileChannel writeChannel;
 		private final File file;
+		/**
+		 * File into which chunks are written, in delta mode it's temporary file
+		 * and {@link #file} is used as basis for block copies
+		 */
+		private final File writeFile;
+		private final boolean delta;
+		/**
+		 * Digests of received chunks, {@code null} if client didn't request verification
+		 */
+		private final InlineChunkDigests inlineChunkDigests;
 		private volatile boolean committed;
 		private volatile boolean deleted;
 
-		FileUploadSession(String rootDirectory, FileMetadata srcFileMetadata) {
+		FileUploadSession(String rootDirectory, FileMetadata srcFileMetadata, boolean delta, DigestType verifyDigestType) {
 			this.rootDirectory = rootDirectory;
 			this.srcFileMetadata = srcFileMetadata;
 			this.file = new File(srcFileMetadata.getFilePath().toAbsolutePath(rootDirectory));
-			this.randomAccessFilePool = new RandomAccessFilePool(file, Mode.READ_WRITE);
+			this.delta = delta;
+			this.inlineChunkDigests = verifyDigestType == null ? null : new InlineChunkDigests(verifyDigestType);
+			this.writeFile = delta ? fileDeltaApplier.deltaTempFileOf(file) : file;
+			this.randomAccessFilePool = new RandomAccessFilePool(writeFile, Mode.READ_WRITE);
 			committed = false;
 			deleted = false;
 		}
@@ -200,42 +463,209 @@ public class UploadSession {
 			randomAccessFilePool.doOnFile(file -> fileChunkWriter.allocateFileToSize(
 				file, srcFileMetadata.getFileSizeBytes()
 			));
+			writeChannel = FileChannel.open(writeFile.toPath(), StandardOpenOption.WRITE);
 		}
 
 		public void uploadChunk(
 			long offsetBytes, long sizeBytes, InputStream inputStream
 		) throws IOException {
+			uploadChunk(offsetBytes, sizeBytes, inputStream, CompressionType.NONE);
+		}
+
+		/**
+		 * @param compressionType compression of {@code inputStream}, {@code sizeBytes} is size of
+		 *                        decompressed content
+		 */
+		public void uploadChunk(
+			long offsetBytes, long sizeBytes, InputStream inputStream, CompressionType compressionType
+		) throws IOException {
+			checkFileCommitted();
+			ChunkInfo chunkInfo = ChunkInfo.of(offsetBytes, sizeBytes);
+			if (inlineChunkDigests == null) {
+				fileChunkWriter.writeChunk(writeChannel, chunkInfo, inputStream, compressionType);
+				return;
+			}
+			try (InputStream decompressingInputStream = compressionType.decompressing(inputStream)) {
+				HashingInputStream hashingInputStream = inlineChunkDigests.hashing(decompressingInputStream);
+				fileChunkWriter.writeChunk(writeChannel, chunkInfo, hashingInputStream);
+				inlineChunkDigests.record(chunkInfo, hashingInputStream);
+			}
+		}
+
+		/**
+		 * Same as {@link #uploadChunk(long, long, InputStream)} except that chunk content is handed over
+		 * in pieces as it arrives, i.e. from non-blocking request stream, through returned receiver
+		 */
+		public ChunkReceiver receiveChunk(long offsetBytes, long sizeBytes) {
+			checkFileCommitted();
+			return new ChunkReceiver(ChunkInfo.of(offsetBytes, sizeBytes));
+		}
+
+		/**
+		 * Writes chunk which sender reported to consist only of zero bytes, see {@link ZeroChunks}
+		 */
+		public void uploadZeroChunk(long offsetBytes, long sizeBytes) throws IOException {
 			checkFileCommitted();
 			ChunkInfo chunkInfo = ChunkInfo.of(offsetBytes, sizeBytes);
-			randomAccessFilePool.doOnFile(file -> fileChunkWriter.writeChunk(
-				file, chunkInfo, inputStream
+			randomAccessFilePool.doOnFile(file -> fileChunkWriter.writeZeroChunk(file, chunkInfo));
+			if (inlineChunkDigests != null) {
+				inlineChunkDigests.recordZeroChunk(chunkInfo);
+			}
+		}
+
+		public void copyBlocks(List<DeltaInstruction> copyInstructions) throws IOException {
+			checkFileCommitted();
+			if (!delta) {
+				throw new IllegalStateException("Can't copy blocks, file upload is not in delta mode: " + srcFileMetadata.getFilePath());
+			}
+			randomAccessFilePool.doOnFile(writeFile -> fileDeltaApplier.copyBlocks(
+				file, writeFile, copyInstructions
 			));
 		}
 
+		/**
+		 * Copies chunks which are already present in some destination file instead of receiving them
+		 *
+		 * @param chunks digests of chunks client would otherwise upload
+		 * @return chunks which are copied, the rest still needs to be uploaded
+		 */
+		public List<ChunkInfo> reuseChunks(FileDigest chunks) throws IOException {
+			checkFileCommitted();
+			DestinationChunkIndex index = destinationChunkIndexOf(chunks.getDigestType());
+			try (ReturnableRandomAccessFile randomAccessFile = randomAccessFilePool.borrowFile()) {
+				return index.copyChunks(chunks, randomAccessFile);
+			}
+		}
+
 		private void checkFileCommitted() {
 			if (committed) {
 				throw new AlreadyCommitedException("File: " + srcFileMetadata.getFilePath());
 			}
 		}
 
+		/**
+		 * @param transferredFileDigest digests of chunks client sent, used to verify received chunks
+		 * if verification was requested on initialization
+		 */
 		@SneakyThrows
-		public void commit() {
+		public void commit(FileDigest transferredFileDigest) {
 			checkFileCommitted();
 			committed = true;
 			randomAccessFilePool.close();
+			writeChannel.close();
 			if (!deleted) {
+				verifyReceivedChunks(transferredFileDigest);
+				if (delta) {
+					fileDeltaApplier.replaceWithTempFile(writeFile, file);
+				}
 				metadataWriter.writeFileMetadata(rootDirectory, srcFileMetadata);
+				seedDigestCache(transferredFileDigest);
+			}
+		}
+
+		private void verifyReceivedChunks(FileDigest transferredFileDigest) {
+			if (inlineChunkDigests == null || transferredFileDigest == null) {
+				return;
+			}
+			List<ChunkInfo> mismatchedChunks = inlineChunkDigests.mismatchedChunks(transferredFileDigest);
+			if (mismatchedChunks.isEmpty()) {
+				return;
+			}
+			if (delta) {
+				writeFile.delete();
+			} else {
+				//content can't be trusted, make sure it's not considered up to date by its modification time
+				writeFile.setLastModified(0);
+			}
+			throw new ChunkDigestMismatchException(srcFileMetadata.getFilePath(), mismatchedChunks);
+		}
+
+		/**
+		 * Verified digest of whole file is digest of file content as it is now, cache it for next transfer
+		 * and make its chunks available for reuse by other files
+		 */
+		private void seedDigestCache(FileDigest transferredFileDigest) throws IOException {
+			if (inlineChunkDigests == null || transferredFileDigest == null) {
+				return;
+			}
+			destinationChunkIndex.index(srcFileMetadata.getFilePath(), transferredFileDigest);
+			if (delta) {
+				return;
 			}
+			if (!InlineChunkDigests.coversWholeFile(transferredFileDigest, srcFileMetadata.getFileSizeBytes(), chunkSizeBytes)) {
+				return;
+			}
+			fileDigestCache.put(
+				FileDigestCacheKey.of(file, chunkSizeBytes, transferredFileDigest.getDigestType(), ChunkingType.FIXED),
+				transferredFileDigest
+			);
 		}
 
 		public void delete() {
 			checkFileCommitted();
 			file.delete();
+			writeFile.delete();
 			deleted = true;
 		}
 
 		private void abort() {
 			randomAccessFilePool.forceClose();
+			IOUtils.closeQuietly(writeChannel);
+			if (delta) {
+				writeFile.delete();
+			}
+		}
+
+		public class ChunkReceiver {
+
+			private final ChunkInfo chunkInfo;
+			/**
+			 * {@code null} if client didn't request verification
+			 */
+			private final Hasher hasher;
+			private long receivedBytes;
+
+			private ChunkReceiver(ChunkInfo chunkInfo) {
+				this.chunkInfo = chunkInfo;
+				this.hasher = inlineChunkDigests == null ? null : inlineChunkDigests.hasher();
+				this.receivedBytes = 0;
+			}
+
+			/**
+			 * Writes next {@code length} bytes of chunk, continuing where previous piece ended
+			 *
+			 * @throws InputStreamSizeMissMatchException if pieces exceed size of chunk
+			 */
+			public void receive(byte[] buffer, int length) throws IOException {
+				checkFileCommitted();
+				if (receivedBytes + length > chunkInfo.getSizeBytes()) {
+					throw new InputStreamSizeMissMatchException(String.format(
+						"Chunk input stream is expected to have %d bytes, but it has more", chunkInfo.getSizeBytes()
+					));
+				}
+				fileChunkWriter.writeChunkPart(
+					writeChannel, chunkInfo.getOffsetBytes() + receivedBytes, ByteBuffer.wrap(buffer, 0, length)
+				);
+				if (hasher != null) {
+					hasher.putBytes(buffer, 0, length);
+				}
+				receivedBytes += length;
+			}
+
+			/**
+			 * @throws InputStreamSizeMissMatchException if received pieces don't add up to whole chunk
+			 */
+			public void complete() {
+				if (receivedBytes != chunkInfo.getSizeBytes()) {
+					throw new InputStreamSizeMissMatchException(String.format(
+						"Chunk input stream is expected to have %d bytes, but copied %d bytes",
+						chunkInfo.getSizeBytes(), receivedBytes
+					));
+				}
+				if (hasher != null) {
+					inlineChunkDigests.record(chunkInfo, hasher.hash());
+				}
+			}
 		}
 
 	}